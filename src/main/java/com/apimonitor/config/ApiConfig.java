@@ -1,11 +1,17 @@
 package com.apimonitor.config;
 
+import com.apimonitor.model.impl.CompressionCodec;
+import com.apimonitor.probe.BodyCapture;
+import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.Setter;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
+import java.net.http.HttpClient;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Конфигурационный класс, загружающий параметры из application.yml с префиксом "api".
@@ -28,11 +34,72 @@ public class ApiConfig {
      */
     private long monitoringInterval;
 
+    /**
+     * Параметры параллельного выполнения проверок эндпоинтов.
+     */
+    private Execution execution = new Execution();
+
+    /**
+     * Параметры планировщика проверок.
+     */
+    private Scheduler scheduler = new Scheduler();
+
+    /**
+     * Параметры HTTP-клиента, выполняющего проверки.
+     */
+    private Http http = new Http();
+
+    /**
+     * Параметры асинхронной записи результатов проверок в БД.
+     */
+    private Ingest ingest = new Ingest();
+
+    /**
+     * Параметры хранения метрик: срок хранения и обслуживание секций.
+     */
+    private Retention retention = new Retention();
+
+    /**
+     * Параметры свёртки метрик в минутные и часовые агрегаты.
+     */
+    private Rollup rollup = new Rollup();
+
+    /**
+     * Параметры отслеживания изменений эндпоинтов в БД.
+     */
+    private EndpointFeed endpointFeed = new EndpointFeed();
+
+    /**
+     * Параметры агрегации проверок в памяти по скользящим окнам.
+     */
+    private RollingWindow rollingWindow = new RollingWindow();
+
+    /**
+     * Параметры кэша агрегатов для отчётов.
+     */
+    private ReportCache reportCache = new ReportCache();
+
+    /**
+     * Параметры построения отчётов: ограничение одновременных задач и крайний срок.
+     */
+    private Reports reports = new Reports();
+
+    /**
+     * Параметры постраничного списка метрик.
+     */
+    private MetricsPage metricsPage = new MetricsPage();
+
+    /**
+     * Параметры потоковой выгрузки метрик.
+     */
+    private Export export = new Export();
+
     /**
      * Представление одного API-эндпоинта для мониторинга.
      */
     @Getter
     @Setter
+    @EqualsAndHashCode
     public static class ApiEndpoint {
 
         /**
@@ -54,5 +121,409 @@ public class ApiConfig {
          * Уникальное имя API, используемое для идентификации в отчётах.
          */
         private String name;
+
+        /**
+         * Таймаут установки соединения (в миллисекундах).
+         * Если не задан, используется {@code api.http.connect-timeout-ms}.
+         */
+        private long connectTimeoutMs;
+
+        /**
+         * Таймаут ожидания заголовков ответа (в миллисекундах).
+         * Если не задан, используется {@code api.http.read-timeout-ms}.
+         */
+        private long readTimeoutMs;
+
+        /**
+         * Общий таймаут проверки, включая чтение тела ответа (в миллисекундах).
+         * Если не задан, используется {@code api.http.total-timeout-ms}.
+         */
+        private long totalTimeoutMs;
+
+        /**
+         * Измерять ли разрешение DNS, установку TCP-соединения и TLS-рукопожатие. HTTP-клиент переиспользует
+         * соединения из пула и не раскрывает эти фазы, поэтому для их измерения перед запросом
+         * открывается отдельное контрольное соединение.
+         */
+        private boolean measureConnection;
+
+        /**
+         * Режим сохранения тела ответа.
+         * Если не задан, используется {@code api.http.body-capture}.
+         */
+        private BodyCapture bodyCapture;
+
+        /**
+         * Число сохраняемых байт тела в режиме {@code PREFIX}.
+         * Если не задано, используется {@code api.http.body-prefix-bytes}.
+         */
+        private int bodyPrefixBytes;
+
+        /**
+         * Заголовки, которые отправляются вместе с каждым запросом к эндпоинту
+         * (например, {@code Authorization} или {@code Accept}).
+         */
+        private Map<String, String> headers;
+    }
+
+    /**
+     * Настройки исполнителя проверок: ограничение числа одновременных запросов
+     * и крайний срок выполнения одного раунда мониторинга.
+     */
+    @Getter
+    @Setter
+    public static class Execution {
+
+        /**
+         * Максимальное число проверок, выполняемых одновременно.
+         */
+        private int maxInFlight = 256;
+
+        /**
+         * Крайний срок выполнения одного раунда (в миллисекундах).
+         * Проверки, не успевшие завершиться к этому моменту, прерываются.
+         */
+        private long roundTimeoutMs = 30000;
+    }
+
+    /**
+     * Настройки колеса таймеров, по которому планируются проверки эндпоинтов.
+     */
+    @Getter
+    @Setter
+    public static class Scheduler {
+
+        /**
+         * Длительность одного тика (в миллисекундах) — точность срабатывания проверок.
+         */
+        private long tickMs = 50;
+
+        /**
+         * Число ячеек колеса таймеров.
+         */
+        private int wheelSize = 512;
+    }
+
+    /**
+     * Настройки HTTP-клиента проверок: версия протокола, пул соединений и таймауты по умолчанию.
+     */
+    @Getter
+    @Setter
+    public static class Http {
+
+        /**
+         * Предпочтительная версия протокола. Для HTTP/2 используется мультиплексирование
+         * запросов к одному хосту; при отсутствии поддержки у сервера клиент переходит на HTTP/1.1.
+         */
+        private HttpClient.Version version = HttpClient.Version.HTTP_2;
+
+        /**
+         * Таймаут установки соединения по умолчанию (в миллисекундах).
+         */
+        private long connectTimeoutMs = 5000;
+
+        /**
+         * Таймаут ожидания заголовков ответа по умолчанию (в миллисекундах).
+         */
+        private long readTimeoutMs = 10000;
+
+        /**
+         * Общий таймаут проверки по умолчанию (в миллисекундах).
+         */
+        private long totalTimeoutMs = 30000;
+
+        /**
+         * Время жизни простаивающего keep-alive соединения в пуле (в секундах).
+         */
+        private long keepAliveTimeoutS = 120;
+
+        /**
+         * Максимальное число простаивающих соединений в пуле (0 — без ограничения).
+         */
+        private int connectionPoolSize;
+
+        /**
+         * Режим сохранения тела ответа по умолчанию.
+         */
+        private BodyCapture bodyCapture = BodyCapture.FULL;
+
+        /**
+         * Число сохраняемых байт тела в режиме {@code PREFIX} по умолчанию.
+         */
+        private int bodyPrefixBytes = 4096;
+
+        /**
+         * Максимальный размер сохраняемого тела (в байтах) в любом режиме.
+         * Более длинные тела обрезаются, но хеш и размер считаются по всему телу.
+         */
+        private int maxBodyBytes = 1024 * 1024;
+
+        /**
+         * Имена заголовков ответа, которые сохраняются вместе с проверкой (без учёта регистра).
+         * Пустой список — сохранять все заголовки.
+         */
+        private List<String> storedHeaders = new ArrayList<>();
+    }
+
+    /**
+     * Настройки отложенной записи метрик: размер очереди и правила формирования пакетов.
+     */
+    @Getter
+    @Setter
+    public static class Ingest {
+
+        /**
+         * Способ записи пакетов метрик в БД.
+         */
+        private Mode mode = Mode.JPA;
+
+        /**
+         * Ёмкость очереди метрик, ожидающих записи.
+         */
+        private int queueCapacity = 10000;
+
+        /**
+         * Максимальное число метрик в одном пакете записи.
+         */
+        private int batchSize = 500;
+
+        /**
+         * Максимальное время сбора пакета (в миллисекундах), после которого он записывается неполным.
+         */
+        private long flushIntervalMs = 500;
+
+        /**
+         * Сколько проверка ждёт места в переполненной очереди (в миллисекундах).
+         * 0 — метрика отбрасывается сразу.
+         */
+        private long offerTimeoutMs;
+
+        /**
+         * Сколько раз повторять запись пакета после временной ошибки БД.
+         */
+        private int maxRetries = 3;
+
+        /**
+         * Задержка перед первой повторной записью пакета (в миллисекундах); удваивается с каждой попыткой.
+         */
+        private long retryBackoffMs = 500;
+
+        /**
+         * Сколько ключей недавно встреченных тел ответов держать в памяти,
+         * чтобы не искать повторяющиеся тела в БД.
+         */
+        private int bodyCacheSize = 10000;
+
+        /**
+         * Как часто (в миллисекундах) заново отмечать в {@code last_seen_at} тела, взятые из кэша.
+         * Должно быть заметно меньше суток: тела, отмеченные позже суток до границы хранения,
+         * не удаляются.
+         */
+        private long bodyTouchIntervalMs = 3600000;
+
+        /**
+         * Кодек сжатия новых тел ответов. Уже сохранённые тела читаются любым кодеком.
+         */
+        private CompressionCodec bodyCodec = CompressionCodec.DEFLATE;
+
+        /**
+         * Способ записи пакетов метрик.
+         */
+        public enum Mode {
+            /**
+             * Пакетные вставки через JPA/Hibernate.
+             */
+            JPA,
+
+            /**
+             * Команда PostgreSQL {@code COPY} для {@code api_metrics}; на других БД — пакетные вставки.
+             */
+            COPY
+        }
+    }
+
+    /**
+     * Настройки хранения метрик в дневных секциях {@code api_metrics}.
+     */
+    @Getter
+    @Setter
+    public static class Retention {
+
+        /**
+         * Включено ли обслуживание секций (создание будущих и удаление устаревших).
+         */
+        private boolean enabled = true;
+
+        /**
+         * Срок хранения метрик в днях. Секции старше срока удаляются целиком.
+         */
+        private int retentionDays = 30;
+
+        /**
+         * На сколько дней вперёд заранее создаются секции.
+         */
+        private int precreateDays = 7;
+
+        /**
+         * Интервал запуска обслуживания секций (в миллисекундах).
+         */
+        private long maintenanceIntervalMs = 3600000;
+    }
+
+    /**
+     * Настройки свёртки сырых метрик в минутные и часовые агрегаты.
+     * Сырые метрики хранятся {@code api.retention.retention-days} дней, агрегаты — дольше.
+     */
+    @Getter
+    @Setter
+    public static class Rollup {
+
+        /**
+         * Включена ли периодическая свёртка.
+         */
+        private boolean enabled = true;
+
+        /**
+         * Интервал запуска свёртки (в миллисекундах).
+         */
+        private long intervalMs = 60000;
+
+        /**
+         * Отставание свёртки от текущего момента (в миллисекундах): минута сворачивается
+         * только после того, как все её метрики гарантированно записаны в БД.
+         */
+        private long lagMs = 60000;
+
+        /**
+         * Срок хранения минутных агрегатов в днях.
+         */
+        private int minuteRetentionDays = 90;
+
+        /**
+         * Срок хранения часовых агрегатов в днях.
+         */
+        private int hourRetentionDays = 730;
+    }
+
+    /**
+     * Настройки ленты изменений эндпоинтов: работающий планировщик периодически читает
+     * строки {@code api_endpoints} с версией больше уже применённой и обновляет только их.
+     */
+    @Getter
+    @Setter
+    public static class EndpointFeed {
+
+        /**
+         * Включён ли опрос изменений.
+         */
+        private boolean enabled = true;
+
+        /**
+         * Интервал опроса изменений (в миллисекундах).
+         */
+        private long pollIntervalMs = 5000;
+
+        /**
+         * Интервал полной сверки всех эндпоинтов БД с реестром (в миллисекундах). Сверка подхватывает
+         * изменения, версия которых оказалась ниже уже применённой из-за более поздней фиксации.
+         */
+        private long reconcileIntervalMs = 60000;
+    }
+
+    /**
+     * Настройки агрегатора скользящих окон: сводки за последние 1 минуту, 5 минут, 1 час
+     * и 24 часа строятся из счётчиков в памяти, а не запросами к БД.
+     * Окна содержат только метрики, записанные этим экземпляром.
+     */
+    @Getter
+    @Setter
+    public static class RollingWindow {
+
+        /**
+         * Включена ли агрегация в памяти. Если выключена, все сводки строятся из БД.
+         * Включать только при одном экземпляре приложения: проверки, записанные другими
+         * экземплярами, в окна этого экземпляра не попадают.
+         */
+        private boolean enabled = true;
+    }
+
+    /**
+     * Настройки кэша отчётов: агрегаты закрытых минут и часов хранятся в памяти
+     * и сбрасываются при записи запоздавших метрик в эти интервалы.
+     */
+    @Getter
+    @Setter
+    public static class ReportCache {
+
+        /**
+         * Включён ли кэш. Если выключен, каждый отчёт читается из БД целиком.
+         */
+        private boolean enabled = true;
+
+        /**
+         * Максимальный суммарный вес записей кэша. Вес записи — число агрегатов эндпоинтов в ней
+         * плюс их непустые ячейки гистограмм и статус-коды.
+         */
+        private long maxWeight = 2_000_000;
+    }
+
+    /**
+     * Настройки построения детальных отчётов: задачи отчётов всех запросов выполняются в виртуальных
+     * потоках, но одновременно занимают не больше заданного числа соединений с БД.
+     */
+    @Getter
+    @Setter
+    public static class Reports {
+
+        /**
+         * Максимальное число задач построения отчётов, выполняемых одновременно.
+         * 0 — половина пула соединений с БД.
+         */
+        private int parallelism;
+
+        /**
+         * Крайний срок построения отчёта (в миллисекундах). Незавершённые к сроку задачи прерываются.
+         */
+        private long timeoutMs = 30000;
+    }
+
+    /**
+     * Настройки постраничного списка сырых метрик {@code /api/metrics}.
+     */
+    @Getter
+    @Setter
+    public static class MetricsPage {
+
+        /**
+         * Размер страницы, если клиент его не указал.
+         */
+        private int defaultSize = 100;
+
+        /**
+         * Максимальный размер страницы; больший запрошенный размер уменьшается до него.
+         */
+        private int maxSize = 1000;
+    }
+
+    /**
+     * Настройки выгрузки {@code /api/metrics/export}: каждая выгрузка на всё время чтения занимает
+     * соединение с БД и держит открытой транзакцию только для чтения, которая не даёт VACUUM
+     * очищать строки, удалённые после её начала. Поэтому число одновременных выгрузок и их
+     * длительность ограничены отдельно от остальных запросов.
+     */
+    @Getter
+    @Setter
+    public static class Export {
+
+        /**
+         * Максимальное число одновременных выгрузок; сверх него запрос отклоняется с кодом 429.
+         */
+        private int maxConcurrent = 2;
+
+        /**
+         * Крайний срок одной выгрузки (в миллисекундах): таймаут асинхронного запроса
+         * и транзакции, в которой читаются метрики.
+         */
+        private long timeoutMs = 3600000;
     }
 }
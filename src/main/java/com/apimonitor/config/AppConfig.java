@@ -1,24 +1,74 @@
 package com.apimonitor.config;
 
+import com.apimonitor.probe.ProbeTransport;
+import com.apimonitor.probe.impl.HttpClientProbeTransport;
+import com.apimonitor.repository.MetricsBulkWriter;
+import com.apimonitor.repository.MetricsRepository;
+import com.apimonitor.repository.impl.CopyMetricsBulkWriter;
+import com.apimonitor.repository.impl.JpaMetricsBulkWriter;
+import jakarta.persistence.EntityManagerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.orm.jpa.SharedEntityManagerCreator;
+
+import javax.sql.DataSource;
 
 /**
- * Конфигурационный класс для создания и настройки бина RestTemplate.
- * Используется для выполнения HTTP-запросов в приложении.
+ * Конфигурационный класс для создания и настройки транспорта HTTP-проверок
+ * и способа записи метрик в БД.
  */
 @Configuration
 public class AppConfig {
 
     /**
-     * Создаёт и возвращает экземпляр {@link RestTemplate}, который будет использоваться для выполнения
-     * HTTP-запросов. Это основной компонент для взаимодействия с внешними API.
+     * Создаёт неблокирующий транспорт проверок на основе {@link java.net.http.HttpClient}.
+     * Транспорт можно заменить, объявив собственный бин {@link ProbeTransport}.
+     * <p>
+     * Параметры пула соединений JDK-клиента читаются из системных свойств при первом
+     * создании клиента, поэтому они выставляются здесь, если не заданы явно при запуске JVM.
+     *
+     * @param apiConfig конфигурация мониторинга
+     * @return экземпляр {@link ProbeTransport}
+     */
+    @Bean(destroyMethod = "close")
+    @ConditionalOnMissingBean(ProbeTransport.class)
+    public HttpClientProbeTransport probeTransport(ApiConfig apiConfig) {
+        ApiConfig.Http http = apiConfig.getHttp();
+        setIfAbsent("jdk.httpclient.keepalive.timeout", http.getKeepAliveTimeoutS());
+        setIfAbsent("jdk.httpclient.keepalive.timeout.h2", http.getKeepAliveTimeoutS());
+        setIfAbsent("jdk.httpclient.connectionPoolSize", http.getConnectionPoolSize());
+        return new HttpClientProbeTransport(http);
+    }
+
+    /**
+     * Создаёт компонент пакетной записи метрик согласно {@code api.ingest.mode}.
+     * В режиме {@code COPY} пакетные вставки JPA используются как резервный путь для БД,
+     * отличных от PostgreSQL.
      *
-     * @return экземпляр {@link RestTemplate}
+     * @param apiConfig            конфигурация мониторинга
+     * @param metricsRepository    репозиторий метрик
+     * @param entityManagerFactory фабрика EntityManager
+     * @param dataSource           источник соединений с БД
+     * @return экземпляр {@link MetricsBulkWriter}
      */
     @Bean
-    public RestTemplate restTemplate() {
-        return new RestTemplate();
+    @ConditionalOnMissingBean(MetricsBulkWriter.class)
+    public MetricsBulkWriter metricsBulkWriter(ApiConfig apiConfig,
+                                               MetricsRepository metricsRepository,
+                                               EntityManagerFactory entityManagerFactory,
+                                               DataSource dataSource) {
+        MetricsBulkWriter jpa = new JpaMetricsBulkWriter(metricsRepository);
+        if (apiConfig.getIngest().getMode() != ApiConfig.Ingest.Mode.COPY) {
+            return jpa;
+        }
+        return new CopyMetricsBulkWriter(
+                SharedEntityManagerCreator.createSharedEntityManager(entityManagerFactory), dataSource, jpa);
+    }
+
+    private static void setIfAbsent(String property, long value) {
+        if (System.getProperty(property) == null) {
+            System.setProperty(property, String.valueOf(value));
+        }
     }
 }
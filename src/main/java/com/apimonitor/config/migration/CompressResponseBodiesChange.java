@@ -0,0 +1,93 @@
+package com.apimonitor.config.migration;
+
+import com.apimonitor.model.impl.CompressionCodec;
+import liquibase.change.custom.CustomTaskChange;
+import liquibase.database.Database;
+import liquibase.database.jvm.JdbcConnection;
+import liquibase.exception.CustomChangeException;
+import liquibase.exception.SetupException;
+import liquibase.exception.ValidationErrors;
+import liquibase.resource.ResourceAccessor;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Миграция Liquibase: переносит несжатые тела из {@code api_response_bodies.body}
+ * в сжатый столбец {@code body_data}. Строки обрабатываются порциями по возрастанию id,
+ * поэтому миграция не загружает всю таблицу в память.
+ */
+@Getter
+@Setter
+public class CompressResponseBodiesChange implements CustomTaskChange {
+
+    private static final int BATCH_SIZE = 500;
+
+    /**
+     * Кодек сжатия (имя из {@link CompressionCodec}), задаётся параметром changeset.
+     */
+    private String codec = CompressionCodec.DEFLATE.name();
+
+    private int converted;
+
+    @Override
+    public void execute(Database database) throws CustomChangeException {
+        CompressionCodec compression = CompressionCodec.valueOf(codec);
+        Connection connection = ((JdbcConnection) database.getConnection()).getUnderlyingConnection();
+        try (PreparedStatement select = connection.prepareStatement(
+                "SELECT id, body FROM api_response_bodies WHERE id > ? AND body IS NOT NULL ORDER BY id");
+             PreparedStatement update = connection.prepareStatement(
+                     "UPDATE api_response_bodies SET body_data = ? WHERE id = ?")) {
+            select.setMaxRows(BATCH_SIZE);
+            long lastId = Long.MIN_VALUE;
+            while (true) {
+                select.setLong(1, lastId);
+                int rows = 0;
+                try (ResultSet rs = select.executeQuery()) {
+                    while (rs.next()) {
+                        lastId = rs.getLong(1);
+                        update.setBytes(1, compression.encodeIfSmaller(rs.getString(2)));
+                        update.setLong(2, lastId);
+                        update.addBatch();
+                        rows++;
+                    }
+                }
+                if (rows == 0) {
+                    break;
+                }
+                update.executeBatch();
+                converted += rows;
+            }
+        } catch (SQLException ex) {
+            throw new CustomChangeException("Не удалось сжать тела ответов", ex);
+        }
+    }
+
+    @Override
+    public String getConfirmationMessage() {
+        return "Сжато тел ответов: " + converted;
+    }
+
+    @Override
+    public void setUp() throws SetupException {
+    }
+
+    @Override
+    public void setFileOpener(ResourceAccessor resourceAccessor) {
+    }
+
+    @Override
+    public ValidationErrors validate(Database database) {
+        ValidationErrors errors = new ValidationErrors();
+        try {
+            CompressionCodec.valueOf(codec);
+        } catch (IllegalArgumentException ex) {
+            errors.addError("Неизвестный кодек сжатия: " + codec);
+        }
+        return errors;
+    }
+}
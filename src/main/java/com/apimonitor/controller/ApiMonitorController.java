@@ -2,14 +2,18 @@ package com.apimonitor.controller;
 
 import com.apimonitor.config.ApiConfig;
 import com.apimonitor.service.ApiMonitorService;
+import com.apimonitor.service.EndpointService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.ArraySchema;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.persistence.EntityExistsException;
+import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
@@ -29,12 +33,12 @@ import java.util.List;
 public class ApiMonitorController {
 
     private final ApiMonitorService apiMonitorService;
-    private final ApiConfig apiConfig;
+    private final EndpointService endpointService;
 
     /**
      * GET /api/monitor/endpoints
      * <p>
-     * Возвращает список всех API-эндпоинтов, настроенных для мониторинга.
+     * Возвращает список всех активных API-эндпоинтов мониторинга (из конфигурации и созданных через API).
      * Здесь мы напрямую используем модель конфигурации {@link ApiConfig.ApiEndpoint},
      * аннотированную в классе конфигурации для Swagger.
      *
@@ -56,8 +60,95 @@ public class ApiMonitorController {
     )
     @GetMapping("/endpoints")
     public ResponseEntity<List<ApiConfig.ApiEndpoint>> listEndpoints() {
-        log.info("Возвращаем {} эндпоинтов для мониторинга", apiConfig.getEndpoints().size());
-        return ResponseEntity.ok(apiConfig.getEndpoints());
+        List<ApiConfig.ApiEndpoint> endpoints = endpointService.findAll();
+        log.info("Возвращаем {} эндпоинтов для мониторинга", endpoints.size());
+        return ResponseEntity.ok(endpoints);
+    }
+
+    /**
+     * GET /api/monitor/endpoints/{name}
+     *
+     * @param name имя эндпоинта
+     * @return 200 OK с определением эндпоинта или 404, если эндпоинт не найден
+     */
+    @Operation(
+            summary = "Определение эндпоинта",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Определение эндпоинта"),
+                    @ApiResponse(responseCode = "404", description = "Эндпоинт не найден")
+            }
+    )
+    @GetMapping("/endpoints/{name}")
+    public ResponseEntity<ApiConfig.ApiEndpoint> getEndpoint(@PathVariable String name) {
+        return ResponseEntity.of(endpointService.find(name));
+    }
+
+    /**
+     * POST /api/monitor/endpoints
+     * <p>
+     * Создаёт эндпоинт и сразу ставит его на проверки без перезапуска приложения.
+     *
+     * @param definition определение эндпоинта
+     * @return 201 Created с сохранённым определением
+     */
+    @Operation(
+            summary = "Создание эндпоинта",
+            responses = {
+                    @ApiResponse(responseCode = "201", description = "Эндпоинт создан"),
+                    @ApiResponse(responseCode = "400", description = "Недопустимое определение"),
+                    @ApiResponse(responseCode = "409", description = "Эндпоинт с таким именем или URL уже существует")
+            }
+    )
+    @PostMapping("/endpoints")
+    public ResponseEntity<ApiConfig.ApiEndpoint> createEndpoint(@RequestBody ApiConfig.ApiEndpoint definition) {
+        log.info("Создание эндпоинта {}", definition.getName());
+        return ResponseEntity.status(HttpStatus.CREATED).body(endpointService.create(definition));
+    }
+
+    /**
+     * PUT /api/monitor/endpoints/{name}
+     * <p>
+     * Изменяет определение эндпоинта; планировщик перепланирует только этот эндпоинт.
+     *
+     * @param name       имя эндпоинта
+     * @param definition новое определение
+     * @return 200 OK с сохранённым определением
+     */
+    @Operation(
+            summary = "Изменение эндпоинта",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Эндпоинт изменён"),
+                    @ApiResponse(responseCode = "400", description = "Недопустимое определение"),
+                    @ApiResponse(responseCode = "404", description = "Эндпоинт не найден")
+            }
+    )
+    @PutMapping("/endpoints/{name}")
+    public ResponseEntity<ApiConfig.ApiEndpoint> updateEndpoint(@PathVariable String name,
+                                                                @RequestBody ApiConfig.ApiEndpoint definition) {
+        log.info("Изменение эндпоинта {}", name);
+        return ResponseEntity.ok(endpointService.update(name, definition));
+    }
+
+    /**
+     * DELETE /api/monitor/endpoints/{name}
+     * <p>
+     * Снимает эндпоинт с проверок. Собранные метрики эндпоинта сохраняются.
+     *
+     * @param name имя эндпоинта
+     * @return 204 No Content
+     */
+    @Operation(
+            summary = "Удаление эндпоинта",
+            responses = {
+                    @ApiResponse(responseCode = "204", description = "Эндпоинт удалён"),
+                    @ApiResponse(responseCode = "404", description = "Эндпоинт не найден")
+            }
+    )
+    @DeleteMapping("/endpoints/{name}")
+    public ResponseEntity<Void> deleteEndpoint(@PathVariable String name) {
+        log.info("Удаление эндпоинта {}", name);
+        endpointService.delete(name);
+        return ResponseEntity.noContent().build();
     }
 
     /**
@@ -82,4 +173,19 @@ public class ApiMonitorController {
         apiMonitorService.monitorAllEndpoints();
         return ResponseEntity.status(HttpStatus.ACCEPTED).build();
     }
-}
\ No newline at end of file
+
+    @ExceptionHandler(EntityNotFoundException.class)
+    public ResponseEntity<String> handleNotFound(EntityNotFoundException ex) {
+        return ResponseEntity.status(HttpStatus.NOT_FOUND).body(ex.getMessage());
+    }
+
+    @ExceptionHandler({EntityExistsException.class, DataIntegrityViolationException.class})
+    public ResponseEntity<String> handleConflict(RuntimeException ex) {
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(ex.getMessage());
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<String> handleInvalid(IllegalArgumentException ex) {
+        return ResponseEntity.badRequest().body(ex.getMessage());
+    }
+}
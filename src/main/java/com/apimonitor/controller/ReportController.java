@@ -2,17 +2,28 @@ package com.apimonitor.controller;
 
 import com.apimonitor.dto.ApiMetricsReport;
 import com.apimonitor.dto.ApiMetricsSummary;
-import com.apimonitor.model.impl.ApiMetricsImpl;
+import com.apimonitor.dto.ExportFormat;
+import com.apimonitor.dto.MetricsFilter;
+import com.apimonitor.dto.MetricsPage;
+import com.apimonitor.service.MetricsExportService;
 import com.apimonitor.service.MetricsService;
 import com.apimonitor.service.ReportService;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.AsyncWebRequest;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.ArraySchema;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -21,7 +32,13 @@ import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.tags.Tag;
 
 import java.time.LocalDateTime;
+import java.util.Locale;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeoutException;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * REST контроллер для получения метрик и отчетов по производительности API.
@@ -34,48 +51,66 @@ import java.util.List;
 @Tag(name = "Отчеты и метрики", description = "Операции для получения списков метрик и отчетов по API")
 public class ReportController {
 
+    private static final int EXPORT_RETRY_AFTER_S = 60;
+
     private final MetricsService metricsService;
     private final ReportService reportService;
+    private final MetricsExportService metricsExportService;
 
     /**
-     * 1) Список всех метрик или отфильтрованный по apiName и/или по времени.
+     * 1) Постраничный список метрик от новых к старым с необязательными фильтрами
+     * по apiName, периоду, статус-коду и успешности. Следующая страница запрашивается
+     * с курсором {@code nextCursor} из предыдущей.
      *
      * @param apiName имя API для фильтрации (опционально)
      * @param from    начало периода (ISO_DATE_TIME, опционально)
      * @param to      конец периода (ISO_DATE_TIME, опционально)
-     * @return 200 OK + список {@link ApiMetricsImpl} (или DTO, если вы добавите маппинг)
+     * @param status  HTTP-статус ответа (опционально)
+     * @param success успешность проверки (опционально)
+     * @param cursor  курсор следующей страницы (опционально)
+     * @param limit   размер страницы (опционально, не больше {@code api.metrics-page.max-size})
+     * @return 200 OK + {@link MetricsPage}
      */
     @Operation(
             summary = "Список метрик",
-            description = "Получение списка всех метрик или с фильтрацией по API и/или периоду",
+            description = "Постраничное получение метрик с фильтрацией по API, периоду, статус-коду и успешности",
             responses = {
                     @ApiResponse(
                             responseCode = "200",
-                            description = "Список метрик",
+                            description = "Страница метрик",
                             content = @Content(
                                     mediaType = "application/json",
-                                    array = @ArraySchema(schema = @Schema(implementation = ApiMetricsReport.class))
+                                    schema = @Schema(implementation = MetricsPage.class)
                             )
-                    )
+                    ),
+                    @ApiResponse(responseCode = "400", description = "Недопустимый курсор или размер страницы")
             }
     )
     @GetMapping("/metrics")
-    public ResponseEntity<List<ApiMetricsImpl>> getMetrics(
+    public ResponseEntity<MetricsPage> getMetrics(
             @RequestParam(required = false) String apiName,
             @RequestParam(required = false)
             @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
             @RequestParam(required = false)
-            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
-        log.info("Запрос метрик: apiName={}, from={}, to={}", apiName, from, to);
-        List<ApiMetricsImpl> list = (apiName != null && from != null && to != null)
-                ? metricsService.findByFilter(apiName, from, to)
-                : metricsService.findAll();
-        return ResponseEntity.ok(list);
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) Integer status,
+            @RequestParam(required = false) Boolean success,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit) {
+        log.info("Запрос метрик: apiName={}, from={}, to={}, status={}, success={}, limit={}",
+                apiName, from, to, status, success, limit);
+        MetricsPage page = metricsService.findPage(new MetricsFilter(apiName, from, to, status, success), cursor, limit);
+        return ResponseEntity.ok(page);
     }
 
     /**
      * 2) Сводка по одному API за указанный период:
      * среднее время, кол-во успешных и неуспешных запросов и т.д.
+     * <p>
+     * Если период начинается в последние 24 часа работы приложения и включены скользящие окна
+     * ({@code api.rolling-window.enabled}), сводка строится из памяти, а границы периода округляются
+     * до ячейки окна: 1 с для последней минуты, 5 с для последних 5 минут, 1 мин для последнего
+     * часа и 15 мин для последних суток. Более ранние периоды считаются по БД без округления.
      *
      * @param apiName имя API (обязательно)
      * @param from    начало периода (ISO_DATE_TIME, обязательно)
@@ -84,7 +119,10 @@ public class ReportController {
      */
     @Operation(
             summary = "Сводка по API",
-            description = "Получение сводной статистики по API за указанный период",
+            description = "Получение сводной статистики по API за указанный период. Для периодов, "
+                    + "начинающихся в последние 24 часа, сводка строится из скользящих окон в памяти, "
+                    + "и границы периода округляются до ячейки окна: 1 с (последняя минута), "
+                    + "5 с (последние 5 минут), 1 мин (последний час), 15 мин (последние сутки).",
             responses = {
                     @ApiResponse(
                             responseCode = "200",
@@ -113,6 +151,8 @@ public class ReportController {
     /**
      * 3) Детальный отчёт (Report) по всем API за период:
      * avg/min/max времена, распределение по статус-кодам, заголовки.
+     * Агрегаты всех эндпоинтов читаются одним сгруппированным запросом на каждую часть периода;
+     * если клиент отключился или истёк крайний срок, построение прерывается.
      *
      * @param from начало периода (ISO_DATE_TIME, обязательно)
      * @param to   конец периода (ISO_DATE_TIME, обязательно)
@@ -130,18 +170,112 @@ public class ReportController {
                                     array = @ArraySchema(schema = @Schema(implementation = ApiMetricsReport.class))
                             )
                     ),
-                    @ApiResponse(responseCode = "400", description = "Недопустимый запрос")
+                    @ApiResponse(responseCode = "400", description = "Недопустимый запрос"),
+                    @ApiResponse(responseCode = "503", description = "Отчет не построен за отведенное время")
             }
     )
     @GetMapping("/reports/detailed")
-    public ResponseEntity<List<ApiMetricsReport>> getDetailedReports(
+    public DeferredResult<ResponseEntity<List<ApiMetricsReport>>> getDetailedReports(
             @RequestParam @NotNull
             @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
             @RequestParam @NotNull
             @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
         log.info("Запрос детального отчета: from={}, to={}", from, to);
-        List<ApiMetricsReport> reports = metricsService.buildReports(from, to);
-        return ResponseEntity.ok(reports);
+        CompletableFuture<List<ApiMetricsReport>> reports = metricsService.buildReportsAsync(from, to);
+        DeferredResult<ResponseEntity<List<ApiMetricsReport>>> result = new DeferredResult<>();
+        result.onTimeout(() -> reports.cancel(true));
+        result.onError(ex -> reports.cancel(true));
+        reports.whenComplete((list, ex) -> {
+            if (ex == null) {
+                result.setResult(ResponseEntity.ok(list));
+            } else {
+                result.setErrorResult(ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * 4) Выгрузка сырых метрик за период в NDJSON или CSV.
+     * Строки читаются из БД курсором и пишутся в ответ по мере чтения, поэтому
+     * выгрузка любого объёма не накапливается в памяти сервера.
+     * <p>
+     * Одновременно выполняется не больше {@code api.export.max-concurrent} выгрузок, остальные запросы
+     * получают 429. Таймаут {@code api.export.timeout-ms} задаётся только этому запросу, общий таймаут
+     * асинхронных запросов не меняется.
+     *
+     * @param apiName имя API (опционально, по умолчанию все API)
+     * @param from    начало периода (ISO_DATE_TIME, обязательно)
+     * @param to      конец периода (ISO_DATE_TIME, обязательно)
+     * @param format  формат выгрузки (по умолчанию NDJSON)
+     * @param gzip    сжимать ли ответ gzip
+     * @param request текущий запрос, для которого задаётся таймаут выгрузки
+     * @return 200 OK + поток строк выгрузки или 429, если все места выгрузки заняты
+     */
+    @Operation(
+            summary = "Выгрузка метрик",
+            description = "Потоковая выгрузка сырых метрик за период в формате NDJSON или CSV",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Выгрузка метрик"),
+                    @ApiResponse(responseCode = "400", description = "Недопустимый запрос"),
+                    @ApiResponse(responseCode = "429", description = "Выполняется максимальное число выгрузок")
+            }
+    )
+    @GetMapping("/metrics/export")
+    public ResponseEntity<StreamingResponseBody> exportMetrics(
+            @RequestParam(required = false) String apiName,
+            @RequestParam @NotNull
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam @NotNull
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(defaultValue = "NDJSON") ExportFormat format,
+            @RequestParam(defaultValue = "false") boolean gzip,
+            HttpServletRequest request) {
+        log.info("Запрос выгрузки метрик: apiName={}, from={}, to={}, format={}, gzip={}",
+                apiName, from, to, format, gzip);
+        Optional<MetricsExportService.Slot> acquired = metricsExportService.tryAcquire();
+        if (acquired.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(EXPORT_RETRY_AFTER_S))
+                    .build();
+        }
+        MetricsExportService.Slot slot = acquired.get();
+        AsyncWebRequest asyncRequest = WebAsyncUtils.getAsyncManager(request).getAsyncWebRequest();
+        if (asyncRequest != null) {
+            asyncRequest.setTimeout(slot.timeoutMs());
+            // место освобождается и если выгрузка не началась из-за таймаута или обрыва соединения
+            asyncRequest.addCompletionHandler(slot::close);
+        }
+        StreamingResponseBody body = out -> {
+            try (slot) {
+                if (gzip) {
+                    try (GZIPOutputStream compressed = new GZIPOutputStream(out, 8192, true)) {
+                        metricsExportService.export(apiName, from, to, format, compressed);
+                    }
+                } else {
+                    metricsExportService.export(apiName, from, to, format, out);
+                }
+            }
+        };
+        String fileName = "metrics." + format.name().toLowerCase(Locale.ROOT) + (gzip ? ".gz" : "");
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(format.mediaType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"");
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return response.body(body);
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<String> handleInvalid(IllegalArgumentException ex) {
+        return ResponseEntity.badRequest().body(ex.getMessage());
+    }
+
+    @ExceptionHandler(TimeoutException.class)
+    public ResponseEntity<String> handleTimeout(TimeoutException ex) {
+        log.warn("Отчет не построен за отведенное время");
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body("Отчет не построен за отведенное время");
     }
 }
 
@@ -52,6 +52,66 @@ public class ApiMetricsReport {
      */
     private double maxResponseMs;
 
+    /**
+     * 50-й процентиль времени отклика (в миллисекундах) за период.
+     * {@code null}, если за период не было запросов.
+     */
+    private Double p50Ms;
+
+    /**
+     * 90-й процентиль времени отклика (в миллисекундах) за период.
+     * {@code null}, если за период не было запросов.
+     */
+    private Double p90Ms;
+
+    /**
+     * 95-й процентиль времени отклика (в миллисекундах) за период.
+     * {@code null}, если за период не было запросов.
+     */
+    private Double p95Ms;
+
+    /**
+     * 99-й процентиль времени отклика (в миллисекундах) за период.
+     * {@code null}, если за период не было запросов.
+     */
+    private Double p99Ms;
+
+    /**
+     * 99.9-й процентиль времени отклика (в миллисекундах) за период.
+     * {@code null}, если за период не было запросов.
+     */
+    private Double p999Ms;
+
+    /**
+     * Среднее время разрешения DNS (в миллисекундах).
+     * {@code null}, если фаза не измерялась ни в одной проверке периода.
+     */
+    private Double avgDnsMs;
+
+    /**
+     * Среднее время установки TCP-соединения (в миллисекундах).
+     * {@code null}, если фаза не измерялась ни в одной проверке периода.
+     */
+    private Double avgConnectMs;
+
+    /**
+     * Среднее время TLS-рукопожатия (в миллисекундах).
+     * {@code null}, если фаза не измерялась ни в одной проверке периода.
+     */
+    private Double avgTlsMs;
+
+    /**
+     * Среднее время до первого байта ответа (в миллисекундах).
+     * {@code null}, если фаза не измерялась ни в одной проверке периода.
+     */
+    private Double avgTtfbMs;
+
+    /**
+     * Среднее время чтения тела ответа (в миллисекундах).
+     * {@code null}, если фаза не измерялась ни в одной проверке периода.
+     */
+    private Double avgDownloadMs;
+
     /**
      * Распределение ответов по HTTP-статусам. Ключ — статус-код, значение — количество таких ответов.
      */
@@ -100,6 +160,46 @@ public class ApiMetricsReport {
         return maxResponseMs;
     }
 
+    public Double getP50Ms() {
+        return p50Ms;
+    }
+
+    public Double getP90Ms() {
+        return p90Ms;
+    }
+
+    public Double getP95Ms() {
+        return p95Ms;
+    }
+
+    public Double getP99Ms() {
+        return p99Ms;
+    }
+
+    public Double getP999Ms() {
+        return p999Ms;
+    }
+
+    public Double getAvgDnsMs() {
+        return avgDnsMs;
+    }
+
+    public Double getAvgConnectMs() {
+        return avgConnectMs;
+    }
+
+    public Double getAvgTlsMs() {
+        return avgTlsMs;
+    }
+
+    public Double getAvgTtfbMs() {
+        return avgTtfbMs;
+    }
+
+    public Double getAvgDownloadMs() {
+        return avgDownloadMs;
+    }
+
     public Map<Integer, Long> getStatusCodeDistribution() {
         return statusCodeDistribution;
     }
@@ -144,6 +244,46 @@ public class ApiMetricsReport {
         this.maxResponseMs = maxResponseMs;
     }
 
+    public void setP50Ms(Double p50Ms) {
+        this.p50Ms = p50Ms;
+    }
+
+    public void setP90Ms(Double p90Ms) {
+        this.p90Ms = p90Ms;
+    }
+
+    public void setP95Ms(Double p95Ms) {
+        this.p95Ms = p95Ms;
+    }
+
+    public void setP99Ms(Double p99Ms) {
+        this.p99Ms = p99Ms;
+    }
+
+    public void setP999Ms(Double p999Ms) {
+        this.p999Ms = p999Ms;
+    }
+
+    public void setAvgDnsMs(Double avgDnsMs) {
+        this.avgDnsMs = avgDnsMs;
+    }
+
+    public void setAvgConnectMs(Double avgConnectMs) {
+        this.avgConnectMs = avgConnectMs;
+    }
+
+    public void setAvgTlsMs(Double avgTlsMs) {
+        this.avgTlsMs = avgTlsMs;
+    }
+
+    public void setAvgTtfbMs(Double avgTtfbMs) {
+        this.avgTtfbMs = avgTtfbMs;
+    }
+
+    public void setAvgDownloadMs(Double avgDownloadMs) {
+        this.avgDownloadMs = avgDownloadMs;
+    }
+
     public void setStatusCodeDistribution(Map<Integer, Long> statusCodeDistribution) {
         this.statusCodeDistribution = statusCodeDistribution;
     }
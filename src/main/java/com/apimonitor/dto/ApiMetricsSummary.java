@@ -47,6 +47,36 @@ public class ApiMetricsSummary {
      */
     private double avgResponseMs;
 
+    /**
+     * 50-й процентиль времени отклика (в миллисекундах) за период.
+     * {@code null}, если за период не было запросов.
+     */
+    private Double p50Ms;
+
+    /**
+     * 90-й процентиль времени отклика (в миллисекундах) за период.
+     * {@code null}, если за период не было запросов.
+     */
+    private Double p90Ms;
+
+    /**
+     * 95-й процентиль времени отклика (в миллисекундах) за период.
+     * {@code null}, если за период не было запросов.
+     */
+    private Double p95Ms;
+
+    /**
+     * 99-й процентиль времени отклика (в миллисекундах) за период.
+     * {@code null}, если за период не было запросов.
+     */
+    private Double p99Ms;
+
+    /**
+     * 99.9-й процентиль времени отклика (в миллисекундах) за период.
+     * {@code null}, если за период не было запросов.
+     */
+    private Double p999Ms;
+
     /**
      * Дата и время генерации сводки.
      */
@@ -81,6 +111,26 @@ public class ApiMetricsSummary {
         return avgResponseMs;
     }
 
+    public Double getP50Ms() {
+        return p50Ms;
+    }
+
+    public Double getP90Ms() {
+        return p90Ms;
+    }
+
+    public Double getP95Ms() {
+        return p95Ms;
+    }
+
+    public Double getP99Ms() {
+        return p99Ms;
+    }
+
+    public Double getP999Ms() {
+        return p999Ms;
+    }
+
     public LocalDateTime getSummaryGeneratedAt() {
         return summaryGeneratedAt;
     }
@@ -113,6 +163,26 @@ public class ApiMetricsSummary {
         this.avgResponseMs = avgResponseMs;
     }
 
+    public void setP50Ms(Double p50Ms) {
+        this.p50Ms = p50Ms;
+    }
+
+    public void setP90Ms(Double p90Ms) {
+        this.p90Ms = p90Ms;
+    }
+
+    public void setP95Ms(Double p95Ms) {
+        this.p95Ms = p95Ms;
+    }
+
+    public void setP99Ms(Double p99Ms) {
+        this.p99Ms = p99Ms;
+    }
+
+    public void setP999Ms(Double p999Ms) {
+        this.p999Ms = p999Ms;
+    }
+
     public void setSummaryGeneratedAt(LocalDateTime summaryGeneratedAt) {
         this.summaryGeneratedAt = summaryGeneratedAt;
     }
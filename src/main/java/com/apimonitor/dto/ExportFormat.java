@@ -0,0 +1,27 @@
+package com.apimonitor.dto;
+
+/**
+ * Формат выгрузки сырых метрик.
+ */
+public enum ExportFormat {
+
+    /**
+     * Один JSON-объект на строку.
+     */
+    NDJSON("application/x-ndjson"),
+
+    /**
+     * CSV с заголовком (RFC 4180).
+     */
+    CSV("text/csv");
+
+    private final String mediaType;
+
+    ExportFormat(String mediaType) {
+        this.mediaType = mediaType;
+    }
+
+    public String mediaType() {
+        return mediaType;
+    }
+}
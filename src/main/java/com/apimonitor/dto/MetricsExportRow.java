@@ -0,0 +1,27 @@
+package com.apimonitor.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * Строка выгрузки сырых метрик. Читается проекцией, а не сущностью, поэтому не попадает
+ * в контекст персистентности и не накапливается в памяти при длинной выгрузке.
+ *
+ * @param id             id метрики
+ * @param apiName        имя эндпоинта
+ * @param apiUrl         URL эндпоинта
+ * @param timestamp      момент проверки
+ * @param statusCode     HTTP-статус ответа
+ * @param success        успешность проверки
+ * @param responseTimeMs время ответа в миллисекундах
+ * @param responseTimeUs время ответа в микросекундах ({@code null} для старых записей)
+ * @param dnsUs          время DNS-запроса в микросекундах
+ * @param connectUs      время установки соединения в микросекундах
+ * @param tlsUs          время TLS-рукопожатия в микросекундах
+ * @param ttfbUs         время до первого байта в микросекундах
+ * @param downloadUs     время чтения тела в микросекундах
+ * @param errorMessage   сообщение об ошибке
+ */
+public record MetricsExportRow(Long id, String apiName, String apiUrl, LocalDateTime timestamp, Integer statusCode,
+                               Boolean success, Long responseTimeMs, Long responseTimeUs, Long dnsUs, Long connectUs,
+                               Long tlsUs, Long ttfbUs, Long downloadUs, String errorMessage) {
+}
@@ -0,0 +1,16 @@
+package com.apimonitor.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * Фильтры списка метрик. Каждый фильтр необязателен и применяется независимо от остальных.
+ *
+ * @param apiName    имя API (точное совпадение)
+ * @param from       начало периода (включительно)
+ * @param to         конец периода (включительно)
+ * @param statusCode HTTP-статус ответа
+ * @param success    успешность проверки
+ */
+public record MetricsFilter(String apiName, LocalDateTime from, LocalDateTime to, Integer statusCode,
+                            Boolean success) {
+}
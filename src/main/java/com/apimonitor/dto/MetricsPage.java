@@ -0,0 +1,30 @@
+package com.apimonitor.dto;
+
+import com.apimonitor.model.impl.ApiMetricsImpl;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+import java.util.List;
+
+@Getter
+@Builder
+@ToString
+@EqualsAndHashCode
+@NoArgsConstructor
+@AllArgsConstructor
+public class MetricsPage {
+
+    /**
+     * Метрики страницы от новых к старым.
+     */
+    private List<ApiMetricsImpl> items;
+
+    /**
+     * Непрозрачный курсор следующей страницы или {@code null}, если страница последняя.
+     */
+    private String nextCursor;
+}
@@ -0,0 +1,39 @@
+package com.apimonitor.mapper;
+
+import com.apimonitor.config.ApiConfig;
+import com.apimonitor.model.impl.ApiEndpointImpl;
+import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
+import org.mapstruct.MappingTarget;
+
+/**
+ * Mapper между определением эндпоинта {@link ApiConfig.ApiEndpoint}, с которым работают
+ * планировщик и REST API, и сущностью {@link ApiEndpointImpl}.
+ */
+@Mapper(componentModel = "spring")
+public interface ApiEndpointMapper {
+
+    /**
+     * Преобразует сохранённый эндпоинт в определение для проверок.
+     *
+     * @param endpoint сущность эндпоинта
+     * @return определение эндпоинта
+     */
+    ApiConfig.ApiEndpoint toDefinition(ApiEndpointImpl endpoint);
+
+    /**
+     * Переносит определение эндпоинта в сущность. Служебные поля сущности не изменяются.
+     *
+     * @param definition определение эндпоинта
+     * @param endpoint   изменяемая сущность
+     */
+    @Mapping(target = "id", ignore = true)
+    @Mapping(target = "active", ignore = true)
+    @Mapping(target = "version", ignore = true)
+    void update(ApiConfig.ApiEndpoint definition, @MappingTarget ApiEndpointImpl endpoint);
+
+    /**
+     * Статический экземпляр для прямого вызова (не рекомендуется при использовании Spring).
+     */
+    ApiEndpointMapper INSTANCE = org.mapstruct.factory.Mappers.getMapper(ApiEndpointMapper.class);
+}
@@ -1,6 +1,7 @@
 package com.apimonitor.model;
 
 import com.apimonitor.model.impl.ApiResponseImpl;
+import com.apimonitor.model.impl.LatencyBreakdown;
 
 import java.time.LocalDateTime;
 
@@ -11,12 +12,8 @@ public interface ApiMetrics {
 
     public String getApiUrl();
 
-    public void setApiUrl(String apiUrl);
-
     public String getApiName();
 
-    public void setApiName(String apiName);
-
     public int getStatusCode();
 
     public void setStatusCode(int statusCode);
@@ -40,4 +37,12 @@ public interface ApiMetrics {
     public ApiResponseImpl getResponse();
 
     public void setResponse(ApiResponseImpl response);
+
+    public LatencyBreakdown getLatency();
+
+    public void setLatency(LatencyBreakdown latency);
+
+    public Boolean getBodyChanged();
+
+    public void setBodyChanged(Boolean bodyChanged);
 }
@@ -1,16 +1,24 @@
 package com.apimonitor.model;
 
 import com.apimonitor.model.impl.ApiMetricsImpl;
-import com.apimonitor.model.impl.ApiResponseImpl;
+import com.apimonitor.model.impl.ApiResponseBodyImpl;
 
 public interface ApiResponse {
     public Long getId();
 
     public void setId(Long id);
 
+    public ApiResponseBodyImpl getContent();
+
+    public void setContent(ApiResponseBodyImpl content);
+
     public String getBody();
 
-    public void setBody(String body);
+    public String getBodyHash();
+
+    public Long getBodySize();
+
+    public boolean isBodyTruncated();
 
     public ApiMetricsImpl getMetrics();
 
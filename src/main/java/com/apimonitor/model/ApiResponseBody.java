@@ -0,0 +1,27 @@
+package com.apimonitor.model;
+
+public interface ApiResponseBody {
+    public Long getId();
+
+    public void setId(Long id);
+
+    public String getBodyHash();
+
+    public void setBodyHash(String bodyHash);
+
+    public int getStoredLength();
+
+    public void setStoredLength(int storedLength);
+
+    public String getBody();
+
+    public void setBody(String body);
+
+    public Long getBodySize();
+
+    public void setBodySize(Long bodySize);
+
+    public boolean isBodyTruncated();
+
+    public void setBodyTruncated(boolean bodyTruncated);
+}
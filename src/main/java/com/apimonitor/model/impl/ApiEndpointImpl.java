@@ -1,19 +1,30 @@
 package com.apimonitor.model.impl;
 
 import com.apimonitor.model.ApiEndpoint;
+import com.apimonitor.probe.BodyCapture;
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.Generated;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.generator.EventType;
+import org.hibernate.type.SqlTypes;
 
 import java.util.Map;
 
 /**
  * JPA-сущность для хранения конфигурации мониторинга API-эндпоинтов.
  * Реализует интерфейс {@link ApiEndpoint}.
+ * <p>
+ * Определения эндпоинтов редактируются во время работы. Каждое изменение строки получает
+ * новое значение {@link #version} из общей последовательности (в PostgreSQL — триггером),
+ * по которому работающие экземпляры находят изменения. Удалённые эндпоинты не удаляются
+ * из таблицы, а помечаются {@code active = false}, чтобы сохранить их метрики. Пара
+ * {@code (url, method)} уникальна только среди активных эндпоинтов (частичный индекс
+ * {@code uk_api_endpoints_active_url_method}), поэтому URL удалённого эндпоинта можно занять снова.
  */
 @Entity
 @Table(name = "api_endpoints",
         uniqueConstraints = {
-                @UniqueConstraint(columnNames = {"url", "method"}),
                 @UniqueConstraint(columnNames = {"name"})
         }
 )
@@ -28,7 +39,8 @@ public class ApiEndpointImpl implements ApiEndpoint {
      * Уникальный идентификатор записи.
      */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "api_endpoints_seq")
+    @SequenceGenerator(name = "api_endpoints_seq", sequenceName = "api_endpoints_seq", allocationSize = 50)
     private Long id;
 
     /**
@@ -58,10 +70,57 @@ public class ApiEndpointImpl implements ApiEndpoint {
     /**
      * Заголовки, которые надо отправлять вместе с запросами на эндпоинт.
      */
-    @ElementCollection(fetch = FetchType.LAZY)
-    @CollectionTable(name = "api_headers",
-            joinColumns = @JoinColumn(name = "endpoint_id"))
-    @MapKeyColumn(name = "header_name")
-    @Column(name = "header_value")
+    @JdbcTypeCode(SqlTypes.JSON)
+    @Column(name = "headers")
     private Map<String, String> headers;
+
+    /**
+     * Таймаут установки соединения в миллисекундах (0 — значение по умолчанию).
+     */
+    @Column(name = "connect_timeout_ms", nullable = false)
+    private long connectTimeoutMs;
+
+    /**
+     * Таймаут ожидания заголовков ответа в миллисекундах (0 — значение по умолчанию).
+     */
+    @Column(name = "read_timeout_ms", nullable = false)
+    private long readTimeoutMs;
+
+    /**
+     * Общий таймаут проверки в миллисекундах (0 — значение по умолчанию).
+     */
+    @Column(name = "total_timeout_ms", nullable = false)
+    private long totalTimeoutMs;
+
+    /**
+     * Измерять ли установку соединения и TLS-рукопожатие.
+     */
+    @Column(name = "measure_connection", nullable = false)
+    private boolean measureConnection;
+
+    /**
+     * Режим сохранения тела ответа ({@code null} — значение по умолчанию).
+     */
+    @Enumerated(EnumType.STRING)
+    @Column(name = "body_capture", length = 16)
+    private BodyCapture bodyCapture;
+
+    /**
+     * Число сохраняемых байт тела в режиме {@code PREFIX} (0 — значение по умолчанию).
+     */
+    @Column(name = "body_prefix_bytes", nullable = false)
+    private int bodyPrefixBytes;
+
+    /**
+     * Проверяется ли эндпоинт. Удалённый эндпоинт остаётся в таблице с {@code false}.
+     */
+    @Column(name = "active", nullable = false)
+    private boolean active = true;
+
+    /**
+     * Версия последнего изменения строки; назначается БД при каждой вставке и обновлении.
+     */
+    @Generated(event = {EventType.INSERT, EventType.UPDATE})
+    @Column(name = "version", insertable = false, updatable = false)
+    private long version;
 }
\ No newline at end of file
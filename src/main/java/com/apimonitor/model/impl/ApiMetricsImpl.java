@@ -4,7 +4,6 @@ import com.apimonitor.model.ApiMetrics;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.*;
-import org.hibernate.annotations.CreationTimestamp;
 
 import java.time.LocalDateTime;
 
@@ -13,12 +12,18 @@ import java.time.LocalDateTime;
  * Реализует интерфейс {@link ApiMetrics}.
  * <p>
  * Аннотируется для игнорирования ленивых связей при JSON-сериализации.
+ * <p>
+ * В PostgreSQL таблица секционирована по дням по {@code timestamp}, поэтому запросы
+ * за период должны содержать условие на {@code timestamp} — тогда читаются только нужные секции.
+ * Имя и URL эндпоинта в строках не хранятся: они берутся из {@link #endpoint}, а запросы
+ * фильтруют по {@code endpoint_id} через составной индекс {@code (endpoint_id, timestamp, id)}.
+ * Список метрик листается по ключу {@code (timestamp, id)}.
  */
 @Entity
 @Table(name = "api_metrics",
         indexes = {
-                @Index(name = "idx_api_metrics_endpoint", columnList = "endpoint_id"),
-                @Index(name = "idx_api_metrics_timestamp", columnList = "timestamp")
+                @Index(name = "idx_api_metrics_endpoint_ts_id", columnList = "endpoint_id, timestamp, id"),
+                @Index(name = "idx_api_metrics_ts_id", columnList = "timestamp, id")
         }
 )
 @Getter
@@ -35,7 +40,8 @@ public class ApiMetricsImpl implements ApiMetrics {
      * Уникальный идентификатор записи метрики.
      */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "api_metrics_seq")
+    @SequenceGenerator(name = "api_metrics_seq", sequenceName = "api_metrics_seq", allocationSize = 50)
     private Long id;
 
     /**
@@ -47,18 +53,6 @@ public class ApiMetricsImpl implements ApiMetrics {
     @JoinColumn(name = "endpoint_id", nullable = false)
     private ApiEndpointImpl endpoint;
 
-    /**
-     * URL эндпоинта на момент выполнения запроса.
-     */
-    @Column(name = "api_url", nullable = false, length = 2048)
-    private String apiUrl;
-
-    /**
-     * Имя эндпоинта на момент выполнения запроса.
-     */
-    @Column(name = "api_name", nullable = false, length = 256)
-    private String apiName;
-
     /**
      * HTTP-статус ответа.
      */
@@ -66,15 +60,15 @@ public class ApiMetricsImpl implements ApiMetrics {
     private int statusCode;
 
     /**
-     * Время ответа в миллисекундах.
+     * Время ответа в миллисекундах. Точное значение в микросекундах хранится в {@link #latency}.
      */
     @Column(name = "response_time_ms", nullable = false)
     private long responseTimeMs;
 
     /**
-     * Временная метка записи метрики. Заполняется автоматически при создании записи.
+     * Момент выполнения проверки. Заполняется при проверке, а не при вставке записи,
+     * так как запись в БД выполняется отложенно.
      */
-    @CreationTimestamp
     @Column(name = "timestamp", nullable = false, updatable = false)
     private LocalDateTime timestamp;
 
@@ -86,8 +80,10 @@ public class ApiMetricsImpl implements ApiMetrics {
 
     /**
      * Сообщение об ошибке, если запрос завершился неуспешно.
+     * Хранится в {@code bytea}, длинные сообщения сжимаются.
      */
-    @Column(name = "error_message", length = 2048)
+    @Convert(converter = CompressedTextConverter.class)
+    @Column(name = "error_message")
     private String errorMessage;
 
     /**
@@ -97,4 +93,31 @@ public class ApiMetricsImpl implements ApiMetrics {
     @OneToOne(cascade = CascadeType.ALL, orphanRemoval = true, fetch = FetchType.LAZY)
     @JoinColumn(name = "response_id")
     private ApiResponseImpl response;
-}
\ No newline at end of file
+
+    /**
+     * Разбивка времени ответа по фазам (DNS, соединение, TLS, TTFB, чтение тела).
+     */
+    @Embedded
+    private LatencyBreakdown latency;
+
+    /**
+     * Изменилось ли тело ответа по сравнению с предыдущей проверкой эндпоинта
+     * ({@code null}, если сравнивать не с чем).
+     */
+    @Column(name = "body_changed")
+    private Boolean bodyChanged;
+
+    /**
+     * @return имя эндпоинта, к которому относится метрика
+     */
+    public String getApiName() {
+        return endpoint != null ? endpoint.getName() : null;
+    }
+
+    /**
+     * @return URL эндпоинта, к которому относится метрика
+     */
+    public String getApiUrl() {
+        return endpoint != null ? endpoint.getUrl() : null;
+    }
+}
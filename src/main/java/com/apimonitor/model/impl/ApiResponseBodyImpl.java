@@ -0,0 +1,104 @@
+package com.apimonitor.model.impl;
+
+import com.apimonitor.model.ApiResponseBody;
+import jakarta.persistence.*;
+import lombok.*;
+
+/**
+ * Тело ответа, хранимое по содержимому: одинаковые тела разных проверок
+ * хранятся одной строкой, на которую ссылаются ответы {@link ApiResponseImpl}.
+ * <p>
+ * Ключ содержимого — SHA-256 всего тела и длина сохранённой части: при одном хеше
+ * сохранённые части одинаковой длины совпадают.
+ * <p>
+ * Тело хранится сжатым ({@link CompressionCodec}) и распаковывается только при первом
+ * обращении к {@link #getBody()}.
+ */
+@Entity
+@Table(
+        name = "api_response_bodies",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"body_hash", "stored_length"})
+)
+@Getter
+@Setter
+@EqualsAndHashCode(of = "id")
+@ToString(exclude = {"bodyData", "body"})
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ApiResponseBodyImpl implements ApiResponseBody {
+
+    /**
+     * Уникальный идентификатор тела.
+     */
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "api_response_bodies_seq")
+    @SequenceGenerator(name = "api_response_bodies_seq", sequenceName = "api_response_bodies_seq", allocationSize = 50)
+    private Long id;
+
+    /**
+     * Шестнадцатеричный SHA-256 всего тела ответа.
+     */
+    @Column(name = "body_hash", length = 64, nullable = false)
+    private String bodyHash;
+
+    /**
+     * Длина сохранённой части тела в символах (0, если тело не сохраняется).
+     */
+    @Column(name = "stored_length", nullable = false)
+    private int storedLength;
+
+    /**
+     * Сжатая сохранённая часть тела: байт-идентификатор кодека и сжатые байты UTF-8.
+     */
+    @Column(name = "body_data")
+    private byte[] bodyData;
+
+    /**
+     * Полный размер тела ответа в байтах.
+     */
+    @Column(name = "body_size")
+    private Long bodySize;
+
+    /**
+     * Признак того, что сохранена только часть тела.
+     */
+    @Column(name = "body_truncated")
+    private boolean bodyTruncated;
+
+    /**
+     * Распакованная сохранённая часть тела HTTP-ответа (зависит от режима сохранения тела эндпоинта).
+     */
+    @Transient
+    private String body;
+
+    /**
+     * @return сохранённая часть тела; при первом обращении распаковывается из {@code bodyData}
+     */
+    public String getBody() {
+        if (body == null && bodyData != null) {
+            body = CompressionCodec.decode(bodyData);
+        }
+        return body;
+    }
+
+    public void setBody(String body) {
+        this.body = body;
+        this.bodyData = null;
+    }
+
+    /**
+     * Сжимает тело указанным кодеком для сохранения; если сжатие не уменьшает размер,
+     * тело сохраняется как есть.
+     */
+    public void compress(CompressionCodec codec) {
+        bodyData = codec.encodeIfSmaller(body);
+    }
+
+    @PrePersist
+    void compressIfNeeded() {
+        if (bodyData == null && body != null) {
+            compress(CompressionCodec.NONE);
+        }
+    }
+}
@@ -3,20 +3,28 @@ package com.apimonitor.model.impl;
 import com.apimonitor.model.ApiResponse;
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
 
+import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.Map;
 
 /**
- * Сущность, представляющая тело ответа API, связанное с метрикой.
- * Хранит тело HTTP-ответа в виде строки.
+ * Сущность, представляющая ответ API, связанный с метрикой.
+ * Хранит заголовки ответа и ссылку на тело {@link ApiResponseBodyImpl}, которое
+ * хранится по содержимому и разделяется между проверками с одинаковым телом.
+ * Заголовки хранятся одним JSON-столбцом, поэтому проверка записывает в эту таблицу одну строку.
+ * <p>
+ * В PostgreSQL таблица секционирована по дням по {@code created_at}, как и {@code api_metrics},
+ * поэтому ответы удаляются по сроку хранения вместе с секциями метрик.
  */
 @Entity
 @Table(name = "api_responses")
 @Getter
 @Setter
 @EqualsAndHashCode(of = "id")
-@ToString(exclude = "metrics")
+@ToString(exclude = {"metrics", "content"})
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
@@ -26,15 +34,16 @@ public class ApiResponseImpl implements ApiResponse {
      * Уникальный идентификатор ответа.
      */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "api_responses_seq")
+    @SequenceGenerator(name = "api_responses_seq", sequenceName = "api_responses_seq", allocationSize = 50)
     private Long id;
 
     /**
-     * Тело HTTP-ответа. Может быть большим, поэтому используется @Lob.
+     * Тело ответа, общее для всех проверок с тем же содержимым.
      */
-    @Lob
-    @Column(columnDefinition = "TEXT")
-    private String body;
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "body_id")
+    private ApiResponseBodyImpl content;
 
     /**
      * Обратная ссылка на связанную метрику API.
@@ -43,20 +52,56 @@ public class ApiResponseImpl implements ApiResponse {
     private ApiMetricsImpl metrics;
 
     /**
-     * Заголовки ответа.
+     * Заголовки ответа (имя — значение), отфильтрованные по {@code api.http.stored-headers}.
      */
-    @ElementCollection(fetch = FetchType.LAZY)
-    @CollectionTable(
-            name = "api_headers",
-            joinColumns = @JoinColumn(name = "response_id")
-    )
-    @MapKeyColumn(name = "header_name")
-    @Column(name = "header_value")
+    @JdbcTypeCode(SqlTypes.JSON)
+    @Column(name = "headers")
     private Map<String, String> headers = new HashMap<>();
 
+    /**
+     * Момент проверки, к которой относится ответ; совпадает с {@code timestamp} метрики,
+     * чтобы ответ попадал в секцию того же дня.
+     */
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    /**
+     * @return сохранённая часть тела или {@code null}, если тело не сохранялось
+     */
+    public String getBody() {
+        return content != null ? content.getBody() : null;
+    }
+
+    /**
+     * @return SHA-256 всего тела или {@code null}, если тело не хешировалось
+     */
+    public String getBodyHash() {
+        return content != null ? content.getBodyHash() : null;
+    }
+
+    /**
+     * @return полный размер тела в байтах
+     */
+    public Long getBodySize() {
+        return content != null ? content.getBodySize() : null;
+    }
+
+    /**
+     * @return сохранена ли только часть тела
+     */
+    public boolean isBodyTruncated() {
+        return content != null && content.isBodyTruncated();
+    }
+
     public ApiResponseImpl headers(Map<String, String> headers) {
         this.headers = headers;
         return this;
     }
-}
 
+    @PrePersist
+    void fillCreatedAt() {
+        if (createdAt == null) {
+            createdAt = metrics != null && metrics.getTimestamp() != null ? metrics.getTimestamp() : LocalDateTime.now();
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.apimonitor.model.impl;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+/**
+ * Хранит строку в столбце {@code bytea}, сжимая её {@link CompressionCodec#DEFLATE},
+ * если это уменьшает размер. Короткие строки хранятся несжатыми.
+ */
+@Converter
+public class CompressedTextConverter implements AttributeConverter<String, byte[]> {
+
+    @Override
+    public byte[] convertToDatabaseColumn(String attribute) {
+        return CompressionCodec.DEFLATE.encodeIfSmaller(attribute);
+    }
+
+    @Override
+    public String convertToEntityAttribute(byte[] dbData) {
+        return CompressionCodec.decode(dbData);
+    }
+}
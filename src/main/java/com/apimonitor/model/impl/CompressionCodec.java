@@ -0,0 +1,159 @@
+package com.apimonitor.model.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Кодеки сжатия текста для хранения в столбцах {@code bytea}.
+ * <p>
+ * Закодированное значение начинается с байта-идентификатора кодека, за которым следуют
+ * сжатые байты UTF-8. Поэтому значения, записанные разными кодеками, читаются одинаково,
+ * а кодек можно сменить без переноса данных.
+ */
+public enum CompressionCodec {
+
+    /**
+     * Без сжатия.
+     */
+    NONE(0) {
+        @Override
+        byte[] compress(byte[] data) {
+            return data;
+        }
+
+        @Override
+        byte[] decompress(byte[] data) {
+            return data;
+        }
+    },
+
+    /**
+     * Deflate (zlib) — без заголовка gzip, на коротких значениях экономит 12 байт.
+     */
+    DEFLATE(1) {
+        @Override
+        byte[] compress(byte[] data) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(32, data.length / 4));
+            try (DeflaterOutputStream deflater = new DeflaterOutputStream(out, new Deflater(Deflater.BEST_SPEED))) {
+                deflater.write(data);
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+            return out.toByteArray();
+        }
+
+        @Override
+        byte[] decompress(byte[] data) {
+            try (InflaterInputStream in = new InflaterInputStream(new ByteArrayInputStream(data))) {
+                return in.readAllBytes();
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+    },
+
+    /**
+     * Gzip.
+     */
+    GZIP(2) {
+        @Override
+        byte[] compress(byte[] data) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(32, data.length / 4));
+            try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+                gzip.write(data);
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+            return out.toByteArray();
+        }
+
+        @Override
+        byte[] decompress(byte[] data) {
+            try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(data))) {
+                return in.readAllBytes();
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+    };
+
+    private final byte id;
+
+    CompressionCodec(int id) {
+        this.id = (byte) id;
+    }
+
+    abstract byte[] compress(byte[] data);
+
+    abstract byte[] decompress(byte[] data);
+
+    /**
+     * Сжимает текст и добавляет байт-идентификатор кодека.
+     *
+     * @param text текст (может быть {@code null})
+     * @return закодированное значение или {@code null}
+     */
+    public byte[] encode(String text) {
+        if (text == null) {
+            return null;
+        }
+        return tagged(compress(text.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Как {@link #encode(String)}, но хранит текст несжатым, если сжатие не уменьшает его размер.
+     */
+    public byte[] encodeIfSmaller(String text) {
+        if (text == null) {
+            return null;
+        }
+        byte[] raw = text.getBytes(StandardCharsets.UTF_8);
+        if (this != NONE) {
+            byte[] compressed = compress(raw);
+            if (compressed.length < raw.length) {
+                return tagged(compressed);
+            }
+        }
+        return NONE.tagged(raw);
+    }
+
+    /**
+     * Декодирует значение, записанное любым кодеком.
+     *
+     * @param data закодированное значение (может быть {@code null})
+     * @return исходный текст или {@code null}
+     */
+    public static String decode(byte[] data) {
+        if (data == null || data.length == 0) {
+            return null;
+        }
+        CompressionCodec codec = byId(data[0]);
+        byte[] payload = Arrays.copyOfRange(data, 1, data.length);
+        return new String(codec.decompress(payload), StandardCharsets.UTF_8);
+    }
+
+    private byte[] tagged(byte[] payload) {
+        byte[] out = new byte[payload.length + 1];
+        out[0] = id;
+        System.arraycopy(payload, 0, out, 1, payload.length);
+        return out;
+    }
+
+    private static CompressionCodec byId(byte id) {
+        for (CompressionCodec codec : values()) {
+            if (codec.id == id) {
+                return codec;
+            }
+        }
+        throw new IllegalArgumentException("Неизвестный кодек сжатия: " + id);
+    }
+}
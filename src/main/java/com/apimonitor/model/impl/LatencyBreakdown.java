@@ -0,0 +1,56 @@
+package com.apimonitor.model.impl;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+import lombok.*;
+
+/**
+ * Встраиваемая разбивка времени ответа по фазам запроса (в микросекундах).
+ * Неизмеренные фазы хранятся как {@code null}.
+ */
+@Embeddable
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@EqualsAndHashCode
+@ToString
+public class LatencyBreakdown {
+
+    /**
+     * Разрешение DNS-имени.
+     */
+    @Column(name = "dns_us")
+    private Long dnsUs;
+
+    /**
+     * Установка TCP-соединения.
+     */
+    @Column(name = "connect_us")
+    private Long connectUs;
+
+    /**
+     * TLS-рукопожатие.
+     */
+    @Column(name = "tls_us")
+    private Long tlsUs;
+
+    /**
+     * Время до получения первого байта ответа (заголовков).
+     */
+    @Column(name = "ttfb_us")
+    private Long ttfbUs;
+
+    /**
+     * Чтение тела ответа.
+     */
+    @Column(name = "download_us")
+    private Long downloadUs;
+
+    /**
+     * Общее время проверки.
+     */
+    @Column(name = "response_time_us")
+    private Long totalUs;
+}
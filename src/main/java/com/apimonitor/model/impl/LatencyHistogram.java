@@ -0,0 +1,137 @@
+package com.apimonitor.model.impl;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Разреженная лог-линейная гистограмма времени ответа (в микросекундах).
+ * <p>
+ * Каждый интервал между соседними степенями двойки делится на {@value #SUB_BUCKETS} равных
+ * ячеек, поэтому относительная ширина ячейки не превышает 12.5% при любом масштабе значений.
+ * Хранятся только непустые ячейки, а гистограммы соседних интервалов времени складываются
+ * без потери точности, что позволяет сворачивать их в агрегаты более грубого разрешения.
+ */
+public class LatencyHistogram {
+
+    /**
+     * Число линейных ячеек на каждую степень двойки.
+     */
+    public static final int SUB_BUCKETS = 8;
+
+    private static final int SUB_BITS = Integer.numberOfTrailingZeros(SUB_BUCKETS);
+
+    private final TreeMap<Integer, Long> counts = new TreeMap<>();
+    private long total;
+
+    /**
+     * Учитывает одно значение.
+     *
+     * @param valueUs значение в микросекундах (отрицательные считаются нулём)
+     */
+    public void record(long valueUs) {
+        add(indexOf(valueUs), 1);
+    }
+
+    /**
+     * Прибавляет к гистограмме другую гистограмму.
+     *
+     * @param other гистограмма того же формата
+     */
+    public void merge(LatencyHistogram other) {
+        other.counts.forEach(this::add);
+    }
+
+    /**
+     * @return общее число учтённых значений
+     */
+    public long count() {
+        return total;
+    }
+
+    /**
+     * Оценивает значение процентиля по середине ячейки, в которую он попадает.
+     *
+     * @param percentile процентиль от 0 до 100
+     * @return оценка значения в микросекундах или {@code null}, если гистограмма пуста
+     */
+    public Long valueAtPercentile(double percentile) {
+        if (total == 0) {
+            return null;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * total));
+        long seen = 0;
+        for (Map.Entry<Integer, Long> entry : counts.entrySet()) {
+            seen += entry.getValue();
+            if (seen >= rank) {
+                long lower = lowerBound(entry.getKey());
+                long upper = lowerBound(entry.getKey() + 1);
+                return lower + (upper - lower - 1) / 2;
+            }
+        }
+        return lowerBound(counts.lastKey());
+    }
+
+    /**
+     * @return непустые ячейки: номер ячейки → число значений
+     */
+    public Map<Integer, Long> buckets() {
+        return java.util.Collections.unmodifiableMap(counts);
+    }
+
+    /**
+     * Кодирует гистограмму в строку вида {@code "ячейка:число,ячейка:число"} для хранения в БД.
+     */
+    public String encode() {
+        return MetricsAggregate.encodeCounts(counts);
+    }
+
+    /**
+     * Восстанавливает гистограмму из строки, полученной {@link #encode()}.
+     */
+    public static LatencyHistogram decode(String encoded) {
+        LatencyHistogram histogram = new LatencyHistogram();
+        MetricsAggregate.decodeCounts(encoded).forEach(histogram::add);
+        return histogram;
+    }
+
+    /**
+     * Восстанавливает гистограмму из непустых ячеек.
+     *
+     * @param buckets номер ячейки → число значений (см. {@link #indexOf(long)})
+     */
+    public static LatencyHistogram of(Map<Integer, Long> buckets) {
+        LatencyHistogram histogram = new LatencyHistogram();
+        buckets.forEach(histogram::add);
+        return histogram;
+    }
+
+    /**
+     * Номер ячейки для значения: значения меньше {@value #SUB_BUCKETS} получают собственную
+     * ячейку, остальные — ячейку внутри своей степени двойки.
+     */
+    public static int indexOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) Math.max(0, value);
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - SUB_BITS)) - SUB_BUCKETS;
+        return SUB_BUCKETS + (exponent - SUB_BITS) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * Нижняя граница ячейки (включительно).
+     */
+    static long lowerBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int exponent = (index - SUB_BUCKETS) / SUB_BUCKETS + SUB_BITS;
+        int sub = (index - SUB_BUCKETS) % SUB_BUCKETS;
+        return (long) (SUB_BUCKETS + sub) << (exponent - SUB_BITS);
+    }
+
+    private void add(int index, long count) {
+        counts.merge(index, count, Long::sum);
+        total += count;
+    }
+}
@@ -0,0 +1,206 @@
+package com.apimonitor.model.impl;
+
+import lombok.Getter;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+/**
+ * Агрегат проверок эндпоинта за интервал времени: число проверок и ошибок, сумма, минимум
+ * и максимум времени ответа, суммы фаз запроса, распределение по статус-кодам и гистограмма
+ * времени ответа. Время хранится в микросекундах.
+ * <p>
+ * Агрегаты складываются через {@link #merge(MetricsAggregate)}, поэтому одинаково
+ * строятся из сырых метрик, минутных и часовых свёрток.
+ */
+@Getter
+public class MetricsAggregate {
+
+    /**
+     * Фазы запроса, для которых хранятся суммы и число измерений.
+     */
+    public enum Phase {
+        DNS(LatencyBreakdown::getDnsUs),
+        CONNECT(LatencyBreakdown::getConnectUs),
+        TLS(LatencyBreakdown::getTlsUs),
+        TTFB(LatencyBreakdown::getTtfbUs),
+        DOWNLOAD(LatencyBreakdown::getDownloadUs);
+
+        private final Function<LatencyBreakdown, Long> accessor;
+
+        Phase(Function<LatencyBreakdown, Long> accessor) {
+            this.accessor = accessor;
+        }
+    }
+
+    private long count;
+    private long errorCount;
+    private long sumUs;
+    private long minUs = Long.MAX_VALUE;
+    private long maxUs = Long.MIN_VALUE;
+    private final long[] phaseSumUs = new long[Phase.values().length];
+    private final long[] phaseCount = new long[Phase.values().length];
+    private final Map<Integer, Long> statusCounts = new TreeMap<>();
+    private final LatencyHistogram histogram;
+
+    public MetricsAggregate() {
+        this.histogram = new LatencyHistogram();
+    }
+
+    /**
+     * Восстанавливает сохранённый агрегат.
+     */
+    public MetricsAggregate(long count, long errorCount, long sumUs, long minUs, long maxUs,
+                            long[] phaseSumUs, long[] phaseCount,
+                            Map<Integer, Long> statusCounts, LatencyHistogram histogram) {
+        this.count = count;
+        this.errorCount = errorCount;
+        this.sumUs = sumUs;
+        this.minUs = count > 0 ? minUs : Long.MAX_VALUE;
+        this.maxUs = count > 0 ? maxUs : Long.MIN_VALUE;
+        System.arraycopy(phaseSumUs, 0, this.phaseSumUs, 0, this.phaseSumUs.length);
+        System.arraycopy(phaseCount, 0, this.phaseCount, 0, this.phaseCount.length);
+        this.statusCounts.putAll(statusCounts);
+        this.histogram = histogram;
+    }
+
+    /**
+     * Учитывает одну проверку.
+     *
+     * @param statusCode HTTP-статус
+     * @param success    признак успешной проверки
+     * @param totalUs    общее время ответа в микросекундах
+     * @param latency    разбивка по фазам (может быть {@code null})
+     */
+    public void addSample(int statusCode, boolean success, long totalUs, LatencyBreakdown latency) {
+        count++;
+        if (!success) {
+            errorCount++;
+        }
+        sumUs += totalUs;
+        minUs = Math.min(minUs, totalUs);
+        maxUs = Math.max(maxUs, totalUs);
+        statusCounts.merge(statusCode, 1L, Long::sum);
+        histogram.record(totalUs);
+        if (latency != null) {
+            for (Phase phase : Phase.values()) {
+                Long value = phase.accessor.apply(latency);
+                if (value != null) {
+                    phaseSumUs[phase.ordinal()] += value;
+                    phaseCount[phase.ordinal()]++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Прибавляет к агрегату другой агрегат.
+     */
+    public MetricsAggregate merge(MetricsAggregate other) {
+        if (other.count == 0) {
+            return this;
+        }
+        count += other.count;
+        errorCount += other.errorCount;
+        sumUs += other.sumUs;
+        minUs = Math.min(minUs, other.minUs);
+        maxUs = Math.max(maxUs, other.maxUs);
+        for (int i = 0; i < phaseSumUs.length; i++) {
+            phaseSumUs[i] += other.phaseSumUs[i];
+            phaseCount[i] += other.phaseCount[i];
+        }
+        other.statusCounts.forEach((status, n) -> statusCounts.merge(status, n, Long::sum));
+        histogram.merge(other.histogram);
+        return this;
+    }
+
+    /**
+     * @return среднее время ответа в миллисекундах или 0, если проверок не было
+     */
+    public double avgMs() {
+        return count > 0 ? sumUs / (double) count / 1000.0 : 0.0;
+    }
+
+    /**
+     * @return минимальное время ответа в миллисекундах или 0, если проверок не было
+     */
+    public double minMs() {
+        return count > 0 ? minUs / 1000.0 : 0.0;
+    }
+
+    /**
+     * @return максимальное время ответа в миллисекундах или 0, если проверок не было
+     */
+    public double maxMs() {
+        return count > 0 ? maxUs / 1000.0 : 0.0;
+    }
+
+    /**
+     * @return доля успешных проверок в процентах или 0, если проверок не было
+     */
+    public double successRate() {
+        return count > 0 ? (count - errorCount) * 100.0 / count : 0.0;
+    }
+
+    /**
+     * Оценивает процентиль времени ответа по гистограмме агрегата.
+     *
+     * @param percentile процентиль от 0 до 100
+     * @return значение в миллисекундах или {@code null}, если проверок не было
+     */
+    public Double percentileMs(double percentile) {
+        Long valueUs = histogram.valueAtPercentile(percentile);
+        return valueUs != null ? valueUs / 1000.0 : null;
+    }
+
+    /**
+     * @return среднее время фазы в миллисекундах или {@code null}, если фаза не измерялась
+     */
+    public Double phaseAvgMs(Phase phase) {
+        long n = phaseCount[phase.ordinal()];
+        return n > 0 ? phaseSumUs[phase.ordinal()] / (double) n / 1000.0 : null;
+    }
+
+    public long phaseSumUs(Phase phase) {
+        return phaseSumUs[phase.ordinal()];
+    }
+
+    public long phaseCount(Phase phase) {
+        return phaseCount[phase.ordinal()];
+    }
+
+    public Map<Integer, Long> getStatusCounts() {
+        return Collections.unmodifiableMap(statusCounts);
+    }
+
+    /**
+     * Кодирует разреженные счётчики в строку {@code "ключ:число,ключ:число"}.
+     */
+    public static String encodeCounts(Map<Integer, Long> counts) {
+        StringBuilder out = new StringBuilder(counts.size() * 8);
+        counts.forEach((key, n) -> {
+            if (!out.isEmpty()) {
+                out.append(',');
+            }
+            out.append(key).append(':').append(n);
+        });
+        return out.toString();
+    }
+
+    /**
+     * Разбирает строку, полученную {@link #encodeCounts(Map)}.
+     */
+    public static Map<Integer, Long> decodeCounts(String encoded) {
+        Map<Integer, Long> counts = new TreeMap<>();
+        if (encoded == null || encoded.isBlank()) {
+            return counts;
+        }
+        for (String pair : encoded.split(",")) {
+            int colon = pair.indexOf(':');
+            counts.merge(Integer.parseInt(pair.substring(0, colon)), Long.parseLong(pair.substring(colon + 1)), Long::sum);
+        }
+        return counts;
+    }
+}
@@ -0,0 +1,30 @@
+package com.apimonitor.probe;
+
+/**
+ * Режим сохранения тела ответа проверки.
+ * <p>
+ * Тело всегда читается потоком и полностью вычитывается (чтобы соединение вернулось в пул),
+ * но в памяти удерживается не больше байт, чем требует режим.
+ */
+public enum BodyCapture {
+
+    /**
+     * Тело не сохраняется, учитывается только его размер.
+     */
+    DISCARD,
+
+    /**
+     * Сохраняются первые N байт тела и его хеш.
+     */
+    PREFIX,
+
+    /**
+     * Сохраняется только SHA-256 хеш тела и его размер.
+     */
+    HASH,
+
+    /**
+     * Сохраняется тело целиком (не больше общего ограничения размера) и его хеш.
+     */
+    FULL
+}
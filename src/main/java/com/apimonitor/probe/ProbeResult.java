@@ -0,0 +1,61 @@
+package com.apimonitor.probe;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.Map;
+
+/**
+ * Результат HTTP-запроса проверки, полученный от {@link ProbeTransport}.
+ */
+@Getter
+@Builder
+@ToString(exclude = "body")
+@AllArgsConstructor
+public class ProbeResult {
+
+    /**
+     * HTTP-статус ответа.
+     */
+    private final int statusCode;
+
+    /**
+     * Заголовки ответа (по одному значению на заголовок).
+     */
+    private final Map<String, String> headers;
+
+    /**
+     * Сохранённая часть тела ответа в соответствии с режимом {@link BodyCapture}
+     * ({@code null}, если тело не сохранялось).
+     */
+    private final String body;
+
+    /**
+     * Шестнадцатеричный SHA-256 всего тела ответа ({@code null}, если не вычислялся).
+     */
+    private final String bodyHash;
+
+    /**
+     * Полный размер тела ответа в байтах.
+     */
+    private final long bodySize;
+
+    /**
+     * true, если сохранена только часть тела.
+     */
+    private final boolean bodyTruncated;
+
+    /**
+     * Разбивка времени проверки по фазам.
+     */
+    private final ProbeTiming timing;
+
+    /**
+     * @return true, если статус ответа 2xx
+     */
+    public boolean isSuccessful() {
+        return statusCode >= 200 && statusCode < 300;
+    }
+}
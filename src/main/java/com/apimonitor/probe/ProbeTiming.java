@@ -0,0 +1,50 @@
+package com.apimonitor.probe;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Разбивка времени проверки по фазам, измеренная монотонными часами {@link System#nanoTime()}.
+ * <p>
+ * Значение фазы равно {@code null}, если транспорт не смог её измерить
+ * (например, соединение было взято из пула и не устанавливалось заново).
+ */
+@Getter
+@Builder
+@ToString
+@AllArgsConstructor
+public class ProbeTiming {
+
+    /**
+     * Разрешение DNS-имени хоста (в наносекундах). Измеряется только вместе с фазами соединения;
+     * из-за кэша адресов JVM это оценка, близкая к нулю, пока имя находится в кэше.
+     */
+    private final Long dnsNanos;
+
+    /**
+     * Установка TCP-соединения (в наносекундах).
+     */
+    private final Long connectNanos;
+
+    /**
+     * TLS-рукопожатие (в наносекундах).
+     */
+    private final Long tlsNanos;
+
+    /**
+     * Время от отправки запроса до получения заголовков ответа (в наносекундах).
+     */
+    private final Long ttfbNanos;
+
+    /**
+     * Чтение тела ответа после получения заголовков (в наносекундах).
+     */
+    private final Long downloadNanos;
+
+    /**
+     * Общее время проверки (в наносекундах).
+     */
+    private final long totalNanos;
+}
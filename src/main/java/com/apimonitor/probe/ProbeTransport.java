@@ -0,0 +1,22 @@
+package com.apimonitor.probe;
+
+import com.apimonitor.config.ApiConfig;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Транспорт, выполняющий HTTP-запрос проверки к эндпоинту.
+ * <p>
+ * Реализация должна быть неблокирующей: результат возвращается через {@link CompletableFuture},
+ * а ошибки соединения и таймауты завершают его исключением.
+ */
+public interface ProbeTransport {
+
+    /**
+     * Отправляет запрос к эндпоинту согласно его конфигурации.
+     *
+     * @param endpoint конфигурация эндпоинта
+     * @return результат проверки; завершается исключением при ошибке транспорта или таймауте
+     */
+    CompletableFuture<ProbeResult> execute(ApiConfig.ApiEndpoint endpoint);
+}
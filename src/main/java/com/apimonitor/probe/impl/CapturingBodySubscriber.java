@@ -0,0 +1,103 @@
+package com.apimonitor.probe.impl;
+
+import com.apimonitor.probe.BodyCapture;
+
+import java.io.ByteArrayOutputStream;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+
+/**
+ * Потоковый подписчик на тело ответа, который не накапливает тело целиком.
+ * <p>
+ * Каждый полученный буфер сразу учитывается в размере и хеше, а в памяти удерживается
+ * не больше {@code limit} байт, поэтому расход памяти на одну проверку ограничен
+ * независимо от размера ответа.
+ */
+final class CapturingBodySubscriber implements HttpResponse.BodySubscriber<CapturingBodySubscriber.CapturedBody> {
+
+    private final CompletableFuture<CapturedBody> result = new CompletableFuture<>();
+    private final Charset charset;
+    private final int limit;
+    private final MessageDigest digest;
+    private final ByteArrayOutputStream retained;
+    private long size;
+
+    /**
+     * @param mode    режим сохранения тела
+     * @param limit   максимальное число сохраняемых байт для режимов {@code PREFIX} и {@code FULL}
+     * @param charset кодировка тела для преобразования сохранённых байт в строку
+     */
+    CapturingBodySubscriber(BodyCapture mode, int limit, Charset charset) {
+        this.charset = charset;
+        this.limit = (mode == BodyCapture.PREFIX || mode == BodyCapture.FULL) ? Math.max(0, limit) : 0;
+        this.digest = mode != BodyCapture.DISCARD ? sha256() : null;
+        this.retained = this.limit > 0 ? new ByteArrayOutputStream(Math.min(this.limit, 8192)) : null;
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        subscription.request(Long.MAX_VALUE);
+    }
+
+    @Override
+    public void onNext(List<ByteBuffer> buffers) {
+        for (ByteBuffer buffer : buffers) {
+            int remaining = buffer.remaining();
+            if (retained != null && retained.size() < limit) {
+                int take = Math.min(limit - retained.size(), remaining);
+                byte[] chunk = new byte[take];
+                buffer.duplicate().get(chunk);
+                retained.write(chunk, 0, take);
+            }
+            if (digest != null) {
+                digest.update(buffer);
+            }
+            size += remaining;
+        }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        result.completeExceptionally(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+        String text = retained != null ? retained.toString(charset) : null;
+        String hash = digest != null ? HexFormat.of().formatHex(digest.digest()) : null;
+        boolean truncated = retained != null && size > retained.size();
+        result.complete(new CapturedBody(text, hash, size, truncated));
+    }
+
+    @Override
+    public CompletionStage<CapturedBody> getBody() {
+        return result;
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 is not available", ex);
+        }
+    }
+
+    /**
+     * Сохранённая часть тела ответа.
+     *
+     * @param text      сохранённые байты тела в виде строки ({@code null}, если тело не сохранялось)
+     * @param sha256    шестнадцатеричный SHA-256 всего тела ({@code null} в режиме {@code DISCARD})
+     * @param size      полный размер тела в байтах
+     * @param truncated true, если сохранена только часть тела
+     */
+    record CapturedBody(String text, String sha256, long size, boolean truncated) {
+    }
+}
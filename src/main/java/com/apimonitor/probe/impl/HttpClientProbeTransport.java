@@ -0,0 +1,270 @@
+package com.apimonitor.probe.impl;
+
+import com.apimonitor.config.ApiConfig;
+import com.apimonitor.probe.BodyCapture;
+import com.apimonitor.probe.ProbeResult;
+import com.apimonitor.probe.ProbeTiming;
+import com.apimonitor.probe.ProbeTransport;
+import com.apimonitor.probe.impl.CapturingBodySubscriber.CapturedBody;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+/**
+ * Неблокирующий транспорт проверок на основе {@link HttpClient}.
+ * <p>
+ * Клиент сам поддерживает пул keep-alive соединений для каждого хоста и мультиплексирует
+ * запросы по HTTP/2, поэтому повторные проверки не требуют новых TCP/TLS-рукопожатий.
+ * Таймаут соединения в {@link HttpClient} задаётся на уровне клиента, поэтому для каждого
+ * различного значения {@code connectTimeoutMs} создаётся (и переиспользуется) отдельный клиент.
+ * Блокирующая подготовка соединения выполняется на виртуальных потоках, а внутренние
+ * задачи клиента — на платформенных: в JDK 21 они выполняются внутри {@code synchronized}
+ * и при малом числе ядер закрепляют все потоки-носители, останавливая чтение больших тел.
+ * <p>
+ * Для каждой проверки по монотонным часам замеряются время до первого байта ответа (TTFB)
+ * и чтение тела. Разрешение DNS, установка TCP-соединения и TLS-рукопожатие скрыты внутри
+ * клиента, поэтому они измеряются только для эндпоинтов с {@code measureConnection=true}
+ * через отдельное контрольное соединение; для остальных эти фазы равны {@code null}.
+ * Время DNS — оценка: {@link InetAddress} кэширует успешные ответы, поэтому пока запись
+ * в кэше, замер близок к нулю и не отражает время ответа резолвера.
+ * <p>
+ * Заголовки из определения эндпоинта ({@code headers}) добавляются к каждому запросу; недопустимый
+ * заголовок (например, {@code Host}) завершает проверку ошибкой, как и неверный метод.
+ * <p>
+ * Тело ответа читается потоком через {@link CapturingBodySubscriber}: в памяти удерживается
+ * только часть тела, требуемая режимом {@link BodyCapture} эндпоинта. Из заголовков ответа
+ * сохраняются только перечисленные в {@code api.http.stored-headers} (если список задан).
+ */
+@Slf4j
+public class HttpClientProbeTransport implements ProbeTransport, AutoCloseable {
+
+    private final ApiConfig.Http settings;
+    private final ExecutorService callbackExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private final ExecutorService clientExecutor = Executors.newCachedThreadPool(
+            Thread.ofPlatform().name("probe-http-", 0).daemon(true).factory());
+    private final ConcurrentMap<Long, HttpClient> clients = new ConcurrentHashMap<>();
+    private final Set<String> storedHeaders;
+
+    public HttpClientProbeTransport(ApiConfig.Http settings) {
+        this.settings = settings;
+        this.storedHeaders = settings.getStoredHeaders() != null
+                ? settings.getStoredHeaders().stream().map(name -> name.toLowerCase(Locale.ROOT)).collect(Collectors.toSet())
+                : Set.of();
+    }
+
+    @Override
+    public CompletableFuture<ProbeResult> execute(ApiConfig.ApiEndpoint endpoint) {
+        URI uri;
+        HttpRequest request;
+        try {
+            uri = URI.create(endpoint.getUrl());
+            HttpRequest.Builder builder = HttpRequest.newBuilder(uri)
+                    .method(endpoint.getMethod(), HttpRequest.BodyPublishers.noBody())
+                    .timeout(Duration.ofMillis(orDefault(endpoint.getReadTimeoutMs(), settings.getReadTimeoutMs())));
+            if (endpoint.getHeaders() != null) {
+                endpoint.getHeaders().forEach(builder::header);
+            }
+            request = builder.build();
+        } catch (IllegalArgumentException ex) {
+            return CompletableFuture.failedFuture(ex);
+        }
+
+        long connectTimeoutMs = orDefault(endpoint.getConnectTimeoutMs(), settings.getConnectTimeoutMs());
+        HttpClient client = clientFor(connectTimeoutMs);
+        PhaseRecorder phases = new PhaseRecorder(System.nanoTime());
+        BodyCapture capture = endpoint.getBodyCapture() != null ? endpoint.getBodyCapture() : settings.getBodyCapture();
+        int captureLimit = captureLimit(capture, endpoint);
+        AtomicReference<CompletableFuture<HttpResponse<CapturedBody>>> exchange = new AtomicReference<>();
+
+        CompletableFuture<Void> prepared = endpoint.isMeasureConnection()
+                ? CompletableFuture.runAsync(() -> measureConnection(uri, (int) connectTimeoutMs, phases), callbackExecutor)
+                : CompletableFuture.completedFuture(null);
+        CompletableFuture<ProbeResult> result = prepared
+                .thenCompose(ignored -> {
+                    phases.sentAt = System.nanoTime();
+                    CompletableFuture<HttpResponse<CapturedBody>> sent = client.sendAsync(request, info -> {
+                        phases.headersAt = System.nanoTime();
+                        return new CapturingBodySubscriber(capture, captureLimit, charsetOf(info.headers()));
+                    });
+                    exchange.set(sent);
+                    return sent;
+                })
+                .thenApply(response -> toResult(response, phases.finish(System.nanoTime())))
+                .orTimeout(orDefault(endpoint.getTotalTimeoutMs(), settings.getTotalTimeoutMs()), TimeUnit.MILLISECONDS);
+        // при истечении общего таймаута или отмене прерываем сам обмен, освобождая соединение
+        result.whenComplete((r, ex) -> {
+            CompletableFuture<HttpResponse<CapturedBody>> sent = exchange.get();
+            if (ex != null && sent != null) {
+                sent.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Открывает контрольное соединение, замеряя разрешение имени хоста, установку TCP-соединения
+     * и TLS-рукопожатие. Сам запрос выполняется через пул клиента отдельно.
+     */
+    private void measureConnection(URI uri, int connectTimeoutMs, PhaseRecorder phases) {
+        boolean secure = "https".equalsIgnoreCase(uri.getScheme());
+        int port = uri.getPort() != -1 ? uri.getPort() : (secure ? 443 : 80);
+        try (Socket socket = new Socket()) {
+            long dnsStart = System.nanoTime();
+            InetAddress address = InetAddress.getByName(uri.getHost());
+            phases.dnsNanos = System.nanoTime() - dnsStart;
+
+            long connectStart = System.nanoTime();
+            socket.connect(new InetSocketAddress(address, port), connectTimeoutMs);
+            phases.connectNanos = System.nanoTime() - connectStart;
+
+            if (secure) {
+                socket.setSoTimeout(connectTimeoutMs);
+                SSLSocketFactory factory = (SSLSocketFactory) SSLSocketFactory.getDefault();
+                try (SSLSocket ssl = (SSLSocket) factory.createSocket(socket, uri.getHost(), port, true)) {
+                    long tlsStart = System.nanoTime();
+                    ssl.startHandshake();
+                    phases.tlsNanos = System.nanoTime() - tlsStart;
+                }
+            }
+        } catch (IOException ex) {
+            // ошибка контрольного соединения не делает проверку неуспешной: её исход определит сам запрос
+            log.debug("Не удалось измерить фазы соединения для {}: {}", uri, ex.getMessage());
+        }
+    }
+
+    private ProbeResult toResult(HttpResponse<CapturedBody> response, ProbeTiming timing) {
+        CapturedBody body = response.body();
+        return ProbeResult.builder()
+                .statusCode(response.statusCode())
+                .headers(toSingleValueMap(response.headers()))
+                .body(body.text())
+                .bodyHash(body.sha256())
+                .bodySize(body.size())
+                .bodyTruncated(body.truncated())
+                .timing(timing)
+                .build();
+    }
+
+    /**
+     * Число байт тела, удерживаемых в памяти: для {@code PREFIX} — префикс эндпоинта,
+     * для {@code FULL} — общее ограничение размера тела.
+     */
+    private int captureLimit(BodyCapture capture, ApiConfig.ApiEndpoint endpoint) {
+        int max = settings.getMaxBodyBytes();
+        return switch (capture) {
+            case PREFIX -> Math.min(max, (int) orDefault(endpoint.getBodyPrefixBytes(), settings.getBodyPrefixBytes()));
+            case FULL -> max;
+            case DISCARD, HASH -> 0;
+        };
+    }
+
+    private static Charset charsetOf(HttpHeaders headers) {
+        return headers.firstValue("Content-Type")
+                .flatMap(contentType -> Arrays.stream(contentType.split(";"))
+                        .map(String::trim)
+                        .filter(param -> param.regionMatches(true, 0, "charset=", 0, 8))
+                        .map(param -> param.substring(8).replace("\"", ""))
+                        .findFirst())
+                .flatMap(HttpClientProbeTransport::lookupCharset)
+                .orElse(StandardCharsets.UTF_8);
+    }
+
+    private static Optional<Charset> lookupCharset(String name) {
+        try {
+            return Optional.of(Charset.forName(name));
+        } catch (IllegalArgumentException ex) {
+            return Optional.empty();
+        }
+    }
+
+    private HttpClient clientFor(long connectTimeoutMs) {
+        return clients.computeIfAbsent(connectTimeoutMs, timeout -> HttpClient.newBuilder()
+                .version(settings.getVersion())
+                .connectTimeout(Duration.ofMillis(timeout))
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .executor(clientExecutor)
+                .build());
+    }
+
+    private Map<String, String> toSingleValueMap(HttpHeaders headers) {
+        Map<String, String> result = new LinkedHashMap<>();
+        for (Map.Entry<String, List<String>> entry : headers.map().entrySet()) {
+            if (!entry.getValue().isEmpty() && isStored(entry.getKey())) {
+                result.put(entry.getKey(), entry.getValue().getFirst());
+            }
+        }
+        return result;
+    }
+
+    private boolean isStored(String headerName) {
+        return storedHeaders.isEmpty() || storedHeaders.contains(headerName.toLowerCase(Locale.ROOT));
+    }
+
+    private static long orDefault(long value, long defaultValue) {
+        return value > 0 ? value : defaultValue;
+    }
+
+    /**
+     * Отметки времени фаз одной проверки. Каждое поле записывается одним этапом цепочки
+     * {@link CompletableFuture}, а этапы связаны отношением happens-before.
+     */
+    private static final class PhaseRecorder {
+        private final long startedAt;
+        private Long dnsNanos;
+        private Long connectNanos;
+        private Long tlsNanos;
+        private long sentAt;
+        private long headersAt;
+
+        private PhaseRecorder(long startedAt) {
+            this.startedAt = startedAt;
+        }
+
+        private ProbeTiming finish(long completedAt) {
+            return ProbeTiming.builder()
+                    .dnsNanos(dnsNanos)
+                    .connectNanos(connectNanos)
+                    .tlsNanos(tlsNanos)
+                    .ttfbNanos(headersAt - sentAt)
+                    .downloadNanos(completedAt - headersAt)
+                    .totalNanos(completedAt - startedAt)
+                    .build();
+        }
+    }
+
+    @Override
+    public void close() {
+        clients.values().forEach(HttpClient::shutdownNow);
+        clients.clear();
+        callbackExecutor.shutdownNow();
+        clientExecutor.shutdownNow();
+    }
+}
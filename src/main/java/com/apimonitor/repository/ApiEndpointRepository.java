@@ -3,6 +3,7 @@ package com.apimonitor.repository;
 import com.apimonitor.model.impl.ApiEndpointImpl;
 import org.springframework.data.jpa.repository.JpaRepository;
 
+import java.util.List;
 import java.util.Optional;
 
 /**
@@ -25,4 +26,21 @@ public interface ApiEndpointRepository  extends JpaRepository<ApiEndpointImpl, L
      * @return true, если сущность существует
      */
     boolean existsByName(String name);
+
+    /**
+     * Находит активный эндпоинт с указанными URL и методом.
+     *
+     * @param url    URL эндпоинта
+     * @param method HTTP-метод
+     * @return Optional с активным эндпоинтом, если найден
+     */
+    Optional<ApiEndpointImpl> findByUrlAndMethodAndActiveTrue(String url, String method);
+
+    /**
+     * Возвращает эндпоинты, изменённые после указанной версии, в порядке изменения.
+     *
+     * @param version последняя применённая версия
+     * @return изменённые эндпоинты, включая удалённые ({@code active = false})
+     */
+    List<ApiEndpointImpl> findByVersionGreaterThanOrderByVersionAsc(long version);
 }
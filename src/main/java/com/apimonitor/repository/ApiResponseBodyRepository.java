@@ -0,0 +1,20 @@
+package com.apimonitor.repository;
+
+import com.apimonitor.model.impl.ApiResponseBodyImpl;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.Optional;
+
+/**
+ * Репозиторий тел ответов, хранимых по содержимому.
+ */
+public interface ApiResponseBodyRepository extends JpaRepository<ApiResponseBodyImpl, Long> {
+    /**
+     * Находит тело по ключу содержимого.
+     *
+     * @param bodyHash     SHA-256 всего тела
+     * @param storedLength длина сохранённой части
+     * @return Optional с сущностью, если такое тело уже сохранено
+     */
+    Optional<ApiResponseBodyImpl> findByBodyHashAndStoredLength(String bodyHash, int storedLength);
+}
@@ -0,0 +1,24 @@
+package com.apimonitor.repository;
+
+import com.apimonitor.model.impl.ApiMetricsImpl;
+
+import java.util.List;
+
+/**
+ * Пакетная запись метрик вместе со связанными ответами и заголовками.
+ * Вызывается внутри транзакции, открытой вызывающей стороной.
+ */
+public interface MetricsBulkWriter {
+
+    /**
+     * Записывает пакет метрик.
+     *
+     * @param batch метрики для записи
+     */
+    void writeBatch(List<ApiMetricsImpl> batch);
+
+    /**
+     * @return название способа записи (для метрик и логов)
+     */
+    String mode();
+}
@@ -1,95 +1,97 @@
 package com.apimonitor.repository;
 
+import com.apimonitor.dto.MetricsExportRow;
 import com.apimonitor.model.impl.ApiMetricsImpl;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.stream.Stream;
 
-public interface MetricsRepository extends JpaRepository<ApiMetricsImpl, Long> {
-  /**
-   * Возвращает список всех уникальных названий API (apiName).
-   */
-  @Query("SELECT DISTINCT m.apiName FROM ApiMetricsImpl m")
-  List<String> findDistinctApiName();
+/**
+ * Репозиторий сырых метрик. Запросы за период фильтруют по {@code endpoint_id} и {@code timestamp},
+ * поэтому обслуживаются составным индексом {@code (endpoint_id, timestamp, id)}.
+ * Постраничный список метрик строится из условий {@link MetricsSpecifications}.
+ * <p>
+ * Выгрузка читается потоком через курсор БД: строки приходят порциями по {@link #EXPORT_FETCH_SIZE}
+ * и не удерживаются сессией. Поток нужно читать внутри транзакции и закрывать после чтения.
+ */
+public interface MetricsRepository extends JpaRepository<ApiMetricsImpl, Long>,
+        JpaSpecificationExecutor<ApiMetricsImpl> {
 
   /**
-   * Поиск метрик по имени API (apiName) и диапазону временных меток (timestamp).
-   *
-   * @param apiName имя API
-   * @param from начальная граница диапазона
-   * @param to конечная граница диапазона
-   * @return список метрик, соответствующих критериям
+   * Размер порции строк, которую драйвер БД читает из курсора выгрузки.
    */
-  List<ApiMetricsImpl> findByApiNameAndTimestampBetween(
-          String apiName,
-          LocalDateTime from,
-          LocalDateTime to
-  );
+  String EXPORT_FETCH_SIZE = "1000";
 
-  /**
-   * Подсчёт общего количества запросов для заданного имени API (apiName) в указанном диапазоне времени.
-   *
-   * @param apiName имя API
-   * @param from начальная граница диапазона
-   * @param to конечная граница диапазона
-   * @return количество запросов
-   */
-  long countByApiNameAndTimestampBetween(
-          String apiName,
-          LocalDateTime from,
-          LocalDateTime to
-  );
+  String EXPORT_SELECT = """
+            SELECT new com.apimonitor.dto.MetricsExportRow(
+                m.id, e.name, e.url, m.timestamp, m.statusCode, m.success, m.responseTimeMs,
+                m.latency.totalUs, m.latency.dnsUs, m.latency.connectUs, m.latency.tlsUs,
+                m.latency.ttfbUs, m.latency.downloadUs, m.errorMessage)
+            FROM ApiMetricsImpl m JOIN m.endpoint e
+           \s""";
 
   /**
-   * Подсчёт количества неуспешных запросов (success = false) для заданного API (apiName)
-   * в указанном диапазоне времени.
+   * Потоковая выгрузка метрик всех эндпоинтов за период в порядке времени.
    *
-   * @param apiName имя API
-   * @param from начальная граница диапазона
-   * @param to конечная граница диапазона
-   * @return количество неуспешных запросов
+   * @param from начальная граница диапазона (включительно)
+   * @param to конечная граница диапазона (включительно)
+   * @return поток строк выгрузки
    */
-  long countByApiNameAndTimestampBetweenAndSuccessFalse(
-          String apiName,
-          LocalDateTime from,
-          LocalDateTime to
+  @QueryHints({
+          @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = EXPORT_FETCH_SIZE),
+          @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+  })
+  @Query(EXPORT_SELECT + """
+            WHERE m.timestamp BETWEEN :from AND :to
+            ORDER BY m.timestamp, m.id
+           \s""")
+  Stream<MetricsExportRow> streamForExport(
+          @Param("from") LocalDateTime from,
+          @Param("to") LocalDateTime to
   );
 
   /**
-   * Подсчёт количества всех неуспешных запросов (success = false) без фильтрации по имени API.
-   *
-   * @return общее количество неуспешных запросов
-   */
-  long countBySuccessFalse();
-
-  /**
-   * Вычисляет среднее время ответа (responseTimeMs) для заданного API (apiName)
-   * в указанном диапазоне времени.
+   * Потоковая выгрузка метрик эндпоинта за период в порядке времени.
    *
-   * @param apiName имя API
-   * @param from начальная граница диапазона
-   * @param to конечная граница диапазона
-   * @return среднее время ответа в миллисекундах
+   * @param endpointId идентификатор эндпоинта
+   * @param from начальная граница диапазона (включительно)
+   * @param to конечная граница диапазона (включительно)
+   * @return поток строк выгрузки
    */
-  @Query("""
-            SELECT AVG(m.responseTimeMs) FROM ApiMetricsImpl m\s
-            WHERE m.apiName = :apiName\s
+  @QueryHints({
+          @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = EXPORT_FETCH_SIZE),
+          @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+  })
+  @Query(EXPORT_SELECT + """
+            WHERE e.id = :endpointId
               AND m.timestamp BETWEEN :from AND :to
+            ORDER BY m.timestamp, m.id
            \s""")
-  Double findAverageResponseTime(
-          @Param("apiName") String apiName,
+  Stream<MetricsExportRow> streamForExportByEndpoint(
+          @Param("endpointId") Long endpointId,
           @Param("from") LocalDateTime from,
           @Param("to") LocalDateTime to
   );
 
   /**
-   * Вычисляет среднее время ответа (responseTimeMs) для всех запросов без фильтрации.
+   * Поиск метрик эндпоинта в диапазоне временных меток (timestamp).
    *
-   * @return среднее время ответа в миллисекундах
+   * @param endpointId идентификатор эндпоинта
+   * @param from начальная граница диапазона
+   * @param to конечная граница диапазона
+   * @return список метрик, соответствующих критериям
    */
-  @Query("SELECT AVG(m.responseTimeMs) FROM ApiMetricsImpl m")
-  Double findOverallAverageResponseTime();
-}
\ No newline at end of file
+  List<ApiMetricsImpl> findByEndpointIdAndTimestampBetween(
+          Long endpointId,
+          LocalDateTime from,
+          LocalDateTime to
+  );
+}
@@ -0,0 +1,112 @@
+package com.apimonitor.repository;
+
+import com.apimonitor.model.impl.MetricsAggregate;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Хранилище минутных и часовых агрегатов {@code api_metrics} и границ свёртки.
+ * <p>
+ * Чтение выполняется «сверткой в приёмник»: для каждой строки вызывается
+ * {@code target(endpointId, timestamp)}, который возвращает агрегат, куда строка добавляется.
+ * Так одни и те же запросы используются и для построения агрегатов, и для отчётов.
+ */
+public interface MetricsRollupRepository {
+
+    /**
+     * Разрешение агрегатов.
+     */
+    enum Resolution {
+        MINUTE(ChronoUnit.MINUTES),
+        HOUR(ChronoUnit.HOURS);
+
+        private final ChronoUnit unit;
+
+        Resolution(ChronoUnit unit) {
+            this.unit = unit;
+        }
+
+        public ChronoUnit unit() {
+            return unit;
+        }
+    }
+
+    /**
+     * Ключ агрегата: эндпоинт и начало интервала.
+     */
+    record BucketKey(long endpointId, LocalDateTime bucketStart) {
+    }
+
+    /**
+     * @return граница, до которой (не включительно) разрешение уже свёрнуто
+     */
+    Optional<LocalDateTime> findWatermark(Resolution resolution);
+
+    void saveWatermark(Resolution resolution, LocalDateTime watermark);
+
+    /**
+     * @return время самой ранней сырой метрики
+     */
+    Optional<LocalDateTime> findEarliestRawTimestamp();
+
+    /**
+     * @return начало самого раннего агрегата указанного разрешения
+     */
+    Optional<LocalDateTime> findEarliestBucket(Resolution resolution);
+
+    /**
+     * Добавляет сырые метрики из интервала {@code [from, to)} (или {@code [from, to]})
+     * в агрегаты, возвращаемые {@code target}.
+     *
+     * @param endpointId  эндпоинт или {@code null} для всех
+     * @param toInclusive включать ли правую границу
+     */
+    void foldRaw(Long endpointId, LocalDateTime from, LocalDateTime to, boolean toInclusive,
+                 BiFunction<Long, LocalDateTime, MetricsAggregate> target);
+
+    /**
+     * Агрегирует сырые метрики из интервала {@code [from, to)} (или {@code [from, to]}) в БД
+     * одним запросом с группировкой по эндпоинту, статус-коду и ячейке гистограммы времени ответа.
+     * Число возвращаемых строк не зависит от длины интервала.
+     *
+     * @param endpointId  эндпоинт или {@code null} для всех
+     * @param toInclusive включать ли правую границу
+     * @param target      агрегат эндпоинта по его id
+     */
+    void aggregateRaw(Long endpointId, LocalDateTime from, LocalDateTime to, boolean toInclusive,
+                      Function<Long, MetricsAggregate> target);
+
+    /**
+     * Агрегирует сырые метрики из интервала {@code [from, to)} (или {@code [from, to]}) в один
+     * агрегат одним запросом без разбивки по эндпоинтам: группы — только статус-код и ячейка
+     * гистограммы, поэтому сводка по всем эндпоинтам не зависит от их числа.
+     *
+     * @param endpointId  эндпоинт или {@code null} для всех
+     * @param toInclusive включать ли правую границу
+     * @param target      агрегат, в который добавляются группы
+     */
+    void aggregateRawTotal(Long endpointId, LocalDateTime from, LocalDateTime to, boolean toInclusive,
+                           MetricsAggregate target);
+
+    /**
+     * Добавляет агрегаты с началом в {@code [from, to)} в агрегаты, возвращаемые {@code target}.
+     *
+     * @param endpointId эндпоинт или {@code null} для всех
+     */
+    void foldBuckets(Resolution resolution, Long endpointId, LocalDateTime from, LocalDateTime to,
+                     BiFunction<Long, LocalDateTime, MetricsAggregate> target);
+
+    void insertBuckets(Resolution resolution, Map<BucketKey, MetricsAggregate> buckets);
+
+    /**
+     * Удаляет агрегаты с началом раньше указанного момента.
+     *
+     * @return число удалённых строк
+     */
+    int deleteBucketsBefore(Resolution resolution, LocalDateTime before);
+}
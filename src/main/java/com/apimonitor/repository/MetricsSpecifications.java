@@ -0,0 +1,68 @@
+package com.apimonitor.repository;
+
+import com.apimonitor.model.impl.ApiMetricsImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.time.LocalDateTime;
+
+/**
+ * Условия выборки сырых метрик для постраничного списка.
+ * <p>
+ * Метрики упорядочены по ключу {@code (timestamp, id)} от новых к старым ({@link #KEYSET_ORDER}).
+ * Следующая страница выбирается условием {@link #before(LocalDateTime, long)} вместо смещения,
+ * поэтому глубокие страницы читают индекс с нужного места так же, как первая.
+ */
+public final class MetricsSpecifications {
+
+    /**
+     * Порядок списка метрик: от новых к старым, при равном времени — по убыванию id.
+     */
+    public static final Sort KEYSET_ORDER = Sort.by(Sort.Order.desc("timestamp"), Sort.Order.desc("id"));
+
+    private MetricsSpecifications() {
+    }
+
+    /**
+     * Загружает эндпоинт вместе с метрикой, чтобы имя и URL не читались отдельным запросом на каждую строку.
+     */
+    public static Specification<ApiMetricsImpl> fetchEndpoint() {
+        return (root, query, cb) -> {
+            root.fetch("endpoint");
+            return null;
+        };
+    }
+
+    public static Specification<ApiMetricsImpl> endpointId(Long endpointId) {
+        return (root, query, cb) -> cb.equal(root.get("endpoint").get("id"), endpointId);
+    }
+
+    public static Specification<ApiMetricsImpl> from(LocalDateTime from) {
+        return (root, query, cb) -> cb.greaterThanOrEqualTo(root.get("timestamp"), from);
+    }
+
+    public static Specification<ApiMetricsImpl> to(LocalDateTime to) {
+        return (root, query, cb) -> cb.lessThanOrEqualTo(root.get("timestamp"), to);
+    }
+
+    public static Specification<ApiMetricsImpl> statusCode(int statusCode) {
+        return (root, query, cb) -> cb.equal(root.get("statusCode"), statusCode);
+    }
+
+    public static Specification<ApiMetricsImpl> success(boolean success) {
+        return (root, query, cb) -> cb.equal(root.get("success"), success);
+    }
+
+    /**
+     * Метрики строго после курсора в порядке {@link #KEYSET_ORDER}:
+     * {@code timestamp < :timestamp OR (timestamp = :timestamp AND id < :id)}.
+     * Избыточное условие {@code timestamp <= :timestamp} задаёт границу сканирования индекса
+     * и отсекает секции новее курсора.
+     */
+    public static Specification<ApiMetricsImpl> before(LocalDateTime timestamp, long id) {
+        return (root, query, cb) -> cb.and(
+                cb.lessThanOrEqualTo(root.get("timestamp"), timestamp),
+                cb.or(cb.lessThan(root.get("timestamp"), timestamp),
+                        cb.and(cb.equal(root.get("timestamp"), timestamp), cb.lessThan(root.get("id"), id))));
+    }
+}
@@ -0,0 +1,184 @@
+package com.apimonitor.repository.impl;
+
+import com.apimonitor.model.impl.ApiMetricsImpl;
+import com.apimonitor.model.impl.ApiResponseImpl;
+import com.apimonitor.model.impl.CompressedTextConverter;
+import com.apimonitor.model.impl.LatencyBreakdown;
+import com.apimonitor.repository.MetricsBulkWriter;
+import jakarta.persistence.EntityManager;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.jdbc.support.SQLExceptionTranslator;
+import org.springframework.jdbc.support.SQLStateSQLExceptionTranslator;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.StringReader;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * Запись метрик в {@code api_metrics} через протокол PostgreSQL {@code COPY ... FROM STDIN}.
+ * <p>
+ * Ответы и заголовки сохраняются через JPA (пакетными вставками), после чего все строки
+ * {@code api_metrics} пакета передаются одной командой COPY в текстовом формате.
+ * Идентификаторы метрик берутся блоками из {@code api_metrics_seq} по тем же правилам,
+ * что и у оптимизатора pooled в Hibernate, поэтому обе схемы записи могут работать одновременно.
+ * <p>
+ * Если БД не PostgreSQL, пакет записывается через резервный {@link MetricsBulkWriter}.
+ */
+@Slf4j
+public class CopyMetricsBulkWriter implements MetricsBulkWriter {
+
+    /**
+     * Шаг последовательности {@code api_metrics_seq}; совпадает с allocationSize в {@link ApiMetricsImpl}.
+     */
+    private static final int SEQUENCE_INCREMENT = 50;
+
+    private static final String COPY_SQL = "COPY api_metrics (id, endpoint_id, status_code, "
+            + "response_time_ms, timestamp, success, error_message, response_id, "
+            + "dns_us, connect_us, tls_us, ttfb_us, download_us, response_time_us, body_changed) FROM STDIN";
+
+    /**
+     * Ошибки COPY переводятся по SQLSTATE, чтобы нарушение ограничений отличалось от потери соединения.
+     */
+    private static final SQLExceptionTranslator EXCEPTION_TRANSLATOR = new SQLStateSQLExceptionTranslator();
+
+    private static final CompressedTextConverter ERROR_MESSAGE_CONVERTER = new CompressedTextConverter();
+
+    private static final String NEXT_BLOCKS_SQL = "SELECT nextval('api_metrics_seq') FROM generate_series(1, ?)";
+
+    private final EntityManager entityManager;
+    private final DataSource dataSource;
+    private final MetricsBulkWriter fallback;
+    private volatile Boolean copySupported;
+
+    public CopyMetricsBulkWriter(EntityManager entityManager, DataSource dataSource, MetricsBulkWriter fallback) {
+        this.entityManager = entityManager;
+        this.dataSource = dataSource;
+        this.fallback = fallback;
+    }
+
+    @Override
+    public void writeBatch(List<ApiMetricsImpl> batch) {
+        Connection connection = DataSourceUtils.getConnection(dataSource);
+        try {
+            if (!supportsCopy(connection)) {
+                fallback.writeBatch(batch);
+                return;
+            }
+            for (ApiMetricsImpl metrics : batch) {
+                if (metrics.getResponse() != null) {
+                    entityManager.persist(metrics.getResponse());
+                }
+            }
+            // ответы и заголовки должны попасть в БД до строк метрик, которые на них ссылаются
+            entityManager.flush();
+
+            Deque<Long> ids = allocateIds(connection, batch.size());
+            StringBuilder rows = new StringBuilder(batch.size() * 256);
+            for (ApiMetricsImpl metrics : batch) {
+                metrics.setId(ids.pollFirst());
+                appendRow(rows, metrics);
+            }
+            long copied = connection.unwrap(PGConnection.class).getCopyAPI()
+                    .copyIn(COPY_SQL, new StringReader(rows.toString()));
+            log.debug("COPY api_metrics: {} строк", copied);
+        } catch (SQLException ex) {
+            throw EXCEPTION_TRANSLATOR.translate("COPY api_metrics", COPY_SQL, ex);
+        } catch (IOException ex) {
+            throw new DataAccessResourceFailureException("Не удалось записать метрики через COPY", ex);
+        } finally {
+            entityManager.clear();
+            DataSourceUtils.releaseConnection(connection, dataSource);
+        }
+    }
+
+    @Override
+    public String mode() {
+        return Boolean.FALSE.equals(copySupported) ? fallback.mode() : "copy";
+    }
+
+    private boolean supportsCopy(Connection connection) throws SQLException {
+        Boolean supported = copySupported;
+        if (supported == null) {
+            supported = connection.isWrapperFor(PGConnection.class);
+            copySupported = supported;
+            if (!supported) {
+                log.warn("БД не поддерживает COPY ({}), метрики записываются пакетными вставками",
+                        connection.getMetaData().getDatabaseProductName());
+            }
+        }
+        return supported;
+    }
+
+    /**
+     * Резервирует идентификаторы блоками по {@value #SEQUENCE_INCREMENT}: значение {@code v}
+     * последовательности соответствует блоку {@code [v - 49, v]}.
+     */
+    private Deque<Long> allocateIds(Connection connection, int count) throws SQLException {
+        Deque<Long> ids = new ArrayDeque<>(count);
+        try (PreparedStatement statement = connection.prepareStatement(NEXT_BLOCKS_SQL)) {
+            statement.setInt(1, Math.ceilDiv(count, SEQUENCE_INCREMENT));
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    long hi = rs.getLong(1);
+                    for (long id = hi - SEQUENCE_INCREMENT + 1; id <= hi && ids.size() < count; id++) {
+                        ids.addLast(id);
+                    }
+                }
+            }
+        }
+        return ids;
+    }
+
+    private static void appendRow(StringBuilder out, ApiMetricsImpl m) {
+        LatencyBreakdown latency = m.getLatency() != null ? m.getLatency() : new LatencyBreakdown();
+        ApiResponseImpl response = m.getResponse();
+        appendField(out, m.getId()).append('\t');
+        appendField(out, m.getEndpoint().getId()).append('\t');
+        appendField(out, m.getStatusCode()).append('\t');
+        appendField(out, m.getResponseTimeMs()).append('\t');
+        appendField(out, m.getTimestamp()).append('\t');
+        appendField(out, m.isSuccess() ? "t" : "f").append('\t');
+        appendField(out, ERROR_MESSAGE_CONVERTER.convertToDatabaseColumn(m.getErrorMessage())).append('\t');
+        appendField(out, response != null ? response.getId() : null).append('\t');
+        appendField(out, latency.getDnsUs()).append('\t');
+        appendField(out, latency.getConnectUs()).append('\t');
+        appendField(out, latency.getTlsUs()).append('\t');
+        appendField(out, latency.getTtfbUs()).append('\t');
+        appendField(out, latency.getDownloadUs()).append('\t');
+        appendField(out, latency.getTotalUs()).append('\t');
+        appendField(out, m.getBodyChanged() == null ? null : m.getBodyChanged() ? "t" : "f").append('\n');
+    }
+
+    /**
+     * Добавляет значение в текстовом формате COPY: {@code \N} для NULL, {@code byte[]} — в
+     * шестнадцатеричном формате {@code bytea}, спецсимволы экранируются.
+     */
+    private static StringBuilder appendField(StringBuilder out, Object value) {
+        if (value == null) {
+            return out.append("\\N");
+        }
+        String text = value instanceof byte[] bytes ? "\\x" + HexFormat.of().formatHex(bytes) : value.toString();
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '\\' -> out.append("\\\\");
+                case '\t' -> out.append("\\t");
+                case '\n' -> out.append("\\n");
+                case '\r' -> out.append("\\r");
+                default -> out.append(c);
+            }
+        }
+        return out;
+    }
+}
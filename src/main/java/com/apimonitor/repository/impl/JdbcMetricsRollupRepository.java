@@ -0,0 +1,261 @@
+package com.apimonitor.repository.impl;
+
+import com.apimonitor.model.impl.LatencyBreakdown;
+import com.apimonitor.model.impl.LatencyHistogram;
+import com.apimonitor.model.impl.MetricsAggregate;
+import com.apimonitor.model.impl.MetricsAggregate.Phase;
+import com.apimonitor.repository.MetricsRollupRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Реализация {@link MetricsRollupRepository} на {@link JdbcTemplate}.
+ * Сырые метрики читаются потоково, поэтому память зависит только от числа агрегатов, а не строк.
+ * Для отчётов сырые метрики группируются в БД за один проход (счётчики ошибок — через {@code FILTER}),
+ * и в приложение передаются только группы.
+ */
+@Repository
+@RequiredArgsConstructor
+public class JdbcMetricsRollupRepository implements MetricsRollupRepository {
+
+    private static final int FETCH_SIZE = 1000;
+
+    private static final String RAW_COLUMNS = "endpoint_id, timestamp, status_code, success, response_time_ms, "
+            + "response_time_us, dns_us, connect_us, tls_us, ttfb_us, download_us";
+
+    private static final String BUCKET_COLUMNS = "endpoint_id, bucket_start, request_count, error_count, sum_us, "
+            + "min_us, max_us, dns_sum_us, dns_count, connect_sum_us, connect_count, tls_sum_us, tls_count, "
+            + "ttfb_sum_us, ttfb_count, download_sum_us, download_count, status_counts, latency_histogram";
+
+    private static final String PHASE_AGGREGATES = "SUM(dns_us) AS dns_sum_us, COUNT(dns_us) AS dns_count, "
+            + "SUM(connect_us) AS connect_sum_us, COUNT(connect_us) AS connect_count, "
+            + "SUM(tls_us) AS tls_sum_us, COUNT(tls_us) AS tls_count, "
+            + "SUM(ttfb_us) AS ttfb_sum_us, COUNT(ttfb_us) AS ttfb_count, "
+            + "SUM(download_us) AS download_sum_us, COUNT(download_us) AS download_count";
+
+    /**
+     * Группировка сырых метрик за один проход: {@code %1$s} — дополнительные колонки группировки
+     * (эндпоинт или ничего), {@code %2$s} — правая граница, {@code %3$s} — фильтр по эндпоинту.
+     */
+    private static final String GROUPED_RAW_SQL = "SELECT %1$sstatus_code, latency_bucket, "
+            + "COUNT(*) AS request_count, COUNT(*) FILTER (WHERE NOT success) AS error_count, "
+            + "SUM(response_us) AS sum_us, MIN(response_us) AS min_us, MAX(response_us) AS max_us, "
+            + PHASE_AGGREGATES
+            + " FROM (SELECT m.*, " + latencyBucketExpression("response_us") + " AS latency_bucket FROM ("
+            + "SELECT endpoint_id, status_code, success, dns_us, connect_us, tls_us, ttfb_us, download_us, "
+            + "COALESCE(response_time_us, response_time_ms * 1000) AS response_us "
+            + "FROM api_metrics WHERE timestamp >= ? AND timestamp %2$s%3$s) m) g "
+            + "GROUP BY %1$sstatus_code, latency_bucket";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public Optional<LocalDateTime> findWatermark(Resolution resolution) {
+        return jdbcTemplate.query("SELECT watermark FROM api_metrics_rollup_state WHERE resolution = ?",
+                        (rs, i) -> rs.getTimestamp(1).toLocalDateTime(), resolution.name())
+                .stream().findFirst();
+    }
+
+    @Override
+    public void saveWatermark(Resolution resolution, LocalDateTime watermark) {
+        Timestamp value = Timestamp.valueOf(watermark);
+        int updated = jdbcTemplate.update(
+                "UPDATE api_metrics_rollup_state SET watermark = ? WHERE resolution = ?", value, resolution.name());
+        if (updated == 0) {
+            jdbcTemplate.update(
+                    "INSERT INTO api_metrics_rollup_state (resolution, watermark) VALUES (?, ?)", resolution.name(), value);
+        }
+    }
+
+    @Override
+    public Optional<LocalDateTime> findEarliestRawTimestamp() {
+        return Optional.ofNullable(jdbcTemplate.queryForObject("SELECT MIN(timestamp) FROM api_metrics", Timestamp.class))
+                .map(Timestamp::toLocalDateTime);
+    }
+
+    @Override
+    public Optional<LocalDateTime> findEarliestBucket(Resolution resolution) {
+        return Optional.ofNullable(jdbcTemplate.queryForObject(
+                        "SELECT MIN(bucket_start) FROM " + table(resolution), Timestamp.class))
+                .map(Timestamp::toLocalDateTime);
+    }
+
+    @Override
+    public void foldRaw(Long endpointId, LocalDateTime from, LocalDateTime to, boolean toInclusive,
+                        BiFunction<Long, LocalDateTime, MetricsAggregate> target) {
+        String sql = "SELECT " + RAW_COLUMNS + " FROM api_metrics WHERE timestamp >= ? AND timestamp "
+                + (toInclusive ? "<= ?" : "< ?") + (endpointId != null ? " AND endpoint_id = ?" : "");
+        RowCallbackHandler handler = rs -> {
+            long responseTimeUs = rs.getLong("response_time_us");
+            if (rs.wasNull()) {
+                responseTimeUs = rs.getLong("response_time_ms") * 1000;
+            }
+            LatencyBreakdown latency = LatencyBreakdown.builder()
+                    .dnsUs(nullableLong(rs, "dns_us"))
+                    .connectUs(nullableLong(rs, "connect_us"))
+                    .tlsUs(nullableLong(rs, "tls_us"))
+                    .ttfbUs(nullableLong(rs, "ttfb_us"))
+                    .downloadUs(nullableLong(rs, "download_us"))
+                    .build();
+            target.apply(rs.getLong("endpoint_id"), rs.getTimestamp("timestamp").toLocalDateTime())
+                    .addSample(rs.getInt("status_code"), rs.getBoolean("success"), responseTimeUs, latency);
+        };
+        query(sql, handler, endpointId, from, to);
+    }
+
+    @Override
+    public void aggregateRaw(Long endpointId, LocalDateTime from, LocalDateTime to, boolean toInclusive,
+                             Function<Long, MetricsAggregate> target) {
+        query(groupedRawSql("endpoint_id, ", endpointId, toInclusive),
+                rs -> target.apply(rs.getLong("endpoint_id")).merge(mapGroup(rs)), endpointId, from, to);
+    }
+
+    @Override
+    public void aggregateRawTotal(Long endpointId, LocalDateTime from, LocalDateTime to, boolean toInclusive,
+                                  MetricsAggregate target) {
+        query(groupedRawSql("", endpointId, toInclusive), rs -> target.merge(mapGroup(rs)), endpointId, from, to);
+    }
+
+    @Override
+    public void foldBuckets(Resolution resolution, Long endpointId, LocalDateTime from, LocalDateTime to,
+                            BiFunction<Long, LocalDateTime, MetricsAggregate> target) {
+        String sql = "SELECT " + BUCKET_COLUMNS + " FROM " + table(resolution)
+                + " WHERE bucket_start >= ? AND bucket_start < ?" + (endpointId != null ? " AND endpoint_id = ?" : "");
+        query(sql, rs -> target.apply(rs.getLong("endpoint_id"), rs.getTimestamp("bucket_start").toLocalDateTime())
+                .merge(mapBucket(rs)), endpointId, from, to);
+    }
+
+    @Override
+    public void insertBuckets(Resolution resolution, Map<BucketKey, MetricsAggregate> buckets) {
+        if (buckets.isEmpty()) {
+            return;
+        }
+        String sql = "INSERT INTO " + table(resolution) + " (" + BUCKET_COLUMNS + ") "
+                + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+        List<Object[]> rows = new ArrayList<>(buckets.size());
+        buckets.forEach((key, bucket) -> {
+            Object[] row = new Object[19];
+            row[0] = key.endpointId();
+            row[1] = Timestamp.valueOf(key.bucketStart());
+            row[2] = bucket.getCount();
+            row[3] = bucket.getErrorCount();
+            row[4] = bucket.getSumUs();
+            row[5] = bucket.getMinUs();
+            row[6] = bucket.getMaxUs();
+            int column = 7;
+            for (Phase phase : Phase.values()) {
+                row[column++] = bucket.phaseSumUs(phase);
+                row[column++] = bucket.phaseCount(phase);
+            }
+            row[17] = MetricsAggregate.encodeCounts(bucket.getStatusCounts());
+            row[18] = bucket.getHistogram().encode();
+            rows.add(row);
+        });
+        jdbcTemplate.batchUpdate(sql, rows);
+    }
+
+    @Override
+    public int deleteBucketsBefore(Resolution resolution, LocalDateTime before) {
+        return jdbcTemplate.update("DELETE FROM " + table(resolution) + " WHERE bucket_start < ?", Timestamp.valueOf(before));
+    }
+
+    private void query(String sql, RowCallbackHandler handler, Long endpointId, LocalDateTime from, LocalDateTime to) {
+        jdbcTemplate.query(connection -> {
+            var statement = connection.prepareStatement(sql);
+            statement.setFetchSize(FETCH_SIZE);
+            statement.setTimestamp(1, Timestamp.valueOf(from));
+            statement.setTimestamp(2, Timestamp.valueOf(to));
+            if (endpointId != null) {
+                statement.setLong(3, endpointId);
+            }
+            return statement;
+        }, handler);
+    }
+
+    private static String groupedRawSql(String groupColumns, Long endpointId, boolean toInclusive) {
+        return GROUPED_RAW_SQL.formatted(groupColumns, toInclusive ? "<= ?" : "< ?",
+                endpointId != null ? " AND endpoint_id = ?" : "");
+    }
+
+    private static MetricsAggregate mapGroup(ResultSet rs) throws SQLException {
+        long count = rs.getLong("request_count");
+        return mapAggregate(rs, Map.of(rs.getInt("status_code"), count),
+                LatencyHistogram.of(Map.of(rs.getInt("latency_bucket"), count)));
+    }
+
+    private static MetricsAggregate mapBucket(ResultSet rs) throws SQLException {
+        return mapAggregate(rs,
+                MetricsAggregate.decodeCounts(rs.getString("status_counts")),
+                LatencyHistogram.decode(rs.getString("latency_histogram")));
+    }
+
+    private static MetricsAggregate mapAggregate(ResultSet rs, Map<Integer, Long> statusCounts,
+                                                 LatencyHistogram histogram) throws SQLException {
+        Phase[] phases = Phase.values();
+        long[] phaseSums = new long[phases.length];
+        long[] phaseCounts = new long[phases.length];
+        for (Phase phase : phases) {
+            String prefix = phase.name().toLowerCase();
+            phaseSums[phase.ordinal()] = rs.getLong(prefix + "_sum_us");
+            phaseCounts[phase.ordinal()] = rs.getLong(prefix + "_count");
+        }
+        return new MetricsAggregate(
+                rs.getLong("request_count"),
+                rs.getLong("error_count"),
+                rs.getLong("sum_us"),
+                rs.getLong("min_us"),
+                rs.getLong("max_us"),
+                phaseSums,
+                phaseCounts,
+                statusCounts,
+                histogram);
+    }
+
+    /**
+     * Выражение SQL для номера ячейки {@link LatencyHistogram}: то же вычисление, что
+     * {@link LatencyHistogram#indexOf(long)}, записанное лестницей по степеням двойки
+     * с целочисленным делением, чтобы одинаково работать в PostgreSQL и H2.
+     *
+     * @param value выражение времени ответа в микросекундах
+     */
+    public static String latencyBucketExpression(String value) {
+        int subBuckets = LatencyHistogram.SUB_BUCKETS;
+        int subBits = Integer.numberOfTrailingZeros(subBuckets);
+        StringBuilder sql = new StringBuilder("CASE WHEN ").append(value).append(" < 0 THEN 0")
+                .append(" WHEN ").append(value).append(" < ").append(subBuckets).append(" THEN ").append(value);
+        int maxExponent = 62;
+        for (int exponent = subBits; exponent <= maxExponent; exponent++) {
+            // ячейка = SUB_BUCKETS + (exponent - SUB_BITS) * SUB_BUCKETS + (value >> (exponent - SUB_BITS)) - SUB_BUCKETS
+            long base = (long) (exponent - subBits) * subBuckets;
+            long divisor = 1L << (exponent - subBits);
+            sql.append(exponent < maxExponent ? " WHEN " + value + " < " + (1L << (exponent + 1)) + " THEN " : " ELSE ")
+                    .append(base).append(" + ").append(value).append(" / ").append(divisor);
+        }
+        return sql.append(" END").toString();
+    }
+
+    private static Long nullableLong(ResultSet rs, String column) throws SQLException {
+        long value = rs.getLong(column);
+        return rs.wasNull() ? null : value;
+    }
+
+    private static String table(Resolution resolution) {
+        return switch (resolution) {
+            case MINUTE -> "api_metrics_rollup_1m";
+            case HOUR -> "api_metrics_rollup_1h";
+        };
+    }
+}
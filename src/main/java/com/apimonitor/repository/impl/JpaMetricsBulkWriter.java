@@ -0,0 +1,28 @@
+package com.apimonitor.repository.impl;
+
+import com.apimonitor.model.impl.ApiMetricsImpl;
+import com.apimonitor.repository.MetricsBulkWriter;
+import com.apimonitor.repository.MetricsRepository;
+import lombok.RequiredArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Запись метрик через {@link MetricsRepository}. Hibernate группирует вставки в JDBC-пакеты
+ * размером {@code hibernate.jdbc.batch_size}.
+ */
+@RequiredArgsConstructor
+public class JpaMetricsBulkWriter implements MetricsBulkWriter {
+
+    private final MetricsRepository metricsRepository;
+
+    @Override
+    public void writeBatch(List<ApiMetricsImpl> batch) {
+        metricsRepository.saveAll(batch);
+    }
+
+    @Override
+    public String mode() {
+        return "jpa";
+    }
+}
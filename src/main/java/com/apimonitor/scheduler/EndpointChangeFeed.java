@@ -0,0 +1,81 @@
+package com.apimonitor.scheduler;
+
+import com.apimonitor.model.impl.ApiEndpointImpl;
+import com.apimonitor.repository.ApiEndpointRepository;
+import com.apimonitor.service.EndpointRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Лента изменений эндпоинтов: опрашивает {@code api_endpoints} по столбцу {@code version}
+ * и применяет к работающему планировщику только изменившиеся эндпоинты.
+ * <p>
+ * Версии назначаются до фиксации транзакции, поэтому строка с меньшей версией может стать
+ * видимой позже строки с большей и не попасть в выборку по версии. Такие строки подхватывает
+ * полная сверка: раз в {@code api.endpoint-feed.reconcile-interval-ms} читаются все эндпоинты
+ * и применяются те, чья версия новее закэшированной в реестре. Задержка применения такого
+ * изменения ограничена интервалом сверки и не зависит от числа одновременных правок.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "api.endpoint-feed", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class EndpointChangeFeed {
+
+    private final ApiEndpointRepository endpointRepository;
+    private final EndpointRegistry endpointRegistry;
+    private final MonitoringScheduler scheduler;
+    private long appliedVersion = -1;
+
+    @Scheduled(fixedDelayString = "${api.endpoint-feed.poll-interval-ms:5000}")
+    public synchronized void poll() {
+        if (appliedVersion < 0) {
+            appliedVersion = endpointRegistry.version();
+        }
+        try {
+            int applied = apply(endpointRepository.findByVersionGreaterThanOrderByVersionAsc(appliedVersion));
+            if (applied > 0) {
+                log.info("Применено изменений эндпоинтов: {}, версия {}", applied, appliedVersion);
+            }
+        } catch (DataAccessException ex) {
+            log.error("Не удалось прочитать изменения эндпоинтов", ex);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${api.endpoint-feed.reconcile-interval-ms:60000}",
+            initialDelayString = "${api.endpoint-feed.reconcile-interval-ms:60000}")
+    public synchronized void reconcile() {
+        try {
+            int applied = apply(endpointRepository.findAll());
+            if (applied > 0) {
+                log.warn("Сверка эндпоинтов применила пропущенных изменений: {}", applied);
+            }
+        } catch (DataAccessException ex) {
+            log.error("Не удалось сверить эндпоинты с БД", ex);
+        }
+    }
+
+    private int apply(List<ApiEndpointImpl> endpoints) {
+        int applied = 0;
+        for (ApiEndpointImpl endpoint : endpoints) {
+            if (isNewer(endpoint)) {
+                scheduler.apply(endpoint);
+                applied++;
+            }
+            appliedVersion = Math.max(appliedVersion, endpoint.getVersion());
+        }
+        return applied;
+    }
+
+    private boolean isNewer(ApiEndpointImpl endpoint) {
+        return endpointRegistry.findById(endpoint.getId())
+                .map(cached -> endpoint.getVersion() > cached.getVersion())
+                .orElse(endpoint.isActive());
+    }
+}
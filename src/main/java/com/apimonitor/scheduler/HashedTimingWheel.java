@@ -0,0 +1,99 @@
+package com.apimonitor.scheduler;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Хешированное колесо таймеров для планирования большого числа периодических задач.
+ * <p>
+ * Время разбивается на тики фиксированной длительности, задача помещается в ячейку
+ * {@code dueTick mod wheelSize}. Постановка задачи выполняется за O(1) независимо
+ * от числа запланированных задач, а продвижение колеса просматривает только ячейки
+ * прошедших тиков.
+ * <p>
+ * Класс не потокобезопасен: все вызовы должны выполняться из одного потока.
+ *
+ * @param <T> тип задачи
+ */
+public class HashedTimingWheel<T> {
+
+    private final long tickMs;
+    private final int mask;
+    private final ArrayDeque<Entry<T>>[] buckets;
+    private long currentTick;
+    private int size;
+
+    /**
+     * @param tickMs    длительность одного тика в миллисекундах
+     * @param wheelSize число ячеек колеса (округляется вверх до степени двойки)
+     * @param startMs   момент времени, с которого начинается отсчёт тиков
+     */
+    @SuppressWarnings("unchecked")
+    public HashedTimingWheel(long tickMs, int wheelSize, long startMs) {
+        if (tickMs <= 0) {
+            throw new IllegalArgumentException("tickMs must be positive: " + tickMs);
+        }
+        int normalized = Integer.highestOneBit(Math.max(1, wheelSize - 1)) << 1;
+        this.tickMs = tickMs;
+        this.mask = normalized - 1;
+        this.buckets = new ArrayDeque[normalized];
+        for (int i = 0; i < normalized; i++) {
+            buckets[i] = new ArrayDeque<>();
+        }
+        this.currentTick = Math.floorDiv(startMs, tickMs);
+    }
+
+    /**
+     * Планирует задачу на указанный момент времени. Задачи с моментом в прошлом
+     * сработают на ближайшем тике.
+     *
+     * @param task    задача
+     * @param dueAtMs момент срабатывания в миллисекундах
+     */
+    public void schedule(T task, long dueAtMs) {
+        long dueTick = Math.max(Math.ceilDiv(dueAtMs, tickMs), currentTick + 1);
+        buckets[(int) (dueTick & mask)].addLast(new Entry<>(task, dueTick));
+        size++;
+    }
+
+    /**
+     * Продвигает колесо до указанного момента и возвращает задачи, срок которых наступил.
+     *
+     * @param nowMs текущий момент в миллисекундах
+     * @return задачи, срок которых наступил (в порядке ячеек)
+     */
+    public List<T> advanceTo(long nowMs) {
+        long targetTick = Math.floorDiv(nowMs, tickMs);
+        if (targetTick <= currentTick) {
+            return List.of();
+        }
+        List<T> expired = new ArrayList<>();
+        // после долгой паузы достаточно одного полного оборота колеса
+        long steps = Math.min(targetTick - currentTick, buckets.length);
+        for (long step = 1; step <= steps; step++) {
+            ArrayDeque<Entry<T>> bucket = buckets[(int) ((currentTick + step) & mask)];
+            for (int i = bucket.size(); i > 0; i--) {
+                Entry<T> entry = bucket.pollFirst();
+                if (entry.dueTick() <= targetTick) {
+                    expired.add(entry.task());
+                    size--;
+                } else {
+                    bucket.addLast(entry);
+                }
+            }
+        }
+        currentTick = targetTick;
+        return expired;
+    }
+
+    /**
+     * @return число запланированных задач
+     */
+    public int size() {
+        return size;
+    }
+
+    private record Entry<T>(T task, long dueTick) {
+    }
+}
@@ -1,30 +1,255 @@
 package com.apimonitor.scheduler;
 
+import com.apimonitor.config.ApiConfig;
+import com.apimonitor.mapper.ApiEndpointMapper;
+import com.apimonitor.model.impl.ApiEndpointImpl;
 import com.apimonitor.service.ApiMonitorService;
+import com.apimonitor.service.EndpointRegistry;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.context.SmartLifecycle;
 import org.springframework.stereotype.Component;
 
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
 /**
- * Компонент, отвечающий за выполнение мониторинга API эндпоинтов по расписанию.
- * Интервал выполнения задаётся через параметр `api.monitoring.interval` в конфигурации
- * (по умолчанию 5000 миллисекунд).
+ * Планировщик, запускающий проверку каждого эндпоинта с его собственной частотой
+ * {@code frequencyMs}. Если частота не задана, используется глобальный интервал
+ * {@code api.monitoring-interval}.
+ * <p>
+ * Сроки проверок хранятся в {@link HashedTimingWheel}, которое обслуживает один
+ * выделенный поток. Наступившие проверки передаются в {@link ProbeExecutor},
+ * а следующая проверка эндпоинта планируется сразу за O(1). Если предыдущая проверка
+ * эндпоинта ещё выполняется, очередная пропускается, поэтому эндпоинт никогда
+ * не проверяется параллельно сам с собой.
+ * <p>
+ * Эндпоинты берутся из {@link EndpointRegistry}. Изменения определений применяются
+ * к работающему планировщику по одному эндпоинту ({@link #apply(ApiEndpointImpl)}):
+ * добавленный эндпоинт ставится в колесо, удалённый снимается, изменённый перепланируется
+ * не позже прежнего срока. Остальные эндпоинты при этом проверяются без перерыва.
  */
 @Slf4j
 @Component
 @RequiredArgsConstructor
-public class MonitoringScheduler {
+public class MonitoringScheduler implements SmartLifecycle {
+
+    private static final long DEFAULT_INTERVAL_MS = 5000;
+
     private final ApiMonitorService apiMonitorService;
+    private final ProbeExecutor probeExecutor;
+    private final ApiConfig apiConfig;
+    private final EndpointRegistry endpointRegistry;
+    private final ApiEndpointMapper endpointMapper;
+
+    private final Queue<ScheduledEndpoint> pending = new ConcurrentLinkedQueue<>();
+    private final Map<String, ScheduledEndpoint> scheduled = new ConcurrentHashMap<>();
+    private final long origin = System.nanoTime();
+    private volatile boolean running;
+    private Thread ticker;
+
+    @Override
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        List<ApiConfig.ApiEndpoint> endpoints = endpointRegistry.definitions();
+        long now = nowMs();
+        for (ApiConfig.ApiEndpoint conf : endpoints) {
+            long frequency = frequencyOf(conf);
+            enqueue(new ScheduledEndpoint(conf, frequency, now + initialDelay(conf, frequency), new AtomicBoolean()));
+        }
+
+        ApiConfig.Scheduler settings = apiConfig.getScheduler();
+        HashedTimingWheel<ScheduledEndpoint> wheel =
+                new HashedTimingWheel<>(settings.getTickMs(), settings.getWheelSize(), now);
+        running = true;
+        ticker = Thread.ofPlatform()
+                .name("probe-scheduler")
+                .daemon(true)
+                .start(() -> loop(wheel, settings.getTickMs()));
+        log.info("Планировщик мониторинга запущен: {} эндпоинтов", endpoints.size());
+    }
+
+    @Override
+    public synchronized void stop() {
+        running = false;
+        scheduled.clear();
+        pending.clear();
+        if (ticker != null) {
+            ticker.interrupt();
+            ticker = null;
+        }
+        log.info("Планировщик мониторинга остановлен");
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Применяет новое состояние эндпоинта из БД: обновляет реестр и колесо планировщика.
+     *
+     * @param endpoint новое состояние эндпоинта (неактивный эндпоинт снимается с проверок,
+     *                 а сервис мониторинга забывает его состояние)
+     */
+    public synchronized void apply(ApiEndpointImpl endpoint) {
+        ApiEndpointImpl previous = endpointRegistry.update(endpoint);
+        if (previous != null && !previous.getName().equals(endpoint.getName())) {
+            unschedule(previous.getName());
+        }
+        if (endpoint.isActive()) {
+            schedule(endpointMapper.toDefinition(endpoint));
+        } else {
+            unschedule(endpoint.getName());
+            apiMonitorService.forgetEndpoint(endpoint.getId());
+        }
+    }
+
+    /**
+     * Ставит эндпоинт на проверки или перепланирует его по новому определению.
+     * Следующая проверка изменённого эндпоинта наступит не позже прежнего срока,
+     * а уже выполняющаяся проверка не будет запущена повторно параллельно.
+     *
+     * @param conf определение эндпоинта
+     */
+    public synchronized void schedule(ApiConfig.ApiEndpoint conf) {
+        if (!running) {
+            return;
+        }
+        long frequency = frequencyOf(conf);
+        long now = nowMs();
+        ScheduledEndpoint previous = scheduled.get(conf.getName());
+        ScheduledEndpoint next;
+        if (previous != null) {
+            previous.cancelled = true;
+            next = new ScheduledEndpoint(conf, frequency, Math.min(previous.dueAtMs, now + frequency), previous.inFlight);
+        } else {
+            next = new ScheduledEndpoint(conf, frequency, now + initialDelay(conf, frequency), new AtomicBoolean());
+        }
+        enqueue(next);
+        log.info("Эндпоинт {} запланирован с частотой {} мс", conf.getName(), frequency);
+    }
+
+    /**
+     * Снимает эндпоинт с проверок. Уже выполняющаяся проверка завершается.
+     *
+     * @param name имя эндпоинта
+     */
+    public synchronized void unschedule(String name) {
+        ScheduledEndpoint removed = scheduled.remove(name);
+        if (removed != null) {
+            removed.cancelled = true;
+            log.info("Эндпоинт {} снят с проверок", name);
+        }
+    }
 
     /**
-     * Выполняет мониторинг всех зарегистрированных эндпоинтов с заданным интервалом.
-     * Метод вызывается автоматически в соответствии с расписанием.
+     * @return число эндпоинтов, стоящих на проверках
      */
-    @Scheduled(fixedRateString = "${api.monitoring.interval:5000}")
-    public void performScheduledMonitoring() {
-        log.info("Launching scheduled Endpoint API monitoring...");
-        apiMonitorService.monitorAllEndpoints();
-        log.info("Scheduled monitoring completed.");
+    public int getScheduledCount() {
+        return scheduled.size();
+    }
+
+    private void enqueue(ScheduledEndpoint endpoint) {
+        scheduled.put(endpoint.conf.getName(), endpoint);
+        pending.add(endpoint);
+    }
+
+    private void loop(HashedTimingWheel<ScheduledEndpoint> wheel, long tickMs) {
+        long tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMs);
+        while (running && !Thread.currentThread().isInterrupted()) {
+            ScheduledEndpoint added;
+            while ((added = pending.poll()) != null) {
+                wheel.schedule(added, added.dueAtMs);
+            }
+
+            long now = nowMs();
+            for (ScheduledEndpoint due : wheel.advanceTo(now)) {
+                if (due.cancelled) {
+                    continue;
+                }
+                try {
+                    dispatch(due);
+                } catch (RuntimeException ex) {
+                    log.error("Не удалось запустить проверку {}", due.conf.getName(), ex);
+                    due.inFlight.set(false);
+                }
+                reschedule(wheel, due, now);
+            }
+            LockSupport.parkNanos(tickNanos);
+        }
+    }
+
+    private void dispatch(ScheduledEndpoint scheduled) {
+        if (!scheduled.inFlight.compareAndSet(false, true)) {
+            log.debug("Предыдущая проверка {} ещё выполняется, пропускаем", scheduled.conf.getName());
+            return;
+        }
+        probeExecutor.submit(() -> {
+            try {
+                apiMonitorService.monitorSingleConfigEndpoint(scheduled.conf);
+            } catch (RuntimeException ex) {
+                log.warn("Ошибка проверки эндпоинта {}", scheduled.conf.getName(), ex);
+            } finally {
+                scheduled.inFlight.set(false);
+            }
+        });
+    }
+
+    private void reschedule(HashedTimingWheel<ScheduledEndpoint> wheel, ScheduledEndpoint scheduled, long now) {
+        long next = scheduled.dueAtMs + scheduled.frequencyMs;
+        if (next <= now) {
+            // пропущенные из-за задержки запуски не догоняем
+            next = now + scheduled.frequencyMs;
+        }
+        scheduled.dueAtMs = next;
+        wheel.schedule(scheduled, next);
+    }
+
+    private long frequencyOf(ApiConfig.ApiEndpoint conf) {
+        if (conf.getFrequencyMs() > 0) {
+            return conf.getFrequencyMs();
+        }
+        return apiConfig.getMonitoringInterval() > 0 ? apiConfig.getMonitoringInterval() : DEFAULT_INTERVAL_MS;
+    }
+
+    /**
+     * Первые проверки распределяются по периоду, чтобы не стартовать все разом.
+     */
+    private static long initialDelay(ApiConfig.ApiEndpoint conf, long frequency) {
+        return Math.floorMod(conf.getName() != null ? conf.getName().hashCode() : 0, frequency);
+    }
+
+    private long nowMs() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - origin);
+    }
+
+    /**
+     * Состояние планирования одного эндпоинта.
+     * Поле {@code dueAtMs} изменяется только потоком планировщика. Отменённое состояние
+     * удаляется из колеса при следующем срабатывании; флаг выполнения передаётся
+     * новому состоянию при перепланировании.
+     */
+    private static final class ScheduledEndpoint {
+        private final ApiConfig.ApiEndpoint conf;
+        private final long frequencyMs;
+        private final AtomicBoolean inFlight;
+        private volatile long dueAtMs;
+        private volatile boolean cancelled;
+
+        private ScheduledEndpoint(ApiConfig.ApiEndpoint conf, long frequencyMs, long dueAtMs, AtomicBoolean inFlight) {
+            this.conf = conf;
+            this.frequencyMs = frequencyMs;
+            this.dueAtMs = dueAtMs;
+            this.inFlight = inFlight;
+        }
     }
 }
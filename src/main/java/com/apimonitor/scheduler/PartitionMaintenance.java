@@ -0,0 +1,76 @@
+package com.apimonitor.scheduler;
+
+import com.apimonitor.config.ApiConfig;
+import com.apimonitor.service.impl.ResponseBodyStore;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Обслуживание дневных секций таблиц {@code api_metrics} и {@code api_responses}.
+ * <p>
+ * Периодически создаёт секции на {@code api.retention.precreate-days} дней вперёд, чтобы
+ * вставка никогда не попадала в секцию по умолчанию, и удаляет секции метрик и ответов
+ * старше {@code api.retention.retention-days} дней целиком — без построчного DELETE.
+ * Если строки всё же попали в секцию по умолчанию (например, приложение долго не работало),
+ * при создании секции их дня они переносятся в неё, а устаревшие удаляются построчно.
+ * Вместе с секциями удаляются тела ответов, на которые больше никто не ссылается,
+ * поэтому после удаления сбрасывается кэш {@link ResponseBodyStore}.
+ * Сама логика реализована функциями БД из changeset 008, 010 и 016, поэтому задача выполняется
+ * только на PostgreSQL.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "api.retention", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class PartitionMaintenance {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ApiConfig apiConfig;
+    private final ResponseBodyStore bodyStore;
+    private volatile Boolean supported;
+
+    /**
+     * Создаёт будущие секции и удаляет устаревшие. Первый запуск выполняется при старте приложения.
+     */
+    @Scheduled(fixedDelayString = "${api.retention.maintenance-interval-ms:3600000}")
+    public void maintain() {
+        if (!isSupported()) {
+            return;
+        }
+        ApiConfig.Retention retention = apiConfig.getRetention();
+        try {
+            Integer created = jdbcTemplate.queryForObject(
+                    "SELECT api_metrics_create_partitions(current_date, ?)", Integer.class,
+                    retention.getPrecreateDays());
+            Integer dropped = jdbcTemplate.queryForObject(
+                    "SELECT api_metrics_drop_partitions(?)", Integer.class,
+                    retention.getRetentionDays());
+            if (dropped != null && dropped > 0) {
+                bodyStore.evictAll();
+            }
+            log.info("Обслуживание секций api_metrics: создано {}, удалено {}", created, dropped);
+        } catch (DataAccessException ex) {
+            log.error("Не удалось обслужить секции api_metrics", ex);
+        }
+    }
+
+    private boolean isSupported() {
+        Boolean result = supported;
+        if (result == null) {
+            String product = jdbcTemplate.execute(
+                    (ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName());
+            result = "PostgreSQL".equalsIgnoreCase(product);
+            supported = result;
+            if (!result) {
+                log.info("Секционирование api_metrics не поддерживается для {}, обслуживание секций отключено", product);
+            }
+        }
+        return result;
+    }
+}
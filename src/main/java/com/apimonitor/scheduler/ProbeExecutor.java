@@ -0,0 +1,131 @@
+package com.apimonitor.scheduler;
+
+import com.apimonitor.config.ApiConfig;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+/**
+ * Исполнитель проверок эндпоинтов на виртуальных потоках.
+ * <p>
+ * Каждая проверка выполняется в собственном виртуальном потоке, число одновременно
+ * выполняемых проверок ограничено {@code api.execution.max-in-flight}. Раунд ограничен
+ * крайним сроком {@code api.execution.round-timeout-ms}, поэтому его длительность
+ * определяется самым медленным эндпоинтом, а не суммой задержек всех эндпоинтов.
+ */
+@Slf4j
+@Component
+public class ProbeExecutor {
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Semaphore inFlight;
+    private final long roundTimeoutMs;
+
+    public ProbeExecutor(ApiConfig apiConfig) {
+        ApiConfig.Execution execution = apiConfig.getExecution();
+        this.inFlight = new Semaphore(Math.max(1, execution.getMaxInFlight()));
+        this.roundTimeoutMs = Math.max(1, execution.getRoundTimeoutMs());
+    }
+
+    /**
+     * Выполняет проверку для каждого элемента параллельно и ждёт завершения раунда,
+     * но не дольше крайнего срока. Незавершённые к сроку проверки прерываются.
+     *
+     * @param items элементы раунда (например, конфигурации эндпоинтов)
+     * @param probe проверка одного элемента
+     * @param <T>   тип элемента
+     * @return итоги раунда
+     */
+    public <T> RoundResult runRound(Collection<T> items, Consumer<T> probe) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(roundTimeoutMs);
+
+        List<Future<Boolean>> futures = new ArrayList<>(items.size());
+        for (T item : items) {
+            futures.add(executor.submit(() -> runWithPermit(item, probe, deadline)));
+        }
+
+        int completed = 0;
+        int failed = 0;
+        int timedOut = 0;
+        for (Future<Boolean> future : futures) {
+            try {
+                long remaining = Math.max(0, deadline - System.nanoTime());
+                if (future.get(remaining, TimeUnit.NANOSECONDS)) {
+                    completed++;
+                } else {
+                    timedOut++;
+                }
+            } catch (TimeoutException | CancellationException ex) {
+                future.cancel(true);
+                timedOut++;
+            } catch (ExecutionException ex) {
+                failed++;
+                log.warn("Проверка завершилась с ошибкой", ex.getCause());
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                futures.forEach(f -> f.cancel(true));
+                timedOut += futures.size() - completed - failed - timedOut;
+                break;
+            }
+        }
+        return new RoundResult(completed, failed, timedOut);
+    }
+
+    /**
+     * Выполняет одну проверку асинхронно с учётом общего ограничения одновременных проверок.
+     *
+     * @param probe проверка
+     * @return {@link Future} выполняемой проверки
+     */
+    public Future<?> submit(Runnable probe) {
+        return executor.submit(() -> {
+            inFlight.acquire();
+            try {
+                probe.run();
+            } finally {
+                inFlight.release();
+            }
+            return null;
+        });
+    }
+
+    private <T> boolean runWithPermit(T item, Consumer<T> probe, long deadline) throws InterruptedException {
+        if (!inFlight.tryAcquire(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+            return false;
+        }
+        try {
+            probe.accept(item);
+            return true;
+        } finally {
+            inFlight.release();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Итоги одного раунда проверок.
+     *
+     * @param completed число успешно выполненных проверок
+     * @param failed    число проверок, завершившихся исключением
+     * @param timedOut  число проверок, прерванных по крайнему сроку
+     */
+    public record RoundResult(int completed, int failed, int timedOut) {
+    }
+}
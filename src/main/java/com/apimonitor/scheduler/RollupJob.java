@@ -0,0 +1,30 @@
+package com.apimonitor.scheduler;
+
+import com.apimonitor.service.MetricsRollupService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Периодическая свёртка сырых метрик в минутные и часовые агрегаты.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "api.rollup", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class RollupJob {
+
+    private final MetricsRollupService rollupService;
+
+    @Scheduled(fixedDelayString = "${api.rollup.interval-ms:60000}")
+    public void rollUp() {
+        try {
+            rollupService.rollUp();
+        } catch (DataAccessException ex) {
+            log.error("Не удалось свернуть метрики в агрегаты", ex);
+        }
+    }
+}
@@ -9,6 +9,8 @@ import java.util.List;
 
 public interface ApiMonitorService {
     void monitorAllEndpoints();
+    void monitorSingleConfigEndpoint(ApiConfig.ApiEndpoint conf);
+    void forgetEndpoint(Long endpointId);
     List<ApiMetricsSummary> getAllMetricsSummaries();
     ApiMetricsReport getMetricsReport(Long endpointId,
                                       LocalDateTime from,
@@ -0,0 +1,64 @@
+package com.apimonitor.service;
+
+import com.apimonitor.config.ApiConfig;
+import com.apimonitor.model.impl.ApiEndpointImpl;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Кэш активных эндпоинтов мониторинга в памяти. Проверки получают сущность эндпоинта из кэша,
+ * не обращаясь к БД; кэш обновляется только при изменении определений эндпоинтов.
+ */
+public interface EndpointRegistry {
+
+    /**
+     * Возвращает сущность эндпоинта, при первом обращении создавая или обновляя её в БД.
+     *
+     * @param conf определение эндпоинта
+     * @return сохранённая сущность эндпоинта
+     */
+    ApiEndpointImpl resolve(ApiConfig.ApiEndpoint conf);
+
+    /**
+     * @param name имя эндпоинта
+     * @return закэшированная сущность активного эндпоинта
+     */
+    Optional<ApiEndpointImpl> find(String name);
+
+    /**
+     * @param id идентификатор эндпоинта
+     * @return закэшированная сущность активного эндпоинта
+     */
+    Optional<ApiEndpointImpl> findById(Long id);
+
+    /**
+     * @return определения всех активных эндпоинтов
+     */
+    List<ApiConfig.ApiEndpoint> definitions();
+
+    /**
+     * @return наибольшая версия эндпоинта, прочитанная при последней полной синхронизации
+     */
+    long version();
+
+    /**
+     * Синхронизирует эндпоинты конфигурации с БД одним пакетом и перечитывает все активные эндпоинты.
+     */
+    void refresh();
+
+    /**
+     * Заменяет закэшированный эндпоинт новым состоянием строки. Неактивный эндпоинт удаляется из кэша.
+     *
+     * @param endpoint новое состояние эндпоинта
+     * @return предыдущее закэшированное состояние того же эндпоинта (по id) или {@code null}
+     */
+    ApiEndpointImpl update(ApiEndpointImpl endpoint);
+
+    /**
+     * Сбрасывает закэшированный эндпоинт; он будет загружен из БД при следующем обращении.
+     *
+     * @param name имя эндпоинта
+     */
+    void invalidate(String name);
+}
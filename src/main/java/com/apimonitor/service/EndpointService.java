@@ -0,0 +1,23 @@
+package com.apimonitor.service;
+
+import com.apimonitor.config.ApiConfig;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Управление определениями эндпоинтов мониторинга, хранимыми в БД.
+ * Изменения применяются к работающему планировщику без перезапуска.
+ */
+public interface EndpointService {
+
+    List<ApiConfig.ApiEndpoint> findAll();
+
+    Optional<ApiConfig.ApiEndpoint> find(String name);
+
+    ApiConfig.ApiEndpoint create(ApiConfig.ApiEndpoint definition);
+
+    ApiConfig.ApiEndpoint update(String name, ApiConfig.ApiEndpoint definition);
+
+    void delete(String name);
+}
@@ -0,0 +1,51 @@
+package com.apimonitor.service;
+
+import com.apimonitor.dto.ExportFormat;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+/**
+ * Потоковая выгрузка сырых метрик за период.
+ */
+public interface MetricsExportService {
+
+    /**
+     * Занимает место для одной выгрузки. Число мест ограничено {@code api.export.max-concurrent},
+     * поэтому выгрузки не могут занять весь пул соединений с БД.
+     *
+     * @return место выгрузки, которое нужно закрыть после её окончания,
+     *         или пустое значение, если все места заняты
+     */
+    Optional<Slot> tryAcquire();
+
+    /**
+     * Пишет метрики за период в поток в указанном формате, не накапливая их в памяти.
+     * Чтение из БД прерывается по истечении {@code api.export.timeout-ms}.
+     *
+     * @param apiName имя API или {@code null} для всех эндпоинтов
+     * @param from    начало периода (включительно)
+     * @param to      конец периода (включительно)
+     * @param format  формат выгрузки
+     * @param out     поток ответа; не закрывается
+     * @return число выгруженных строк
+     */
+    long export(String apiName, LocalDateTime from, LocalDateTime to, ExportFormat format, OutputStream out)
+            throws IOException;
+
+    /**
+     * Занятое место выгрузки. Повторное закрытие ничего не делает.
+     */
+    interface Slot extends AutoCloseable {
+
+        /**
+         * @return крайний срок выгрузки в миллисекундах ({@code api.export.timeout-ms})
+         */
+        long timeoutMs();
+
+        @Override
+        void close();
+    }
+}
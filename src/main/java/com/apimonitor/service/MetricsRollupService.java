@@ -0,0 +1,77 @@
+package com.apimonitor.service;
+
+import com.apimonitor.model.impl.MetricsAggregate;
+import com.apimonitor.repository.MetricsRollupRepository.Resolution;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Свёртка сырых метрик в минутные и часовые агрегаты и чтение агрегатов за произвольный период.
+ */
+public interface MetricsRollupService {
+
+    /**
+     * Сворачивает накопившиеся сырые метрики в минутные агрегаты, минутные — в часовые,
+     * и удаляет агрегаты старше срока хранения.
+     */
+    void rollUp();
+
+    /**
+     * @return момент самых ранних хранимых данных: сырых метрик, минутных или часовых агрегатов
+     */
+    Optional<LocalDateTime> findEarliestTimestamp();
+
+    /**
+     * Агрегирует метрики за период по эндпоинтам, читая каждую часть периода
+     * из самого грубого разрешения, которое её покрывает.
+     *
+     * @param endpointId эндпоинт или {@code null} для всех
+     * @param from       начало периода (включительно)
+     * @param to         конец периода (включительно)
+     * @return агрегаты по id эндпоинта (только эндпоинты с данными)
+     */
+    default Map<Long, MetricsAggregate> aggregateByEndpoint(Long endpointId, LocalDateTime from, LocalDateTime to) {
+        return aggregateByEndpoint(endpointId, from, to, true);
+    }
+
+    /**
+     * Агрегирует метрики за период {@code [from, to)} или {@code [from, to]} по эндпоинтам.
+     *
+     * @param endpointId  эндпоинт или {@code null} для всех
+     * @param toInclusive включать ли правую границу
+     * @return агрегаты по id эндпоинта (только эндпоинты с данными)
+     */
+    Map<Long, MetricsAggregate> aggregateByEndpoint(Long endpointId, LocalDateTime from, LocalDateTime to,
+                                                    boolean toInclusive);
+
+    /**
+     * Агрегирует метрики за период {@code [from, to)} отдельно по каждому интервалу разрешения.
+     * Части периода читаются из агрегатов не грубее запрошенного разрешения.
+     *
+     * @param endpointId эндпоинт или {@code null} для всех
+     * @param resolution разрешение интервалов
+     * @return агрегаты по началу интервала и id эндпоинта (только интервалы с данными)
+     */
+    Map<LocalDateTime, Map<Long, MetricsAggregate>> aggregateByBucket(Long endpointId, Resolution resolution,
+                                                                      LocalDateTime from, LocalDateTime to);
+
+    /**
+     * Агрегирует метрики за период в один агрегат.
+     *
+     * @param endpointId эндпоинт или {@code null} для всех
+     */
+    default MetricsAggregate aggregate(Long endpointId, LocalDateTime from, LocalDateTime to) {
+        return aggregate(endpointId, from, to, true);
+    }
+
+    /**
+     * Агрегирует метрики за период {@code [from, to)} или {@code [from, to]} в один агрегат
+     * без разбивки по эндпоинтам: сырые части периода сворачиваются в БД одним запросом каждая.
+     *
+     * @param endpointId  эндпоинт или {@code null} для всех
+     * @param toInclusive включать ли правую границу
+     */
+    MetricsAggregate aggregate(Long endpointId, LocalDateTime from, LocalDateTime to, boolean toInclusive);
+}
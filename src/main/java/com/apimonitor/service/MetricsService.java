@@ -1,14 +1,22 @@
 package com.apimonitor.service;
 
 import com.apimonitor.dto.ApiMetricsReport;
-import com.apimonitor.model.impl.ApiMetricsImpl;
+import com.apimonitor.dto.MetricsFilter;
+import com.apimonitor.dto.MetricsPage;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 public interface MetricsService {
-    List<ApiMetricsImpl> findAll();
-    List<ApiMetricsImpl> findByFilter(String apiName, LocalDateTime from, LocalDateTime to);
+    /**
+     * Страница метрик от новых к старым, продолжающая список с курсора.
+     *
+     * @param filter фильтры (все необязательны)
+     * @param cursor курсор из предыдущей страницы или {@code null} для первой
+     * @param size   запрошенный размер страницы или {@code null} для размера по умолчанию
+     */
+    MetricsPage findPage(MetricsFilter filter, String cursor, Integer size);
     double getAverageResponseTime(String apiName, LocalDateTime from, LocalDateTime to);
     long getErrorCount(String apiName, LocalDateTime from, LocalDateTime to);
 
@@ -16,4 +24,10 @@ public interface MetricsService {
      * Генерация отчетов для всех API-ендпоинтов
      */
     List<ApiMetricsReport> buildReports(LocalDateTime from, LocalDateTime to);
+
+    /**
+     * Асинхронная генерация отчетов для всех API-ендпоинтов.
+     * Отмена результата прерывает построение незавершённых отчетов.
+     */
+    CompletableFuture<List<ApiMetricsReport>> buildReportsAsync(LocalDateTime from, LocalDateTime to);
 }
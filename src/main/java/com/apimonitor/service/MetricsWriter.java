@@ -0,0 +1,17 @@
+package com.apimonitor.service;
+
+import com.apimonitor.model.impl.ApiMetricsImpl;
+
+/**
+ * Приёмник результатов проверок, записывающий их в БД асинхронно.
+ */
+public interface MetricsWriter {
+
+    /**
+     * Ставит метрику в очередь на запись, не дожидаясь обращения к БД.
+     *
+     * @param metrics метрика вместе со связанным ответом
+     * @return true, если метрика принята; false, если очередь переполнена и метрика отброшена
+     */
+    boolean submit(ApiMetricsImpl metrics);
+}
@@ -0,0 +1,36 @@
+package com.apimonitor.service;
+
+import com.apimonitor.model.impl.MetricsAggregate;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+/**
+ * Агрегатор проверок в памяти по скользящим окнам (последние 1 минута, 5 минут, 1 час и 24 часа).
+ * Проверка учитывается, как только зафиксирован пакет с её метрикой, поэтому сводки за недавние
+ * периоды строятся без обращения к БД и совпадают с записанными в БД данными этого экземпляра.
+ */
+public interface RollingWindowAggregator {
+
+    /**
+     * Учитывает одну записанную в БД проверку.
+     *
+     * @param endpointId идентификатор эндпоинта
+     * @param success    признак успешной проверки
+     * @param totalUs    общее время ответа в микросекундах
+     * @param timestamp  момент проверки
+     */
+    void record(Long endpointId, boolean success, long totalUs, LocalDateTime timestamp);
+
+    /**
+     * Агрегирует проверки за период, если он целиком покрыт окнами агрегатора.
+     * Границы периода округляются до ячеек самого мелкого окна, покрывающего период.
+     *
+     * @param endpointId эндпоинт или {@code null} для всех
+     * @param from       начало периода (включительно)
+     * @param to         конец периода (включительно)
+     * @return агрегат (число проверок, ошибок, сумма, минимум, максимум и гистограмма времени ответа)
+     *         или пустое значение, если период начинается раньше, чем его покрывают окна
+     */
+    Optional<MetricsAggregate> aggregate(Long endpointId, LocalDateTime from, LocalDateTime to);
+}
@@ -6,160 +6,289 @@ import com.apimonitor.dto.ApiMetricsSummary;
 import com.apimonitor.mapper.ApiMetricsMapper;
 import com.apimonitor.model.impl.ApiEndpointImpl;
 import com.apimonitor.model.impl.ApiMetricsImpl;
+import com.apimonitor.model.impl.ApiResponseBodyImpl;
 import com.apimonitor.model.impl.ApiResponseImpl;
+import com.apimonitor.model.impl.LatencyBreakdown;
+import com.apimonitor.model.impl.MetricsAggregate;
+import com.apimonitor.probe.ProbeResult;
+import com.apimonitor.probe.ProbeTiming;
+import com.apimonitor.probe.ProbeTransport;
 import com.apimonitor.repository.ApiEndpointRepository;
 import com.apimonitor.repository.MetricsRepository;
+import com.apimonitor.scheduler.ProbeExecutor;
 import com.apimonitor.service.ApiMonitorService;
+import com.apimonitor.service.EndpointRegistry;
+import com.apimonitor.service.MetricsRollupService;
+import com.apimonitor.service.MetricsWriter;
 import jakarta.persistence.EntityNotFoundException;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.http.HttpMethod;
-import org.springframework.http.ResponseEntity;
-import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.web.client.HttpStatusCodeException;
-import org.springframework.web.client.RestClientException;
-import org.springframework.web.client.RestTemplate;
 
+import java.net.http.HttpConnectTimeoutException;
+import java.net.http.HttpTimeoutException;
 import java.time.LocalDateTime;
 import java.util.Collections;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
 
 /**
  * Сервис для мониторинга API-эндпоинтов и получения отчетов по метрикам.
  * <p>
- * При сохранении метрик, каждый ApiMetricsImpl получает ссылку на сущность ApiEndpointImpl,
- * загруженную или созданную на основании настроек из ApiConfig.
+ * При сохранении метрик, каждый ApiMetricsImpl получает ссылку на сущность ApiEndpointImpl
+ * из {@link EndpointRegistry}, поэтому проверки не обращаются к БД за эндпоинтом.
+ * Результаты проверок записываются в БД асинхронно через {@link MetricsWriter},
+ * поэтому проверки не удерживают соединение с БД на время сетевых запросов.
  */
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class ApiMonitorServiceImpl implements ApiMonitorService {
 
-    private final RestTemplate restTemplate;
+    private static final int MAX_ERROR_MESSAGE_LENGTH = 2048;
+
+    private final ProbeTransport probeTransport;
     private final MetricsRepository metricsRepository;
     private final ApiEndpointRepository endpointRepository;
+    private final EndpointRegistry endpointRegistry;
     private final ApiMetricsMapper metricsMapper;
-    private final ApiConfig apiConfig;
+    private final ProbeExecutor probeExecutor;
+    private final MetricsWriter metricsWriter;
+    private final MetricsRollupService rollupService;
+
+    /**
+     * Хеш тела последнего ответа каждого эндпоинта (по идентификатору) — для признака изменения тела.
+     * Запись удаляется, когда эндпоинт снимается с проверок ({@link #forgetEndpoint(Long)}).
+     */
+    private final Map<Long, String> lastBodyHashes = new ConcurrentHashMap<>();
 
     /**
-     * Запускает мониторинг всех эндпоинтов из конфигурации.
+     * Запускает мониторинг всех активных эндпоинтов.
+     * Эндпоинты проверяются параллельно через {@link ProbeExecutor}.
      */
     @Override
-    @Transactional
-    @Scheduled(fixedDelayString = "${api.monitoring.interval:5000}")
     public void monitorAllEndpoints() {
-        List<ApiConfig.ApiEndpoint> endpoints = apiConfig.getEndpoints();
+        List<ApiConfig.ApiEndpoint> endpoints = endpointRegistry.definitions();
         log.info("Запуск мониторинга по конфигу: {} эндпоинтов", endpoints.size());
-        endpoints.forEach(this::monitorSingleConfigEndpoint);
-        log.info("Мониторинг завершен");
+        ProbeExecutor.RoundResult result = probeExecutor.runRound(endpoints, this::monitorSingleConfigEndpoint);
+        log.info("Мониторинг завершен: выполнено={}, с ошибкой={}, прервано по таймауту={}",
+                result.completed(), result.failed(), result.timedOut());
     }
 
     /**
-     * Выполняет запрос к одному эндпоинту конфигурации и сохраняет метрику.
-     * Устанавливает связь с ApiEndpointImpl из БД.
+     * Выполняет запрос к одному эндпоинту конфигурации и передаёт метрику на отложенную запись.
+     * Устанавливает связь с закэшированным ApiEndpointImpl.
      */
-    @Transactional
+    @Override
     public void monitorSingleConfigEndpoint(ApiConfig.ApiEndpoint conf) {
-        ApiEndpointImpl endpoint = findOrCreateEndpoint(conf);
+        ApiEndpointImpl endpoint = endpointRegistry.resolve(conf);
         ApiResponseImpl response;
+        LocalDateTime probedAt = LocalDateTime.now();
 
-        long start = System.currentTimeMillis();
+        long start = System.nanoTime();
         int status;
         long responseTime;
         boolean success;
         String errorMsg = null;
+        boolean interrupted = false;
+        Boolean bodyChanged = null;
+        LatencyBreakdown latency;
 
+        CompletableFuture<ProbeResult> probe = probeTransport.execute(conf);
         try {
-            ResponseEntity<String> resp = restTemplate.exchange(
-                    conf.getUrl(), HttpMethod.valueOf(conf.getMethod()), null, String.class);
-            responseTime = System.currentTimeMillis() - start;
-            status = resp.getStatusCode().value();
-            success = resp.getStatusCode().is2xxSuccessful();
+            ProbeResult result = probe.get();
+            latency = toLatency(result.getTiming(), System.nanoTime() - start);
+            responseTime = TimeUnit.MICROSECONDS.toMillis(latency.getTotalUs());
+            status = result.getStatusCode();
+            success = result.isSuccessful();
+            if (status >= 400) {
+                // тело может не сохраняться режимом эндпоинта — тогда в ошибку пишем только статус
+                errorMsg = result.getBody() != null ? limitErrorMessage(result.getBody()) : "HTTP " + status;
+            }
 
+            bodyChanged = trackBodyChange(endpoint.getId(), result.getBodyHash());
             response = ApiResponseImpl.builder()
-                    .body(resp.getBody())
-                    .headers(resp.getHeaders().toSingleValueMap())
+                    .content(ApiResponseBodyImpl.builder()
+                            .body(result.getBody())
+                            .bodyHash(result.getBodyHash())
+                            .bodySize(result.getBodySize())
+                            .bodyTruncated(result.isBodyTruncated())
+                            .build())
+                    .headers(result.getHeaders() != null ? result.getHeaders() : Collections.emptyMap())
+                    .createdAt(probedAt)
                     .build();
 
-        } catch (HttpStatusCodeException ex) {
-            responseTime = System.currentTimeMillis() - start;
-            status = ex.getStatusCode().value();
-            errorMsg = ex.getResponseBodyAsString();
-            success = false;
-
-            response = ApiResponseImpl.builder()
-                    .body(errorMsg)
-                    .headers(
-                            ex.getResponseHeaders() != null
-                                    ? ex.getResponseHeaders().toSingleValueMap()
-                                    : Collections.emptyMap()
-                    )
-                    .build();
-
-        } catch (RestClientException ex) {
-            responseTime = System.currentTimeMillis() - start;
+        } catch (ExecutionException | InterruptedException ex) {
+            long elapsed = System.nanoTime() - start;
+            responseTime = TimeUnit.NANOSECONDS.toMillis(elapsed);
+            latency = LatencyBreakdown.builder().totalUs(TimeUnit.NANOSECONDS.toMicros(elapsed)).build();
             status = 500;
-            errorMsg = ex.getMessage();
+            errorMsg = limitErrorMessage(describeFailure(ex));
             success = false;
+            if (ex instanceof InterruptedException) {
+                probe.cancel(true);
+                interrupted = true;
+            }
 
             response = ApiResponseImpl.builder()
-                    .body(errorMsg)
+                    .content(ApiResponseBodyImpl.builder().body(errorMsg).build())
                     .headers(null)
+                    .createdAt(probedAt)
                     .build();
         }
 
         ApiMetricsImpl m = ApiMetricsImpl.builder()
                 .endpoint(endpoint)
-                .apiName(conf.getName())
-                .apiUrl(conf.getUrl())
                 .statusCode(status)
                 .responseTimeMs(responseTime)
+                .timestamp(probedAt)
                 .success(success)
                 .errorMessage(errorMsg)
                 .response(response)
+                .latency(latency)
+                .bodyChanged(bodyChanged)
                 .build();
 
-        metricsRepository.save(m);
-        log.debug("Сохранена метрика для {}: status={}, time={}ms", conf.getName(), status, responseTime);
+        if (metricsWriter.submit(m)) {
+            log.debug("Метрика для {} передана на запись: status={}, time={}ms", conf.getName(), status, responseTime);
+        }
+        if (interrupted) {
+            // флаг прерывания восстанавливаем после сохранения, чтобы метрика о таймауте не потерялась
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Забывает хеш тела последнего ответа снятого с проверок эндпоинта.
+     *
+     * @param endpointId идентификатор эндпоинта
+     */
+    @Override
+    public void forgetEndpoint(Long endpointId) {
+        if (endpointId != null) {
+            lastBodyHashes.remove(endpointId);
+        }
+    }
+
+    /**
+     * Ограничивает длину сообщения об ошибке до {@value #MAX_ERROR_MESSAGE_LENGTH} символов:
+     * полное тело ответа хранится отдельно. Ограничение действует и для тел ответов с ошибкой,
+     * и для сообщений исключений транспорта.
+     */
+    private static String limitErrorMessage(String message) {
+        return message.length() > MAX_ERROR_MESSAGE_LENGTH ? message.substring(0, MAX_ERROR_MESSAGE_LENGTH) : message;
     }
 
     /**
-     * Ищет в БД ApiEndpointImpl по уникальному имени или URL, иначе создаёт новую запись.
+     * Запоминает хеш тела последнего ответа эндпоинта и сравнивает его с предыдущим.
+     *
+     * @return изменилось ли тело или {@code null}, если сравнивать не с чем
      */
-    private ApiEndpointImpl findOrCreateEndpoint(ApiConfig.ApiEndpoint conf) {
-        Optional<ApiEndpointImpl> opt = endpointRepository.findByName(conf.getName());
-        if (opt.isPresent()) {
-            return opt.get();
+    private Boolean trackBodyChange(Long endpointId, String bodyHash) {
+        if (endpointId == null || bodyHash == null) {
+            return null;
         }
-        ApiEndpointImpl entity = new ApiEndpointImpl();
-        entity.setName(conf.getName());
-        entity.setUrl(conf.getUrl());
-        entity.setMethod(conf.getMethod());
-        entity.setFrequencyMs(conf.getFrequencyMs());
-        // headers нет в конфиге
-        return endpointRepository.save(entity);
+        String previous = lastBodyHashes.put(endpointId, bodyHash);
+        return previous != null ? !previous.equals(bodyHash) : null;
     }
 
+    /**
+     * Переводит замеры транспорта из наносекунд в микросекунды для хранения.
+     * Если транспорт не вернул замеры, сохраняется только общее время, измеренное сервисом.
+     */
+    private static LatencyBreakdown toLatency(ProbeTiming timing, long elapsedNanos) {
+        if (timing == null) {
+            return LatencyBreakdown.builder().totalUs(TimeUnit.NANOSECONDS.toMicros(elapsedNanos)).build();
+        }
+        return LatencyBreakdown.builder()
+                .dnsUs(toMicros(timing.getDnsNanos()))
+                .connectUs(toMicros(timing.getConnectNanos()))
+                .tlsUs(toMicros(timing.getTlsNanos()))
+                .ttfbUs(toMicros(timing.getTtfbNanos()))
+                .downloadUs(toMicros(timing.getDownloadNanos()))
+                .totalUs(TimeUnit.NANOSECONDS.toMicros(timing.getTotalNanos()))
+                .build();
+    }
+
+    private static Long toMicros(Long nanos) {
+        return nanos != null ? TimeUnit.NANOSECONDS.toMicros(nanos) : null;
+    }
+
+    /**
+     * Формирует текст ошибки транспорта: таймауты и прерывания описываются явно,
+     * для остальных ошибок берётся сообщение исходного исключения.
+     */
+    private static String describeFailure(Exception ex) {
+        if (ex instanceof InterruptedException) {
+            return "Проверка прервана по крайнему сроку раунда";
+        }
+        Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+        if (cause instanceof TimeoutException) {
+            return "Превышен общий таймаут проверки";
+        }
+        if (cause instanceof HttpConnectTimeoutException) {
+            return "Превышен таймаут соединения: " + cause.getMessage();
+        }
+        if (cause instanceof HttpTimeoutException) {
+            return "Превышен таймаут ожидания ответа: " + cause.getMessage();
+        }
+        return cause.getMessage() != null ? cause.getMessage() : cause.getClass().getSimpleName();
+    }
+
+    /**
+     * Формирует по одной сводке на каждый эндпоинт за всё время хранения данных.
+     * Агрегаты читаются из часовых и минутных свёрток и сырых метрик на краях и сворачиваются
+     * потоково, поэтому память зависит от числа эндпоинтов, а не от числа проверок.
+     *
+     * @return сводки в порядке эндпоинтов; эндпоинт без проверок получает пустую сводку
+     */
     @Override
     @Transactional(readOnly = true)
     public List<ApiMetricsSummary> getAllMetricsSummaries() {
-        return metricsRepository.findAll().stream()
-                .map(metricsMapper::toSummary)
+        LocalDateTime now = LocalDateTime.now();
+        Map<Long, MetricsAggregate> aggregates = rollupService.findEarliestTimestamp()
+                .map(from -> rollupService.aggregateByEndpoint(null, from, now))
+                .orElseGet(Map::of);
+        return endpointRepository.findAll().stream()
+                .map(endpoint -> toSummary(endpoint,
+                        aggregates.getOrDefault(endpoint.getId(), new MetricsAggregate()), now))
                 .collect(Collectors.toList());
     }
 
+    private static ApiMetricsSummary toSummary(ApiEndpointImpl endpoint, MetricsAggregate aggregate,
+                                               LocalDateTime generatedAt) {
+        return ApiMetricsSummary.builder()
+                .apiName(endpoint.getName())
+                .apiUrl(endpoint.getUrl())
+                .totalRequests(aggregate.getCount())
+                .successfulRequests(aggregate.getCount() - aggregate.getErrorCount())
+                .failedRequests(aggregate.getErrorCount())
+                .successRate(aggregate.successRate())
+                .avgResponseMs(aggregate.avgMs())
+                .p50Ms(aggregate.percentileMs(50))
+                .p90Ms(aggregate.percentileMs(90))
+                .p95Ms(aggregate.percentileMs(95))
+                .p99Ms(aggregate.percentileMs(99))
+                .p999Ms(aggregate.percentileMs(99.9))
+                .summaryGeneratedAt(generatedAt)
+                .build();
+    }
+
     @Override
     @Transactional(readOnly = true)
     public ApiMetricsReport getMetricsReport(Long endpointId, LocalDateTime from, LocalDateTime to) {
         ApiEndpointImpl endpoint = endpointRepository.findById(endpointId)
                 .orElseThrow(() -> new EntityNotFoundException("Endpoint not found: " + endpointId));
-        List<ApiMetricsImpl> metrics = metricsRepository.findByApiNameAndTimestampBetween(
-                endpoint.getName(), from, to);
+        List<ApiMetricsImpl> metrics = metricsRepository.findByEndpointIdAndTimestampBetween(
+                endpoint.getId(), from, to);
         return metricsMapper.toReport(
                 new ReportWrapper(endpoint, metrics, from, to)
         );
@@ -179,8 +308,6 @@ public class ApiMonitorServiceImpl implements ApiMonitorService {
                              LocalDateTime from, LocalDateTime to) {
             super();
             setEndpoint(endpoint);
-            setApiName(endpoint.getName());
-            setApiUrl(endpoint.getUrl());
             this.list = list;
             this.from = from;
             this.to = to;
@@ -0,0 +1,192 @@
+package com.apimonitor.service.impl;
+
+import com.apimonitor.config.ApiConfig;
+import com.apimonitor.mapper.ApiEndpointMapper;
+import com.apimonitor.model.impl.ApiEndpointImpl;
+import com.apimonitor.repository.ApiEndpointRepository;
+import com.apimonitor.service.EndpointRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Реестр активных эндпоинтов в {@link ConcurrentHashMap} по имени и по id.
+ * <p>
+ * При запуске эндпоинты из {@link ApiConfig} синхронизируются с {@code api_endpoints} пакетно:
+ * существующие строки читаются одним запросом, новые и изменившиеся сохраняются одним
+ * {@code saveAll} в одной транзакции. Затем в кэш попадают все активные эндпоинты БД,
+ * в том числе созданные через REST API. После этого проверки не выполняют запросов к эндпоинтам.
+ * Эндпоинт, отсутствующий в кэше (например, после {@link #invalidate(String)}), загружается
+ * при первом обращении.
+ * <p>
+ * Запускается раньше планировщика проверок и отложенной записи метрик.
+ */
+@Slf4j
+@Service
+public class EndpointRegistryImpl implements EndpointRegistry, SmartLifecycle {
+
+    private final ApiEndpointRepository endpointRepository;
+    private final ApiEndpointMapper endpointMapper;
+    private final ApiConfig apiConfig;
+    private final TransactionTemplate transactionTemplate;
+
+    private final Map<String, ApiEndpointImpl> byName = new ConcurrentHashMap<>();
+    private final Map<Long, ApiEndpointImpl> byId = new ConcurrentHashMap<>();
+    private volatile long version;
+    private volatile boolean running;
+
+    public EndpointRegistryImpl(ApiEndpointRepository endpointRepository,
+                                ApiEndpointMapper endpointMapper,
+                                ApiConfig apiConfig,
+                                PlatformTransactionManager transactionManager) {
+        this.endpointRepository = endpointRepository;
+        this.endpointMapper = endpointMapper;
+        this.apiConfig = apiConfig;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Override
+    public ApiEndpointImpl resolve(ApiConfig.ApiEndpoint conf) {
+        ApiEndpointImpl cached = byName.get(conf.getName());
+        if (cached != null) {
+            return cached;
+        }
+        synchronized (this) {
+            cached = byName.get(conf.getName());
+            if (cached != null) {
+                return cached;
+            }
+            ApiEndpointImpl loaded = transactionTemplate.execute(status -> {
+                ApiEndpointImpl entity = endpointRepository.findByName(conf.getName()).orElseGet(ApiEndpointImpl::new);
+                return apply(entity, conf) ? endpointRepository.save(entity) : entity;
+            });
+            put(loaded);
+            return loaded;
+        }
+    }
+
+    @Override
+    public Optional<ApiEndpointImpl> find(String name) {
+        return Optional.ofNullable(byName.get(name));
+    }
+
+    @Override
+    public Optional<ApiEndpointImpl> findById(Long id) {
+        return Optional.ofNullable(byId.get(id));
+    }
+
+    @Override
+    public List<ApiConfig.ApiEndpoint> definitions() {
+        return byName.values().stream().map(endpointMapper::toDefinition).toList();
+    }
+
+    @Override
+    public long version() {
+        return version;
+    }
+
+    @Override
+    public synchronized void refresh() {
+        List<ApiConfig.ApiEndpoint> configured = apiConfig.getEndpoints() != null ? apiConfig.getEndpoints() : List.of();
+        List<ApiEndpointImpl> all = transactionTemplate.execute(status -> {
+            Map<String, ApiEndpointImpl> stored = endpointRepository.findAll().stream()
+                    .collect(Collectors.toMap(ApiEndpointImpl::getName, Function.identity()));
+            List<ApiEndpointImpl> changed = new ArrayList<>();
+            for (ApiConfig.ApiEndpoint conf : configured) {
+                ApiEndpointImpl entity = stored.computeIfAbsent(conf.getName(), name -> new ApiEndpointImpl());
+                if (apply(entity, conf)) {
+                    changed.add(entity);
+                }
+            }
+            endpointRepository.saveAll(changed);
+            log.info("Эндпоинты синхронизированы с БД: {} в конфигурации, сохранено {}", configured.size(), changed.size());
+            return new ArrayList<>(stored.values());
+        });
+        byName.clear();
+        byId.clear();
+        long max = 0;
+        for (ApiEndpointImpl endpoint : all) {
+            max = Math.max(max, endpoint.getVersion());
+            put(endpoint);
+        }
+        version = max;
+    }
+
+    @Override
+    public synchronized ApiEndpointImpl update(ApiEndpointImpl endpoint) {
+        ApiEndpointImpl previous = endpoint.getId() != null ? byId.remove(endpoint.getId()) : null;
+        if (previous != null) {
+            byName.remove(previous.getName(), previous);
+        }
+        put(endpoint);
+        return previous;
+    }
+
+    @Override
+    public synchronized void invalidate(String name) {
+        ApiEndpointImpl removed = byName.remove(name);
+        if (removed != null && removed.getId() != null) {
+            byId.remove(removed.getId(), removed);
+        }
+    }
+
+    @Override
+    public void start() {
+        refresh();
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Запускается раньше отложенной записи метрик и планировщика проверок.
+     */
+    @Override
+    public int getPhase() {
+        return DEFAULT_PHASE - 2;
+    }
+
+    private void put(ApiEndpointImpl endpoint) {
+        if (!endpoint.isActive()) {
+            return;
+        }
+        byName.put(endpoint.getName(), endpoint);
+        if (endpoint.getId() != null) {
+            byId.put(endpoint.getId(), endpoint);
+        }
+    }
+
+    /**
+     * Переносит определение эндпоинта из конфигурации в сущность и делает её активной.
+     *
+     * @return изменилась ли сущность (новая сущность считается изменённой)
+     */
+    private boolean apply(ApiEndpointImpl entity, ApiConfig.ApiEndpoint conf) {
+        boolean changed = entity.getId() == null
+                || !entity.isActive()
+                || !endpointMapper.toDefinition(entity).equals(conf);
+        if (changed) {
+            endpointMapper.update(conf, entity);
+            entity.setActive(true);
+        }
+        return changed;
+    }
+}
@@ -0,0 +1,142 @@
+package com.apimonitor.service.impl;
+
+import com.apimonitor.config.ApiConfig;
+import com.apimonitor.mapper.ApiEndpointMapper;
+import com.apimonitor.model.impl.ApiEndpointImpl;
+import com.apimonitor.repository.ApiEndpointRepository;
+import com.apimonitor.scheduler.MonitoringScheduler;
+import com.apimonitor.service.EndpointRegistry;
+import com.apimonitor.service.EndpointService;
+import jakarta.persistence.EntityExistsException;
+import jakarta.persistence.EntityNotFoundException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * Сервис определений эндпоинтов. Чтение выполняется из {@link EndpointRegistry} без обращения к БД.
+ * Изменение сохраняется в {@code api_endpoints} и после фиксации транзакции сразу применяется
+ * к планировщику этого экземпляра; остальные экземпляры получают его через ленту изменений.
+ * Удаление помечает эндпоинт неактивным, а его метрики сохраняются.
+ */
+@Slf4j
+@Service
+public class EndpointServiceImpl implements EndpointService {
+
+    private final ApiEndpointRepository endpointRepository;
+    private final EndpointRegistry endpointRegistry;
+    private final ApiEndpointMapper endpointMapper;
+    private final MonitoringScheduler scheduler;
+    private final TransactionTemplate transactionTemplate;
+
+    public EndpointServiceImpl(ApiEndpointRepository endpointRepository,
+                               EndpointRegistry endpointRegistry,
+                               ApiEndpointMapper endpointMapper,
+                               MonitoringScheduler scheduler,
+                               PlatformTransactionManager transactionManager) {
+        this.endpointRepository = endpointRepository;
+        this.endpointRegistry = endpointRegistry;
+        this.endpointMapper = endpointMapper;
+        this.scheduler = scheduler;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Override
+    public List<ApiConfig.ApiEndpoint> findAll() {
+        return endpointRegistry.definitions().stream()
+                .sorted(Comparator.comparing(ApiConfig.ApiEndpoint::getName))
+                .toList();
+    }
+
+    @Override
+    public Optional<ApiConfig.ApiEndpoint> find(String name) {
+        return endpointRegistry.find(name).map(endpointMapper::toDefinition);
+    }
+
+    /**
+     * Создаёт эндпоинт. Ранее удалённый эндпоинт с тем же именем восстанавливается с новым определением.
+     * URL и метод удалённых эндпоинтов не заняты и могут использоваться под новым именем.
+     *
+     * @throws EntityExistsException если активный эндпоинт с таким именем или с теми же URL и методом уже есть
+     */
+    @Override
+    public ApiConfig.ApiEndpoint create(ApiConfig.ApiEndpoint definition) {
+        validate(definition);
+        ApiEndpointImpl saved = transactionTemplate.execute(status -> {
+            ApiEndpointImpl entity = endpointRepository.findByName(definition.getName())
+                    .orElseGet(ApiEndpointImpl::new);
+            if (entity.getId() != null && entity.isActive()) {
+                throw new EntityExistsException("Endpoint already exists: " + definition.getName());
+            }
+            checkUrlAndMethodFree(definition, entity);
+            endpointMapper.update(definition, entity);
+            entity.setActive(true);
+            return endpointRepository.save(entity);
+        });
+        scheduler.apply(saved);
+        log.info("Создан эндпоинт {}", definition.getName());
+        return endpointMapper.toDefinition(saved);
+    }
+
+    @Override
+    public ApiConfig.ApiEndpoint update(String name, ApiConfig.ApiEndpoint definition) {
+        definition.setName(name);
+        validate(definition);
+        ApiEndpointImpl saved = modify(name, entity -> {
+            checkUrlAndMethodFree(definition, entity);
+            endpointMapper.update(definition, entity);
+        });
+        log.info("Изменён эндпоинт {}", name);
+        return endpointMapper.toDefinition(saved);
+    }
+
+    @Override
+    public void delete(String name) {
+        modify(name, entity -> entity.setActive(false));
+        log.info("Удалён эндпоинт {}", name);
+    }
+
+    private ApiEndpointImpl modify(String name, Consumer<ApiEndpointImpl> change) {
+        ApiEndpointImpl saved = transactionTemplate.execute(status -> {
+            ApiEndpointImpl entity = endpointRepository.findByName(name)
+                    .filter(ApiEndpointImpl::isActive)
+                    .orElseThrow(() -> new EntityNotFoundException("Endpoint not found: " + name));
+            change.accept(entity);
+            return endpointRepository.save(entity);
+        });
+        scheduler.apply(saved);
+        return saved;
+    }
+
+    /**
+     * Проверяет, что URL и метод не заняты другим активным эндпоинтом. В PostgreSQL то же гарантирует
+     * частичный уникальный индекс, а проверка даёт понятное сообщение и работает на других БД.
+     */
+    private void checkUrlAndMethodFree(ApiConfig.ApiEndpoint definition, ApiEndpointImpl entity) {
+        endpointRepository.findByUrlAndMethodAndActiveTrue(definition.getUrl(), definition.getMethod())
+                .filter(other -> !other.getId().equals(entity.getId()))
+                .ifPresent(other -> {
+                    throw new EntityExistsException("Endpoint " + other.getName() + " already monitors "
+                            + definition.getMethod() + " " + definition.getUrl());
+                });
+    }
+
+    private static void validate(ApiConfig.ApiEndpoint definition) {
+        if (isBlank(definition.getName()) || isBlank(definition.getUrl()) || isBlank(definition.getMethod())) {
+            throw new IllegalArgumentException("Endpoint name, url and method are required");
+        }
+        if (definition.getFrequencyMs() < 0) {
+            throw new IllegalArgumentException("frequencyMs must not be negative");
+        }
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
+}
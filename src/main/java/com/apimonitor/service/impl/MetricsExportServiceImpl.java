@@ -0,0 +1,175 @@
+package com.apimonitor.service.impl;
+
+import com.apimonitor.config.ApiConfig;
+import com.apimonitor.dto.ExportFormat;
+import com.apimonitor.dto.MetricsExportRow;
+import com.apimonitor.model.impl.ApiEndpointImpl;
+import com.apimonitor.repository.ApiEndpointRepository;
+import com.apimonitor.repository.MetricsRepository;
+import com.apimonitor.service.MetricsExportService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.Optional;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+/**
+ * Выгрузка сырых метрик в NDJSON или CSV.
+ * <p>
+ * Строки читаются потоком из курсора БД в транзакции только для чтения и сразу пишутся в ответ;
+ * каждые {@link #FLUSH_ROWS} строк буфер сбрасывается клиенту. Поэтому память не зависит
+ * от длины периода, а клиент начинает получать данные сразу.
+ * <p>
+ * Выгрузка занимает соединение с БД на всё время чтения, поэтому одновременно выполняется
+ * не больше {@code api.export.max-concurrent} выгрузок (места выдаёт {@link #tryAcquire()}),
+ * а транзакция чтения ограничена таймаутом {@code api.export.timeout-ms}.
+ */
+@Slf4j
+@Service
+public class MetricsExportServiceImpl implements MetricsExportService {
+
+    private static final int FLUSH_ROWS = 1000;
+    private static final int BUFFER_CHARS = 64 * 1024;
+
+    static final String CSV_HEADER = "id,api_name,api_url,timestamp,status_code,success,response_time_ms,"
+            + "response_time_us,dns_us,connect_us,tls_us,ttfb_us,download_us,error_message";
+
+    private final MetricsRepository metricsRepository;
+    private final ApiEndpointRepository endpointRepository;
+    private final ObjectWriter jsonWriter;
+    private final TransactionTemplate readOnlyTransaction;
+    private final int maxConcurrent;
+    private final Semaphore slots;
+    private final long timeoutMs;
+
+    public MetricsExportServiceImpl(MetricsRepository metricsRepository,
+                                    ApiEndpointRepository endpointRepository,
+                                    ObjectMapper objectMapper,
+                                    PlatformTransactionManager transactionManager,
+                                    ApiConfig apiConfig) {
+        ApiConfig.Export settings = apiConfig.getExport();
+        this.metricsRepository = metricsRepository;
+        this.endpointRepository = endpointRepository;
+        this.jsonWriter = objectMapper.writerFor(MetricsExportRow.class);
+        this.maxConcurrent = Math.max(1, settings.getMaxConcurrent());
+        this.slots = new Semaphore(maxConcurrent);
+        this.timeoutMs = Math.max(1, settings.getTimeoutMs());
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        // таймаут транзакции задаётся в секундах, округляем вверх
+        this.readOnlyTransaction.setTimeout((int) Math.min(Integer.MAX_VALUE, (timeoutMs + 999) / 1000));
+    }
+
+    @Override
+    public Optional<Slot> tryAcquire() {
+        if (!slots.tryAcquire()) {
+            log.warn("Выгрузка отклонена: все {} мест заняты", maxConcurrent);
+            return Optional.empty();
+        }
+        AtomicBoolean released = new AtomicBoolean();
+        return Optional.of(new Slot() {
+            @Override
+            public long timeoutMs() {
+                return timeoutMs;
+            }
+
+            @Override
+            public void close() {
+                if (released.compareAndSet(false, true)) {
+                    slots.release();
+                }
+            }
+        });
+    }
+
+    @Override
+    public long export(String apiName, LocalDateTime from, LocalDateTime to, ExportFormat format, OutputStream out)
+            throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_CHARS);
+        if (format == ExportFormat.CSV) {
+            writer.write(CSV_HEADER);
+            writer.write('\n');
+        }
+        long rows;
+        try {
+            rows = readOnlyTransaction.execute(status -> {
+                try (Stream<MetricsExportRow> stream = open(apiName, from, to)) {
+                    return write(stream.iterator(), format, writer);
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            });
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+        writer.flush();
+        log.info("Выгружено метрик: {} ({}, apiName={}, from={}, to={})", rows, format, apiName, from, to);
+        return rows;
+    }
+
+    private Stream<MetricsExportRow> open(String apiName, LocalDateTime from, LocalDateTime to) {
+        if (apiName == null) {
+            return metricsRepository.streamForExport(from, to);
+        }
+        Optional<Long> endpointId = endpointRepository.findByName(apiName).map(ApiEndpointImpl::getId);
+        return endpointId
+                .map(id -> metricsRepository.streamForExportByEndpoint(id, from, to))
+                .orElseGet(Stream::empty);
+    }
+
+    private long write(Iterator<MetricsExportRow> rows, ExportFormat format, Writer writer) throws IOException {
+        long count = 0;
+        while (rows.hasNext()) {
+            MetricsExportRow row = rows.next();
+            if (format == ExportFormat.CSV) {
+                writeCsv(row, writer);
+            } else {
+                writer.write(jsonWriter.writeValueAsString(row));
+            }
+            writer.write('\n');
+            if (++count % FLUSH_ROWS == 0) {
+                writer.flush();
+            }
+        }
+        return count;
+    }
+
+    private static void writeCsv(MetricsExportRow row, Writer writer) throws IOException {
+        Object[] values = {row.id(), row.apiName(), row.apiUrl(), row.timestamp(), row.statusCode(), row.success(),
+                row.responseTimeMs(), row.responseTimeUs(), row.dnsUs(), row.connectUs(), row.tlsUs(), row.ttfbUs(),
+                row.downloadUs(), row.errorMessage()};
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            if (values[i] != null) {
+                writer.write(csvField(values[i].toString()));
+            }
+        }
+    }
+
+    /**
+     * Экранирует поле CSV: поля с запятой, кавычкой или переводом строки заключаются в кавычки.
+     */
+    static String csvField(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
@@ -0,0 +1,251 @@
+package com.apimonitor.service.impl;
+
+import com.apimonitor.config.ApiConfig;
+import com.apimonitor.model.impl.MetricsAggregate;
+import com.apimonitor.repository.MetricsRollupRepository;
+import com.apimonitor.repository.MetricsRollupRepository.BucketKey;
+import com.apimonitor.repository.MetricsRollupRepository.Resolution;
+import com.apimonitor.service.MetricsRollupService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Иерархическая свёртка метрик: сырые строки → минутные агрегаты → часовые агрегаты.
+ * <p>
+ * Для каждого разрешения хранится граница, до которой оно уже свёрнуто. Свёртка идёт
+ * порциями, каждая порция записывается вместе с новой границей в одной транзакции,
+ * поэтому после сбоя она продолжается с того же места без повторов и пропусков.
+ * Минута сворачивается только спустя {@code api.rollup.lag-ms}, чтобы дождаться
+ * отложенной записи метрик.
+ * <p>
+ * При чтении период делится на части: внутренние целые часы читаются из часовых агрегатов,
+ * оставшиеся целые минуты — из минутных, а края периода и ещё не свёрнутый хвост — из сырых метрик.
+ */
+@Slf4j
+@Service
+public class MetricsRollupServiceImpl implements MetricsRollupService {
+
+    /**
+     * Разрешения от грубого к точному.
+     */
+    private static final Resolution[] LEVELS = {Resolution.HOUR, Resolution.MINUTE};
+
+    private static final Duration MINUTE_CHUNK = Duration.ofHours(1);
+    private static final Duration HOUR_CHUNK = Duration.ofDays(1);
+
+    private final MetricsRollupRepository rollupRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ApiConfig.Rollup settings;
+
+    public MetricsRollupServiceImpl(MetricsRollupRepository rollupRepository,
+                                    PlatformTransactionManager transactionManager,
+                                    ApiConfig apiConfig) {
+        this.rollupRepository = rollupRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.settings = apiConfig.getRollup();
+    }
+
+    @Override
+    public void rollUp() {
+        rollUp(LocalDateTime.now());
+    }
+
+    /**
+     * Выполняет свёртку относительно указанного момента.
+     */
+    public void rollUp(LocalDateTime now) {
+        LocalDateTime minuteTarget = now.minus(Duration.ofMillis(settings.getLagMs())).truncatedTo(Resolution.MINUTE.unit());
+        LocalDateTime minuteWatermark = rollUpMinutes(minuteTarget);
+        rollUpHours(minuteWatermark.truncatedTo(Resolution.HOUR.unit()));
+
+        int minutesDeleted = rollupRepository.deleteBucketsBefore(Resolution.MINUTE,
+                now.minusDays(settings.getMinuteRetentionDays()));
+        int hoursDeleted = rollupRepository.deleteBucketsBefore(Resolution.HOUR,
+                now.minusDays(settings.getHourRetentionDays()));
+        if (minutesDeleted > 0 || hoursDeleted > 0) {
+            log.info("Удалено устаревших агрегатов: минутных {}, часовых {}", minutesDeleted, hoursDeleted);
+        }
+    }
+
+    @Override
+    public Optional<LocalDateTime> findEarliestTimestamp() {
+        return Stream.of(rollupRepository.findEarliestBucket(Resolution.HOUR),
+                        rollupRepository.findEarliestBucket(Resolution.MINUTE),
+                        rollupRepository.findEarliestRawTimestamp())
+                .flatMap(Optional::stream)
+                .min(LocalDateTime::compareTo);
+    }
+
+    @Override
+    public Map<Long, MetricsAggregate> aggregateByEndpoint(Long endpointId, LocalDateTime from, LocalDateTime to,
+                                                           boolean toInclusive) {
+        Map<Long, MetricsAggregate> result = new HashMap<>();
+        Function<Long, MetricsAggregate> target = id -> result.computeIfAbsent(id, k -> new MetricsAggregate());
+        for (Segment segment : plan(from, to, toInclusive, 0)) {
+            if (segment.resolution() == null) {
+                // сырые края периода группируются в БД, в память попадают только группы
+                rollupRepository.aggregateRaw(endpointId, segment.from(), segment.to(), segment.toInclusive(), target);
+            } else {
+                rollupRepository.foldBuckets(segment.resolution(), endpointId, segment.from(), segment.to(),
+                        (id, timestamp) -> target.apply(id));
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public MetricsAggregate aggregate(Long endpointId, LocalDateTime from, LocalDateTime to, boolean toInclusive) {
+        MetricsAggregate total = new MetricsAggregate();
+        for (Segment segment : plan(from, to, toInclusive, 0)) {
+            if (segment.resolution() == null) {
+                rollupRepository.aggregateRawTotal(endpointId, segment.from(), segment.to(), segment.toInclusive(), total);
+            } else {
+                rollupRepository.foldBuckets(segment.resolution(), endpointId, segment.from(), segment.to(),
+                        (id, timestamp) -> total);
+            }
+        }
+        return total;
+    }
+
+    @Override
+    public Map<LocalDateTime, Map<Long, MetricsAggregate>> aggregateByBucket(Long endpointId, Resolution resolution,
+                                                                             LocalDateTime from, LocalDateTime to) {
+        Map<LocalDateTime, Map<Long, MetricsAggregate>> result = new HashMap<>();
+        BiFunction<Long, LocalDateTime, MetricsAggregate> target = (id, timestamp) -> result
+                .computeIfAbsent(timestamp.truncatedTo(resolution.unit()), t -> new HashMap<>())
+                .computeIfAbsent(id, k -> new MetricsAggregate());
+        // более грубые агрегаты не делятся на интервалы запрошенного разрешения
+        int firstLevel = Arrays.asList(LEVELS).indexOf(resolution);
+        for (Segment segment : plan(from, to, false, firstLevel)) {
+            if (segment.resolution() == null) {
+                rollupRepository.foldRaw(endpointId, segment.from(), segment.to(), segment.toInclusive(), target);
+            } else {
+                rollupRepository.foldBuckets(segment.resolution(), endpointId, segment.from(), segment.to(), target);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Делит период {@code [from, to]} на части, каждая из которых читается из самого грубого
+     * доступного разрешения.
+     *
+     * @return части периода по возрастанию времени
+     */
+    public List<Segment> plan(LocalDateTime from, LocalDateTime to) {
+        return plan(from, to, true, 0);
+    }
+
+    private List<Segment> plan(LocalDateTime from, LocalDateTime to, boolean toInclusive, int firstLevel) {
+        Map<Resolution, LocalDateTime> watermarks = new EnumMap<>(Resolution.class);
+        for (int level = firstLevel; level < LEVELS.length; level++) {
+            Resolution resolution = LEVELS[level];
+            rollupRepository.findWatermark(resolution).ifPresent(w -> watermarks.put(resolution, w));
+        }
+        List<Segment> segments = new ArrayList<>();
+        cover(from, to, toInclusive, firstLevel, watermarks, segments);
+        return segments;
+    }
+
+    private void cover(LocalDateTime from, LocalDateTime to, boolean toInclusive, int level,
+                       Map<Resolution, LocalDateTime> watermarks, List<Segment> out) {
+        if (toInclusive ? from.isAfter(to) : !from.isBefore(to)) {
+            return;
+        }
+        if (level == LEVELS.length) {
+            out.add(new Segment(null, from, to, toInclusive));
+            return;
+        }
+        Resolution resolution = LEVELS[level];
+        LocalDateTime watermark = watermarks.get(resolution);
+        if (watermark != null) {
+            LocalDateTime start = ceil(from, resolution);
+            LocalDateTime end = min(to.truncatedTo(resolution.unit()), watermark);
+            if (start.isBefore(end)) {
+                cover(from, start, false, level + 1, watermarks, out);
+                out.add(new Segment(resolution, start, end, false));
+                cover(end, to, toInclusive, level + 1, watermarks, out);
+                return;
+            }
+        }
+        cover(from, to, toInclusive, level + 1, watermarks, out);
+    }
+
+    private LocalDateTime rollUpMinutes(LocalDateTime target) {
+        LocalDateTime watermark = rollupRepository.findWatermark(Resolution.MINUTE)
+                .or(() -> rollupRepository.findEarliestRawTimestamp().map(t -> t.truncatedTo(Resolution.MINUTE.unit())))
+                .orElse(target);
+        while (watermark.isBefore(target)) {
+            LocalDateTime start = watermark;
+            LocalDateTime end = min(start.plus(MINUTE_CHUNK), target);
+            transactionTemplate.executeWithoutResult(status -> {
+                Map<BucketKey, MetricsAggregate> buckets = new HashMap<>();
+                rollupRepository.foldRaw(null, start, end, false, bucketsOf(buckets, Resolution.MINUTE));
+                rollupRepository.insertBuckets(Resolution.MINUTE, buckets);
+                rollupRepository.saveWatermark(Resolution.MINUTE, end);
+                log.debug("Свёрнуто в минутные агрегаты [{}, {}): {}", start, end, buckets.size());
+            });
+            watermark = end;
+        }
+        return watermark;
+    }
+
+    private void rollUpHours(LocalDateTime target) {
+        LocalDateTime watermark = rollupRepository.findWatermark(Resolution.HOUR)
+                .or(() -> rollupRepository.findEarliestBucket(Resolution.MINUTE).map(t -> t.truncatedTo(Resolution.HOUR.unit())))
+                .orElse(target);
+        while (watermark.isBefore(target)) {
+            LocalDateTime start = watermark;
+            LocalDateTime end = min(start.plus(HOUR_CHUNK), target);
+            transactionTemplate.executeWithoutResult(status -> {
+                Map<BucketKey, MetricsAggregate> buckets = new HashMap<>();
+                rollupRepository.foldBuckets(Resolution.MINUTE, null, start, end, bucketsOf(buckets, Resolution.HOUR));
+                rollupRepository.insertBuckets(Resolution.HOUR, buckets);
+                rollupRepository.saveWatermark(Resolution.HOUR, end);
+                log.debug("Свёрнуто в часовые агрегаты [{}, {}): {}", start, end, buckets.size());
+            });
+            watermark = end;
+        }
+    }
+
+    private static BiFunction<Long, LocalDateTime, MetricsAggregate> bucketsOf(
+            Map<BucketKey, MetricsAggregate> buckets, Resolution resolution) {
+        return (id, timestamp) -> buckets.computeIfAbsent(
+                new BucketKey(id, timestamp.truncatedTo(resolution.unit())), k -> new MetricsAggregate());
+    }
+
+    private static LocalDateTime ceil(LocalDateTime time, Resolution resolution) {
+        LocalDateTime floor = time.truncatedTo(resolution.unit());
+        return floor.equals(time) ? floor : floor.plus(1, resolution.unit());
+    }
+
+    private static LocalDateTime min(LocalDateTime a, LocalDateTime b) {
+        return a.isBefore(b) ? a : b;
+    }
+
+    /**
+     * Часть периода и источник, из которого она читается.
+     *
+     * @param resolution  разрешение агрегатов или {@code null} для сырых метрик
+     * @param from        начало (включительно)
+     * @param to          конец
+     * @param toInclusive включается ли конец
+     */
+    public record Segment(Resolution resolution, LocalDateTime from, LocalDateTime to, boolean toInclusive) {
+    }
+}
@@ -1,19 +1,32 @@
 package com.apimonitor.service.impl;
 
+import com.apimonitor.config.ApiConfig;
 import com.apimonitor.dto.ApiMetricsReport;
+import com.apimonitor.dto.MetricsFilter;
+import com.apimonitor.dto.MetricsPage;
+import com.apimonitor.model.impl.ApiEndpointImpl;
 import com.apimonitor.model.impl.ApiMetricsImpl;
+import com.apimonitor.model.impl.MetricsAggregate;
+import com.apimonitor.model.impl.MetricsAggregate.Phase;
+import com.apimonitor.repository.ApiEndpointRepository;
 import com.apimonitor.repository.MetricsRepository;
+import com.apimonitor.repository.MetricsSpecifications;
 import com.apimonitor.service.MetricsService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 @Slf4j
 @Service
@@ -21,32 +34,65 @@ import java.util.stream.Collectors;
 public class MetricsServiceImpl implements MetricsService {
 
     private final MetricsRepository metricsRepository;
+    private final ApiEndpointRepository endpointRepository;
+    private final ReportCache reportCache;
+    private final ReportExecutor reportExecutor;
+    private final ApiConfig apiConfig;
 
     /**
-     * Возвращает все записи метрик без фильтрации.
+     * Возвращает страницу метрик от новых к старым. Страница выбирается по ключу {@code (timestamp, id)}
+     * после курсора, а не смещением, поэтому любая страница читается из индекса так же быстро, как первая.
+     * Размер страницы ограничен {@code api.metrics-page.max-size}.
      *
-     * @return список всех {@link ApiMetricsImpl}
+     * @param filter фильтры (все необязательны и применяются независимо)
+     * @param cursor курсор из предыдущей страницы или {@code null} для первой
+     * @param size   запрошенный размер страницы или {@code null} для размера по умолчанию
+     * @return страница метрик и курсор следующей страницы
+     * @throws IllegalArgumentException если курсор повреждён или размер не положителен
      */
     @Override
-    public List<ApiMetricsImpl> findAll() {
-        return metricsRepository.findAll();
-    }
+    @Transactional(readOnly = true)
+    public MetricsPage findPage(MetricsFilter filter, String cursor, Integer size) {
+        int pageSize = pageSize(size);
+        Specification<ApiMetricsImpl> spec = MetricsSpecifications.fetchEndpoint();
+        if (filter.apiName() != null) {
+            Optional<ApiEndpointImpl> endpoint = endpointRepository.findByName(filter.apiName());
+            if (endpoint.isEmpty()) {
+                return MetricsPage.builder().items(List.of()).build();
+            }
+            spec = spec.and(MetricsSpecifications.endpointId(endpoint.get().getId()));
+        }
+        if (filter.from() != null) {
+            spec = spec.and(MetricsSpecifications.from(filter.from()));
+        }
+        if (filter.to() != null) {
+            spec = spec.and(MetricsSpecifications.to(filter.to()));
+        }
+        if (filter.statusCode() != null) {
+            spec = spec.and(MetricsSpecifications.statusCode(filter.statusCode()));
+        }
+        if (filter.success() != null) {
+            spec = spec.and(MetricsSpecifications.success(filter.success()));
+        }
+        if (cursor != null) {
+            MetricsCursor position = MetricsCursor.decode(cursor);
+            spec = spec.and(MetricsSpecifications.before(position.timestamp(), position.id()));
+        }
 
-    /**
-     * Возвращает записи метрик по заданному имени API и диапазону времени.
-     * Если один из параметров apiName, from или to равен null, возвращает все записи.
-     *
-     * @param apiName имя API для фильтрации (точное совпадение)
-     * @param from    начало временного диапазона (включительно)
-     * @param to      конец временного диапазона (включительно)
-     * @return отфильтрованный список {@link ApiMetricsImpl}
-     */
-    @Override
-    public List<ApiMetricsImpl> findByFilter(String apiName, LocalDateTime from, LocalDateTime to) {
-        if (apiName != null && from != null && to != null) {
-            return metricsRepository.findByApiNameAndTimestampBetween(apiName, from, to);
+        // лишняя строка показывает, есть ли следующая страница
+        List<ApiMetricsImpl> rows = metricsRepository.findBy(spec, query -> query
+                .sortBy(MetricsSpecifications.KEYSET_ORDER)
+                .limit(pageSize + 1)
+                .all());
+        if (rows.size() <= pageSize) {
+            return MetricsPage.builder().items(rows).build();
         }
-        return findAll();
+        List<ApiMetricsImpl> items = new ArrayList<>(rows.subList(0, pageSize));
+        ApiMetricsImpl last = items.get(pageSize - 1);
+        return MetricsPage.builder()
+                .items(items)
+                .nextCursor(new MetricsCursor(last.getTimestamp(), last.getId()).encode())
+                .build();
     }
 
     /**
@@ -59,8 +105,7 @@ public class MetricsServiceImpl implements MetricsService {
      */
     @Override
     public double getAverageResponseTime(String apiName, LocalDateTime from, LocalDateTime to) {
-        Double avg = metricsRepository.findAverageResponseTime(apiName, from, to);
-        return avg != null ? avg : 0.0;
+        return aggregateFor(apiName, from, to).avgMs();
     }
 
     /**
@@ -74,73 +119,96 @@ public class MetricsServiceImpl implements MetricsService {
      */
     @Override
     public long getErrorCount(String apiName, LocalDateTime from, LocalDateTime to) {
-        return metricsRepository
-                .countByApiNameAndTimestampBetweenAndSuccessFalse(apiName, from, to);
+        return aggregateFor(apiName, from, to).getErrorCount();
     }
 
     /**
-     * Строит список агрегированных отчётов по каждому уникальному API-имени
-     * в заданном временном диапазоне.
+     * Строит список агрегированных отчётов по каждому эндпоинту
+     * в заданном временном диапазоне и ждёт завершения построения.
      *
      * @param from начало периода (включительно)
      * @param to   конец периода (включительно)
      * @return список {@link ApiMetricsReport} с полной статистикой по каждому API
+     * @see #buildReportsAsync(LocalDateTime, LocalDateTime)
      */
     @Override
-    @Transactional(readOnly = true)
     public List<ApiMetricsReport> buildReports(LocalDateTime from, LocalDateTime to) {
-        // получаем все разные apiName
-        List<String> names = metricsRepository.findDistinctApiName();
-
-        return names.stream()
-                .map(name -> {
-                    // достаём все метрики по имени и времени
-                    List<ApiMetricsImpl> metrics = metricsRepository
-                            .findByApiNameAndTimestampBetween(name, from, to);
-                    return buildReportForApi(name, from, to, metrics);
-                })
-                .collect(Collectors.toList());
+        try {
+            return buildReportsAsync(from, to).join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw ex;
+        }
     }
 
-    private ApiMetricsReport buildReportForApi(String name, LocalDateTime from, LocalDateTime to, List<ApiMetricsImpl> metrics) {
-        long total = metrics.size();
-        long errorCount = metrics.stream()
-                .filter(m -> !m.isSuccess())
-                .count();
-
-        double avg = metrics.stream()
-                .mapToLong(ApiMetricsImpl::getResponseTimeMs)
-                .average()
-                .orElse(0.0);
-        double min = metrics.stream()
-                .mapToLong(ApiMetricsImpl::getResponseTimeMs)
-                .min()
-                .orElse(0L);
-        double max = metrics.stream()
-                .mapToLong(ApiMetricsImpl::getResponseTimeMs)
-                .max()
-                .orElse(0L);
+    /**
+     * Строит отчёты по всем эндпоинтам одной задачей {@link ReportExecutor}. Агрегаты всех эндпоинтов
+     * читаются сразу, с группировкой по эндпоинту: из минутных и часовых агрегатов там, где они
+     * покрывают период, и из сырых метрик на краях периода, по одному запросу на край независимо
+     * от числа эндпоинтов; агрегаты закрытых часов и минут берутся из {@link ReportCache}.
+     * Отчёты из готовых агрегатов собираются в памяти и отдельных задач не требуют. Исполнитель
+     * ограничивает число одновременных отчётов, крайний срок и прерывает построение при отмене.
+     *
+     * @param from начало периода (включительно)
+     * @param to   конец периода (включительно)
+     * @return отчёты в порядке эндпоинтов; отмена прерывает незавершённые отчёты
+     */
+    @Override
+    public CompletableFuture<List<ApiMetricsReport>> buildReportsAsync(LocalDateTime from, LocalDateTime to) {
+        List<ApiEndpointImpl> endpoints = endpointRepository.findAll();
+        if (endpoints.isEmpty()) {
+            return CompletableFuture.completedFuture(List.of());
+        }
+        return reportExecutor.submit(() -> {
+            Map<Long, MetricsAggregate> byEndpoint = reportCache.aggregateByEndpoint(null, from, to);
+            return endpoints.stream()
+                    .map(endpoint -> buildReportForApi(endpoint, from, to,
+                            byEndpoint.getOrDefault(endpoint.getId(), new MetricsAggregate())))
+                    .toList();
+        });
+    }
 
-        Map<Integer, Long> statusCodeDistribution = metrics.stream()
-                .collect(Collectors.groupingBy(
-                        ApiMetricsImpl::getStatusCode,
-                        Collectors.counting()
-                ));
+    private int pageSize(Integer size) {
+        ApiConfig.MetricsPage settings = apiConfig.getMetricsPage();
+        if (size == null) {
+            return Math.min(settings.getDefaultSize(), settings.getMaxSize());
+        }
+        if (size < 1) {
+            throw new IllegalArgumentException("Page size must be positive: " + size);
+        }
+        return Math.min(size, settings.getMaxSize());
+    }
 
-        String apiUrl = metrics.isEmpty()
-                ? null
-                : metrics.getFirst().getApiUrl();
+    private MetricsAggregate aggregateFor(String apiName, LocalDateTime from, LocalDateTime to) {
+        return endpointRepository.findByName(apiName)
+                .map(endpoint -> reportCache.aggregate(endpoint.getId(), from, to))
+                .orElseGet(MetricsAggregate::new);
+    }
 
+    private ApiMetricsReport buildReportForApi(ApiEndpointImpl endpoint, LocalDateTime from, LocalDateTime to,
+                                               MetricsAggregate aggregate) {
         // собираем DTO
         return ApiMetricsReport.builder()
-                .apiName(name)
-                .apiUrl(apiUrl)
-                .totalRequests(total)
-                .errorCount(errorCount)
-                .avgResponseMs(avg)
-                .minResponseMs(min)
-                .maxResponseMs(max)
-                .statusCodeDistribution(statusCodeDistribution)
+                .apiName(endpoint.getName())
+                .apiUrl(endpoint.getUrl())
+                .totalRequests(aggregate.getCount())
+                .errorCount(aggregate.getErrorCount())
+                .avgResponseMs(aggregate.avgMs())
+                .minResponseMs(aggregate.minMs())
+                .maxResponseMs(aggregate.maxMs())
+                .p50Ms(aggregate.percentileMs(50))
+                .p90Ms(aggregate.percentileMs(90))
+                .p95Ms(aggregate.percentileMs(95))
+                .p99Ms(aggregate.percentileMs(99))
+                .p999Ms(aggregate.percentileMs(99.9))
+                .avgDnsMs(aggregate.phaseAvgMs(Phase.DNS))
+                .avgConnectMs(aggregate.phaseAvgMs(Phase.CONNECT))
+                .avgTlsMs(aggregate.phaseAvgMs(Phase.TLS))
+                .avgTtfbMs(aggregate.phaseAvgMs(Phase.TTFB))
+                .avgDownloadMs(aggregate.phaseAvgMs(Phase.DOWNLOAD))
+                .statusCodeDistribution(new HashMap<>(aggregate.getStatusCounts()))
                 .reportStartTime(from)
                 .reportEndTime(to)
                 .headers(Collections.emptyMap()) // или получить из endpoint, если доступно
@@ -0,0 +1,229 @@
+package com.apimonitor.service.impl;
+
+import com.apimonitor.config.ApiConfig;
+import com.apimonitor.model.impl.ApiMetricsImpl;
+import com.apimonitor.model.impl.MetricsAggregate;
+import com.apimonitor.repository.MetricsRollupRepository.Resolution;
+import com.apimonitor.service.MetricsRollupService;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Кэш агрегатов для отчётов, выровненный по часам и минутам.
+ * <p>
+ * Период отчёта делится так же, как при чтении свёрток: внутренние целые часы, оставшиеся
+ * целые минуты и края. Агрегат закрытого интервала (закончившегося раньше, чем
+ * {@code api.rollup.lag-ms} назад) хранится под ключом «эндпоинт, разрешение, начало интервала»
+ * без срока жизни; открытые интервалы и края периода каждый раз читаются из БД. Промахи
+ * по соседним интервалам загружаются одним запросом.
+ * <p>
+ * Кэш ограничен по весу и вытесняет записи по W-TinyLFU (Caffeine). Запись запоздавших метрик
+ * в закрытый интервал сбрасывает его через {@link #invalidate(Collection)} из потока записи метрик.
+ * Попадания и промахи публикуются метриками Micrometer {@code cache.gets} с тегом {@code cache=reports}.
+ */
+@Slf4j
+@Component
+public class ReportCache {
+
+    /**
+     * Разрешения от грубого к точному.
+     */
+    private static final Resolution[] LEVELS = {Resolution.HOUR, Resolution.MINUTE};
+
+    private final MetricsRollupService rollupService;
+    private final long settleMs;
+    private final Cache<Key, Map<Long, MetricsAggregate>> cache;
+
+    public ReportCache(MetricsRollupService rollupService, ApiConfig apiConfig, MeterRegistry meterRegistry) {
+        this.rollupService = rollupService;
+        this.settleMs = apiConfig.getRollup().getLagMs();
+        ApiConfig.ReportCache settings = apiConfig.getReportCache();
+        if (settings.isEnabled()) {
+            this.cache = Caffeine.newBuilder()
+                    .maximumWeight(settings.getMaxWeight())
+                    .weigher(ReportCache::weigh)
+                    .recordStats()
+                    .build();
+            CaffeineCacheMetrics.monitor(meterRegistry, cache, "reports");
+        } else {
+            this.cache = null;
+        }
+    }
+
+    /**
+     * Агрегирует метрики за период {@code [from, to]} по эндпоинтам, беря закрытые интервалы из кэша.
+     *
+     * @param endpointId эндпоинт или {@code null} для всех
+     * @return агрегаты по id эндпоинта (только эндпоинты с данными)
+     */
+    public Map<Long, MetricsAggregate> aggregateByEndpoint(Long endpointId, LocalDateTime from, LocalDateTime to) {
+        if (cache == null) {
+            return rollupService.aggregateByEndpoint(endpointId, from, to);
+        }
+        Map<Long, MetricsAggregate> result = new HashMap<>();
+        collect(endpointId, from, to, true, 0, settled(), true,
+                id -> result.computeIfAbsent(id, k -> new MetricsAggregate()));
+        return result;
+    }
+
+    /**
+     * Агрегирует метрики за период в один агрегат. Края периода сворачиваются в БД без разбивки
+     * по эндпоинтам, поэтому сводка по всем эндпоинтам стоит по одному запросу на край.
+     *
+     * @param endpointId эндпоинт или {@code null} для всех
+     */
+    public MetricsAggregate aggregate(Long endpointId, LocalDateTime from, LocalDateTime to) {
+        if (cache == null) {
+            return rollupService.aggregate(endpointId, from, to);
+        }
+        MetricsAggregate total = new MetricsAggregate();
+        collect(endpointId, from, to, true, 0, settled(), false, id -> total);
+        return total;
+    }
+
+    /**
+     * Сбрасывает интервалы, в которые попали записанные метрики: их агрегаты устарели.
+     *
+     * @param metrics записанные метрики
+     */
+    public void invalidate(Collection<ApiMetricsImpl> metrics) {
+        if (cache == null || metrics.isEmpty()) {
+            return;
+        }
+        Set<Key> keys = new HashSet<>();
+        for (ApiMetricsImpl metric : metrics) {
+            Long endpointId = metric.getEndpoint() != null ? metric.getEndpoint().getId() : null;
+            for (Resolution resolution : LEVELS) {
+                LocalDateTime bucket = metric.getTimestamp().truncatedTo(resolution.unit());
+                keys.add(new Key(null, resolution, bucket));
+                if (endpointId != null) {
+                    keys.add(new Key(endpointId, resolution, bucket));
+                }
+            }
+        }
+        cache.invalidateAll(keys);
+    }
+
+    /**
+     * Сбрасывает весь кэш.
+     */
+    public void invalidateAll() {
+        if (cache != null) {
+            cache.invalidateAll();
+        }
+    }
+
+    /**
+     * @param byEndpoint нужна ли вызывающему разбивка по эндпоинтам для некэшируемых частей периода
+     * @param target     агрегат, в который добавляются метрики эндпоинта
+     */
+    private void collect(Long endpointId, LocalDateTime from, LocalDateTime to, boolean toInclusive, int level,
+                         LocalDateTime settled, boolean byEndpoint, Function<Long, MetricsAggregate> target) {
+        if (toInclusive ? from.isAfter(to) : !from.isBefore(to)) {
+            return;
+        }
+        if (level == LEVELS.length) {
+            if (byEndpoint) {
+                rollupService.aggregateByEndpoint(endpointId, from, to, toInclusive)
+                        .forEach((id, aggregate) -> target.apply(id).merge(aggregate));
+            } else {
+                target.apply(endpointId).merge(rollupService.aggregate(endpointId, from, to, toInclusive));
+            }
+            return;
+        }
+        Resolution resolution = LEVELS[level];
+        LocalDateTime start = ceil(from, resolution);
+        LocalDateTime end = min(to.truncatedTo(resolution.unit()), settled.truncatedTo(resolution.unit()));
+        if (!start.isBefore(end)) {
+            collect(endpointId, from, to, toInclusive, level + 1, settled, byEndpoint, target);
+            return;
+        }
+        collect(endpointId, from, start, false, level + 1, settled, byEndpoint, target);
+        List<Key> keys = new ArrayList<>();
+        for (LocalDateTime bucket = start; bucket.isBefore(end); bucket = bucket.plus(1, resolution.unit())) {
+            keys.add(new Key(endpointId, resolution, bucket));
+        }
+        cache.getAll(keys, this::load).values().forEach(bucket -> bucket.forEach(
+                (id, aggregate) -> target.apply(id).merge(aggregate)));
+        collect(endpointId, end, to, toInclusive, level + 1, settled, byEndpoint, target);
+    }
+
+    /**
+     * Загружает отсутствующие в кэше интервалы: каждый непрерывный ряд — одним обращением к свёрткам.
+     * Интервалы без данных тоже кэшируются (пустыми).
+     */
+    private Map<Key, Map<Long, MetricsAggregate>> load(Set<? extends Key> missing) {
+        List<Key> sorted = missing.stream().map(Key.class::cast).sorted().toList();
+        Map<Key, Map<Long, MetricsAggregate>> loaded = new HashMap<>();
+        int runStart = 0;
+        for (int i = 1; i <= sorted.size(); i++) {
+            if (i < sorted.size() && sorted.get(i).follows(sorted.get(i - 1))) {
+                continue;
+            }
+            Key first = sorted.get(runStart);
+            Key last = sorted.get(i - 1);
+            Map<LocalDateTime, Map<Long, MetricsAggregate>> buckets = rollupService.aggregateByBucket(
+                    first.endpointId(), first.resolution(), first.bucketStart(), last.bucketEnd());
+            for (Key key : sorted.subList(runStart, i)) {
+                loaded.put(key, buckets.getOrDefault(key.bucketStart(), Map.of()));
+            }
+            runStart = i;
+        }
+        log.debug("Загружено в кэш отчётов интервалов: {}", loaded.size());
+        return loaded;
+    }
+
+    private LocalDateTime settled() {
+        return LocalDateTime.now().minusNanos(settleMs * 1_000_000);
+    }
+
+    private static int weigh(Key key, Map<Long, MetricsAggregate> bucket) {
+        int weight = 1;
+        for (MetricsAggregate aggregate : bucket.values()) {
+            weight += 1 + aggregate.getHistogram().buckets().size() + aggregate.getStatusCounts().size();
+        }
+        return weight;
+    }
+
+    private static LocalDateTime ceil(LocalDateTime time, Resolution resolution) {
+        LocalDateTime floor = time.truncatedTo(resolution.unit());
+        return floor.equals(time) ? floor : floor.plus(1, resolution.unit());
+    }
+
+    private static LocalDateTime min(LocalDateTime a, LocalDateTime b) {
+        return a.isBefore(b) ? a : b;
+    }
+
+    /**
+     * Ключ кэша: эндпоинт ({@code null} — все эндпоинты), разрешение и начало интервала.
+     */
+    record Key(Long endpointId, Resolution resolution, LocalDateTime bucketStart) implements Comparable<Key> {
+
+        LocalDateTime bucketEnd() {
+            return bucketStart.plus(1, resolution.unit());
+        }
+
+        boolean follows(Key previous) {
+            return previous.bucketEnd().equals(bucketStart);
+        }
+
+        @Override
+        public int compareTo(Key other) {
+            return bucketStart.compareTo(other.bucketStart);
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.apimonitor.service.impl;
+
+import com.apimonitor.config.ApiConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Исполнитель построения отчётов на виртуальных потоках.
+ * <p>
+ * Отчёт строится одной задачей ({@link #submit(Supplier)}) в собственном виртуальном потоке,
+ * а число одновременно выполняемых задач всех запросов ограничено {@code api.reports.parallelism}:
+ * каждая задача занимает соединение с БД, поэтому по умолчанию используется половина пула
+ * соединений, а остальные соединения остаются записи метрик и свёртке. Построение ограничено
+ * крайним сроком {@code api.reports.timeout-ms}; при истечении срока или отмене результата
+ * задача прерывается.
+ */
+@Slf4j
+@Component
+public class ReportExecutor {
+
+    private static final int DEFAULT_POOL_SIZE = 10;
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Semaphore permits;
+    private final int parallelism;
+    private final long timeoutMs;
+
+    public ReportExecutor(ApiConfig apiConfig, DataSource dataSource) {
+        ApiConfig.Reports settings = apiConfig.getReports();
+        int poolSize = dataSource instanceof HikariDataSource hikari ? hikari.getMaximumPoolSize() : DEFAULT_POOL_SIZE;
+        this.parallelism = settings.getParallelism() > 0 ? settings.getParallelism() : Math.max(1, poolSize / 2);
+        this.permits = new Semaphore(parallelism);
+        this.timeoutMs = Math.max(1, settings.getTimeoutMs());
+    }
+
+    /**
+     * Выполняет задачу в отдельном виртуальном потоке. Задача ждёт свободного разрешения;
+     * отмена возвращённого {@link CompletableFuture} прерывает её, а по истечении крайнего срока
+     * результат завершается {@link java.util.concurrent.TimeoutException}.
+     *
+     * @param task задача
+     * @param <R>  тип результата
+     * @return результат задачи
+     */
+    public <R> CompletableFuture<R> submit(Supplier<R> task) {
+        CompletableFuture<R> result = new CompletableFuture<>();
+        Future<?> future = executor.submit(() -> run(result, () -> result.complete(runWithPermit(task))));
+        return withDeadline(result, future);
+    }
+
+    /**
+     * @return максимальное число одновременно выполняемых задач
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    private <R> R runWithPermit(Supplier<R> task) throws InterruptedException {
+        permits.acquire();
+        try {
+            return task.get();
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Выполняет задачу, завершая результат ошибкой, если шаг упал или был прерван.
+     */
+    private static void run(CompletableFuture<?> result, Step step) {
+        try {
+            step.run();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            result.completeExceptionally(new CancellationException("Построение отчёта прервано"));
+        } catch (RuntimeException ex) {
+            result.completeExceptionally(ex);
+        }
+    }
+
+    /**
+     * Ограничивает результат крайним сроком и прерывает задачу, если он завершился не успешно.
+     */
+    private <R> CompletableFuture<R> withDeadline(CompletableFuture<R> result, Future<?> future) {
+        result.orTimeout(timeoutMs, TimeUnit.MILLISECONDS).whenComplete((report, ex) -> {
+            if (ex != null) {
+                log.debug("Построение отчёта остановлено, прерываем задачу: {}", ex.toString());
+                future.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    @FunctionalInterface
+    private interface Step {
+        void run() throws InterruptedException;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
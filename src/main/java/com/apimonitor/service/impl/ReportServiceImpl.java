@@ -1,27 +1,52 @@
 package com.apimonitor.service.impl;
 
 import com.apimonitor.dto.ApiMetricsSummary;
-import com.apimonitor.repository.MetricsRepository;
+import com.apimonitor.model.impl.MetricsAggregate;
+import com.apimonitor.model.impl.ApiEndpointImpl;
+import com.apimonitor.repository.ApiEndpointRepository;
+import com.apimonitor.service.EndpointRegistry;
 import com.apimonitor.service.ReportService;
-import lombok.RequiredArgsConstructor;
+import com.apimonitor.service.RollingWindowAggregator;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDateTime;
 import java.util.Optional;
 
 
+/**
+ * Сводки по метрикам. Периоды, покрытые скользящими окнами {@link RollingWindowAggregator},
+ * обслуживаются из памяти; более ранние — из {@link ReportCache} и минутных и часовых свёрток
+ * и сырых метрик в БД.
+ */
 @Service
-@RequiredArgsConstructor
 public class ReportServiceImpl implements ReportService {
 
-    private final MetricsRepository metricsRepository;
+    private final ApiEndpointRepository endpointRepository;
+    private final EndpointRegistry endpointRegistry;
+    private final ReportCache reportCache;
+    private final RollingWindowAggregator rollingWindows;
+    private final TransactionTemplate readOnlyTransaction;
+
+    public ReportServiceImpl(ApiEndpointRepository endpointRepository,
+                             EndpointRegistry endpointRegistry,
+                             ReportCache reportCache,
+                             RollingWindowAggregator rollingWindows,
+                             PlatformTransactionManager transactionManager) {
+        this.endpointRepository = endpointRepository;
+        this.endpointRegistry = endpointRegistry;
+        this.reportCache = reportCache;
+        this.rollingWindows = rollingWindows;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
 
     /**
      * Формирует сводную метрику (Summary) по одному API или по всем, если apiName == null.
      *
      * @param apiName имя API для фильтрации (точное совпадение).
-     *                Если null — агрегируется по всем записям.
+     *                Если null — агрегируется по всем эндпоинтам.
      * @param from    начало периода (включительно)
      * @param to      конец периода (включительно)
      * @return {@link ApiMetricsSummary} с данными:
@@ -30,43 +55,68 @@ public class ReportServiceImpl implements ReportService {
      *           <li>totalRequests — общее количество запросов;</li>
      *           <li>successfulRequests — количество успешных запросов;</li>
      *           <li>failedRequests — количество неуспешных запросов;</li>
+     *           <li>successRate — доля успешных запросов в процентах;</li>
      *           <li>avgResponseMs — среднее время отклика;</li>
+     *           <li>p50Ms … p999Ms — процентили времени отклика;</li>
      *           <li>summaryGeneratedAt — время формирования сводки.</li>
      *         </ul>
      */
     @Override
-    @Transactional(readOnly = true)
     public ApiMetricsSummary aggregateSummary(
             String apiName,
             LocalDateTime from,
             LocalDateTime to
     ) {
-        // 1. Общее число запросов
-        long total = (apiName != null)
-                ? metricsRepository.countByApiNameAndTimestampBetween(apiName, from, to)
-                : metricsRepository.count();
-
-        // 2. Число неуспешных запросов
-        long failed = (apiName != null)
-                ? metricsRepository.countByApiNameAndTimestampBetweenAndSuccessFalse(apiName, from, to)
-                : metricsRepository.countBySuccessFalse();
+        // 1. Агрегат за период: недавний — из окон в памяти, иначе целые часы и минуты
+        //    из свёрток, края — из сырых метрик
+        MetricsAggregate aggregate;
+        if (apiName != null) {
+            aggregate = findEndpointId(apiName)
+                    .map(endpointId -> aggregate(endpointId, from, to))
+                    .orElseGet(MetricsAggregate::new);
+        } else {
+            aggregate = aggregate(null, from, to);
+        }
 
-        // 3. Число успешных = общее − неуспешные
+        // 2. Число успешных = общее − неуспешные
+        long total = aggregate.getCount();
+        long failed = aggregate.getErrorCount();
         long success = total - failed;
 
-        // 4. Среднее время отклика
-        double avg = (apiName != null)
-                ? Optional.ofNullable(metricsRepository.findAverageResponseTime(apiName, from, to)).orElse(0.0)
-                : Optional.ofNullable(metricsRepository.findOverallAverageResponseTime()).orElse(0.0);
+        // 3. Среднее время отклика; процентили — по гистограмме агрегата
+        double avg = aggregate.avgMs();
 
-        // 5. Сборка DTO через Builder
+        // 4. Сборка DTO через Builder
         return ApiMetricsSummary.builder()
                 .apiName(apiName)
                 .totalRequests(total)
                 .successfulRequests(success)
                 .failedRequests(failed)
+                .successRate(aggregate.successRate())
                 .avgResponseMs(avg)
+                .p50Ms(aggregate.percentileMs(50))
+                .p90Ms(aggregate.percentileMs(90))
+                .p95Ms(aggregate.percentileMs(95))
+                .p99Ms(aggregate.percentileMs(99))
+                .p999Ms(aggregate.percentileMs(99.9))
                 .summaryGeneratedAt(LocalDateTime.now())
                 .build();
     }
-}
\ No newline at end of file
+
+    /**
+     * Агрегат из окон в памяти; транзакция с БД открывается только для периодов, которые окна не покрывают.
+     */
+    private MetricsAggregate aggregate(Long endpointId, LocalDateTime from, LocalDateTime to) {
+        return rollingWindows.aggregate(endpointId, from, to)
+                .orElseGet(() -> readOnlyTransaction.execute(status -> reportCache.aggregate(endpointId, from, to)));
+    }
+
+    /**
+     * Ищет эндпоинт сначала среди активных в памяти, затем (для удалённых) в БД.
+     */
+    private Optional<Long> findEndpointId(String apiName) {
+        return endpointRegistry.find(apiName)
+                .or(() -> endpointRepository.findByName(apiName))
+                .map(ApiEndpointImpl::getId);
+    }
+}
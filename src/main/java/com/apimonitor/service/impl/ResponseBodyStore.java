@@ -0,0 +1,193 @@
+package com.apimonitor.service.impl;
+
+import com.apimonitor.config.ApiConfig;
+import com.apimonitor.model.impl.ApiMetricsImpl;
+import com.apimonitor.model.impl.ApiResponseBodyImpl;
+import com.apimonitor.model.impl.ApiResponseImpl;
+import com.apimonitor.model.impl.CompressionCodec;
+import com.apimonitor.repository.ApiResponseBodyRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.SqlParameterValue;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Types;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Хранилище тел ответов по содержимому.
+ * <p>
+ * Перед записью пакета каждое тело заменяется ссылкой на уже сохранённую строку
+ * {@code api_response_bodies} с тем же ключом содержимого, а новое тело сохраняется один раз.
+ * Идентификаторы недавно встреченных тел держатся в LRU-кэше размером
+ * {@code api.ingest.body-cache-size}, поэтому для повторяющихся тел обращения к БД не нужны.
+ * Новые тела сжимаются кодеком {@code api.ingest.body-codec}.
+ * <p>
+ * В PostgreSQL тело сохраняется одной командой {@code INSERT ... ON CONFLICT DO UPDATE ... RETURNING id},
+ * поэтому одновременная вставка того же тела несколькими экземплярами приложения не приводит
+ * к ошибке уникальности. На других БД тело ищется и при отсутствии сохраняется через JPA.
+ * <p>
+ * Каждое сохранение или повторное использование тела отмечается в {@code last_seen_at}; тело из кэша
+ * отмечается заново не реже раза в {@code api.ingest.body-touch-interval-ms}. Удаление неиспользуемых
+ * тел при обслуживании секций не трогает тела, отмеченные позже суток до границы хранения, поэтому
+ * тело из кэша не может быть удалено, пока на него ссылаются новые ответы. Если тело всё же удалено,
+ * при отметке оно сохраняется заново.
+ * <p>
+ * Вызывается потоком записи метрик внутри транзакции пакета.
+ */
+@Slf4j
+@Component
+public class ResponseBodyStore {
+
+    private static final String UPSERT_SQL = """
+            INSERT INTO api_response_bodies
+                (id, body_hash, stored_length, body_data, body_size, body_truncated, last_seen_at)
+            VALUES (nextval('api_response_bodies_seq'), ?, ?, ?, ?, ?, CURRENT_TIMESTAMP)
+            ON CONFLICT (body_hash, stored_length) DO UPDATE SET last_seen_at = EXCLUDED.last_seen_at
+            RETURNING id
+            """;
+
+    private static final String TOUCH_SQL =
+            "UPDATE api_response_bodies SET last_seen_at = CURRENT_TIMESTAMP WHERE id = ?";
+
+    private final ApiResponseBodyRepository bodyRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final CompressionCodec codec;
+    private final long touchIntervalNanos;
+    private final Map<ContentKey, CachedBody> recent;
+    private Boolean upsertSupported;
+
+    public ResponseBodyStore(ApiResponseBodyRepository bodyRepository, JdbcTemplate jdbcTemplate,
+                             ApiConfig apiConfig) {
+        this.bodyRepository = bodyRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        ApiConfig.Ingest settings = apiConfig.getIngest();
+        this.codec = settings.getBodyCodec();
+        this.touchIntervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, settings.getBodyTouchIntervalMs()));
+        int capacity = Math.max(1, settings.getBodyCacheSize());
+        this.recent = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<ContentKey, CachedBody> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Заменяет тела ответов пакета общими сохранёнными телами.
+     *
+     * @param batch метрики пакета
+     */
+    public synchronized void deduplicate(List<ApiMetricsImpl> batch) {
+        for (ApiMetricsImpl metrics : batch) {
+            ApiResponseImpl response = metrics.getResponse();
+            if (response == null || response.getContent() == null) {
+                continue;
+            }
+            response.setContent(resolve(response.getContent()));
+        }
+    }
+
+    /**
+     * Сбрасывает кэш, например после отката транзакции, в которой были сохранены тела.
+     */
+    public synchronized void evictAll() {
+        recent.clear();
+    }
+
+    private ApiResponseBodyImpl resolve(ApiResponseBodyImpl content) {
+        if (content.getBodyHash() == null) {
+            if (content.getBody() == null) {
+                return null;
+            }
+            byte[] bytes = content.getBody().getBytes(StandardCharsets.UTF_8);
+            content.setBodyHash(sha256(bytes));
+            content.setBodySize((long) bytes.length);
+        }
+        content.setStoredLength(content.getBody() != null ? content.getBody().length() : 0);
+        ContentKey key = new ContentKey(content.getBodyHash(), content.getStoredLength());
+
+        long now = System.nanoTime();
+        CachedBody cached = recent.get(key);
+        if (cached != null) {
+            if (now - cached.seenAtNanos() < touchIntervalNanos) {
+                return bodyRepository.getReferenceById(cached.id());
+            }
+            if (touch(cached.id())) {
+                recent.put(key, new CachedBody(cached.id(), now));
+                return bodyRepository.getReferenceById(cached.id());
+            }
+            log.debug("Тело ответа {} удалено из БД, сохраняем заново", key.hash());
+        }
+        ApiResponseBodyImpl stored = store(key, content);
+        recent.put(key, new CachedBody(stored.getId(), now));
+        return stored;
+    }
+
+    private ApiResponseBodyImpl store(ContentKey key, ApiResponseBodyImpl content) {
+        if (isUpsertSupported()) {
+            content.compress(codec);
+            Long id = jdbcTemplate.queryForObject(UPSERT_SQL, Long.class,
+                    key.hash(),
+                    key.storedLength(),
+                    new SqlParameterValue(Types.BINARY, content.getBodyData()),
+                    new SqlParameterValue(Types.BIGINT, content.getBodySize()),
+                    content.isBodyTruncated());
+            return bodyRepository.getReferenceById(id);
+        }
+        return bodyRepository.findByBodyHashAndStoredLength(key.hash(), key.storedLength())
+                .map(existing -> {
+                    touch(existing.getId());
+                    return existing;
+                })
+                .orElseGet(() -> {
+                    content.compress(codec);
+                    log.debug("Новое тело ответа {} ({} байт, сжато до {})", key.hash(), content.getBodySize(),
+                            content.getBodyData() != null ? content.getBodyData().length : 0);
+                    return bodyRepository.save(content);
+                });
+    }
+
+    /**
+     * Отмечает использование тела.
+     *
+     * @return {@code false}, если тела уже нет в БД
+     */
+    private boolean touch(Long id) {
+        return jdbcTemplate.update(TOUCH_SQL, id) > 0;
+    }
+
+    private boolean isUpsertSupported() {
+        if (upsertSupported == null) {
+            String product = jdbcTemplate.execute(
+                    (ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName());
+            upsertSupported = "PostgreSQL".equalsIgnoreCase(product);
+        }
+        return upsertSupported;
+    }
+
+    private static String sha256(byte[] bytes) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 недоступен", ex);
+        }
+    }
+
+    private record ContentKey(String hash, int storedLength) {
+    }
+
+    /**
+     * Идентификатор тела и момент его последней отметки в {@code last_seen_at}.
+     */
+    private record CachedBody(Long id, long seenAtNanos) {
+    }
+}
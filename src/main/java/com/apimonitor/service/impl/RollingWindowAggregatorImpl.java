@@ -0,0 +1,244 @@
+package com.apimonitor.service.impl;
+
+import com.apimonitor.config.ApiConfig;
+import com.apimonitor.model.impl.LatencyHistogram;
+import com.apimonitor.model.impl.MetricsAggregate;
+import com.apimonitor.service.RollingWindowAggregator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Агрегатор скользящих окон без блокировок.
+ * <p>
+ * Для каждого эндпоинта и для всех эндпоинтов вместе хранится по кольцевому массиву ячеек
+ * на каждое окно ({@link Window}). Ячейка относится к своему интервалу времени и содержит
+ * счётчики {@link LongAdder}, поэтому параллельные проверки не конкурируют за один счётчик,
+ * и непустые ячейки гистограммы времени ответа в формате {@link LatencyHistogram}.
+ * Устаревшая ячейка заменяется новой через CAS при первой записи в её слот.
+ * <p>
+ * Окна покрывают только проверки, записанные этим экземпляром с момента его запуска: более ранние
+ * периоды агрегатор не обслуживает, и сводка за них строится из БД. Проверки других экземпляров,
+ * пишущих в ту же БД, в окна не попадают, поэтому при нескольких экземплярах агрегатор
+ * нужно выключать ({@code api.rolling-window.enabled=false}).
+ * <p>
+ * Границы периода округляются до ячейки окна, покрывающего его начало: 1 секунда для последней
+ * минуты, 5 секунд для последних 5 минут, 1 минута для последнего часа и 15 минут для последних суток.
+ */
+@Service
+public class RollingWindowAggregatorImpl implements RollingWindowAggregator {
+
+    /**
+     * Окна агрегатора: длительность ячейки и число ячеек, покрывающих окно.
+     */
+    enum Window {
+        ONE_MINUTE(TimeUnit.SECONDS.toMillis(1), 60),
+        FIVE_MINUTES(TimeUnit.SECONDS.toMillis(5), 60),
+        ONE_HOUR(TimeUnit.MINUTES.toMillis(1), 60),
+        ONE_DAY(TimeUnit.MINUTES.toMillis(15), 96);
+
+        private final long bucketMs;
+        private final int buckets;
+
+        Window(long bucketMs, int buckets) {
+            this.bucketMs = bucketMs;
+            this.buckets = buckets;
+        }
+    }
+
+    private static final Window[] WINDOWS = Window.values();
+
+    private final boolean enabled;
+    private final Clock clock;
+    private final ZoneId zone;
+    private final long startedAtMs;
+    private final Rings total = new Rings();
+    private final Map<Long, Rings> byEndpoint = new ConcurrentHashMap<>();
+
+    @Autowired
+    public RollingWindowAggregatorImpl(ApiConfig apiConfig) {
+        this(apiConfig, Clock.systemDefaultZone());
+    }
+
+    public RollingWindowAggregatorImpl(ApiConfig apiConfig, Clock clock) {
+        this.enabled = apiConfig.getRollingWindow().isEnabled();
+        this.clock = clock;
+        this.zone = clock.getZone();
+        this.startedAtMs = clock.millis();
+    }
+
+    @Override
+    public void record(Long endpointId, boolean success, long totalUs, LocalDateTime timestamp) {
+        if (!enabled || endpointId == null) {
+            return;
+        }
+        long atMs = toMillis(timestamp);
+        total.add(atMs, success, totalUs);
+        byEndpoint.computeIfAbsent(endpointId, id -> new Rings()).add(atMs, success, totalUs);
+    }
+
+    @Override
+    public Optional<MetricsAggregate> aggregate(Long endpointId, LocalDateTime from, LocalDateTime to) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        long fromMs = toMillis(from);
+        long toMs = Math.min(toMillis(to), clock.millis());
+        if (fromMs < startedAtMs) {
+            return Optional.empty();
+        }
+        Window window = coveringWindow(fromMs);
+        if (window == null) {
+            return Optional.empty();
+        }
+        Rings rings = endpointId != null ? byEndpoint.get(endpointId) : total;
+        if (rings == null || toMs < fromMs) {
+            return Optional.of(new MetricsAggregate());
+        }
+        return Optional.of(rings.ring(window).sum(fromMs / window.bucketMs, toMs / window.bucketMs));
+    }
+
+    /**
+     * Самое мелкое окно, в котором ещё хранится ячейка с началом периода.
+     */
+    private Window coveringWindow(long fromMs) {
+        long nowMs = clock.millis();
+        for (Window window : WINDOWS) {
+            long oldest = nowMs / window.bucketMs - window.buckets;
+            if (fromMs / window.bucketMs >= oldest) {
+                return window;
+            }
+        }
+        return null;
+    }
+
+    private long toMillis(LocalDateTime timestamp) {
+        return timestamp.atZone(zone).toInstant().toEpochMilli();
+    }
+
+    /**
+     * Кольцевые массивы одного эндпоинта (или всех эндпоинтов) по всем окнам.
+     */
+    private static final class Rings {
+        private final Ring[] rings = new Ring[WINDOWS.length];
+
+        private Rings() {
+            for (Window window : WINDOWS) {
+                rings[window.ordinal()] = new Ring(window);
+            }
+        }
+
+        private void add(long atMs, boolean success, long totalUs) {
+            for (Ring ring : rings) {
+                ring.add(atMs, success, totalUs);
+            }
+        }
+
+        private Ring ring(Window window) {
+            return rings[window.ordinal()];
+        }
+    }
+
+    /**
+     * Кольцевой массив ячеек одного окна. Слотов на один больше числа ячеек окна,
+     * чтобы вместе с текущей неполной ячейкой хранилось всё окно целиком.
+     */
+    private static final class Ring {
+        private final long bucketMs;
+        private final AtomicReferenceArray<Bucket> slots;
+
+        private Ring(Window window) {
+            this.bucketMs = window.bucketMs;
+            this.slots = new AtomicReferenceArray<>(window.buckets + 1);
+        }
+
+        private void add(long atMs, boolean success, long totalUs) {
+            long epoch = atMs / bucketMs;
+            int slot = (int) Math.floorMod(epoch, (long) slots.length());
+            Bucket bucket = slots.get(slot);
+            while (bucket == null || bucket.epoch < epoch) {
+                Bucket fresh = new Bucket(epoch);
+                if (slots.compareAndSet(slot, bucket, fresh)) {
+                    bucket = fresh;
+                } else {
+                    bucket = slots.get(slot);
+                }
+            }
+            if (bucket.epoch == epoch) {
+                bucket.add(success, totalUs);
+            }
+            // проверка старше окна (ячейка уже занята более поздним интервалом) не учитывается
+        }
+
+        private MetricsAggregate sum(long fromEpoch, long toEpoch) {
+            long count = 0;
+            long errors = 0;
+            long sumUs = 0;
+            long minUs = Long.MAX_VALUE;
+            long maxUs = Long.MIN_VALUE;
+            Map<Integer, Long> histogram = new HashMap<>();
+            for (int i = 0; i < slots.length(); i++) {
+                Bucket bucket = slots.get(i);
+                if (bucket == null || bucket.epoch < fromEpoch || bucket.epoch > toEpoch) {
+                    continue;
+                }
+                long n = bucket.count.sum();
+                if (n == 0) {
+                    continue;
+                }
+                count += n;
+                errors += bucket.errors.sum();
+                sumUs += bucket.sumUs.sum();
+                minUs = Math.min(minUs, bucket.minUs.get());
+                maxUs = Math.max(maxUs, bucket.maxUs.get());
+                bucket.histogram.forEach((index, adder) -> histogram.merge(index, adder.sum(), Long::sum));
+            }
+            int phases = MetricsAggregate.Phase.values().length;
+            return new MetricsAggregate(count, errors, sumUs, minUs, maxUs,
+                    new long[phases], new long[phases], Map.of(), LatencyHistogram.of(histogram));
+        }
+    }
+
+    /**
+     * Счётчики проверок за один интервал времени.
+     */
+    private static final class Bucket {
+        private final long epoch;
+        private final LongAdder count = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder sumUs = new LongAdder();
+        private final LongAccumulator minUs = new LongAccumulator(Math::min, Long.MAX_VALUE);
+        private final LongAccumulator maxUs = new LongAccumulator(Math::max, Long.MIN_VALUE);
+        /**
+         * Непустые ячейки гистограммы: время ответа одного эндпоинта попадает в немногие ячейки,
+         * поэтому разреженное хранение занимает меньше памяти, чем массив всех ячеек.
+         */
+        private final Map<Integer, LongAdder> histogram = new ConcurrentHashMap<>();
+
+        private Bucket(long epoch) {
+            this.epoch = epoch;
+        }
+
+        private void add(boolean success, long totalUs) {
+            if (!success) {
+                errors.increment();
+            }
+            sumUs.add(totalUs);
+            minUs.accumulate(totalUs);
+            maxUs.accumulate(totalUs);
+            histogram.computeIfAbsent(LatencyHistogram.indexOf(totalUs), index -> new LongAdder()).increment();
+            count.increment();
+        }
+    }
+}
@@ -0,0 +1,403 @@
+package com.apimonitor.service.impl;
+
+import com.apimonitor.config.ApiConfig;
+import com.apimonitor.model.impl.ApiMetricsImpl;
+import com.apimonitor.model.impl.ApiResponseBodyImpl;
+import com.apimonitor.model.impl.ApiResponseImpl;
+import com.apimonitor.repository.MetricsBulkWriter;
+import com.apimonitor.service.MetricsWriter;
+import com.apimonitor.service.RollingWindowAggregator;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Отложенная запись метрик: проверки кладут результаты в ограниченную очередь,
+ * а отдельный поток записи выбирает их пакетами и сохраняет каждый пакет
+ * (метрики, ответы и заголовки) в одной транзакции через {@link MetricsBulkWriter}.
+ * Тела ответов перед записью заменяются общими телами из {@link ResponseBodyStore}.
+ * После фиксации пакета сбрасываются затронутые им интервалы {@link ReportCache}, а его метрики
+ * учитываются в {@link RollingWindowAggregator}: окна в памяти содержат те же проверки, что и БД,
+ * без отброшенных при переполнении очереди и не записанных из-за ошибок.
+ * <p>
+ * Пакет записывается, когда набрано {@code api.ingest.batch-size} метрик или прошло
+ * {@code api.ingest.flush-interval-ms} с начала его сбора. Если очередь переполнена,
+ * проверка ждёт не дольше {@code api.ingest.offer-timeout-ms}, после чего метрика
+ * отбрасывается — задержки БД не останавливают проверки.
+ * <p>
+ * Временные ошибки БД (недоступность соединения, взаимоблокировки, таймауты) повторяются
+ * до {@code api.ingest.max-retries} раз с экспоненциальной задержкой от {@code api.ingest.retry-backoff-ms}.
+ * Если пакет отвергнут из-за данных, он делится пополам и записывается по частям, пока ошибочные
+ * метрики не останутся по одной: отбрасываются и учитываются в {@code metrics.ingest.failed}
+ * только они, а не весь пакет.
+ * <p>
+ * Останавливается после планировщика проверок и перед остановкой дописывает очередь: остановка
+ * будит поток записи маркером в очереди, не дожидаясь конца интервала записи.
+ * <p>
+ * Публикует метрики Micrometer: {@code metrics.ingest.batch.rows} (строк в пакете),
+ * {@code metrics.ingest.flush} (длительность записи пакета), {@code metrics.ingest.queue.size}
+ * и счётчики {@code metrics.ingest.dropped} / {@code metrics.ingest.failed}.
+ */
+@Slf4j
+@Service
+public class WriteBehindMetricsWriter implements MetricsWriter, SmartLifecycle {
+
+    private static final long SHUTDOWN_TIMEOUT_MS = 30_000;
+
+    /**
+     * Маркер остановки: будит поток записи, ожидающий метрик в пустой очереди. В пакет не попадает.
+     */
+    private static final ApiMetricsImpl STOP = new ApiMetricsImpl();
+
+    private final MetricsBulkWriter bulkWriter;
+    private final ResponseBodyStore bodyStore;
+    private final ReportCache reportCache;
+    private final RollingWindowAggregator rollingWindows;
+    private final TransactionTemplate transactionTemplate;
+    private final BlockingQueue<ApiMetricsImpl> queue;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final long offerTimeoutMs;
+    private final int maxRetries;
+    private final long retryBackoffMs;
+
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    private final DistributionSummary batchRows;
+    private final Timer flushTimer;
+    private final Counter droppedCounter;
+    private final Counter failedCounter;
+
+    private volatile boolean running;
+    private Thread writer;
+
+    public WriteBehindMetricsWriter(MetricsBulkWriter bulkWriter,
+                                    ResponseBodyStore bodyStore,
+                                    ReportCache reportCache,
+                                    RollingWindowAggregator rollingWindows,
+                                    PlatformTransactionManager transactionManager,
+                                    ApiConfig apiConfig,
+                                    MeterRegistry meterRegistry) {
+        ApiConfig.Ingest settings = apiConfig.getIngest();
+        this.bulkWriter = bulkWriter;
+        this.bodyStore = bodyStore;
+        this.reportCache = reportCache;
+        this.rollingWindows = rollingWindows;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, settings.getQueueCapacity()));
+        this.batchSize = Math.max(1, settings.getBatchSize());
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, settings.getFlushIntervalMs()));
+        this.offerTimeoutMs = settings.getOfferTimeoutMs();
+        this.maxRetries = Math.max(0, settings.getMaxRetries());
+        this.retryBackoffMs = Math.max(1, settings.getRetryBackoffMs());
+
+        String mode = settings.getMode().name().toLowerCase();
+        this.batchRows = DistributionSummary.builder("metrics.ingest.batch.rows")
+                .description("Число метрик в записанном пакете")
+                .tag("mode", mode)
+                .register(meterRegistry);
+        this.flushTimer = Timer.builder("metrics.ingest.flush")
+                .description("Длительность записи пакета метрик")
+                .tag("mode", mode)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.droppedCounter = Counter.builder("metrics.ingest.dropped")
+                .description("Метрики, отброшенные из-за переполнения очереди")
+                .register(meterRegistry);
+        this.failedCounter = Counter.builder("metrics.ingest.failed")
+                .description("Метрики, которые не удалось записать")
+                .register(meterRegistry);
+        Gauge.builder("metrics.ingest.queue.size", queue, BlockingQueue::size)
+                .description("Метрики, ожидающие записи")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public boolean submit(ApiMetricsImpl metrics) {
+        boolean accepted;
+        try {
+            accepted = offerTimeoutMs > 0
+                    ? queue.offer(metrics, offerTimeoutMs, TimeUnit.MILLISECONDS)
+                    : queue.offer(metrics);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            accepted = false;
+        }
+        if (!accepted) {
+            long total = dropped.incrementAndGet();
+            droppedCounter.increment();
+            // при длительной перегрузке пишем в лог только на степенях двойки, чтобы не засорять его
+            if (Long.bitCount(total) == 1) {
+                log.warn("Очередь записи метрик переполнена, метрика {} отброшена (всего отброшено {})",
+                        metrics.getApiName(), total);
+            }
+        }
+        return accepted;
+    }
+
+    @Override
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        // маркер мог остаться в очереди, если поток записи завершился раньше, чем он был добавлен
+        queue.removeIf(metrics -> metrics == STOP);
+        running = true;
+        writer = Thread.ofPlatform()
+                .name("metrics-writer")
+                .daemon(true)
+                .start(this::loop);
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        // если очередь заполнена, поток записи не ждёт в poll и сам увидит остановку
+        queue.offer(STOP);
+        try {
+            writer.join(SHUTDOWN_TIMEOUT_MS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        queue.removeIf(metrics -> metrics == STOP);
+        if (!queue.isEmpty()) {
+            log.warn("Запись метрик остановлена, не записано {}", queue.size());
+        }
+        writer = null;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Запускается раньше и останавливается позже планировщика проверок,
+     * чтобы принять все результаты последних проверок.
+     */
+    @Override
+    public int getPhase() {
+        return DEFAULT_PHASE - 1;
+    }
+
+    /**
+     * @return число метрик, записанных в БД
+     */
+    public long getWrittenCount() {
+        return written.get();
+    }
+
+    /**
+     * @return число метрик, отброшенных из-за переполнения очереди
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * @return число метрик, которые не удалось записать из-за ошибки БД
+     */
+    public long getFailedCount() {
+        return failed.get();
+    }
+
+    private void loop() {
+        List<ApiMetricsImpl> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                collect(batch);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                running = false;
+            }
+            if (!batch.isEmpty()) {
+                flush(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Набирает пакет, пока он не заполнится или не истечёт интервал записи.
+     */
+    private void collect(List<ApiMetricsImpl> batch) throws InterruptedException {
+        long deadline = System.nanoTime() + flushIntervalNanos;
+        while (batch.size() < batchSize) {
+            queue.drainTo(batch, batchSize - batch.size());
+            if (!running) {
+                // маркер добавляется только после остановки
+                batch.removeIf(metrics -> metrics == STOP);
+                return;
+            }
+            long remaining = deadline - System.nanoTime();
+            if (batch.size() >= batchSize || remaining <= 0) {
+                return;
+            }
+            ApiMetricsImpl next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null || next == STOP) {
+                return;
+            }
+            batch.add(next);
+        }
+    }
+
+    private void flush(List<ApiMetricsImpl> batch) {
+        long start = System.nanoTime();
+        try {
+            write(batch);
+        } finally {
+            flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Записывает пакет, а если он отвергнут из-за данных — каждую его половину отдельно.
+     */
+    private void write(List<ApiMetricsImpl> batch) {
+        RuntimeException failure = writeWithRetry(batch);
+        if (failure == null) {
+            // запоздавшие метрики могли попасть в уже закэшированные закрытые интервалы
+            reportCache.invalidate(batch);
+            record(batch);
+            written.addAndGet(batch.size());
+            batchRows.record(batch.size());
+            log.debug("Записан пакет из {} метрик ({})", batch.size(), bulkWriter.mode());
+            return;
+        }
+        if (batch.size() > 1 && !isTransient(failure)) {
+            log.warn("Пакет из {} метрик отвергнут БД ({}), записываем по частям", batch.size(), failure.toString());
+            int middle = batch.size() / 2;
+            write(batch.subList(0, middle));
+            write(batch.subList(middle, batch.size()));
+            return;
+        }
+        failed.addAndGet(batch.size());
+        failedCounter.increment(batch.size());
+        if (batch.size() == 1) {
+            ApiMetricsImpl metrics = batch.get(0);
+            log.error("Не удалось записать метрику {} за {}", metrics.getApiName(), metrics.getTimestamp(), failure);
+        } else {
+            log.error("Не удалось записать пакет из {} метрик", batch.size(), failure);
+        }
+    }
+
+    /**
+     * Учитывает записанные метрики в скользящих окнах.
+     */
+    private void record(List<ApiMetricsImpl> batch) {
+        for (ApiMetricsImpl metrics : batch) {
+            long totalUs = metrics.getLatency() != null
+                    ? metrics.getLatency().getTotalUs()
+                    : TimeUnit.MILLISECONDS.toMicros(metrics.getResponseTimeMs());
+            rollingWindows.record(metrics.getEndpoint() != null ? metrics.getEndpoint().getId() : null,
+                    metrics.isSuccess(), totalUs, metrics.getTimestamp());
+        }
+    }
+
+    /**
+     * Записывает пакет в одной транзакции, повторяя попытку при временных ошибках БД.
+     *
+     * @return ошибка последней попытки или {@code null}, если пакет записан
+     */
+    private RuntimeException writeWithRetry(List<ApiMetricsImpl> batch) {
+        for (int attempt = 0; ; attempt++) {
+            Map<ApiResponseImpl, ApiResponseBodyImpl> contents = contentsOf(batch);
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    bodyStore.deduplicate(batch);
+                    bulkWriter.writeBatch(batch);
+                });
+                return null;
+            } catch (RuntimeException ex) {
+                // кэш мог запомнить тела, вставка которых откатилась вместе с пакетом
+                bodyStore.evictAll();
+                resetAfterRollback(batch, contents);
+                if (!isTransient(ex) || attempt >= maxRetries || !backoff(attempt)) {
+                    return ex;
+                }
+                log.warn("Временная ошибка записи пакета из {} метрик, попытка {} из {}: {}",
+                        batch.size(), attempt + 1, maxRetries, ex.toString());
+            }
+        }
+    }
+
+    private static Map<ApiResponseImpl, ApiResponseBodyImpl> contentsOf(List<ApiMetricsImpl> batch) {
+        Map<ApiResponseImpl, ApiResponseBodyImpl> contents = new IdentityHashMap<>();
+        for (ApiMetricsImpl metrics : batch) {
+            if (metrics.getResponse() != null && metrics.getResponse().getContent() != null) {
+                contents.put(metrics.getResponse(), metrics.getResponse().getContent());
+            }
+        }
+        return contents;
+    }
+
+    /**
+     * Возвращает пакет в состояние до записи: идентификаторы, выданные в откаченной транзакции,
+     * сбрасываются, а ответам возвращаются исходные тела вместо общих, найденных при дедупликации.
+     */
+    private static void resetAfterRollback(List<ApiMetricsImpl> batch,
+                                           Map<ApiResponseImpl, ApiResponseBodyImpl> contents) {
+        for (ApiMetricsImpl metrics : batch) {
+            metrics.setId(null);
+            ApiResponseImpl response = metrics.getResponse();
+            if (response != null) {
+                response.setId(null);
+                ApiResponseBodyImpl content = contents.get(response);
+                if (content != null) {
+                    content.setId(null);
+                }
+                response.setContent(content);
+            }
+        }
+    }
+
+    /**
+     * Ждёт перед повторной попыткой: {@code retry-backoff-ms}, затем вдвое дольше с каждой попыткой.
+     *
+     * @return {@code false}, если ожидание прервано
+     */
+    private boolean backoff(int attempt) {
+        try {
+            Thread.sleep(retryBackoffMs << Math.min(attempt, 10));
+            return true;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Временные ошибки не связаны с содержимым пакета: та же запись может пройти позже.
+     */
+    private static boolean isTransient(RuntimeException ex) {
+        return ex instanceof TransientDataAccessException
+                || ex instanceof RecoverableDataAccessException
+                || ex instanceof DataAccessResourceFailureException
+                || ex instanceof CannotCreateTransactionException;
+    }
+}
@@ -3,6 +3,9 @@ package controller;
 import com.apimonitor.config.ApiConfig;
 import com.apimonitor.controller.ApiMonitorController;
 import com.apimonitor.service.ApiMonitorService;
+import com.apimonitor.service.EndpointService;
+import jakarta.persistence.EntityExistsException;
+import jakarta.persistence.EntityNotFoundException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -14,11 +17,16 @@ import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
 import java.util.List;
+import java.util.Optional;
 
 import static org.hamcrest.Matchers.is;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -35,7 +43,7 @@ class ApiMonitorControllerTest {
     private ApiMonitorService apiMonitorService;
 
     @Mock
-    private ApiConfig apiConfig;
+    private EndpointService endpointService;
 
     @InjectMocks
     private ApiMonitorController controller;
@@ -61,8 +69,8 @@ class ApiMonitorControllerTest {
         endpoint2.setFrequencyMs(10000);
         endpoint2.setName("User API");
 
-        // Lenient stub for configuration so it's used only when needed
-        lenient().when(apiConfig.getEndpoints()).thenReturn(List.of(endpoint1, endpoint2));
+        // Lenient stub for the endpoint list so it's used only when needed
+        lenient().when(endpointService.findAll()).thenReturn(List.of(endpoint1, endpoint2));
     }
 
     @Test
@@ -89,5 +97,64 @@ class ApiMonitorControllerTest {
         // Verify that the monitoring service was invoked
         verify(apiMonitorService, times(1)).monitorAllEndpoints();
     }
-}
 
+    @Test
+    void getEndpoint_ShouldReturn404ForUnknownEndpoint() throws Exception {
+        when(endpointService.find("missing")).thenReturn(Optional.empty());
+
+        mockMvc.perform(get("/api/monitor/endpoints/missing"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void createEndpoint_ShouldReturnCreatedDefinition() throws Exception {
+        when(endpointService.create(any(ApiConfig.ApiEndpoint.class))).thenReturn(endpoint1);
+
+        mockMvc.perform(post("/api/monitor/endpoints")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\":\"Test API\",\"url\":\"https://jsonplaceholder.typicode.com/posts/1\","
+                                + "\"method\":\"GET\",\"frequencyMs\":5000}"))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.name", is(endpoint1.getName())));
+
+        verify(endpointService).create(endpoint1);
+    }
+
+    @Test
+    void createEndpoint_ShouldReturnConflictForExistingName() throws Exception {
+        when(endpointService.create(any(ApiConfig.ApiEndpoint.class)))
+                .thenThrow(new EntityExistsException("Endpoint already exists: Test API"));
+
+        mockMvc.perform(post("/api/monitor/endpoints")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\":\"Test API\",\"url\":\"http://a\",\"method\":\"GET\"}"))
+                .andExpect(status().isConflict());
+    }
+
+    @Test
+    void updateEndpoint_ShouldReturnUpdatedDefinition() throws Exception {
+        when(endpointService.update(eq("User API"), any(ApiConfig.ApiEndpoint.class))).thenReturn(endpoint2);
+
+        mockMvc.perform(put("/api/monitor/endpoints/User API")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"url\":\"https://jsonplaceholder.typicode.com/users/1\",\"method\":\"GET\"}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name", is("User API")));
+    }
+
+    @Test
+    void deleteEndpoint_ShouldReturnNoContent() throws Exception {
+        mockMvc.perform(delete("/api/monitor/endpoints/Test API"))
+                .andExpect(status().isNoContent());
+
+        verify(endpointService).delete("Test API");
+    }
+
+    @Test
+    void deleteEndpoint_ShouldReturn404ForUnknownEndpoint() throws Exception {
+        doThrow(new EntityNotFoundException("Endpoint not found: missing")).when(endpointService).delete("missing");
+
+        mockMvc.perform(delete("/api/monitor/endpoints/missing"))
+                .andExpect(status().isNotFound());
+    }
+}
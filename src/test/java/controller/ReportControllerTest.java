@@ -3,28 +3,51 @@ package controller;
 import com.apimonitor.controller.ReportController;
 import com.apimonitor.dto.ApiMetricsReport;
 import com.apimonitor.dto.ApiMetricsSummary;
+import com.apimonitor.dto.MetricsFilter;
+import com.apimonitor.dto.MetricsPage;
 import com.apimonitor.model.impl.ApiMetricsImpl;
+import com.apimonitor.dto.ExportFormat;
+import com.apimonitor.service.MetricsExportService;
 import com.apimonitor.service.MetricsService;
 import com.apimonitor.service.ReportService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.io.ByteArrayInputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeoutException;
+import java.util.zip.GZIPInputStream;
 
 import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.atLeastOnce;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @ExtendWith(MockitoExtension.class)
@@ -33,44 +56,60 @@ class ReportControllerTest {
     private MockMvc mockMvc;
     private MetricsService metricsService;
     private ReportService reportService;
+    private MetricsExportService metricsExportService;
     private ReportController controller;
 
     @BeforeEach
     void setUp() {
         metricsService = mock(MetricsService.class);
         reportService = mock(ReportService.class);
-        controller = new ReportController(metricsService, reportService);
+        metricsExportService = mock(MetricsExportService.class);
+        controller = new ReportController(metricsService, reportService, metricsExportService);
         mockMvc = MockMvcBuilders.standaloneSetup(controller).build();
     }
 
     @Test
-    void getMetrics_noFilter_shouldCallFindAllAndReturnEmptyList() throws Exception {
-        when(metricsService.findAll()).thenReturn(List.of());
+    void getMetrics_noFilter_shouldRequestFirstPage() throws Exception {
+        when(metricsService.findPage(new MetricsFilter(null, null, null, null, null), null, null))
+                .thenReturn(MetricsPage.builder().items(List.of()).build());
 
         mockMvc.perform(get("/api/metrics").accept(MediaType.APPLICATION_JSON))
                 .andExpect(status().isOk())
-                .andExpect(jsonPath("$.length()", is(0)));
+                .andExpect(jsonPath("$.items.length()", is(0)))
+                .andExpect(jsonPath("$.nextCursor").doesNotExist());
 
-        verify(metricsService).findAll();
         verifyNoInteractions(reportService);
     }
 
     @Test
-    void getMetrics_withFilter_shouldCallFindByFilter() throws Exception {
+    void getMetrics_withFilters_shouldPassThemIndependently() throws Exception {
         LocalDateTime from = LocalDateTime.of(2025, 4, 1, 10, 0);
-        LocalDateTime to = LocalDateTime.of(2025, 4, 2, 10, 0);
-        when(metricsService.findByFilter(eq("API"), eq(from), eq(to)))
-                .thenReturn(List.of(new ApiMetricsImpl()));
+        MetricsFilter filter = new MetricsFilter("API", from, null, 503, false);
+        when(metricsService.findPage(filter, "abc", 50))
+                .thenReturn(MetricsPage.builder().items(List.of(new ApiMetricsImpl())).nextCursor("next").build());
 
         mockMvc.perform(get("/api/metrics")
                         .param("apiName", "API")
                         .param("from", from.toString())
-                        .param("to", to.toString())
+                        .param("status", "503")
+                        .param("success", "false")
+                        .param("cursor", "abc")
+                        .param("limit", "50")
                         .accept(MediaType.APPLICATION_JSON))
                 .andExpect(status().isOk())
-                .andExpect(jsonPath("$.length()", is(1)));
+                .andExpect(jsonPath("$.items.length()", is(1)))
+                .andExpect(jsonPath("$.nextCursor", is("next")));
+
+        verify(metricsService).findPage(filter, "abc", 50);
+    }
+
+    @Test
+    void getMetrics_invalidCursor_shouldReturn400() throws Exception {
+        when(metricsService.findPage(any(), eq("broken"), any()))
+                .thenThrow(new IllegalArgumentException("Invalid cursor: broken"));
 
-        verify(metricsService).findByFilter("API", from, to);
+        mockMvc.perform(get("/api/metrics").param("cursor", "broken"))
+                .andExpect(status().isBadRequest());
     }
 
     @Test
@@ -100,20 +139,135 @@ class ReportControllerTest {
 
 
     @Test
-    void getDetailedReports_shouldCallBuildReports() throws Exception {
+    void getDetailedReports_shouldCallBuildReportsAsync() throws Exception {
         LocalDateTime from = LocalDateTime.of(2025, 4, 1, 0, 0);
         LocalDateTime to = LocalDateTime.of(2025, 4, 2, 0, 0);
         ApiMetricsReport report = new ApiMetricsReport();
-        when(metricsService.buildReports(eq(from), eq(to))).thenReturn(List.of(report));
+        when(metricsService.buildReportsAsync(eq(from), eq(to)))
+                .thenReturn(CompletableFuture.completedFuture(List.of(report)));
 
-        mockMvc.perform(get("/api/reports/detailed")
+        MvcResult started = mockMvc.perform(get("/api/reports/detailed")
                         .param("from", from.toString())
                         .param("to", to.toString())
                         .accept(MediaType.APPLICATION_JSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(started))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.length()", is(1)));
 
-        verify(metricsService).buildReports(from, to);
+        verify(metricsService).buildReportsAsync(from, to);
         verifyNoInteractions(reportService);
     }
-}
\ No newline at end of file
+
+    @Test
+    void getDetailedReports_shouldReturn503AfterDeadline() throws Exception {
+        LocalDateTime from = LocalDateTime.of(2025, 4, 1, 0, 0);
+        LocalDateTime to = LocalDateTime.of(2025, 4, 2, 0, 0);
+        when(metricsService.buildReportsAsync(eq(from), eq(to)))
+                .thenReturn(CompletableFuture.failedFuture(new TimeoutException()));
+
+        MvcResult started = mockMvc.perform(get("/api/reports/detailed")
+                        .param("from", from.toString())
+                        .param("to", to.toString())
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isServiceUnavailable());
+    }
+
+    @Test
+    void exportMetrics_shouldStreamCsvAttachment() throws Exception {
+        LocalDateTime from = LocalDateTime.of(2025, 4, 1, 0, 0);
+        LocalDateTime to = LocalDateTime.of(2025, 4, 2, 0, 0);
+        MetricsExportService.Slot slot = stubSlot(3_600_000);
+        when(metricsExportService.export(eq("API"), eq(from), eq(to), eq(ExportFormat.CSV), any()))
+                .thenAnswer(invocation -> {
+                    OutputStream out = invocation.getArgument(4);
+                    out.write("id\n1\n".getBytes(StandardCharsets.UTF_8));
+                    return 1L;
+                });
+
+        MvcResult started = mockMvc.perform(get("/api/metrics/export")
+                        .param("apiName", "API")
+                        .param("from", from.toString())
+                        .param("to", to.toString())
+                        .param("format", "CSV"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        started.getAsyncResult();
+        // длинный таймаут задаётся только запросу выгрузки
+        assertEquals(3_600_000, started.getRequest().getAsyncContext().getTimeout());
+
+        mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_TYPE, "text/csv"))
+                .andExpect(header().string(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"metrics.csv\""))
+                .andExpect(header().doesNotExist(HttpHeaders.CONTENT_ENCODING))
+                .andExpect(content().string("id\n1\n"));
+        verify(slot, atLeastOnce()).close();
+        verifyNoInteractions(metricsService, reportService);
+    }
+
+    @Test
+    void exportMetrics_withGzip_shouldCompressBody() throws Exception {
+        LocalDateTime from = LocalDateTime.of(2025, 4, 1, 0, 0);
+        LocalDateTime to = LocalDateTime.of(2025, 4, 2, 0, 0);
+        stubSlot(3_600_000);
+        when(metricsExportService.export(isNull(), eq(from), eq(to), eq(ExportFormat.NDJSON), any()))
+                .thenAnswer(invocation -> {
+                    OutputStream out = invocation.getArgument(4);
+                    out.write("{\"id\":1}\n".getBytes(StandardCharsets.UTF_8));
+                    return 1L;
+                });
+
+        MvcResult started = mockMvc.perform(get("/api/metrics/export")
+                        .param("from", from.toString())
+                        .param("to", to.toString())
+                        .param("gzip", "true"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        started.getAsyncResult();
+
+        MvcResult result = mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_TYPE, "application/x-ndjson"))
+                .andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"))
+                .andReturn();
+        try (GZIPInputStream in = new GZIPInputStream(
+                new ByteArrayInputStream(result.getResponse().getContentAsByteArray()))) {
+            assertEquals("{\"id\":1}\n", new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    void exportMetrics_allSlotsBusy_shouldReturn429() throws Exception {
+        when(metricsExportService.tryAcquire()).thenReturn(Optional.empty());
+
+        mockMvc.perform(get("/api/metrics/export")
+                        .param("from", "2025-04-01T00:00:00")
+                        .param("to", "2025-04-02T00:00:00"))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().exists(HttpHeaders.RETRY_AFTER));
+
+        verify(metricsExportService, never()).export(any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void exportMetrics_withoutPeriod_shouldReturn400() throws Exception {
+        mockMvc.perform(get("/api/metrics/export"))
+                .andExpect(status().isBadRequest());
+
+        verifyNoInteractions(metricsExportService);
+    }
+
+    private MetricsExportService.Slot stubSlot(long timeoutMs) {
+        MetricsExportService.Slot slot = mock(MetricsExportService.Slot.class);
+        when(slot.timeoutMs()).thenReturn(timeoutMs);
+        when(metricsExportService.tryAcquire()).thenReturn(Optional.of(slot));
+        return slot;
+    }
+}
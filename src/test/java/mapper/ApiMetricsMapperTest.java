@@ -2,6 +2,7 @@ package mapper;
 
 import com.apimonitor.dto.ApiMetricsReport;
 import com.apimonitor.dto.ApiMetricsSummary;
+import com.apimonitor.model.impl.ApiEndpointImpl;
 import com.apimonitor.model.impl.ApiMetricsImpl;
 import org.junit.jupiter.api.Test;
 import com.apimonitor.mapper.ApiMetricsMapper;
@@ -15,31 +16,35 @@ class ApiMetricsMapperTest {
     @Test
     void testToReport() {
         // Данные для теста
+        ApiEndpointImpl endpoint = new ApiEndpointImpl();
+        endpoint.setName("API");
+        endpoint.setUrl("http://example.com/api");
         ApiMetricsImpl metrics = new ApiMetricsImpl();
-        metrics.setApiName("API");
-        metrics.setApiUrl("http://example.com/api");
+        metrics.setEndpoint(endpoint);
 
         // Преобразование в ApiMetricsReport
         ApiMetricsReport report = mapper.toReport(metrics);
 
         // Проверка значений после преобразования
-        assertEquals(metrics.getApiName(), report.getApiName());
-        assertEquals(metrics.getApiUrl(), report.getApiUrl());
+        assertEquals("API", report.getApiName());
+        assertEquals("http://example.com/api", report.getApiUrl());
     }
 
     @Test
     void testToSummary() {
         // Данные для теста
+        ApiEndpointImpl endpoint = new ApiEndpointImpl();
+        endpoint.setName("API");
+        endpoint.setUrl("http://example.com/api");
         ApiMetricsImpl metrics = new ApiMetricsImpl();
-        metrics.setApiName("API");
-        metrics.setApiUrl("http://example.com/api");
+        metrics.setEndpoint(endpoint);
 
         // Преобразование в ApiMetricsSummary
         ApiMetricsSummary summary = mapper.toSummary(metrics);
 
         // Проверка значений после преобразования
-        assertEquals(metrics.getApiName(), summary.getApiName());
-        assertEquals(metrics.getApiUrl(), summary.getApiUrl());
+        assertEquals("API", summary.getApiName());
+        assertEquals("http://example.com/api", summary.getApiUrl());
     }
 }
 
@@ -32,8 +32,6 @@ class ApiMetricsImplTest {
         metrics = ApiMetricsImpl.builder()
                 .id(1L)
                 .endpoint(endpoint)
-                .apiUrl("https://api.example.com/test")
-                .apiName("Test Endpoint")
                 .statusCode(200)
                 .responseTimeMs(150)
                 .timestamp(testTimestamp)
@@ -77,20 +75,20 @@ class ApiMetricsImplTest {
     @Test
     void testAllArgsConstructor() {
         ApiMetricsImpl constructedMetrics = new ApiMetricsImpl(
-                2L, endpoint, "https://api.example.com/another",
-                "Another Endpoint", 404, 200, testTimestamp.plusHours(1),
-                false, "Not Found", response
+                2L, endpoint, 404, 200, testTimestamp.plusHours(1),
+                false, "Not Found", response, null, true
         );
 
         assertEquals(2L, constructedMetrics.getId());
-        assertEquals("https://api.example.com/another", constructedMetrics.getApiUrl());
-        assertEquals("Another Endpoint", constructedMetrics.getApiName());
+        assertEquals("https://api.example.com/test", constructedMetrics.getApiUrl());
+        assertEquals("Test Endpoint", constructedMetrics.getApiName());
         assertEquals(404, constructedMetrics.getStatusCode());
         assertEquals(200, constructedMetrics.getResponseTimeMs());
         assertEquals(testTimestamp.plusHours(1), constructedMetrics.getTimestamp());
         assertFalse(constructedMetrics.isSuccess());
         assertEquals("Not Found", constructedMetrics.getErrorMessage());
         assertEquals(response, constructedMetrics.getResponse());
+        assertEquals(Boolean.TRUE, constructedMetrics.getBodyChanged());
     }
 
     @Test
@@ -128,8 +126,7 @@ class ApiMetricsImplTest {
                 "toString() should not include the response field");
 
         // Verify other important fields are included
-        assertTrue(toStringResult.contains("apiUrl="));
-        assertTrue(toStringResult.contains("apiName="));
+        assertTrue(toStringResult.contains("endpoint="));
         assertTrue(toStringResult.contains("responseTimeMs="));
         assertTrue(toStringResult.contains("success="));
     }
@@ -166,7 +163,7 @@ class ApiMetricsImplTest {
         ApiMetricsImpl newMetrics = new ApiMetricsImpl();
         assertNull(newMetrics.getTimestamp());
 
-        // In a real JPA environment, this would be set by @CreationTimestamp
+        // Timestamp is set by the monitor service at probe time
         newMetrics.setTimestamp(LocalDateTime.now());
         assertNotNull(newMetrics.getTimestamp());
     }
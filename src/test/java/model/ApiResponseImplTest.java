@@ -1,10 +1,12 @@
 package model;
 
 import com.apimonitor.model.impl.ApiMetricsImpl;
+import com.apimonitor.model.impl.ApiResponseBodyImpl;
 import com.apimonitor.model.impl.ApiResponseImpl;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.time.LocalDateTime;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
@@ -26,7 +28,7 @@ class ApiResponseImplTest {
 
         apiResponse = ApiResponseImpl.builder()
                 .id(1L)
-                .body(testBody)
+                .content(ApiResponseBodyImpl.builder().body(testBody).build())
                 .metrics(metrics)
                 .build();
     }
@@ -36,7 +38,9 @@ class ApiResponseImplTest {
         ApiResponseImpl empty = new ApiResponseImpl();
         assertNotNull(empty);
         assertNull(empty.getId(), "ID should be null");
+        assertNull(empty.getContent(), "Content should be null");
         assertNull(empty.getBody(), "Body should be null");
+        assertFalse(empty.isBodyTruncated());
         assertNull(empty.getMetrics(), "Metrics should be null");
         assertNotNull(empty.getHeaders(), "Headers map should be initialized");
         assertTrue(empty.getHeaders().isEmpty(), "Headers map should be empty");
@@ -47,17 +51,32 @@ class ApiResponseImplTest {
         Map<String, String> headers = new HashMap<>();
         headers.put("Content-Type", "application/json");
 
+        ApiResponseBodyImpl content = new ApiResponseBodyImpl(
+                7L,
+                "abc123",
+                21,
+                null,
+                21L,
+                false,
+                "{\"error\":\"Not found\"}"
+        );
         ApiResponseImpl full = new ApiResponseImpl(
                 2L,
-                "{\"error\":\"Not found\"}",
+                content,
                 metrics,
-                headers
+                headers,
+                LocalDateTime.of(2025, 4, 1, 10, 0)
         );
 
         assertEquals(2L, full.getId());
+        assertSame(content, full.getContent());
         assertEquals("{\"error\":\"Not found\"}", full.getBody());
         assertEquals(metrics, full.getMetrics());
         assertSame(headers, full.getHeaders());
+        assertEquals(LocalDateTime.of(2025, 4, 1, 10, 0), full.getCreatedAt());
+        assertEquals("abc123", full.getBodyHash());
+        assertEquals(21L, full.getBodySize());
+        assertFalse(full.isBodyTruncated());
     }
 
     @Test
@@ -71,7 +90,7 @@ class ApiResponseImplTest {
         Map<String, String> map = Collections.singletonMap("Accept", "*/*");
         ApiResponseImpl withHeaders = ApiResponseImpl.builder()
                 .id(3L)
-                .body("OK")
+                .content(ApiResponseBodyImpl.builder().body("OK").build())
                 .metrics(metrics)
                 .headers(map)
                 .build();
@@ -105,22 +124,36 @@ class ApiResponseImplTest {
     }
 
     @Test
-    void testToStringExcludesMetrics() {
+    void testToStringExcludesMetricsAndContent() {
         String tostr = apiResponse.toString();
         assertNotNull(tostr);
         assertTrue(tostr.contains("ApiResponseImpl"));
         assertTrue(tostr.contains("id=1"));
-        assertTrue(tostr.contains("body=" + testBody));
         assertFalse(tostr.contains("metrics="), "toString should not include metrics field");
+        assertFalse(tostr.contains(testBody), "toString should not load the lazy body");
     }
 
     @Test
     void testBodyLarge() {
         String large = "x".repeat(5000);
-        apiResponse.setBody(large);
+        apiResponse.setContent(ApiResponseBodyImpl.builder().body(large).build());
         assertEquals(large, apiResponse.getBody());
     }
 
+    @Test
+    void testSharedContent() {
+        ApiResponseBodyImpl shared = ApiResponseBodyImpl.builder()
+                .id(9L).bodyHash("ff").body("same").bodySize(4L).bodyTruncated(true).build();
+        ApiResponseImpl first = ApiResponseImpl.builder().id(1L).content(shared).build();
+        ApiResponseImpl second = ApiResponseImpl.builder().id(2L).content(shared).build();
+
+        assertSame(first.getContent(), second.getContent());
+        assertEquals("same", second.getBody());
+        assertEquals("ff", second.getBodyHash());
+        assertEquals(4L, second.getBodySize());
+        assertTrue(second.isBodyTruncated());
+    }
+
     @Test
     void testBidirectionalRelationship() {
         ApiResponseImpl resp = new ApiResponseImpl();
@@ -0,0 +1,72 @@
+package model;
+
+import com.apimonitor.model.impl.ApiResponseBodyImpl;
+import com.apimonitor.model.impl.CompressedTextConverter;
+import com.apimonitor.model.impl.CompressionCodec;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompressionCodecTest {
+
+    private static final String JSON = "{\"status\":\"ok\",\"items\":[" + "{\"id\":1,\"name\":\"item\"},".repeat(200) + "]}";
+
+    @Test
+    void encodeDecode_roundTripsEveryCodec() {
+        for (CompressionCodec codec : CompressionCodec.values()) {
+            assertEquals(JSON, CompressionCodec.decode(codec.encode(JSON)), codec.name());
+            assertEquals("привет", CompressionCodec.decode(codec.encode("привет")), codec.name());
+        }
+    }
+
+    @Test
+    void encode_compressesRepetitiveText() {
+        byte[] raw = JSON.getBytes(StandardCharsets.UTF_8);
+
+        assertTrue(CompressionCodec.DEFLATE.encode(JSON).length < raw.length / 10);
+        assertTrue(CompressionCodec.GZIP.encode(JSON).length < raw.length / 10);
+        assertEquals(raw.length + 1, CompressionCodec.NONE.encode(JSON).length);
+    }
+
+    @Test
+    void encodeIfSmaller_keepsShortTextUncompressed() {
+        byte[] encoded = CompressionCodec.DEFLATE.encodeIfSmaller("timeout");
+
+        assertEquals(0, encoded[0]);
+        assertEquals("timeout", CompressionCodec.decode(encoded));
+    }
+
+    @Test
+    void nullValues_passThrough() {
+        assertNull(CompressionCodec.DEFLATE.encode(null));
+        assertNull(CompressionCodec.decode(null));
+    }
+
+    @Test
+    void decode_rejectsUnknownCodec() {
+        assertThrows(IllegalArgumentException.class, () -> CompressionCodec.decode(new byte[]{42, 1}));
+    }
+
+    @Test
+    void converter_roundTripsErrorMessages() {
+        CompressedTextConverter converter = new CompressedTextConverter();
+        String message = "Connection refused: " + "x".repeat(5000);
+
+        byte[] column = converter.convertToDatabaseColumn(message);
+
+        assertTrue(column.length < 200);
+        assertEquals(message, converter.convertToEntityAttribute(column));
+    }
+
+    @Test
+    void responseBody_decompressesLazily() {
+        ApiResponseBodyImpl body = ApiResponseBodyImpl.builder().body(JSON).build();
+        body.compress(CompressionCodec.GZIP);
+
+        ApiResponseBodyImpl loaded = ApiResponseBodyImpl.builder().bodyData(body.getBodyData()).build();
+
+        assertEquals(JSON, loaded.getBody());
+    }
+}
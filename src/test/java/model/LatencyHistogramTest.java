@@ -0,0 +1,112 @@
+package model;
+
+import com.apimonitor.model.impl.LatencyHistogram;
+import com.apimonitor.model.impl.MetricsAggregate;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LatencyHistogramTest {
+
+    @Test
+    void percentile_isWithinBucketPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long us = 1_000; us <= 100_000; us += 1_000) {
+            histogram.record(us);
+        }
+
+        assertEquals(100, histogram.count());
+        assertWithin(50_000, histogram.valueAtPercentile(50));
+        assertWithin(90_000, histogram.valueAtPercentile(90));
+        assertWithin(99_000, histogram.valueAtPercentile(99));
+    }
+
+    @Test
+    void percentile_revealsTailHiddenByAverage() {
+        MetricsAggregate aggregate = new MetricsAggregate();
+        for (int i = 0; i < 990; i++) {
+            aggregate.addSample(200, true, 10_000, null);
+        }
+        for (int i = 0; i < 10; i++) {
+            aggregate.addSample(200, true, 2_000_000, null);
+        }
+
+        assertEquals(10.0, aggregate.percentileMs(50), 1.25);
+        assertEquals(10.0, aggregate.percentileMs(99), 1.25);
+        assertEquals(2_000.0, aggregate.percentileMs(99.9), 250.0);
+        assertNull(new MetricsAggregate().percentileMs(99));
+    }
+
+    @Test
+    void of_restoresBuckets() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+        histogram.record(42_000);
+
+        assertEquals(histogram.buckets(), LatencyHistogram.of(histogram.buckets()).buckets());
+        assertEquals(0L, histogram.valueAtPercentile(1));
+    }
+
+    @Test
+    void emptyHistogram_hasNoPercentiles() {
+        assertNull(new LatencyHistogram().valueAtPercentile(50));
+    }
+
+    @Test
+    void merge_equalsRecordingAllValues() {
+        LatencyHistogram left = new LatencyHistogram();
+        LatencyHistogram right = new LatencyHistogram();
+        LatencyHistogram all = new LatencyHistogram();
+        for (long us = 0; us < 5_000; us += 7) {
+            (us % 2 == 0 ? left : right).record(us);
+            all.record(us);
+        }
+
+        left.merge(right);
+
+        assertEquals(all.buckets(), left.buckets());
+        assertEquals(all.count(), left.count());
+    }
+
+    @Test
+    void encode_roundTrips() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(3);
+        histogram.record(1_500);
+        histogram.record(1_500);
+        histogram.record(2_000_000);
+
+        LatencyHistogram decoded = LatencyHistogram.decode(histogram.encode());
+
+        assertEquals(histogram.buckets(), decoded.buckets());
+        assertEquals(4, decoded.count());
+        assertTrue(LatencyHistogram.decode(null).buckets().isEmpty());
+    }
+
+    @Test
+    void aggregate_mergesCountsAndExtremes() {
+        MetricsAggregate first = new MetricsAggregate();
+        first.addSample(200, true, 100_000, null);
+        MetricsAggregate second = new MetricsAggregate();
+        second.addSample(500, false, 300_000, null);
+        second.addSample(200, true, 50_000, null);
+
+        first.merge(second).merge(new MetricsAggregate());
+
+        assertEquals(3, first.getCount());
+        assertEquals(1, first.getErrorCount());
+        assertEquals(50.0, first.minMs());
+        assertEquals(300.0, first.maxMs());
+        assertEquals(150.0, first.avgMs());
+        assertEquals(Map.of(200, 2L, 500, 1L), first.getStatusCounts());
+        assertEquals(3, first.getHistogram().count());
+    }
+
+    private static void assertWithin(long expected, Long actual) {
+        assertNotNull(actual);
+        assertTrue(Math.abs(actual - expected) <= expected / 8,
+                "Ожидалось около " + expected + ", получено " + actual);
+    }
+}
@@ -0,0 +1,254 @@
+package probe;
+
+import com.apimonitor.config.ApiConfig;
+import com.apimonitor.probe.BodyCapture;
+import com.apimonitor.probe.ProbeResult;
+import com.apimonitor.probe.ProbeTiming;
+import com.apimonitor.probe.impl.HttpClientProbeTransport;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HttpClientProbeTransportTest {
+
+    private static final int LARGE_CHUNKS = 512;
+    private static final long LARGE_SIZE = 10L * 1024 * LARGE_CHUNKS;
+
+    private HttpServer server;
+    private HttpClientProbeTransport transport;
+    private String baseUrl;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/ok", exchange -> {
+            byte[] body = "{\"ok\":true}".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.createContext("/missing", exchange -> {
+            byte[] body = "Not Found".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(404, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.createContext("/large", exchange -> {
+            byte[] chunk = "0123456789".repeat(1024).getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, (long) chunk.length * LARGE_CHUNKS);
+            try (OutputStream out = exchange.getResponseBody()) {
+                for (int i = 0; i < LARGE_CHUNKS; i++) {
+                    out.write(chunk);
+                }
+            }
+        });
+        server.createContext("/echo", exchange -> {
+            String token = exchange.getRequestHeaders().getFirst("X-Api-Key");
+            byte[] body = String.valueOf(token).getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.createContext("/slow", exchange -> {
+            try {
+                Thread.sleep(2000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.sendResponseHeaders(204, -1);
+            exchange.close();
+        });
+        server.setExecutor(java.util.concurrent.Executors.newVirtualThreadPerTaskExecutor());
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+
+        transport = new HttpClientProbeTransport(new ApiConfig.Http());
+    }
+
+    @AfterEach
+    void tearDown() {
+        transport.close();
+        server.stop(0);
+    }
+
+    private ApiConfig.ApiEndpoint endpoint(String path) {
+        ApiConfig.ApiEndpoint endpoint = new ApiConfig.ApiEndpoint();
+        endpoint.setName(path);
+        endpoint.setUrl(baseUrl + path);
+        endpoint.setMethod("GET");
+        return endpoint;
+    }
+
+    @Test
+    void execute_returnsStatusHeadersAndBody() throws Exception {
+        ProbeResult result = transport.execute(endpoint("/ok")).get();
+
+        assertEquals(200, result.getStatusCode());
+        assertTrue(result.isSuccessful());
+        assertEquals("{\"ok\":true}", result.getBody());
+        assertEquals("application/json", result.getHeaders().get("content-type"));
+    }
+
+    @Test
+    void execute_recordsPhaseTimings() throws Exception {
+        ProbeTiming timing = transport.execute(endpoint("/ok")).get().getTiming();
+
+        assertNotNull(timing);
+        assertTrue(timing.getTtfbNanos() > 0);
+        assertTrue(timing.getDownloadNanos() >= 0);
+        assertTrue(timing.getTotalNanos() >= timing.getTtfbNanos() + timing.getDownloadNanos());
+        // без measureConnection фазы соединения не измеряются
+        assertNull(timing.getDnsNanos());
+        assertNull(timing.getConnectNanos());
+        assertNull(timing.getTlsNanos());
+    }
+
+    @Test
+    void execute_measuresConnectPhaseWhenRequested() throws Exception {
+        ApiConfig.ApiEndpoint measured = endpoint("/ok");
+        measured.setMeasureConnection(true);
+
+        ProbeTiming timing = transport.execute(measured).get().getTiming();
+
+        assertNotNull(timing.getDnsNanos());
+        assertNotNull(timing.getConnectNanos());
+        assertTrue(timing.getConnectNanos() > 0);
+        // запрос по http — TLS-рукопожатия нет
+        assertNull(timing.getTlsNanos());
+    }
+
+    @Test
+    void execute_errorStatusIsReturnedAsResult() throws Exception {
+        ProbeResult result = transport.execute(endpoint("/missing")).get();
+
+        assertEquals(404, result.getStatusCode());
+        assertFalse(result.isSuccessful());
+        assertEquals("Not Found", result.getBody());
+    }
+
+    @Test
+    void execute_prefixCaptureKeepsOnlyFirstBytes() throws Exception {
+        ApiConfig.ApiEndpoint large = endpoint("/large");
+        large.setBodyCapture(BodyCapture.PREFIX);
+        large.setBodyPrefixBytes(16);
+
+        ProbeResult result = transport.execute(large).get();
+
+        assertEquals("0123456789012345", result.getBody());
+        assertEquals(LARGE_SIZE, result.getBodySize());
+        assertTrue(result.isBodyTruncated());
+        assertEquals(64, result.getBodyHash().length());
+    }
+
+    @Test
+    void execute_hashCaptureStoresOnlyDigest() throws Exception {
+        ApiConfig.ApiEndpoint ok = endpoint("/ok");
+        ok.setBodyCapture(BodyCapture.HASH);
+
+        ProbeResult result = transport.execute(ok).get();
+
+        byte[] expected = MessageDigest.getInstance("SHA-256").digest("{\"ok\":true}".getBytes(StandardCharsets.UTF_8));
+        assertNull(result.getBody());
+        assertEquals(HexFormat.of().formatHex(expected), result.getBodyHash());
+        assertEquals(11, result.getBodySize());
+        assertFalse(result.isBodyTruncated());
+    }
+
+    @Test
+    void execute_discardCaptureKeepsOnlySize() throws Exception {
+        ApiConfig.ApiEndpoint large = endpoint("/large");
+        large.setBodyCapture(BodyCapture.DISCARD);
+
+        ProbeResult result = transport.execute(large).get();
+
+        assertNull(result.getBody());
+        assertNull(result.getBodyHash());
+        assertEquals(LARGE_SIZE, result.getBodySize());
+    }
+
+    @Test
+    void execute_fullCaptureIsBoundedByMaxBodyBytes() throws Exception {
+        ApiConfig.Http settings = new ApiConfig.Http();
+        settings.setMaxBodyBytes(1000);
+        try (HttpClientProbeTransport bounded = new HttpClientProbeTransport(settings)) {
+            ProbeResult result = bounded.execute(endpoint("/large")).get();
+
+            assertEquals(1000, result.getBody().length());
+            assertEquals(LARGE_SIZE, result.getBodySize());
+            assertTrue(result.isBodyTruncated());
+        }
+    }
+
+    @Test
+    void execute_keepsOnlyStoredHeaders() throws Exception {
+        ApiConfig.Http settings = new ApiConfig.Http();
+        settings.setStoredHeaders(List.of("Content-Type"));
+        try (HttpClientProbeTransport filtered = new HttpClientProbeTransport(settings)) {
+            ProbeResult result = filtered.execute(endpoint("/ok")).get();
+
+            assertEquals(Map.of("content-type", "application/json"), result.getHeaders());
+        }
+    }
+
+    @Test
+    void execute_sendsEndpointHeaders() throws Exception {
+        ApiConfig.ApiEndpoint echo = endpoint("/echo");
+        echo.setHeaders(Map.of("X-Api-Key", "secret"));
+
+        assertEquals("secret", transport.execute(echo).get().getBody());
+        assertEquals("null", transport.execute(endpoint("/echo")).get().getBody());
+    }
+
+    @Test
+    void execute_restrictedHeaderFailsProbe() {
+        ApiConfig.ApiEndpoint invalid = endpoint("/ok");
+        invalid.setHeaders(Map.of("Host", "example.com"));
+
+        assertTrue(transport.execute(invalid).isCompletedExceptionally());
+    }
+
+    @Test
+    void execute_readTimeoutFailsProbe() {
+        ApiConfig.ApiEndpoint slow = endpoint("/slow");
+        slow.setReadTimeoutMs(200);
+
+        ExecutionException ex = assertThrows(ExecutionException.class, () -> transport.execute(slow).get());
+        assertInstanceOf(HttpTimeoutException.class, ex.getCause());
+    }
+
+    @Test
+    void execute_totalTimeoutFailsProbe() {
+        ApiConfig.ApiEndpoint slow = endpoint("/slow");
+        slow.setTotalTimeoutMs(200);
+
+        ExecutionException ex = assertThrows(ExecutionException.class, () -> transport.execute(slow).get());
+        assertInstanceOf(TimeoutException.class, ex.getCause());
+    }
+
+    @Test
+    void execute_invalidMethodFailsProbe() {
+        ApiConfig.ApiEndpoint invalid = endpoint("/ok");
+        invalid.setMethod("NOT A METHOD");
+
+        assertTrue(transport.execute(invalid).isCompletedExceptionally());
+    }
+}
@@ -0,0 +1,121 @@
+package repository;
+
+import com.apimonitor.model.impl.ApiEndpointImpl;
+import com.apimonitor.model.impl.ApiMetricsImpl;
+import com.apimonitor.model.impl.ApiResponseImpl;
+import com.apimonitor.model.impl.LatencyBreakdown;
+import com.apimonitor.repository.MetricsBulkWriter;
+import com.apimonitor.repository.impl.CopyMetricsBulkWriter;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+
+import javax.sql.DataSource;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.LocalDateTime;
+import java.nio.charset.StandardCharsets;
+import java.util.HexFormat;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class CopyMetricsBulkWriterTest {
+
+    private EntityManager entityManager;
+    private DataSource dataSource;
+    private Connection connection;
+    private MetricsBulkWriter fallback;
+    private CopyMetricsBulkWriter writer;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        entityManager = mock(EntityManager.class);
+        dataSource = mock(DataSource.class);
+        connection = mock(Connection.class);
+        fallback = mock(MetricsBulkWriter.class);
+        when(dataSource.getConnection()).thenReturn(connection);
+        writer = new CopyMetricsBulkWriter(entityManager, dataSource, fallback);
+    }
+
+    private static ApiMetricsImpl metric(String errorMessage) {
+        ApiEndpointImpl endpoint = new ApiEndpointImpl();
+        endpoint.setId(7L);
+        ApiResponseImpl response = new ApiResponseImpl();
+        response.setId(11L);
+        return ApiMetricsImpl.builder()
+                .endpoint(endpoint)
+                .statusCode(500)
+                .responseTimeMs(12)
+                .timestamp(LocalDateTime.of(2024, 1, 2, 3, 4, 5))
+                .success(false)
+                .errorMessage(errorMessage)
+                .response(response)
+                .latency(LatencyBreakdown.builder().ttfbUs(10_000L).totalUs(12_000L).build())
+                .build();
+    }
+
+    @Test
+    void writeBatch_fallsBackWhenDatabaseIsNotPostgres() throws Exception {
+        when(connection.isWrapperFor(PGConnection.class)).thenReturn(false);
+        DatabaseMetaData metaData = mock(DatabaseMetaData.class);
+        when(metaData.getDatabaseProductName()).thenReturn("H2");
+        when(connection.getMetaData()).thenReturn(metaData);
+        List<ApiMetricsImpl> batch = List.of(metric(null));
+
+        writer.writeBatch(batch);
+
+        verify(fallback).writeBatch(batch);
+        verify(entityManager, never()).persist(any());
+    }
+
+    @Test
+    void writeBatch_copiesRowsWithIdsFromSequenceBlocks() throws Exception {
+        when(connection.isWrapperFor(PGConnection.class)).thenReturn(true);
+        PreparedStatement statement = mock(PreparedStatement.class);
+        ResultSet rs = mock(ResultSet.class);
+        when(connection.prepareStatement(anyString())).thenReturn(statement);
+        when(statement.executeQuery()).thenReturn(rs);
+        when(rs.next()).thenReturn(true, false);
+        when(rs.getLong(1)).thenReturn(150L);
+
+        PGConnection pg = mock(PGConnection.class);
+        CopyManager copyManager = mock(CopyManager.class);
+        when(connection.unwrap(PGConnection.class)).thenReturn(pg);
+        when(pg.getCopyAPI()).thenReturn(copyManager);
+        StringWriter copied = new StringWriter();
+        when(copyManager.copyIn(anyString(), any(Reader.class))).thenAnswer(invocation -> {
+            invocation.<Reader>getArgument(1).transferTo(copied);
+            return 2L;
+        });
+
+        ApiMetricsImpl first = metric("line1\nline2\ttab\\");
+        ApiMetricsImpl second = metric(null);
+        writer.writeBatch(List.of(first, second));
+
+        verify(statement).setInt(1, 1);
+        verify(entityManager, times(2)).persist(any(ApiResponseImpl.class));
+        verify(entityManager).flush();
+        assertEquals(101L, first.getId());
+        assertEquals(102L, second.getId());
+
+        ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+        verify(copyManager).copyIn(sql.capture(), any(Reader.class));
+        assertTrue(sql.getValue().startsWith("COPY api_metrics"));
+        String[] rows = copied.toString().split("\n");
+        assertEquals(2, rows.length);
+        assertEquals("101\t7\t500\t12\t2024-01-02T03:04:05\tf\t\\\\x00" + HexFormat.of().formatHex("line1\nline2\ttab\\".getBytes(StandardCharsets.UTF_8))
+                + "\t11"
+                + "\t\\N\t\\N\t\\N\t10000\t\\N\t12000\t\\N", rows[0]);
+        assertTrue(rows[1].contains("\tf\t\\N\t11\t"));
+    }
+}
@@ -0,0 +1,138 @@
+package repository;
+
+import com.apimonitor.model.impl.LatencyBreakdown;
+import com.apimonitor.model.impl.LatencyHistogram;
+import com.apimonitor.model.impl.MetricsAggregate;
+import com.apimonitor.model.impl.MetricsAggregate.Phase;
+import com.apimonitor.repository.impl.JdbcMetricsRollupRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JdbcMetricsRollupRepositoryTest {
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2025, 1, 1, 12, 0);
+
+    private SingleConnectionDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private JdbcMetricsRollupRepository repository;
+
+    @BeforeEach
+    void setUp() {
+        dataSource = new SingleConnectionDataSource("jdbc:h2:mem:rollup;DB_CLOSE_DELAY=-1", "sa", "", true);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE api_metrics (endpoint_id BIGINT, timestamp TIMESTAMP, status_code INT, "
+                + "success BOOLEAN, response_time_ms BIGINT, response_time_us BIGINT, dns_us BIGINT, connect_us BIGINT, "
+                + "tls_us BIGINT, ttfb_us BIGINT, download_us BIGINT)");
+        repository = new JdbcMetricsRollupRepository(jdbcTemplate);
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.execute("DROP TABLE api_metrics");
+        dataSource.destroy();
+    }
+
+    @Test
+    void latencyBucketExpression_matchesHistogramIndex() {
+        List<Long> values = new ArrayList<>(List.of(-3L, 0L, 1L, 7L, Long.MAX_VALUE));
+        for (int exponent = 3; exponent < 63; exponent++) {
+            long power = 1L << exponent;
+            values.addAll(List.of(power - 1, power, power + power / 3));
+        }
+        jdbcTemplate.execute("CREATE TABLE latency_values (v BIGINT)");
+        jdbcTemplate.batchUpdate("INSERT INTO latency_values (v) VALUES (?)",
+                values.stream().map(v -> new Object[]{v}).toList());
+
+        Map<Long, Integer> indexes = new HashMap<>();
+        jdbcTemplate.query("SELECT v, " + JdbcMetricsRollupRepository.latencyBucketExpression("v") + " FROM latency_values",
+                (RowCallbackHandler) rs -> indexes.put(rs.getLong(1), rs.getInt(2)));
+
+        for (long value : values) {
+            assertEquals(LatencyHistogram.indexOf(value), indexes.get(value), "value " + value);
+        }
+    }
+
+    @Test
+    void aggregateRaw_groupsInDatabaseLikeSamplesInMemory() {
+        MetricsAggregate expected = new MetricsAggregate();
+        for (int i = 0; i < 200; i++) {
+            int status = i % 10 == 0 ? 503 : 200;
+            long totalUs = 5_000L + i * 731L;
+            Long dnsUs = i % 2 == 0 ? 300L + i : null;
+            insert(1L, T0.plusSeconds(i), status, status == 200, totalUs, dnsUs);
+            expected.addSample(status, status == 200, totalUs, LatencyBreakdown.builder().dnsUs(dnsUs).build());
+        }
+        // старые строки без времени в микросекундах и строки вне периода и другого эндпоинта
+        jdbcTemplate.update("INSERT INTO api_metrics (endpoint_id, timestamp, status_code, success, response_time_ms) "
+                + "VALUES (1, ?, 200, TRUE, 42)", Timestamp.valueOf(T0.plusMinutes(10)));
+        expected.addSample(200, true, 42_000, null);
+        insert(1L, T0.plusHours(1), 200, true, 1, null);
+        insert(2L, T0, 200, true, 1, null);
+
+        Map<Long, MetricsAggregate> result = new HashMap<>();
+        repository.aggregateRaw(1L, T0, T0.plusHours(1), false, id -> result.computeIfAbsent(id, k -> new MetricsAggregate()));
+
+        MetricsAggregate actual = result.get(1L);
+        assertEquals(1, result.size());
+        assertEquals(expected.getCount(), actual.getCount());
+        assertEquals(expected.getErrorCount(), actual.getErrorCount());
+        assertEquals(expected.getSumUs(), actual.getSumUs());
+        assertEquals(expected.getMinUs(), actual.getMinUs());
+        assertEquals(expected.getMaxUs(), actual.getMaxUs());
+        assertEquals(expected.getStatusCounts(), actual.getStatusCounts());
+        assertEquals(expected.getHistogram().buckets(), actual.getHistogram().buckets());
+        assertEquals(expected.phaseSumUs(Phase.DNS), actual.phaseSumUs(Phase.DNS));
+        assertEquals(expected.phaseCount(Phase.DNS), actual.phaseCount(Phase.DNS));
+        assertEquals(0, actual.phaseCount(Phase.TTFB));
+    }
+
+    @Test
+    void aggregateRaw_inclusiveUpperBoundAndAllEndpoints() {
+        insert(1L, T0, 200, true, 1_000, null);
+        insert(2L, T0.plusMinutes(1), 500, false, 2_000, null);
+
+        Map<Long, MetricsAggregate> result = new HashMap<>();
+        repository.aggregateRaw(null, T0, T0.plusMinutes(1), true, id -> result.computeIfAbsent(id, k -> new MetricsAggregate()));
+
+        assertEquals(1, result.get(1L).getCount());
+        assertEquals(1, result.get(2L).getErrorCount());
+    }
+
+    @Test
+    void aggregateRawTotal_fusesAllEndpointsInOnePass() {
+        insert(1L, T0, 200, true, 1_000, null);
+        insert(2L, T0.plusSeconds(1), 200, true, 3_000, 100L);
+        insert(3L, T0.plusSeconds(2), 500, false, 5_000, null);
+        insert(3L, T0.plusMinutes(1), 500, false, 5_000, null);
+
+        MetricsAggregate total = new MetricsAggregate();
+        repository.aggregateRawTotal(null, T0, T0.plusMinutes(1), false, total);
+
+        assertEquals(3, total.getCount());
+        assertEquals(1, total.getErrorCount());
+        assertEquals(9_000, total.getSumUs());
+        assertEquals(1_000, total.getMinUs());
+        assertEquals(5_000, total.getMaxUs());
+        assertEquals(Map.of(200, 2L, 500, 1L), total.getStatusCounts());
+        assertEquals(1, total.phaseCount(Phase.DNS));
+    }
+
+    private void insert(long endpointId, LocalDateTime timestamp, int status, boolean success, long totalUs, Long dnsUs) {
+        jdbcTemplate.update("INSERT INTO api_metrics (endpoint_id, timestamp, status_code, success, response_time_ms, "
+                        + "response_time_us, dns_us) VALUES (?, ?, ?, ?, ?, ?, ?)",
+                endpointId, Timestamp.valueOf(timestamp), status, success, totalUs / 1000, totalUs, dnsUs);
+    }
+}
@@ -0,0 +1,72 @@
+package scheduler;
+
+import com.apimonitor.model.impl.ApiEndpointImpl;
+import com.apimonitor.repository.ApiEndpointRepository;
+import com.apimonitor.scheduler.EndpointChangeFeed;
+import com.apimonitor.scheduler.MonitoringScheduler;
+import com.apimonitor.service.EndpointRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.mockito.Mockito.*;
+
+class EndpointChangeFeedTest {
+
+    private ApiEndpointRepository repository;
+    private EndpointRegistry registry;
+    private MonitoringScheduler scheduler;
+    private EndpointChangeFeed feed;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(ApiEndpointRepository.class);
+        registry = mock(EndpointRegistry.class);
+        scheduler = mock(MonitoringScheduler.class);
+        feed = new EndpointChangeFeed(repository, registry, scheduler);
+    }
+
+    private static ApiEndpointImpl endpoint(long id, long version) {
+        ApiEndpointImpl endpoint = new ApiEndpointImpl();
+        endpoint.setId(id);
+        endpoint.setName("api-" + id);
+        endpoint.setActive(true);
+        endpoint.setVersion(version);
+        return endpoint;
+    }
+
+    @Test
+    void poll_appliesOnlyVersionsAfterLastApplied() {
+        ApiEndpointImpl changed = endpoint(1, 11);
+        when(registry.version()).thenReturn(10L);
+        when(registry.findById(1L)).thenReturn(Optional.of(endpoint(1, 10)));
+        when(repository.findByVersionGreaterThanOrderByVersionAsc(10L)).thenReturn(List.of(changed));
+
+        feed.poll();
+        feed.poll();
+
+        verify(scheduler).apply(changed);
+        verify(repository).findByVersionGreaterThanOrderByVersionAsc(11L);
+    }
+
+    @Test
+    void reconcile_appliesLateCommittedLowerVersion() {
+        ApiEndpointImpl late = endpoint(2, 5);
+        ApiEndpointImpl unchanged = endpoint(1, 11);
+        when(registry.version()).thenReturn(11L);
+        when(registry.findById(1L)).thenReturn(Optional.of(endpoint(1, 11)));
+        when(registry.findById(2L)).thenReturn(Optional.of(endpoint(2, 4)));
+        when(repository.findByVersionGreaterThanOrderByVersionAsc(11L)).thenReturn(List.of());
+        when(repository.findAll()).thenReturn(List.of(unchanged, late));
+
+        feed.poll();
+        verifyNoInteractions(scheduler);
+
+        feed.reconcile();
+
+        verify(scheduler).apply(late);
+        verify(scheduler, never()).apply(unchanged);
+    }
+}
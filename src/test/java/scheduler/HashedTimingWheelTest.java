@@ -0,0 +1,62 @@
+package scheduler;
+
+import com.apimonitor.scheduler.HashedTimingWheel;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HashedTimingWheelTest {
+
+    @Test
+    void advanceTo_returnsOnlyDueTasks() {
+        HashedTimingWheel<String> wheel = new HashedTimingWheel<>(10, 8, 0);
+        wheel.schedule("a", 25);
+        wheel.schedule("b", 50);
+
+        assertEquals(List.of(), wheel.advanceTo(20));
+        assertEquals(List.of("a"), wheel.advanceTo(30));
+        assertEquals(1, wheel.size());
+        assertEquals(List.of("b"), wheel.advanceTo(50));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void advanceTo_keepsTasksScheduledSeveralRotationsAhead() {
+        HashedTimingWheel<String> wheel = new HashedTimingWheel<>(10, 4, 0);
+        // 4 ячейки по 10 мс: задача на 130 мс попадает в ту же ячейку, что и 10/50/90 мс
+        wheel.schedule("far", 130);
+
+        assertEquals(List.of(), wheel.advanceTo(10));
+        assertEquals(List.of(), wheel.advanceTo(50));
+        assertEquals(List.of(), wheel.advanceTo(120));
+        assertEquals(List.of("far"), wheel.advanceTo(130));
+    }
+
+    @Test
+    void schedule_inThePast_firesOnNextTick() {
+        HashedTimingWheel<String> wheel = new HashedTimingWheel<>(10, 8, 1000);
+        wheel.schedule("late", 500);
+
+        assertEquals(List.of("late"), wheel.advanceTo(1010));
+    }
+
+    @Test
+    void advanceTo_afterLongPause_expiresEverythingDue() {
+        HashedTimingWheel<Integer> wheel = new HashedTimingWheel<>(10, 8, 0);
+        for (int i = 1; i <= 20; i++) {
+            wheel.schedule(i, i * 25L);
+        }
+
+        List<Integer> expired = wheel.advanceTo(10_000);
+
+        assertEquals(20, expired.size());
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void rejectsNonPositiveTick() {
+        assertThrows(IllegalArgumentException.class, () -> new HashedTimingWheel<String>(0, 8, 0));
+    }
+}
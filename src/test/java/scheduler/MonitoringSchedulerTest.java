@@ -0,0 +1,134 @@
+package scheduler;
+
+import com.apimonitor.config.ApiConfig;
+import com.apimonitor.mapper.ApiEndpointMapper;
+import com.apimonitor.model.impl.ApiEndpointImpl;
+import com.apimonitor.scheduler.MonitoringScheduler;
+import com.apimonitor.scheduler.ProbeExecutor;
+import com.apimonitor.service.ApiMonitorService;
+import com.apimonitor.service.EndpointRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class MonitoringSchedulerTest {
+
+    private final Map<String, AtomicInteger> probes = new ConcurrentHashMap<>();
+    private EndpointRegistry registry;
+    private ProbeExecutor executor;
+    private ApiMonitorService monitorService;
+    private MonitoringScheduler scheduler;
+
+    @BeforeEach
+    void setUp() {
+        ApiConfig config = new ApiConfig();
+        config.getScheduler().setTickMs(5);
+        config.getExecution().setMaxInFlight(16);
+        executor = new ProbeExecutor(config);
+        monitorService = mock(ApiMonitorService.class);
+        doAnswer(invocation -> {
+            ApiConfig.ApiEndpoint conf = invocation.getArgument(0);
+            probes.computeIfAbsent(conf.getName(), name -> new AtomicInteger()).incrementAndGet();
+            return null;
+        }).when(monitorService).monitorSingleConfigEndpoint(any());
+        registry = mock(EndpointRegistry.class);
+        when(registry.definitions()).thenReturn(List.of(definition("static", 20)));
+        scheduler = new MonitoringScheduler(monitorService, executor, config, registry, ApiEndpointMapper.INSTANCE);
+    }
+
+    @AfterEach
+    void tearDown() {
+        scheduler.stop();
+        executor.shutdown();
+    }
+
+    private static ApiConfig.ApiEndpoint definition(String name, long frequencyMs) {
+        ApiConfig.ApiEndpoint conf = new ApiConfig.ApiEndpoint();
+        conf.setName(name);
+        conf.setUrl("http://" + name);
+        conf.setMethod("GET");
+        conf.setFrequencyMs(frequencyMs);
+        return conf;
+    }
+
+    private static ApiEndpointImpl endpoint(long id, String name, long frequencyMs, boolean active) {
+        ApiEndpointImpl endpoint = new ApiEndpointImpl();
+        endpoint.setId(id);
+        endpoint.setName(name);
+        endpoint.setUrl("http://" + name);
+        endpoint.setMethod("GET");
+        endpoint.setFrequencyMs(frequencyMs);
+        endpoint.setActive(active);
+        return endpoint;
+    }
+
+    private int probesOf(String name) {
+        AtomicInteger count = probes.get(name);
+        return count != null ? count.get() : 0;
+    }
+
+    @Test
+    void apply_addsEndpointWithoutRestart() {
+        scheduler.start();
+        waitUntil(() -> probesOf("static") >= 2);
+
+        scheduler.apply(endpoint(2L, "added", 20, true));
+
+        waitUntil(() -> probesOf("added") >= 2);
+        assertEquals(2, scheduler.getScheduledCount());
+        verify(registry).update(any(ApiEndpointImpl.class));
+        verify(monitorService, never()).forgetEndpoint(any());
+    }
+
+    @Test
+    void apply_removesInactiveEndpointAndKeepsOthers() {
+        scheduler.start();
+        scheduler.apply(endpoint(2L, "removed", 20, true));
+        waitUntil(() -> probesOf("removed") >= 1);
+
+        scheduler.apply(endpoint(2L, "removed", 20, false));
+        int removedProbes = probesOf("removed");
+        int staticProbes = probesOf("static");
+        // остальные эндпоинты проверяются без перерыва; за пять их периодов снятый проверился бы столько же раз
+        waitUntil(() -> probesOf("static") >= staticProbes + 5);
+
+        // допускается одна проверка, уже запущенная в момент снятия
+        assertTrue(probesOf("removed") <= removedProbes + 1, "Снятый эндпоинт продолжает проверяться");
+        assertEquals(1, scheduler.getScheduledCount());
+        verify(monitorService).forgetEndpoint(2L);
+    }
+
+    @Test
+    void schedule_reschedulesChangedFrequency() {
+        when(registry.definitions()).thenReturn(List.of(definition("static", 60_000)));
+        scheduler.start();
+
+        scheduler.schedule(definition("static", 20));
+
+        // при прежней частоте за время ожидания прошло бы не больше одной проверки
+        waitUntil(() -> probesOf("static") >= 5);
+        assertEquals(1, scheduler.getScheduledCount());
+    }
+
+    private static void waitUntil(BooleanSupplier condition) {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "Условие не выполнено за 5 секунд");
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
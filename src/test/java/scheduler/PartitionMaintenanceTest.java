@@ -0,0 +1,69 @@
+package scheduler;
+
+import com.apimonitor.config.ApiConfig;
+import com.apimonitor.scheduler.PartitionMaintenance;
+import com.apimonitor.service.impl.ResponseBodyStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class PartitionMaintenanceTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private ResponseBodyStore bodyStore;
+    private PartitionMaintenance maintenance;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        bodyStore = mock(ResponseBodyStore.class);
+        ApiConfig config = new ApiConfig();
+        config.getRetention().setRetentionDays(14);
+        config.getRetention().setPrecreateDays(3);
+        maintenance = new PartitionMaintenance(jdbcTemplate, config, bodyStore);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void databaseIs(String product) {
+        when(jdbcTemplate.execute(any(ConnectionCallback.class))).thenReturn(product);
+    }
+
+    @Test
+    void maintain_createsAndDropsPartitionsOnPostgres() {
+        databaseIs("PostgreSQL");
+        when(jdbcTemplate.queryForObject(anyString(), eq(Integer.class), anyInt())).thenReturn(1);
+
+        maintenance.maintain();
+
+        verify(jdbcTemplate).queryForObject("SELECT api_metrics_create_partitions(current_date, ?)", Integer.class, 3);
+        verify(jdbcTemplate).queryForObject("SELECT api_metrics_drop_partitions(?)", Integer.class, 14);
+        verify(bodyStore).evictAll();
+    }
+
+    @Test
+    void maintain_skipsOtherDatabasesAndChecksOnlyOnce() {
+        databaseIs("H2");
+
+        maintenance.maintain();
+        maintenance.maintain();
+
+        verify(jdbcTemplate, times(1)).execute(any(ConnectionCallback.class));
+        verify(jdbcTemplate, never()).queryForObject(anyString(), eq(Integer.class), any(Object[].class));
+    }
+
+    @Test
+    void maintain_survivesDatabaseErrors() {
+        databaseIs("PostgreSQL");
+        when(jdbcTemplate.queryForObject(anyString(), eq(Integer.class), anyInt()))
+                .thenThrow(new DataAccessResourceFailureException("down"));
+
+        maintenance.maintain();
+
+        verify(jdbcTemplate).queryForObject(anyString(), eq(Integer.class), anyInt());
+    }
+}
@@ -0,0 +1,96 @@
+package scheduler;
+
+import com.apimonitor.config.ApiConfig;
+import com.apimonitor.scheduler.ProbeExecutor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProbeExecutorTest {
+
+    private ProbeExecutor executor;
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdown();
+    }
+
+    private ProbeExecutor newExecutor(int maxInFlight, long roundTimeoutMs) {
+        ApiConfig config = new ApiConfig();
+        config.getExecution().setMaxInFlight(maxInFlight);
+        config.getExecution().setRoundTimeoutMs(roundTimeoutMs);
+        return new ProbeExecutor(config);
+    }
+
+    @Test
+    void runRound_executesProbesConcurrently() {
+        executor = newExecutor(100, 5000);
+        List<Integer> items = IntStream.range(0, 50).boxed().toList();
+
+        long start = System.nanoTime();
+        ProbeExecutor.RoundResult result = executor.runRound(items, i -> sleep(200));
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        assertEquals(50, result.completed());
+        assertEquals(0, result.failed());
+        assertEquals(0, result.timedOut());
+        // последовательно это заняло бы 10 секунд
+        assertTrue(elapsedMs < 2000, "Раунд должен длиться примерно как самая медленная проверка: " + elapsedMs);
+    }
+
+    @Test
+    void runRound_respectsInFlightLimit() {
+        executor = newExecutor(3, 5000);
+        AtomicInteger current = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+
+        ProbeExecutor.RoundResult result = executor.runRound(IntStream.range(0, 20).boxed().toList(), i -> {
+            peak.accumulateAndGet(current.incrementAndGet(), Math::max);
+            sleep(20);
+            current.decrementAndGet();
+        });
+
+        assertEquals(20, result.completed());
+        assertTrue(peak.get() <= 3, "Одновременно выполнялось проверок: " + peak.get());
+    }
+
+    @Test
+    void runRound_cancelsProbesAfterDeadline() {
+        executor = newExecutor(10, 300);
+
+        long start = System.nanoTime();
+        ProbeExecutor.RoundResult result = executor.runRound(List.of(50L, 10_000L), this::sleep);
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        assertEquals(1, result.completed());
+        assertEquals(1, result.timedOut());
+        assertTrue(elapsedMs < 2000, "Раунд должен завершиться по крайнему сроку: " + elapsedMs);
+    }
+
+    @Test
+    void runRound_countsFailedProbes() {
+        executor = newExecutor(10, 5000);
+
+        ProbeExecutor.RoundResult result = executor.runRound(List.of(1, 2, 3), i -> {
+            if (i == 2) {
+                throw new IllegalStateException("boom");
+            }
+        });
+
+        assertEquals(2, result.completed());
+        assertEquals(1, result.failed());
+    }
+
+    private void sleep(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
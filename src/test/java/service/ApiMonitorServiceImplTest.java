@@ -6,22 +6,27 @@ import com.apimonitor.dto.ApiMetricsSummary;
 import com.apimonitor.mapper.ApiMetricsMapper;
 import com.apimonitor.model.impl.ApiEndpointImpl;
 import com.apimonitor.model.impl.ApiMetricsImpl;
+import com.apimonitor.model.impl.MetricsAggregate;
+import com.apimonitor.probe.ProbeResult;
+import com.apimonitor.probe.ProbeTransport;
 import com.apimonitor.repository.ApiEndpointRepository;
 import com.apimonitor.repository.MetricsRepository;
+import com.apimonitor.scheduler.ProbeExecutor;
+import com.apimonitor.service.EndpointRegistry;
+import com.apimonitor.service.MetricsRollupService;
+import com.apimonitor.service.MetricsWriter;
 import com.apimonitor.service.impl.ApiMonitorServiceImpl;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.HttpMethod;
-import org.springframework.http.ResponseEntity;
-import org.springframework.web.client.HttpStatusCodeException;
-import org.springframework.web.client.RestTemplate;
 
 import jakarta.persistence.EntityNotFoundException;
+import java.net.ConnectException;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
@@ -30,22 +35,29 @@ import static org.mockito.Mockito.*;
 
 class ApiMonitorServiceImplTest {
 
-    private RestTemplate restTemplate;
+    private ProbeTransport probeTransport;
     private MetricsRepository metricsRepository;
     private ApiEndpointRepository endpointRepository;
+    private EndpointRegistry endpointRegistry;
     private ApiMetricsMapper metricsMapper;
+    private MetricsWriter metricsWriter;
+    private MetricsRollupService rollupService;
     private ApiMonitorServiceImpl service;
 
     @BeforeEach
     void setUp() {
-        restTemplate = mock(RestTemplate.class);
+        probeTransport = mock(ProbeTransport.class);
         metricsRepository = mock(MetricsRepository.class);
         endpointRepository = mock(ApiEndpointRepository.class);
+        endpointRegistry = mock(EndpointRegistry.class);
         metricsMapper = mock(ApiMetricsMapper.class);
-        ApiConfig apiConfig = mock(ApiConfig.class);
+        ProbeExecutor probeExecutor = mock(ProbeExecutor.class);
+        metricsWriter = mock(MetricsWriter.class);
+        rollupService = mock(MetricsRollupService.class);
 
         service = new ApiMonitorServiceImpl(
-                restTemplate, metricsRepository, endpointRepository, metricsMapper, apiConfig);
+                probeTransport, metricsRepository, endpointRepository, endpointRegistry, metricsMapper, probeExecutor,
+                metricsWriter, rollupService);
     }
 
     @Test
@@ -61,27 +73,84 @@ class ApiMonitorServiceImplTest {
         storedEndpoint.setId(1L);
         storedEndpoint.setName(conf.getName());
         storedEndpoint.setUrl(conf.getUrl());
-        when(endpointRepository.findByName(conf.getName())).thenReturn(Optional.of(storedEndpoint));
+        when(endpointRegistry.resolve(conf)).thenReturn(storedEndpoint);
 
-        ResponseEntity<String> responseEntity = ResponseEntity.ok()
-                .headers(new HttpHeaders())
-                .body("response body");
-        when(restTemplate.exchange(eq(conf.getUrl()), eq(HttpMethod.GET), isNull(), eq(String.class)))
-                .thenReturn(responseEntity);
+        ProbeResult result = ProbeResult.builder()
+                .statusCode(200)
+                .headers(Map.of("Content-Type", "application/json"))
+                .body("response body")
+                .bodyHash("0f1e")
+                .bodySize(13)
+                .build();
+        when(probeTransport.execute(conf)).thenReturn(CompletableFuture.completedFuture(result));
 
         // Act
         service.monitorSingleConfigEndpoint(conf);
 
         // Assert
         ArgumentCaptor<ApiMetricsImpl> captor = ArgumentCaptor.forClass(ApiMetricsImpl.class);
-        verify(metricsRepository).save(captor.capture());
+        verify(metricsWriter).submit(captor.capture());
         ApiMetricsImpl saved = captor.getValue();
         assertThat(saved.getEndpoint()).isEqualTo(storedEndpoint);
         assertThat(saved.getApiName()).isEqualTo(conf.getName());
         assertThat(saved.getApiUrl()).isEqualTo(conf.getUrl());
         assertThat(saved.isSuccess()).isTrue();
         assertThat(saved.getStatusCode()).isEqualTo(200);
+        assertThat(saved.getTimestamp()).isNotNull();
+        // ответ попадает в секцию того же дня, что и метрика
+        assertThat(saved.getResponse().getCreatedAt()).isEqualTo(saved.getTimestamp());
         assertThat(saved.getResponse().getBody()).isEqualTo("response body");
+        assertThat(saved.getResponse().getBodyHash()).isEqualTo("0f1e");
+        assertThat(saved.getResponse().getBodySize()).isEqualTo(13L);
+        assertThat(saved.getResponse().getHeaders()).containsEntry("Content-Type", "application/json");
+        verifyNoInteractions(endpointRepository);
+    }
+
+    @Test
+    void testMonitorSingleConfigEndpoint_tracksBodyChanges() {
+        ApiConfig.ApiEndpoint conf = new ApiConfig.ApiEndpoint();
+        conf.setName("hashApi");
+        conf.setUrl("http://example.com");
+        conf.setMethod("GET");
+        ApiEndpointImpl storedEndpoint = new ApiEndpointImpl();
+        storedEndpoint.setId(1L);
+        when(endpointRegistry.resolve(conf)).thenReturn(storedEndpoint);
+        when(probeTransport.execute(conf)).thenReturn(
+                CompletableFuture.completedFuture(ProbeResult.builder().statusCode(200).body("a").bodyHash("aa").build()),
+                CompletableFuture.completedFuture(ProbeResult.builder().statusCode(200).body("a").bodyHash("aa").build()),
+                CompletableFuture.completedFuture(ProbeResult.builder().statusCode(200).body("b").bodyHash("bb").build()));
+
+        service.monitorSingleConfigEndpoint(conf);
+        service.monitorSingleConfigEndpoint(conf);
+        service.monitorSingleConfigEndpoint(conf);
+
+        ArgumentCaptor<ApiMetricsImpl> captor = ArgumentCaptor.forClass(ApiMetricsImpl.class);
+        verify(metricsWriter, times(3)).submit(captor.capture());
+        assertThat(captor.getAllValues()).extracting(ApiMetricsImpl::getBodyChanged)
+                .containsExactly(null, false, true);
+    }
+
+    @Test
+    void testForgetEndpoint_dropsLastBodyHash() {
+        ApiConfig.ApiEndpoint conf = new ApiConfig.ApiEndpoint();
+        conf.setName("hashApi");
+        conf.setUrl("http://example.com");
+        conf.setMethod("GET");
+        ApiEndpointImpl storedEndpoint = new ApiEndpointImpl();
+        storedEndpoint.setId(1L);
+        when(endpointRegistry.resolve(conf)).thenReturn(storedEndpoint);
+        when(probeTransport.execute(conf)).thenAnswer(invocation -> CompletableFuture.completedFuture(
+                ProbeResult.builder().statusCode(200).body("a").bodyHash("aa").build()));
+
+        service.monitorSingleConfigEndpoint(conf);
+        service.forgetEndpoint(1L);
+        service.monitorSingleConfigEndpoint(conf);
+
+        ArgumentCaptor<ApiMetricsImpl> captor = ArgumentCaptor.forClass(ApiMetricsImpl.class);
+        verify(metricsWriter, times(2)).submit(captor.capture());
+        // после снятия эндпоинта сравнивать не с чем
+        assertThat(captor.getAllValues()).extracting(ApiMetricsImpl::getBodyChanged)
+                .containsExactly(null, null);
     }
 
     @Test
@@ -92,22 +161,21 @@ class ApiMonitorServiceImplTest {
         conf.setUrl("http://error.com");
         conf.setMethod("POST");
 
-        when(endpointRepository.findByName(conf.getName())).thenReturn(Optional.empty());
-        when(endpointRepository.save(any(ApiEndpointImpl.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(endpointRegistry.resolve(conf)).thenReturn(new ApiEndpointImpl());
 
-        HttpStatusCodeException exception = mock(HttpStatusCodeException.class);
-        when(exception.getStatusCode()).thenReturn(org.springframework.http.HttpStatus.NOT_FOUND);
-        when(exception.getResponseBodyAsString()).thenReturn("Not Found");
-        when(exception.getResponseHeaders()).thenReturn(null);
-        when(restTemplate.exchange(eq(conf.getUrl()), eq(HttpMethod.POST), isNull(), eq(String.class)))
-                .thenThrow(exception);
+        ProbeResult result = ProbeResult.builder()
+                .statusCode(404)
+                .headers(null)
+                .body("Not Found")
+                .build();
+        when(probeTransport.execute(conf)).thenReturn(CompletableFuture.completedFuture(result));
 
         // Act
         service.monitorSingleConfigEndpoint(conf);
 
         // Assert
         ArgumentCaptor<ApiMetricsImpl> captor = ArgumentCaptor.forClass(ApiMetricsImpl.class);
-        verify(metricsRepository).save(captor.capture());
+        verify(metricsWriter).submit(captor.capture());
         ApiMetricsImpl saved = captor.getValue();
         assertThat(saved.getStatusCode()).isEqualTo(404);
         assertThat(saved.isSuccess()).isFalse();
@@ -115,23 +183,96 @@ class ApiMonitorServiceImplTest {
     }
 
     @Test
-    void testGetAllMetricsSummaries() {
+    void testMonitorSingleConfigEndpoint_transportError() {
         // Arrange
-        ApiMetricsImpl m1 = new ApiMetricsImpl();
-        ApiMetricsImpl m2 = new ApiMetricsImpl();
-        List<ApiMetricsImpl> metricsList = List.of(m1, m2);
-        when(metricsRepository.findAll()).thenReturn(metricsList);
+        ApiConfig.ApiEndpoint conf = new ApiConfig.ApiEndpoint();
+        conf.setName("downApi");
+        conf.setUrl("http://down.example");
+        conf.setMethod("GET");
 
-        ApiMetricsSummary s1 = new ApiMetricsSummary();
-        ApiMetricsSummary s2 = new ApiMetricsSummary();
-        when(metricsMapper.toSummary(m1)).thenReturn(s1);
-        when(metricsMapper.toSummary(m2)).thenReturn(s2);
+        when(endpointRegistry.resolve(conf)).thenReturn(new ApiEndpointImpl());
+        when(probeTransport.execute(conf))
+                .thenReturn(CompletableFuture.failedFuture(new ConnectException("Connection refused")));
+
+        // Act
+        service.monitorSingleConfigEndpoint(conf);
+
+        // Assert
+        ArgumentCaptor<ApiMetricsImpl> captor = ArgumentCaptor.forClass(ApiMetricsImpl.class);
+        verify(metricsWriter).submit(captor.capture());
+        ApiMetricsImpl saved = captor.getValue();
+        assertThat(saved.getStatusCode()).isEqualTo(500);
+        assertThat(saved.isSuccess()).isFalse();
+        assertThat(saved.getErrorMessage()).isEqualTo("Connection refused");
+    }
+
+    @Test
+    void testMonitorSingleConfigEndpoint_limitsErrorMessages() {
+        // Arrange
+        ApiConfig.ApiEndpoint conf = new ApiConfig.ApiEndpoint();
+        conf.setName("bigErrApi");
+        conf.setUrl("http://error.com");
+        conf.setMethod("GET");
+
+        when(endpointRegistry.resolve(conf)).thenReturn(new ApiEndpointImpl());
+        when(probeTransport.execute(conf))
+                .thenReturn(CompletableFuture.completedFuture(
+                        ProbeResult.builder().statusCode(500).body("x".repeat(10_000)).build()))
+                .thenReturn(CompletableFuture.failedFuture(new ConnectException("y".repeat(10_000))));
+
+        // Act
+        service.monitorSingleConfigEndpoint(conf);
+        service.monitorSingleConfigEndpoint(conf);
+
+        // Assert
+        ArgumentCaptor<ApiMetricsImpl> captor = ArgumentCaptor.forClass(ApiMetricsImpl.class);
+        verify(metricsWriter, times(2)).submit(captor.capture());
+        assertThat(captor.getAllValues()).allSatisfy(saved -> assertThat(saved.getErrorMessage()).hasSize(2048));
+    }
+
+    @Test
+    void testGetAllMetricsSummaries_onePerEndpointFromRollups() {
+        // Arrange
+        LocalDateTime earliest = LocalDateTime.now().minusDays(3);
+        when(rollupService.findEarliestTimestamp()).thenReturn(Optional.of(earliest));
+        MetricsAggregate aggregate = new MetricsAggregate();
+        for (int i = 0; i < 3; i++) {
+            aggregate.addSample(200, true, 100_000, null);
+        }
+        aggregate.addSample(500, false, 300_000, null);
+        when(rollupService.aggregateByEndpoint(isNull(), eq(earliest), any())).thenReturn(Map.of(1L, aggregate));
+        when(endpointRepository.findAll()).thenReturn(List.of(endpoint(1L, "api1"), endpoint(2L, "idle")));
 
         // Act
         List<ApiMetricsSummary> summaries = service.getAllMetricsSummaries();
 
         // Assert
-        assertThat(summaries).containsExactly(s1, s2);
+        assertThat(summaries).extracting(ApiMetricsSummary::getApiName).containsExactly("api1", "idle");
+        ApiMetricsSummary api1 = summaries.get(0);
+        assertThat(api1.getApiUrl()).isEqualTo("http://api1");
+        assertThat(api1.getTotalRequests()).isEqualTo(4);
+        assertThat(api1.getSuccessfulRequests()).isEqualTo(3);
+        assertThat(api1.getFailedRequests()).isEqualTo(1);
+        assertThat(api1.getSuccessRate()).isEqualTo(75.0);
+        assertThat(api1.getAvgResponseMs()).isEqualTo(150.0);
+        assertThat(api1.getP50Ms()).isNotNull();
+        ApiMetricsSummary idle = summaries.get(1);
+        assertThat(idle.getTotalRequests()).isZero();
+        assertThat(idle.getSuccessRate()).isZero();
+        assertThat(idle.getP50Ms()).isNull();
+        verify(metricsRepository, never()).findAll();
+    }
+
+    @Test
+    void testGetAllMetricsSummaries_withoutData_skipsAggregation() {
+        when(rollupService.findEarliestTimestamp()).thenReturn(Optional.empty());
+        when(endpointRepository.findAll()).thenReturn(List.of(endpoint(1L, "api1")));
+
+        List<ApiMetricsSummary> summaries = service.getAllMetricsSummaries();
+
+        assertThat(summaries).hasSize(1);
+        assertThat(summaries.get(0).getTotalRequests()).isZero();
+        verify(rollupService, never()).aggregateByEndpoint(any(), any(), any());
     }
 
     @Test
@@ -148,7 +289,7 @@ class ApiMonitorServiceImplTest {
         LocalDateTime to = LocalDateTime.now();
         ApiMetricsImpl m = new ApiMetricsImpl();
         List<ApiMetricsImpl> metrics = List.of(m);
-        when(metricsRepository.findByApiNameAndTimestampBetween(endpoint.getName(), from, to))
+        when(metricsRepository.findByEndpointIdAndTimestampBetween(endpointId, from, to))
                 .thenReturn(metrics);
 
         ApiMetricsReport report = new ApiMetricsReport();
@@ -171,4 +312,12 @@ class ApiMonitorServiceImplTest {
                 .isInstanceOf(EntityNotFoundException.class)
                 .hasMessageContaining("Endpoint not found: 99");
     }
+
+    private static ApiEndpointImpl endpoint(long id, String name) {
+        ApiEndpointImpl endpoint = new ApiEndpointImpl();
+        endpoint.setId(id);
+        endpoint.setName(name);
+        endpoint.setUrl("http://" + name);
+        return endpoint;
+    }
 }
@@ -0,0 +1,154 @@
+package service;
+
+import com.apimonitor.config.ApiConfig;
+import com.apimonitor.mapper.ApiEndpointMapper;
+import com.apimonitor.model.impl.ApiEndpointImpl;
+import com.apimonitor.repository.ApiEndpointRepository;
+import com.apimonitor.service.impl.EndpointRegistryImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class EndpointRegistryImplTest {
+
+    private ApiEndpointRepository repository;
+    private ApiConfig config;
+    private EndpointRegistryImpl registry;
+    private final AtomicLong ids = new AtomicLong(100);
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(ApiEndpointRepository.class);
+        config = new ApiConfig();
+        when(repository.saveAll(anyList())).thenAnswer(invocation -> {
+            List<ApiEndpointImpl> saved = invocation.getArgument(0);
+            saved.forEach(endpoint -> endpoint.setId(ids.incrementAndGet()));
+            return saved;
+        });
+        when(repository.save(any(ApiEndpointImpl.class))).thenAnswer(invocation -> {
+            ApiEndpointImpl endpoint = invocation.getArgument(0);
+            endpoint.setId(ids.incrementAndGet());
+            return endpoint;
+        });
+        registry = new EndpointRegistryImpl(repository, ApiEndpointMapper.INSTANCE, config,
+                mock(PlatformTransactionManager.class));
+    }
+
+    private static ApiConfig.ApiEndpoint conf(String name, String url) {
+        ApiConfig.ApiEndpoint conf = new ApiConfig.ApiEndpoint();
+        conf.setName(name);
+        conf.setUrl(url);
+        conf.setMethod("GET");
+        conf.setFrequencyMs(1000);
+        return conf;
+    }
+
+    private static ApiEndpointImpl stored(long id, String name, String url) {
+        ApiEndpointImpl endpoint = new ApiEndpointImpl();
+        endpoint.setId(id);
+        endpoint.setName(name);
+        endpoint.setUrl(url);
+        endpoint.setMethod("GET");
+        endpoint.setFrequencyMs(1000);
+        return endpoint;
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void start_upsertsChangedEndpointsInOneBatch() {
+        config.setEndpoints(List.of(conf("same", "http://a"), conf("moved", "http://new"), conf("added", "http://c")));
+        when(repository.findAll()).thenReturn(List.of(stored(1L, "same", "http://a"), stored(2L, "moved", "http://old")));
+
+        registry.start();
+
+        ArgumentCaptor<List<ApiEndpointImpl>> saved = ArgumentCaptor.forClass(List.class);
+        verify(repository).saveAll(saved.capture());
+        assertEquals(List.of("moved", "added"), saved.getValue().stream().map(ApiEndpointImpl::getName).toList());
+        assertEquals("http://new", registry.find("moved").orElseThrow().getUrl());
+        assertEquals(1L, registry.find("same").orElseThrow().getId());
+        assertNotNull(registry.find("added").orElseThrow().getId());
+    }
+
+    @Test
+    void resolve_servesRegisteredEndpointsWithoutLookups() {
+        ApiConfig.ApiEndpoint conf = conf("api", "http://a");
+        config.setEndpoints(List.of(conf));
+        when(repository.findAll()).thenReturn(List.of(stored(1L, "api", "http://a")));
+        registry.start();
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals(1L, registry.resolve(conf).getId());
+        }
+
+        verify(repository, never()).findByName(anyString());
+        verify(repository, never()).save(any());
+    }
+
+    @Test
+    void invalidate_reloadsEndpointOnNextResolve() {
+        ApiConfig.ApiEndpoint conf = conf("api", "http://a");
+        config.setEndpoints(List.of(conf));
+        when(repository.findAll()).thenReturn(List.of(stored(1L, "api", "http://a")));
+        when(repository.findByName("api")).thenReturn(Optional.of(stored(1L, "api", "http://a")));
+        registry.start();
+
+        registry.invalidate("api");
+        registry.resolve(conf);
+        registry.resolve(conf);
+
+        verify(repository, times(1)).findByName("api");
+        verify(repository, never()).save(any());
+    }
+
+    @Test
+    void resolve_createsUnknownEndpoint() {
+        ApiEndpointImpl endpoint = registry.resolve(conf("late", "http://late"));
+
+        assertNotNull(endpoint.getId());
+        assertEquals("http://late", endpoint.getUrl());
+        verify(repository).save(endpoint);
+    }
+
+    @Test
+    void start_cachesActiveDatabaseEndpointsAndVersion() {
+        ApiEndpointImpl created = stored(5L, "fromApi", "http://api");
+        created.setVersion(42);
+        ApiEndpointImpl deleted = stored(6L, "deleted", "http://gone");
+        deleted.setActive(false);
+        deleted.setVersion(43);
+        when(repository.findAll()).thenReturn(List.of(created, deleted));
+
+        registry.start();
+
+        assertEquals(List.of("fromApi"), registry.definitions().stream().map(ApiConfig.ApiEndpoint::getName).toList());
+        assertTrue(registry.find("deleted").isEmpty());
+        assertEquals(43, registry.version());
+    }
+
+    @Test
+    void update_replacesRenamedEndpointAndDropsInactive() {
+        when(repository.findAll()).thenReturn(List.of(stored(1L, "old", "http://a")));
+        registry.start();
+
+        ApiEndpointImpl renamed = stored(1L, "new", "http://a");
+        ApiEndpointImpl previous = registry.update(renamed);
+
+        assertEquals("old", previous.getName());
+        assertTrue(registry.find("old").isEmpty());
+        assertSame(renamed, registry.findById(1L).orElseThrow());
+
+        renamed.setActive(false);
+        registry.update(renamed);
+        assertTrue(registry.find("new").isEmpty());
+        assertTrue(registry.findById(1L).isEmpty());
+    }
+}
@@ -0,0 +1,178 @@
+package service;
+
+import com.apimonitor.config.ApiConfig;
+import com.apimonitor.mapper.ApiEndpointMapper;
+import com.apimonitor.model.impl.ApiEndpointImpl;
+import com.apimonitor.repository.ApiEndpointRepository;
+import com.apimonitor.scheduler.MonitoringScheduler;
+import com.apimonitor.service.EndpointRegistry;
+import com.apimonitor.service.impl.EndpointServiceImpl;
+import jakarta.persistence.EntityExistsException;
+import jakarta.persistence.EntityNotFoundException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class EndpointServiceImplTest {
+
+    private ApiEndpointRepository repository;
+    private MonitoringScheduler scheduler;
+    private EndpointServiceImpl service;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(ApiEndpointRepository.class);
+        scheduler = mock(MonitoringScheduler.class);
+        when(repository.save(any(ApiEndpointImpl.class))).thenAnswer(invocation -> {
+            ApiEndpointImpl endpoint = invocation.getArgument(0);
+            if (endpoint.getId() == null) {
+                endpoint.setId(10L);
+            }
+            return endpoint;
+        });
+        service = new EndpointServiceImpl(repository, mock(EndpointRegistry.class), ApiEndpointMapper.INSTANCE,
+                scheduler, mock(PlatformTransactionManager.class));
+    }
+
+    private static ApiConfig.ApiEndpoint definition(String name, String url) {
+        ApiConfig.ApiEndpoint conf = new ApiConfig.ApiEndpoint();
+        conf.setName(name);
+        conf.setUrl(url);
+        conf.setMethod("GET");
+        conf.setFrequencyMs(1000);
+        return conf;
+    }
+
+    private static ApiEndpointImpl stored(String name, boolean active) {
+        ApiEndpointImpl endpoint = new ApiEndpointImpl();
+        endpoint.setId(1L);
+        endpoint.setName(name);
+        endpoint.setUrl("http://old");
+        endpoint.setMethod("GET");
+        endpoint.setActive(active);
+        return endpoint;
+    }
+
+    @Test
+    void create_savesAndSchedulesEndpoint() {
+        when(repository.findByName("new")).thenReturn(Optional.empty());
+
+        ApiConfig.ApiEndpoint created = service.create(definition("new", "http://new"));
+
+        assertEquals(definition("new", "http://new"), created);
+        ArgumentCaptor<ApiEndpointImpl> applied = ArgumentCaptor.forClass(ApiEndpointImpl.class);
+        verify(scheduler).apply(applied.capture());
+        assertEquals(10L, applied.getValue().getId());
+        assertTrue(applied.getValue().isActive());
+    }
+
+    @Test
+    void create_rejectsExistingActiveEndpoint() {
+        when(repository.findByName("api")).thenReturn(Optional.of(stored("api", true)));
+
+        assertThrows(EntityExistsException.class, () -> service.create(definition("api", "http://new")));
+        verify(scheduler, never()).apply(any());
+    }
+
+    @Test
+    void create_restoresDeletedEndpoint() {
+        ApiEndpointImpl deleted = stored("api", false);
+        when(repository.findByName("api")).thenReturn(Optional.of(deleted));
+
+        service.create(definition("api", "http://new"));
+
+        assertTrue(deleted.isActive());
+        assertEquals("http://new", deleted.getUrl());
+        assertEquals(1L, deleted.getId());
+    }
+
+    @Test
+    void create_reusesUrlAndMethodOfDeletedEndpoint() {
+        when(repository.findByName("new")).thenReturn(Optional.empty());
+        when(repository.findByUrlAndMethodAndActiveTrue("http://old", "GET")).thenReturn(Optional.empty());
+
+        ApiConfig.ApiEndpoint created = service.create(definition("new", "http://old"));
+
+        assertEquals("http://old", created.getUrl());
+        verify(repository).findByUrlAndMethodAndActiveTrue("http://old", "GET");
+        verify(scheduler).apply(any());
+    }
+
+    @Test
+    void create_rejectsUrlAndMethodOfActiveEndpoint() {
+        when(repository.findByName("new")).thenReturn(Optional.empty());
+        when(repository.findByUrlAndMethodAndActiveTrue("http://old", "GET")).thenReturn(Optional.of(stored("api", true)));
+
+        assertThrows(EntityExistsException.class, () -> service.create(definition("new", "http://old")));
+        verify(repository, never()).save(any());
+    }
+
+    @Test
+    void update_keepsOwnUrlAndMethod() {
+        ApiEndpointImpl existing = stored("api", true);
+        when(repository.findByName("api")).thenReturn(Optional.of(existing));
+        when(repository.findByUrlAndMethodAndActiveTrue("http://old", "GET")).thenReturn(Optional.of(existing));
+
+        service.update("api", definition(null, "http://old"));
+
+        verify(scheduler).apply(existing);
+    }
+
+    @Test
+    void create_rejectsIncompleteDefinition() {
+        assertThrows(IllegalArgumentException.class, () -> service.create(definition("api", " ")));
+    }
+
+    @Test
+    void update_keepsNameFromPath() {
+        ApiEndpointImpl existing = stored("api", true);
+        when(repository.findByName("api")).thenReturn(Optional.of(existing));
+
+        ApiConfig.ApiEndpoint updated = service.update("api", definition(null, "http://changed"));
+
+        assertEquals("api", updated.getName());
+        assertEquals("http://changed", existing.getUrl());
+        verify(scheduler).apply(existing);
+    }
+
+    @Test
+    void update_appliesRequestHeaders() {
+        ApiEndpointImpl existing = stored("api", true);
+        when(repository.findByName("api")).thenReturn(Optional.of(existing));
+        ApiConfig.ApiEndpoint definition = definition("api", "http://changed");
+        definition.setHeaders(Map.of("Authorization", "Bearer token"));
+
+        ApiConfig.ApiEndpoint updated = service.update("api", definition);
+
+        assertEquals(Map.of("Authorization", "Bearer token"), existing.getHeaders());
+        assertEquals(Map.of("Authorization", "Bearer token"), updated.getHeaders());
+        verify(scheduler).apply(existing);
+    }
+
+    @Test
+    void delete_marksEndpointInactive() {
+        ApiEndpointImpl existing = stored("api", true);
+        when(repository.findByName("api")).thenReturn(Optional.of(existing));
+
+        service.delete("api");
+
+        assertFalse(existing.isActive());
+        verify(repository, never()).delete(any());
+        verify(scheduler).apply(existing);
+    }
+
+    @Test
+    void delete_unknownEndpointFails() {
+        when(repository.findByName("gone")).thenReturn(Optional.of(stored("gone", false)));
+
+        assertThrows(EntityNotFoundException.class, () -> service.delete("gone"));
+    }
+}
@@ -0,0 +1,163 @@
+package service;
+
+import com.apimonitor.config.ApiConfig;
+import com.apimonitor.dto.ExportFormat;
+import com.apimonitor.dto.MetricsExportRow;
+import com.apimonitor.model.impl.ApiEndpointImpl;
+import com.apimonitor.repository.ApiEndpointRepository;
+import com.apimonitor.repository.MetricsRepository;
+import com.apimonitor.service.MetricsExportService;
+import com.apimonitor.service.impl.MetricsExportServiceImpl;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class MetricsExportServiceImplTest {
+
+    private static final LocalDateTime FROM = LocalDateTime.of(2025, 4, 1, 0, 0);
+    private static final LocalDateTime TO = LocalDateTime.of(2025, 4, 2, 0, 0);
+
+    @Mock
+    private MetricsRepository metricsRepository;
+
+    @Mock
+    private ApiEndpointRepository endpointRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private MetricsExportServiceImpl exportService;
+
+    @BeforeEach
+    void setUp() {
+        ApiConfig config = new ApiConfig();
+        config.getExport().setMaxConcurrent(2);
+        config.getExport().setTimeoutMs(90_500);
+        ObjectMapper objectMapper = new ObjectMapper()
+                .registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        exportService = new MetricsExportServiceImpl(metricsRepository, endpointRepository, objectMapper,
+                transactionManager, config);
+    }
+
+    @Test
+    void export_ndjson_writesOneObjectPerLineAndClosesStream() throws Exception {
+        AtomicBoolean closed = new AtomicBoolean();
+        when(metricsRepository.streamForExport(FROM, TO)).thenReturn(
+                Stream.of(row(1L, null), row(2L, "timeout")).onClose(() -> closed.set(true)));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        long rows = exportService.export(null, FROM, TO, ExportFormat.NDJSON, out);
+
+        assertEquals(2, rows);
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(2, lines.length);
+        assertTrue(lines[0].startsWith("{\"id\":1,\"apiName\":\"api1\""), lines[0]);
+        assertTrue(lines[0].contains("\"timestamp\":\"2025-04-01T10:00:00\""), lines[0]);
+        assertTrue(lines[1].contains("\"errorMessage\":\"timeout\""), lines[1]);
+        assertTrue(closed.get(), "Поток курсора должен закрываться после выгрузки");
+        verify(transactionManager).getTransaction(argThat(definition -> definition.isReadOnly()
+                && definition.getTimeout() == 91));
+    }
+
+    @Test
+    void tryAcquire_limitsConcurrentExports() {
+        Optional<MetricsExportService.Slot> first = exportService.tryAcquire();
+        Optional<MetricsExportService.Slot> second = exportService.tryAcquire();
+
+        assertTrue(first.isPresent());
+        assertTrue(second.isPresent());
+        assertEquals(90_500, first.get().timeoutMs());
+        assertTrue(exportService.tryAcquire().isEmpty());
+
+        first.get().close();
+        // повторное закрытие не освобождает чужое место
+        first.get().close();
+        Optional<MetricsExportService.Slot> third = exportService.tryAcquire();
+        assertTrue(third.isPresent());
+        assertTrue(exportService.tryAcquire().isEmpty());
+    }
+
+    @Test
+    void export_csv_writesHeaderAndEscapesFields() throws Exception {
+        when(endpointRepository.findByName("api1")).thenReturn(Optional.of(endpoint(7L)));
+        when(metricsRepository.streamForExportByEndpoint(7L, FROM, TO))
+                .thenReturn(Stream.of(row(1L, "bad \"gateway\", retry\nlater")));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        long rows = exportService.export("api1", FROM, TO, ExportFormat.CSV, out);
+
+        assertEquals(1, rows);
+        assertEquals("""
+                id,api_name,api_url,timestamp,status_code,success,response_time_ms,response_time_us,dns_us,\
+                connect_us,tls_us,ttfb_us,download_us,error_message
+                1,api1,http://api1,2025-04-01T10:00,200,true,12,12345,,,,,,"bad ""gateway"", retry
+                later"
+                """, out.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void export_unknownApi_writesOnlyHeader() throws Exception {
+        when(endpointRepository.findByName("missing")).thenReturn(Optional.empty());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        long rows = exportService.export("missing", FROM, TO, ExportFormat.CSV, out);
+
+        assertEquals(0, rows);
+        assertEquals(1, out.toString(StandardCharsets.UTF_8).lines().count());
+        verify(metricsRepository, never()).streamForExportByEndpoint(any(), any(), any());
+    }
+
+    @Test
+    void export_largePeriod_flushesWhileReading() throws Exception {
+        when(metricsRepository.streamForExport(FROM, TO))
+                .thenReturn(LongStream.rangeClosed(1, 2500).mapToObj(id -> row(id, null)));
+        CountingFlushes out = new CountingFlushes();
+
+        long rows = exportService.export(null, FROM, TO, ExportFormat.NDJSON, out);
+
+        assertEquals(2500, rows);
+        assertTrue(out.flushes >= 3, "Строки должны отдаваться клиенту порциями: " + out.flushes);
+        assertEquals(2500, out.toString(StandardCharsets.UTF_8).lines().count());
+    }
+
+    private static MetricsExportRow row(long id, String errorMessage) {
+        return new MetricsExportRow(id, "api1", "http://api1", LocalDateTime.of(2025, 4, 1, 10, 0), 200, true,
+                12L, 12345L, null, null, null, null, null, errorMessage);
+    }
+
+    private static ApiEndpointImpl endpoint(Long id) {
+        ApiEndpointImpl endpoint = new ApiEndpointImpl();
+        endpoint.setId(id);
+        endpoint.setName("api1");
+        return endpoint;
+    }
+
+    private static final class CountingFlushes extends ByteArrayOutputStream {
+        private int flushes;
+
+        @Override
+        public void flush() {
+            flushes++;
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package service;
+
+import com.apimonitor.config.ApiConfig;
+import com.apimonitor.model.impl.MetricsAggregate;
+import com.apimonitor.repository.MetricsRollupRepository;
+import com.apimonitor.repository.MetricsRollupRepository.BucketKey;
+import com.apimonitor.repository.MetricsRollupRepository.Resolution;
+import com.apimonitor.service.impl.MetricsRollupServiceImpl;
+import com.apimonitor.service.impl.MetricsRollupServiceImpl.Segment;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class MetricsRollupServiceImplTest {
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2024, 5, 1, 0, 0);
+
+    private MetricsRollupRepository repository;
+    private MetricsRollupServiceImpl service;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(MetricsRollupRepository.class);
+        ApiConfig config = new ApiConfig();
+        config.getRollup().setLagMs(60_000);
+        service = new MetricsRollupServiceImpl(repository, mock(PlatformTransactionManager.class), config);
+    }
+
+    @Test
+    void plan_withoutRollups_readsRawOnly() {
+        when(repository.findWatermark(any())).thenReturn(Optional.empty());
+
+        List<Segment> plan = service.plan(T0.plusMinutes(5), T0.plusHours(5));
+
+        assertEquals(List.of(new Segment(null, T0.plusMinutes(5), T0.plusHours(5), true)), plan);
+    }
+
+    @Test
+    void plan_usesCoarsestResolutionAndRawEdges() {
+        when(repository.findWatermark(Resolution.HOUR)).thenReturn(Optional.of(T0.plusHours(4)));
+        when(repository.findWatermark(Resolution.MINUTE)).thenReturn(Optional.of(T0.plusHours(4).plusMinutes(30)));
+
+        LocalDateTime from = T0.plusMinutes(10).plusSeconds(30);
+        LocalDateTime to = T0.plusHours(5);
+        List<Segment> plan = service.plan(from, to);
+
+        assertEquals(List.of(
+                new Segment(null, from, T0.plusMinutes(11), false),
+                new Segment(Resolution.MINUTE, T0.plusMinutes(11), T0.plusHours(1), false),
+                new Segment(Resolution.HOUR, T0.plusHours(1), T0.plusHours(4), false),
+                new Segment(Resolution.MINUTE, T0.plusHours(4), T0.plusHours(4).plusMinutes(30), false),
+                new Segment(null, T0.plusHours(4).plusMinutes(30), to, true)
+        ), plan);
+    }
+
+    @Test
+    void plan_shortRange_staysOnMinutes() {
+        when(repository.findWatermark(Resolution.HOUR)).thenReturn(Optional.of(T0.plusHours(4)));
+        when(repository.findWatermark(Resolution.MINUTE)).thenReturn(Optional.of(T0.plusHours(4)));
+
+        List<Segment> plan = service.plan(T0.plusMinutes(10), T0.plusMinutes(40));
+
+        assertEquals(List.of(
+                new Segment(Resolution.MINUTE, T0.plusMinutes(10), T0.plusMinutes(40), false),
+                new Segment(null, T0.plusMinutes(40), T0.plusMinutes(40), true)
+        ), plan);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void aggregateByEndpoint_mergesSegmentsPerEndpoint() {
+        when(repository.findWatermark(Resolution.HOUR)).thenReturn(Optional.empty());
+        when(repository.findWatermark(Resolution.MINUTE)).thenReturn(Optional.of(T0.plusMinutes(30)));
+        doAnswer(invocation -> {
+            BiFunction<Long, LocalDateTime, MetricsAggregate> target = invocation.getArgument(4);
+            target.apply(1L, T0).addSample(200, true, 100_000, null);
+            target.apply(2L, T0).addSample(500, false, 300_000, null);
+            return null;
+        }).when(repository).foldBuckets(eq(Resolution.MINUTE), isNull(), any(), any(), any());
+        doAnswer(invocation -> {
+            Function<Long, MetricsAggregate> target = invocation.getArgument(4);
+            target.apply(1L).addSample(200, true, 200_000, null);
+            return null;
+        }).when(repository).aggregateRaw(isNull(), any(), any(), anyBoolean(), any());
+
+        Map<Long, MetricsAggregate> result = service.aggregateByEndpoint(null, T0, T0.plusMinutes(45));
+
+        assertEquals(2, result.get(1L).getCount());
+        assertEquals(150.0, result.get(1L).avgMs());
+        assertEquals(1, result.get(2L).getErrorCount());
+        verify(repository).foldBuckets(eq(Resolution.MINUTE), isNull(), eq(T0), eq(T0.plusMinutes(30)), any(BiFunction.class));
+        verify(repository).aggregateRaw(isNull(), eq(T0.plusMinutes(30)), eq(T0.plusMinutes(45)), eq(true), any());
+        verify(repository, never()).foldRaw(any(), any(), any(), anyBoolean(), any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void aggregate_foldsEverythingIntoOneAggregateWithFusedRawQueries() {
+        when(repository.findWatermark(Resolution.HOUR)).thenReturn(Optional.empty());
+        when(repository.findWatermark(Resolution.MINUTE)).thenReturn(Optional.of(T0.plusMinutes(30)));
+        doAnswer(invocation -> {
+            BiFunction<Long, LocalDateTime, MetricsAggregate> target = invocation.getArgument(4);
+            target.apply(1L, T0).addSample(200, true, 100_000, null);
+            target.apply(2L, T0).addSample(500, false, 300_000, null);
+            return null;
+        }).when(repository).foldBuckets(eq(Resolution.MINUTE), isNull(), any(), any(), any());
+        doAnswer(invocation -> {
+            MetricsAggregate target = invocation.getArgument(4);
+            target.addSample(200, true, 200_000, null);
+            return null;
+        }).when(repository).aggregateRawTotal(isNull(), any(), any(), anyBoolean(), any());
+
+        MetricsAggregate total = service.aggregate(null, T0, T0.plusMinutes(45));
+
+        assertEquals(3, total.getCount());
+        assertEquals(1, total.getErrorCount());
+        assertEquals(200.0, total.avgMs());
+        verify(repository).aggregateRawTotal(isNull(), eq(T0.plusMinutes(30)), eq(T0.plusMinutes(45)), eq(true), any());
+        verify(repository, never()).aggregateRaw(any(), any(), any(), anyBoolean(), any());
+    }
+
+    @Test
+    void findEarliestTimestamp_takesOldestOfRawAndRollups() {
+        when(repository.findEarliestBucket(Resolution.HOUR)).thenReturn(Optional.of(T0.minusDays(60)));
+        when(repository.findEarliestBucket(Resolution.MINUTE)).thenReturn(Optional.of(T0.minusDays(20)));
+        when(repository.findEarliestRawTimestamp()).thenReturn(Optional.empty());
+
+        assertEquals(Optional.of(T0.minusDays(60)), service.findEarliestTimestamp());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void rollUp_foldsRawIntoMinutesAndMinutesIntoHours() {
+        when(repository.findWatermark(Resolution.MINUTE)).thenReturn(Optional.of(T0.plusMinutes(30)));
+        when(repository.findWatermark(Resolution.HOUR)).thenReturn(Optional.of(T0));
+        doAnswer(invocation -> {
+            BiFunction<Long, LocalDateTime, MetricsAggregate> target = invocation.getArgument(4);
+            LocalDateTime from = invocation.getArgument(1);
+            target.apply(1L, from.plusSeconds(10)).addSample(200, true, 1_000, null);
+            target.apply(1L, from.plusSeconds(20)).addSample(200, true, 3_000, null);
+            return null;
+        }).when(repository).foldRaw(isNull(), any(), any(), eq(false), any());
+
+        service.rollUp(T0.plusHours(1).plusMinutes(1).plusSeconds(30));
+
+        // минуты до now - lag, округлённого до минуты
+        verify(repository).foldRaw(isNull(), eq(T0.plusMinutes(30)), eq(T0.plusHours(1)), eq(false), any());
+        verify(repository).insertBuckets(eq(Resolution.MINUTE), argThat(buckets -> {
+            MetricsAggregate bucket = buckets.get(new BucketKey(1L, T0.plusMinutes(30)));
+            return buckets.size() == 1 && bucket.getCount() == 2 && bucket.getSumUs() == 4_000;
+        }));
+        verify(repository).saveWatermark(Resolution.MINUTE, T0.plusHours(1));
+        // часовые агрегаты — по целым часам, уже свёрнутым в минуты
+        verify(repository).foldBuckets(eq(Resolution.MINUTE), isNull(), eq(T0), eq(T0.plusHours(1)), any(BiFunction.class));
+        verify(repository).saveWatermark(Resolution.HOUR, T0.plusHours(1));
+        verify(repository).deleteBucketsBefore(eq(Resolution.MINUTE), any());
+        verify(repository).deleteBucketsBefore(eq(Resolution.HOUR), any());
+    }
+
+    @Test
+    void rollUp_withoutState_startsFromEarliestRawMinute() {
+        when(repository.findWatermark(any())).thenReturn(Optional.empty());
+        when(repository.findEarliestRawTimestamp()).thenReturn(Optional.of(T0.plusMinutes(2).plusSeconds(15)));
+        when(repository.findEarliestBucket(Resolution.MINUTE)).thenReturn(Optional.empty());
+
+        service.rollUp(T0.plusMinutes(10));
+
+        verify(repository).foldRaw(isNull(), eq(T0.plusMinutes(2)), eq(T0.plusMinutes(9)), eq(false), any());
+        verify(repository).saveWatermark(Resolution.MINUTE, T0.plusMinutes(9));
+        verify(repository, never()).saveWatermark(eq(Resolution.HOUR), any());
+    }
+}
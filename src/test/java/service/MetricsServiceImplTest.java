@@ -1,22 +1,35 @@
 package service;
 
+import com.apimonitor.config.ApiConfig;
+import com.apimonitor.repository.ApiEndpointRepository;
 import com.apimonitor.repository.MetricsRepository;
+import com.apimonitor.model.impl.ApiEndpointImpl;
+import com.apimonitor.model.impl.MetricsAggregate;
 import com.apimonitor.model.impl.ApiMetricsImpl;
+import com.apimonitor.model.impl.LatencyBreakdown;
 import com.apimonitor.dto.ApiMetricsReport;
+import com.apimonitor.dto.MetricsFilter;
+import com.apimonitor.dto.MetricsPage;
+import com.apimonitor.service.impl.MetricsCursor;
 import com.apimonitor.service.impl.MetricsServiceImpl;
+import com.apimonitor.service.impl.ReportCache;
+import com.apimonitor.service.impl.ReportExecutor;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.repository.query.FluentQuery.FetchableFluentQuery;
 
 import java.time.LocalDateTime;
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -27,7 +40,13 @@ class MetricsServiceImplTest {
     @Mock
     private MetricsRepository metricsRepository;
 
-    @InjectMocks
+    @Mock
+    private ApiEndpointRepository endpointRepository;
+
+    @Mock
+    private ReportCache reportCache;
+
+    private ReportExecutor reportExecutor;
     private MetricsServiceImpl metricsService;
 
     private LocalDateTime from;
@@ -37,85 +56,111 @@ class MetricsServiceImplTest {
     void setUp() {
         from = LocalDateTime.now().minusHours(1);
         to = LocalDateTime.now();
+        ApiConfig config = new ApiConfig();
+        config.getReports().setParallelism(4);
+        reportExecutor = new ReportExecutor(config, null);
+        config.getMetricsPage().setMaxSize(3);
+        metricsService = new MetricsServiceImpl(metricsRepository, endpointRepository, reportCache, reportExecutor, config);
+    }
+
+    @AfterEach
+    void tearDown() {
+        reportExecutor.shutdown();
     }
 
     @Test
-    void findAll_returnsAllMetrics() {
-        List<ApiMetricsImpl> expected = Arrays.asList(
-                ApiMetricsImpl.builder().apiName("api1").build(),
-                ApiMetricsImpl.builder().apiName("api2").build()
-        );
-        when(metricsRepository.findAll()).thenReturn(expected);
+    void findPage_returnsCursorWhenMoreRowsRemain() {
+        LocalDateTime t = LocalDateTime.of(2025, 1, 1, 12, 0);
+        FetchableFluentQuery<ApiMetricsImpl> query = stubFindBy(List.of(
+                metric(5L, t.plusSeconds(2)), metric(4L, t.plusSeconds(1)), metric(3L, t.plusSeconds(1)),
+                metric(2L, t)));
+
+        MetricsPage page = metricsService.findPage(new MetricsFilter(null, null, null, null, null), null, 50);
+
+        // запрошенный размер уменьшен до максимального (3), лишняя строка показывает наличие продолжения
+        verify(query).limit(4);
+        assertEquals(List.of(5L, 4L, 3L), page.getItems().stream().map(ApiMetricsImpl::getId).toList());
+        assertEquals(new MetricsCursor(t.plusSeconds(1), 3L), MetricsCursor.decode(page.getNextCursor()));
+    }
+
+    @Test
+    void findPage_lastPageHasNoCursor() {
+        LocalDateTime t = LocalDateTime.of(2025, 1, 1, 12, 0);
+        stubFindBy(List.of(metric(2L, t)));
+        when(endpointRepository.findByName("api1")).thenReturn(Optional.of(endpoint(1L, "api1", "url1")));
 
-        List<ApiMetricsImpl> actual = metricsService.findAll();
+        MetricsPage page = metricsService.findPage(new MetricsFilter("api1", null, null, 200, true),
+                new MetricsCursor(t.plusMinutes(1), 10L).encode(), null);
 
-        assertEquals(expected, actual);
-        verify(metricsRepository, times(1)).findAll();
+        assertEquals(1, page.getItems().size());
+        assertNull(page.getNextCursor());
     }
 
     @Test
-    void findByFilter_withAllParams_callsFilteredRepo() {
-        List<ApiMetricsImpl> filtered = Collections.singletonList(
-                ApiMetricsImpl.builder().apiName("api1").build()
-        );
-        when(metricsRepository.findByApiNameAndTimestampBetween("api1", from, to))
-                .thenReturn(filtered);
+    void findPage_unknownApiName_returnsEmptyPage() {
+        when(endpointRepository.findByName("nope")).thenReturn(Optional.empty());
 
-        List<ApiMetricsImpl> actual = metricsService.findByFilter("api1", from, to);
+        MetricsPage page = metricsService.findPage(new MetricsFilter("nope", null, null, null, null), null, null);
 
-        assertEquals(filtered, actual);
-        verify(metricsRepository, times(1)).findByApiNameAndTimestampBetween("api1", from, to);
+        assertTrue(page.getItems().isEmpty());
+        verifyNoInteractions(metricsRepository);
     }
 
     @Test
-    void findByFilter_withNullParam_returnsAll() {
-        List<ApiMetricsImpl> all = Collections.singletonList(
-                ApiMetricsImpl.builder().apiName("apiX").build()
-        );
-        when(metricsRepository.findAll()).thenReturn(all);
-
-        assertEquals(all, metricsService.findByFilter(null, from, to));
-        assertEquals(all, metricsService.findByFilter("api1", null, to));
-        assertEquals(all, metricsService.findByFilter("api1", from, null));
-        verify(metricsRepository, times(3)).findAll();
+    void findPage_rejectsBrokenCursorAndNonPositiveSize() {
+        MetricsFilter filter = new MetricsFilter(null, null, null, null, null);
+
+        assertThrows(IllegalArgumentException.class, () -> metricsService.findPage(filter, "not-a-cursor", null));
+        assertThrows(IllegalArgumentException.class, () -> metricsService.findPage(filter, null, 0));
+        verifyNoInteractions(metricsRepository);
     }
 
     @Test
     void getAverageResponseTime_returnsValueOrZero() {
-        when(metricsRepository.findAverageResponseTime("api1", from, to)).thenReturn(250.5);
+        when(endpointRepository.findByName("api1")).thenReturn(Optional.of(endpoint(1L, "api1", "url1")));
+        MetricsAggregate aggregate = new MetricsAggregate();
+        aggregate.addSample(200, true, 250_000, null);
+        aggregate.addSample(200, true, 251_000, null);
+        when(reportCache.aggregate(1L, from, to)).thenReturn(aggregate);
         assertEquals(250.5, metricsService.getAverageResponseTime("api1", from, to));
 
-        when(metricsRepository.findAverageResponseTime("api2", from, to)).thenReturn(null);
+        when(endpointRepository.findByName("api2")).thenReturn(Optional.empty());
         assertEquals(0.0, metricsService.getAverageResponseTime("api2", from, to));
     }
 
     @Test
     void getErrorCount_returnsCount() {
-        when(metricsRepository.countByApiNameAndTimestampBetweenAndSuccessFalse("api1", from, to))
-                .thenReturn(5L);
+        when(endpointRepository.findByName("api1")).thenReturn(Optional.of(endpoint(1L, "api1", "url1")));
+        MetricsAggregate aggregate = new MetricsAggregate();
+        for (int i = 0; i < 5; i++) {
+            aggregate.addSample(500, false, 1_000, null);
+        }
+        aggregate.addSample(200, true, 1_000, null);
+        when(reportCache.aggregate(1L, from, to)).thenReturn(aggregate);
         assertEquals(5L, metricsService.getErrorCount("api1", from, to));
     }
 
     @Test
     void buildReports_aggregatesMetricsCorrectly() {
-        // Prepare repository stubs
-        when(metricsRepository.findDistinctApiName()).thenReturn(Arrays.asList("api1", "api2"));
-
-        ApiMetricsImpl m1 = ApiMetricsImpl.builder()
-                .apiName("api1").apiUrl("url1").statusCode(200).responseTimeMs(100).success(true).build();
-        ApiMetricsImpl m2 = ApiMetricsImpl.builder()
-                .apiName("api1").apiUrl("url1").statusCode(500).responseTimeMs(300).success(false).build();
-        when(metricsRepository.findByApiNameAndTimestampBetween("api1", from, to))
-                .thenReturn(Arrays.asList(m1, m2));
-
-        ApiMetricsImpl m3 = ApiMetricsImpl.builder()
-                .apiName("api2").apiUrl("url2").statusCode(404).responseTimeMs(150).success(false).build();
-        when(metricsRepository.findByApiNameAndTimestampBetween("api2", from, to))
-                .thenReturn(Collections.singletonList(m3));
+        // Prepare stubs: агрегаты всех эндпоинтов одним сгруппированным запросом к кэшу отчётов
+        when(endpointRepository.findAll()).thenReturn(Arrays.asList(
+                endpoint(1L, "api1", "url1"), endpoint(2L, "api2", "url2"), endpoint(3L, "idle", "url3")));
+
+        MetricsAggregate a1 = new MetricsAggregate();
+        a1.addSample(200, true, 100_000,
+                LatencyBreakdown.builder().dnsUs(500L).ttfbUs(90_000L).downloadUs(9_500L).totalUs(100_000L).build());
+        a1.addSample(500, false, 300_000,
+                LatencyBreakdown.builder().dnsUs(1_500L).ttfbUs(290_000L).downloadUs(8_500L).totalUs(300_000L).build());
+        MetricsAggregate a2 = new MetricsAggregate();
+        a2.addSample(404, false, 150_000, null);
+        when(reportCache.aggregateByEndpoint(null, from, to)).thenReturn(Map.of(1L, a1, 2L, a2));
 
         List<ApiMetricsReport> reports = metricsService.buildReports(from, to);
 
-        assertEquals(2, reports.size());
+        verify(reportCache).aggregateByEndpoint(null, from, to);
+        verify(reportCache, never()).aggregate(any(), any(), any());
+        assertEquals(3, reports.size());
+        assertEquals(List.of("api1", "api2", "idle"), reports.stream().map(ApiMetricsReport::getApiName).toList());
         // Validate report for api1
         ApiMetricsReport r1 = reports.stream()
                 .filter(r -> "api1".equals(r.getApiName()))
@@ -130,6 +175,14 @@ class MetricsServiceImplTest {
         expectedDist1.put(200, 1L);
         expectedDist1.put(500, 1L);
         assertEquals(expectedDist1, r1.getStatusCodeDistribution());
+        assertEquals(1.0, r1.getAvgDnsMs());
+        assertEquals(190.0, r1.getAvgTtfbMs());
+        assertEquals(9.0, r1.getAvgDownloadMs());
+        assertNull(r1.getAvgConnectMs());
+        // процентили оцениваются по ячейкам гистограммы с точностью 12.5%
+        assertEquals(100.0, r1.getP50Ms(), 12.5);
+        assertEquals(300.0, r1.getP99Ms(), 37.5);
+        assertEquals(300.0, r1.getP999Ms(), 37.5);
 
         // Validate report for api2
         ApiMetricsReport r2 = reports.stream()
@@ -144,5 +197,48 @@ class MetricsServiceImplTest {
         Map<Integer, Long> expectedDist2 = new HashMap<>();
         expectedDist2.put(404, 1L);
         assertEquals(expectedDist2, r2.getStatusCodeDistribution());
+
+        // Эндпоинт без проверок за период получает пустой отчёт
+        ApiMetricsReport idle = reports.stream()
+                .filter(r -> "idle".equals(r.getApiName()))
+                .findFirst().orElseThrow();
+        assertEquals(0, idle.getTotalRequests());
+        assertEquals(0.0, idle.getAvgResponseMs());
+        assertTrue(idle.getStatusCodeDistribution().isEmpty());
+        assertNull(idle.getP50Ms());
+        assertNull(idle.getP99Ms());
+    }
+
+    @Test
+    void buildReports_rethrowsEndpointFailure() {
+        when(endpointRepository.findAll()).thenReturn(List.of(endpoint(1L, "api1", "url1")));
+        when(reportCache.aggregateByEndpoint(null, from, to)).thenThrow(new IllegalStateException("db down"));
+
+        IllegalStateException ex = assertThrows(IllegalStateException.class,
+                () -> metricsService.buildReports(from, to));
+        assertEquals("db down", ex.getMessage());
+    }
+
+    @SuppressWarnings("unchecked")
+    private FetchableFluentQuery<ApiMetricsImpl> stubFindBy(List<ApiMetricsImpl> rows) {
+        FetchableFluentQuery<ApiMetricsImpl> query = mock(FetchableFluentQuery.class, RETURNS_SELF);
+        when(query.all()).thenReturn(rows);
+        when(metricsRepository.findBy(any(Specification.class), any())).thenAnswer(invocation -> {
+            Function<FetchableFluentQuery<ApiMetricsImpl>, ?> queryFunction = invocation.getArgument(1);
+            return queryFunction.apply(query);
+        });
+        return query;
+    }
+
+    private static ApiMetricsImpl metric(long id, LocalDateTime timestamp) {
+        return ApiMetricsImpl.builder().id(id).timestamp(timestamp).build();
+    }
+
+    private static ApiEndpointImpl endpoint(long id, String name, String url) {
+        ApiEndpointImpl endpoint = new ApiEndpointImpl();
+        endpoint.setId(id);
+        endpoint.setName(name);
+        endpoint.setUrl(url);
+        return endpoint;
     }
 }
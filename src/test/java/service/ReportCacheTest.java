@@ -0,0 +1,132 @@
+package service;
+
+import com.apimonitor.config.ApiConfig;
+import com.apimonitor.model.impl.ApiEndpointImpl;
+import com.apimonitor.model.impl.ApiMetricsImpl;
+import com.apimonitor.model.impl.MetricsAggregate;
+import com.apimonitor.repository.MetricsRollupRepository.Resolution;
+import com.apimonitor.service.MetricsRollupService;
+import com.apimonitor.service.impl.ReportCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class ReportCacheTest {
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2025, 1, 1, 10, 0);
+
+    private MetricsRollupService rollupService;
+    private SimpleMeterRegistry meterRegistry;
+    private ReportCache cache;
+
+    @BeforeEach
+    void setUp() {
+        rollupService = mock(MetricsRollupService.class);
+        meterRegistry = new SimpleMeterRegistry();
+        cache = new ReportCache(rollupService, new ApiConfig(), meterRegistry);
+        when(rollupService.aggregateByEndpoint(any(), any(), any(), anyBoolean())).thenReturn(Map.of());
+        when(rollupService.aggregateByBucket(any(), any(), any(), any())).thenAnswer(invocation -> {
+            Resolution resolution = invocation.getArgument(1);
+            LocalDateTime from = invocation.getArgument(2);
+            LocalDateTime to = invocation.getArgument(3);
+            // по одной проверке на эндпоинт 1 в каждом интервале
+            Map<LocalDateTime, Map<Long, MetricsAggregate>> buckets = new HashMap<>();
+            for (LocalDateTime t = from; t.isBefore(to); t = t.plus(1, resolution.unit())) {
+                buckets.put(t, Map.of(1L, sample()));
+            }
+            return buckets;
+        });
+    }
+
+    private static MetricsAggregate sample() {
+        MetricsAggregate aggregate = new MetricsAggregate();
+        aggregate.addSample(200, true, 100_000, null);
+        return aggregate;
+    }
+
+    @Test
+    void aggregateByEndpoint_cachesClosedHours() {
+        Map<Long, MetricsAggregate> first = cache.aggregateByEndpoint(null, T0, T0.plusHours(3));
+        Map<Long, MetricsAggregate> second = cache.aggregateByEndpoint(null, T0, T0.plusHours(3));
+
+        assertEquals(3, first.get(1L).getCount());
+        assertEquals(3, second.get(1L).getCount());
+        verify(rollupService, times(1)).aggregateByBucket(null, Resolution.HOUR, T0, T0.plusHours(3));
+        // правая граница (точка 13:00) не образует целого интервала и читается каждый раз
+        verify(rollupService, times(2)).aggregateByEndpoint(null, T0.plusHours(3), T0.plusHours(3), true);
+        assertEquals(3.0, meterRegistry.get("cache.gets").tag("cache", "reports").tag("result", "hit").functionCounter().count());
+        assertEquals(3.0, meterRegistry.get("cache.gets").tag("cache", "reports").tag("result", "miss").functionCounter().count());
+    }
+
+    @Test
+    void aggregate_readsEdgesWithoutEndpointBreakdown() {
+        when(rollupService.aggregate(any(), any(), any(), anyBoolean())).thenReturn(sample());
+        LocalDateTime to = T0.plusHours(3).plusSeconds(30);
+
+        MetricsAggregate total = cache.aggregate(null, T0, to);
+
+        // три закрытых часа из кэша и правый край одним запросом без разбивки по эндпоинтам
+        assertEquals(4, total.getCount());
+        verify(rollupService).aggregate(null, T0.plusHours(3), to, true);
+        verify(rollupService, never()).aggregateByEndpoint(any(), any(), any(), anyBoolean());
+    }
+
+    @Test
+    void aggregateByEndpoint_splitsRangeIntoHoursMinutesAndEdges() {
+        LocalDateTime from = T0.plusMinutes(30);
+        LocalDateTime to = T0.plusHours(2).plusMinutes(15).plusSeconds(30);
+
+        Map<Long, MetricsAggregate> result = cache.aggregateByEndpoint(7L, from, to);
+
+        // 30 минут + 1 час + 15 минут
+        assertEquals(46, result.get(1L).getCount());
+        verify(rollupService).aggregateByBucket(7L, Resolution.MINUTE, from, T0.plusHours(1));
+        verify(rollupService).aggregateByBucket(7L, Resolution.HOUR, T0.plusHours(1), T0.plusHours(2));
+        verify(rollupService).aggregateByBucket(7L, Resolution.MINUTE, T0.plusHours(2), T0.plusHours(2).plusMinutes(15));
+        verify(rollupService).aggregateByEndpoint(7L, T0.plusHours(2).plusMinutes(15), to, true);
+    }
+
+    @Test
+    void invalidate_reloadsOnlyTouchedBuckets() {
+        cache.aggregateByEndpoint(null, T0, T0.plusHours(3));
+        ApiEndpointImpl endpoint = new ApiEndpointImpl();
+        endpoint.setId(1L);
+
+        cache.invalidate(List.of(ApiMetricsImpl.builder().endpoint(endpoint).timestamp(T0.plusHours(1).plusMinutes(30)).build()));
+        cache.aggregateByEndpoint(null, T0, T0.plusHours(3));
+
+        verify(rollupService).aggregateByBucket(null, Resolution.HOUR, T0.plusHours(1), T0.plusHours(2));
+        verify(rollupService, times(2)).aggregateByBucket(any(), any(), any(), any());
+    }
+
+    @Test
+    void aggregateByEndpoint_doesNotCacheOpenBuckets() {
+        LocalDateTime from = LocalDateTime.now().plusHours(1);
+
+        cache.aggregateByEndpoint(null, from, from.plusHours(2));
+        cache.aggregateByEndpoint(null, from, from.plusHours(2));
+
+        verify(rollupService, never()).aggregateByBucket(any(), any(), any(), any());
+        verify(rollupService, times(2)).aggregateByEndpoint(null, from, from.plusHours(2), true);
+    }
+
+    @Test
+    void disabledCache_readsRollupsDirectly() {
+        ApiConfig config = new ApiConfig();
+        config.getReportCache().setEnabled(false);
+        ReportCache disabled = new ReportCache(rollupService, config, meterRegistry);
+        when(rollupService.aggregate(null, T0, T0.plusHours(3))).thenReturn(sample());
+
+        assertEquals(1, disabled.aggregate(null, T0, T0.plusHours(3)).getCount());
+        verify(rollupService, never()).aggregateByBucket(any(), any(), any(), any());
+    }
+}
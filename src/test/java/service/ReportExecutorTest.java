@@ -0,0 +1,167 @@
+package service;
+
+import com.apimonitor.config.ApiConfig;
+import com.apimonitor.service.impl.ReportExecutor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReportExecutorTest {
+
+    private ReportExecutor executor;
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdown();
+    }
+
+    private ReportExecutor newExecutor(int parallelism, long timeoutMs) {
+        ApiConfig config = new ApiConfig();
+        config.getReports().setParallelism(parallelism);
+        config.getReports().setTimeoutMs(timeoutMs);
+        return new ReportExecutor(config, null);
+    }
+
+    @Test
+    void submit_runsTasksConcurrently() throws Exception {
+        executor = newExecutor(50, 10_000);
+        CountDownLatch allStarted = new CountDownLatch(50);
+
+        // каждая задача ждёт, пока запустятся все остальные: при последовательном выполнении они не дождутся
+        List<CompletableFuture<Integer>> results = IntStream.range(0, 50)
+                .mapToObj(i -> executor.submit(() -> {
+                    allStarted.countDown();
+                    try {
+                        if (!allStarted.await(5, TimeUnit.SECONDS)) {
+                            throw new IllegalStateException("Задачи выполняются не параллельно");
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return i * 2;
+                }))
+                .toList();
+
+        for (int i = 0; i < results.size(); i++) {
+            assertEquals(i * 2, results.get(i).get(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    void submit_respectsParallelismLimit() throws Exception {
+        executor = newExecutor(3, 5000);
+        AtomicInteger current = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+
+        List<CompletableFuture<Integer>> results = IntStream.range(0, 20)
+                .mapToObj(i -> executor.submit(() -> {
+                    peak.accumulateAndGet(current.incrementAndGet(), Math::max);
+                    sleep(20);
+                    current.decrementAndGet();
+                    return i;
+                }))
+                .toList();
+
+        CompletableFuture.allOf(results.toArray(CompletableFuture[]::new)).get(5, TimeUnit.SECONDS);
+        assertTrue(peak.get() <= 3, "Одновременно выполнялось задач: " + peak.get());
+    }
+
+    @Test
+    void parallelism_defaultsToHalfOfPool() {
+        executor = newExecutor(0, 5000);
+
+        assertEquals(5, executor.getParallelism());
+    }
+
+    @Test
+    void submit_failsAfterDeadlineAndInterruptsTask() throws Exception {
+        executor = newExecutor(10, 200);
+        CountDownLatch interrupted = new CountDownLatch(1);
+
+        CompletableFuture<Long> result = executor.submit(() -> {
+            try {
+                Thread.sleep(10_000);
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+            return 10_000L;
+        });
+
+        ExecutionException ex = assertThrows(ExecutionException.class, () -> result.get(2, TimeUnit.SECONDS));
+        assertInstanceOf(TimeoutException.class, ex.getCause());
+        assertTrue(interrupted.await(2, TimeUnit.SECONDS), "Незавершенная задача должна быть прервана");
+    }
+
+    @Test
+    void submit_failsOnTaskError() {
+        executor = newExecutor(10, 5000);
+
+        CompletableFuture<Integer> result = executor.submit(() -> {
+            throw new IllegalStateException("boom");
+        });
+
+        ExecutionException ex = assertThrows(ExecutionException.class, () -> result.get(2, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalStateException.class, ex.getCause());
+    }
+
+    @Test
+    void submit_runsTaskWithPermit() throws Exception {
+        executor = newExecutor(1, 5000);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Integer> busy = executor.submit(() -> {
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return 1;
+        });
+
+        CompletableFuture<String> result = executor.submit(() -> "report");
+
+        // единственное разрешение занято, задача ждёт его
+        assertThrows(TimeoutException.class, () -> result.get(100, TimeUnit.MILLISECONDS));
+        release.countDown();
+        assertEquals("report", result.get(2, TimeUnit.SECONDS));
+        assertEquals(1, busy.get(2, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void submit_cancelInterruptsTask() throws Exception {
+        executor = newExecutor(10, 5000);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+
+        CompletableFuture<Integer> result = executor.submit(() -> {
+            started.countDown();
+            try {
+                Thread.sleep(10_000);
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+            return 1;
+        });
+        assertTrue(started.await(2, TimeUnit.SECONDS));
+        result.cancel(true);
+
+        assertTrue(interrupted.await(2, TimeUnit.SECONDS), "Отмена должна прерывать задачу");
+    }
+
+    private void sleep(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -1,7 +1,12 @@
 package service;
 
 import com.apimonitor.dto.ApiMetricsSummary;
-import com.apimonitor.repository.MetricsRepository;
+import com.apimonitor.model.impl.ApiEndpointImpl;
+import com.apimonitor.model.impl.MetricsAggregate;
+import com.apimonitor.repository.ApiEndpointRepository;
+import com.apimonitor.service.EndpointRegistry;
+import com.apimonitor.service.impl.ReportCache;
+import com.apimonitor.service.RollingWindowAggregator;
 import com.apimonitor.service.impl.ReportServiceImpl;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -9,8 +14,10 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
 
 import java.time.LocalDateTime;
+import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -19,7 +26,19 @@ import static org.mockito.Mockito.*;
 class ReportServiceImplTest {
 
     @Mock
-    private MetricsRepository metricsRepository;
+    private ApiEndpointRepository endpointRepository;
+
+    @Mock
+    private EndpointRegistry endpointRegistry;
+
+    @Mock
+    private ReportCache reportCache;
+
+    @Mock
+    private RollingWindowAggregator rollingWindows;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
 
     @InjectMocks
     private ReportServiceImpl reportService;
@@ -34,11 +53,10 @@ class ReportServiceImplTest {
     }
 
     @Test
-    void aggregateSummary_withApiName_usesFilteredCountsAndAverage() {
+    void aggregateSummary_withApiName_usesEndpointAggregate() {
         // given
-        when(metricsRepository.countByApiNameAndTimestampBetween("api1", from, to)).thenReturn(10L);
-        when(metricsRepository.countByApiNameAndTimestampBetweenAndSuccessFalse("api1", from, to)).thenReturn(3L);
-        when(metricsRepository.findAverageResponseTime("api1", from, to)).thenReturn(200.0);
+        when(endpointRepository.findByName("api1")).thenReturn(Optional.of(endpoint(7L, "api1")));
+        when(reportCache.aggregate(7L, from, to)).thenReturn(aggregate(10, 3, 200));
 
         // when
         LocalDateTime before = LocalDateTime.now();
@@ -51,37 +69,33 @@ class ReportServiceImplTest {
         assertEquals(7L, summary.getSuccessfulRequests());
         assertEquals(3L, summary.getFailedRequests());
         assertEquals(200.0, summary.getAvgResponseMs());
+        assertEquals(200.0, summary.getP50Ms(), 25.0);
+        assertEquals(200.0, summary.getP999Ms(), 25.0);
         assertNotNull(summary.getSummaryGeneratedAt());
         assertFalse(summary.getSummaryGeneratedAt().isBefore(before));
         assertFalse(summary.getSummaryGeneratedAt().isAfter(after));
 
-        verify(metricsRepository).countByApiNameAndTimestampBetween("api1", from, to);
-        verify(metricsRepository).countByApiNameAndTimestampBetweenAndSuccessFalse("api1", from, to);
-        verify(metricsRepository).findAverageResponseTime("api1", from, to);
-        verify(metricsRepository, never()).count();
-        verify(metricsRepository, never()).countBySuccessFalse();
-        verify(metricsRepository, never()).findOverallAverageResponseTime();
+        verify(reportCache).aggregate(7L, from, to);
+        verify(reportCache, never()).aggregate(isNull(), any(), any());
     }
 
     @Test
-    void aggregateSummary_withApiName_nullAverage_returnsZero() {
-        when(metricsRepository.countByApiNameAndTimestampBetween("apiX", from, to)).thenReturn(5L);
-        when(metricsRepository.countByApiNameAndTimestampBetweenAndSuccessFalse("apiX", from, to)).thenReturn(1L);
-        when(metricsRepository.findAverageResponseTime("apiX", from, to)).thenReturn(null);
+    void aggregateSummary_withUnknownApiName_returnsZeros() {
+        when(endpointRepository.findByName("apiX")).thenReturn(Optional.empty());
 
         ApiMetricsSummary summary = reportService.aggregateSummary("apiX", from, to);
 
-        assertEquals(5L, summary.getTotalRequests());
-        assertEquals(4L, summary.getSuccessfulRequests());
-        assertEquals(1L, summary.getFailedRequests());
+        assertEquals(0L, summary.getTotalRequests());
+        assertEquals(0L, summary.getSuccessfulRequests());
+        assertEquals(0L, summary.getFailedRequests());
         assertEquals(0.0, summary.getAvgResponseMs());
+        assertNull(summary.getP50Ms());
+        verifyNoInteractions(reportCache);
     }
 
     @Test
-    void aggregateSummary_withoutApiName_usesOverallCountsAndAverage() {
-        when(metricsRepository.count()).thenReturn(20L);
-        when(metricsRepository.countBySuccessFalse()).thenReturn(4L);
-        when(metricsRepository.findOverallAverageResponseTime()).thenReturn(150.0);
+    void aggregateSummary_withoutApiName_aggregatesAllEndpointsWithinRange() {
+        when(reportCache.aggregate(null, from, to)).thenReturn(aggregate(20, 4, 150));
 
         LocalDateTime before = LocalDateTime.now();
         ApiMetricsSummary summary = reportService.aggregateSummary(null, from, to);
@@ -91,30 +105,64 @@ class ReportServiceImplTest {
         assertEquals(20L, summary.getTotalRequests());
         assertEquals(16L, summary.getSuccessfulRequests());
         assertEquals(4L, summary.getFailedRequests());
+        assertEquals(80.0, summary.getSuccessRate());
         assertEquals(150.0, summary.getAvgResponseMs());
         assertNotNull(summary.getSummaryGeneratedAt());
         assertFalse(summary.getSummaryGeneratedAt().isBefore(before));
         assertFalse(summary.getSummaryGeneratedAt().isAfter(after));
 
-        verify(metricsRepository).count();
-        verify(metricsRepository).countBySuccessFalse();
-        verify(metricsRepository).findOverallAverageResponseTime();
-        verify(metricsRepository, never()).countByApiNameAndTimestampBetween(any(), any(), any());
-        verify(metricsRepository, never()).countByApiNameAndTimestampBetweenAndSuccessFalse(any(), any(), any());
-        verify(metricsRepository, never()).findAverageResponseTime(any(), any(), any());
+        verify(reportCache).aggregate(null, from, to);
+        verifyNoInteractions(endpointRepository);
     }
 
     @Test
-    void aggregateSummary_withoutApiName_nullOverallAverage_returnsZero() {
-        when(metricsRepository.count()).thenReturn(8L);
-        when(metricsRepository.countBySuccessFalse()).thenReturn(2L);
-        when(metricsRepository.findOverallAverageResponseTime()).thenReturn(null);
+    void aggregateSummary_withoutData_returnsZeroAverage() {
+        when(reportCache.aggregate(null, from, to)).thenReturn(new MetricsAggregate());
 
         ApiMetricsSummary summary = reportService.aggregateSummary(null, from, to);
 
-        assertEquals(8L, summary.getTotalRequests());
-        assertEquals(6L, summary.getSuccessfulRequests());
-        assertEquals(2L, summary.getFailedRequests());
+        assertEquals(0L, summary.getTotalRequests());
+        assertEquals(0L, summary.getFailedRequests());
         assertEquals(0.0, summary.getAvgResponseMs());
     }
-}
\ No newline at end of file
+
+    @Test
+    void aggregateSummary_coveredByRollingWindows_doesNotTouchDatabase() {
+        when(endpointRegistry.find("api1")).thenReturn(Optional.of(endpoint(7L, "api1")));
+        when(rollingWindows.aggregate(7L, from, to)).thenReturn(Optional.of(aggregate(4, 1, 100)));
+
+        ApiMetricsSummary summary = reportService.aggregateSummary("api1", from, to);
+
+        assertEquals(4L, summary.getTotalRequests());
+        assertEquals(1L, summary.getFailedRequests());
+        assertEquals(100.0, summary.getAvgResponseMs());
+        verifyNoInteractions(reportCache, endpointRepository, transactionManager);
+    }
+
+    @Test
+    void aggregateSummary_notCoveredByRollingWindows_fallsBackToRollups() {
+        when(rollingWindows.aggregate(null, from, to)).thenReturn(Optional.empty());
+        when(reportCache.aggregate(null, from, to)).thenReturn(aggregate(2, 0, 50));
+
+        ApiMetricsSummary summary = reportService.aggregateSummary(null, from, to);
+
+        assertEquals(2L, summary.getTotalRequests());
+        verify(transactionManager).getTransaction(any());
+    }
+
+    private static ApiEndpointImpl endpoint(long id, String name) {
+        ApiEndpointImpl endpoint = new ApiEndpointImpl();
+        endpoint.setId(id);
+        endpoint.setName(name);
+        return endpoint;
+    }
+
+    private static MetricsAggregate aggregate(int total, int failed, long avgMs) {
+        MetricsAggregate aggregate = new MetricsAggregate();
+        for (int i = 0; i < total; i++) {
+            boolean success = i >= failed;
+            aggregate.addSample(success ? 200 : 500, success, avgMs * 1000, null);
+        }
+        return aggregate;
+    }
+}
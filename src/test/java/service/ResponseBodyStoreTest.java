@@ -0,0 +1,152 @@
+package service;
+
+import com.apimonitor.config.ApiConfig;
+import com.apimonitor.model.impl.ApiMetricsImpl;
+import com.apimonitor.model.impl.ApiResponseBodyImpl;
+import com.apimonitor.model.impl.ApiResponseImpl;
+import com.apimonitor.repository.ApiResponseBodyRepository;
+import com.apimonitor.service.impl.ResponseBodyStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class ResponseBodyStoreTest {
+
+    private ApiResponseBodyRepository repository;
+    private JdbcTemplate jdbcTemplate;
+    private ResponseBodyStore store;
+    private final AtomicLong ids = new AtomicLong();
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(ApiResponseBodyRepository.class);
+        when(repository.findByBodyHashAndStoredLength(anyString(), anyInt())).thenReturn(Optional.empty());
+        when(repository.save(any(ApiResponseBodyImpl.class))).thenAnswer(invocation -> {
+            ApiResponseBodyImpl body = invocation.getArgument(0);
+            body.setId(ids.incrementAndGet());
+            return body;
+        });
+        when(repository.getReferenceById(anyLong())).thenAnswer(invocation ->
+                ApiResponseBodyImpl.builder().id(invocation.getArgument(0)).build());
+        jdbcTemplate = mock(JdbcTemplate.class);
+        databaseIs("H2");
+        store = new ResponseBodyStore(repository, jdbcTemplate, new ApiConfig());
+    }
+
+    @SuppressWarnings("unchecked")
+    private void databaseIs(String product) {
+        when(jdbcTemplate.execute(any(ConnectionCallback.class))).thenReturn(product);
+    }
+
+    private static ApiMetricsImpl probe(String body, String hash) {
+        ApiResponseBodyImpl content = ApiResponseBodyImpl.builder().body(body).bodyHash(hash).build();
+        return ApiMetricsImpl.builder().response(ApiResponseImpl.builder().content(content).build()).build();
+    }
+
+    @Test
+    void deduplicate_storesEachDistinctBodyOnce() {
+        List<ApiMetricsImpl> batch = List.of(probe("same", "aa"), probe("same", "aa"), probe("other", "bb"));
+
+        store.deduplicate(batch);
+        store.deduplicate(List.of(probe("same", "aa")));
+
+        verify(repository, times(2)).save(any(ApiResponseBodyImpl.class));
+        assertEquals(batch.get(0).getResponse().getContent().getId(), batch.get(1).getResponse().getContent().getId());
+        assertNotEquals(batch.get(0).getResponse().getContent().getId(), batch.get(2).getResponse().getContent().getId());
+        verify(repository, times(2)).findByBodyHashAndStoredLength(anyString(), anyInt());
+    }
+
+    @Test
+    void deduplicate_reusesBodyStoredEarlier() {
+        ApiResponseBodyImpl existing = ApiResponseBodyImpl.builder().id(42L).bodyHash("aa").storedLength(4).build();
+        when(repository.findByBodyHashAndStoredLength("aa", 4)).thenReturn(Optional.of(existing));
+
+        ApiMetricsImpl metrics = probe("same", "aa");
+        store.deduplicate(List.of(metrics));
+
+        assertSame(existing, metrics.getResponse().getContent());
+        verify(repository, never()).save(any());
+    }
+
+    @Test
+    void deduplicate_hashesBodiesWithoutDigestAndDropsEmptyContent() {
+        ApiMetricsImpl error = probe("connection refused", null);
+        ApiMetricsImpl discarded = probe(null, null);
+
+        store.deduplicate(List.of(error, discarded));
+
+        ApiResponseBodyImpl content = error.getResponse().getContent();
+        assertEquals(64, content.getBodyHash().length());
+        assertEquals(18L, content.getBodySize());
+        assertEquals(18, content.getStoredLength());
+        assertNull(discarded.getResponse().getContent());
+    }
+
+    @Test
+    void evictAll_forcesLookupAgain() {
+        store.deduplicate(List.of(probe("same", "aa")));
+        store.evictAll();
+        store.deduplicate(List.of(probe("same", "aa")));
+
+        verify(repository, times(2)).findByBodyHashAndStoredLength("aa", 4);
+    }
+
+    @Test
+    void deduplicate_onPostgresUpsertsBodyAndReturnsStoredId() {
+        databaseIs("PostgreSQL");
+        when(jdbcTemplate.queryForObject(startsWith("INSERT INTO api_response_bodies"), eq(Long.class), any(Object[].class)))
+                .thenReturn(77L);
+        List<ApiMetricsImpl> batch = List.of(probe("same", "aa"), probe("same", "aa"));
+
+        store.deduplicate(batch);
+
+        assertEquals(77L, batch.get(0).getResponse().getContent().getId());
+        assertEquals(77L, batch.get(1).getResponse().getContent().getId());
+        verify(jdbcTemplate, times(1)).queryForObject(contains("ON CONFLICT"), eq(Long.class), any(Object[].class));
+        verify(repository, never()).save(any());
+        verify(repository, never()).findByBodyHashAndStoredLength(anyString(), anyInt());
+    }
+
+    @Test
+    void deduplicate_touchesCachedBodyAfterIntervalAndRestoresDeletedOne() throws Exception {
+        ApiConfig config = new ApiConfig();
+        config.getIngest().setBodyTouchIntervalMs(1);
+        store = new ResponseBodyStore(repository, jdbcTemplate, config);
+        store.deduplicate(List.of(probe("same", "aa")));
+        // тело удалено обслуживанием секций: отметка не находит строку
+        when(jdbcTemplate.update(startsWith("UPDATE api_response_bodies"), any(Object[].class))).thenReturn(0);
+        Thread.sleep(5);
+
+        ApiMetricsImpl metrics = probe("same", "aa");
+        store.deduplicate(List.of(metrics));
+
+        verify(jdbcTemplate).update(startsWith("UPDATE api_response_bodies"), eq(1L));
+        verify(repository, times(2)).save(any(ApiResponseBodyImpl.class));
+        assertEquals(2L, metrics.getResponse().getContent().getId());
+    }
+
+    @Test
+    void deduplicate_keepsCachedBodyWhenTouchSucceeds() throws Exception {
+        ApiConfig config = new ApiConfig();
+        config.getIngest().setBodyTouchIntervalMs(1);
+        store = new ResponseBodyStore(repository, jdbcTemplate, config);
+        store.deduplicate(List.of(probe("same", "aa")));
+        when(jdbcTemplate.update(startsWith("UPDATE api_response_bodies"), any(Object[].class))).thenReturn(1);
+        Thread.sleep(5);
+
+        ApiMetricsImpl metrics = probe("same", "aa");
+        store.deduplicate(List.of(metrics));
+
+        verify(repository, times(1)).save(any(ApiResponseBodyImpl.class));
+        assertEquals(1L, metrics.getResponse().getContent().getId());
+    }
+}
@@ -0,0 +1,155 @@
+package service;
+
+import com.apimonitor.config.ApiConfig;
+import com.apimonitor.model.impl.MetricsAggregate;
+import com.apimonitor.service.impl.RollingWindowAggregatorImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RollingWindowAggregatorImplTest {
+
+    private MutableClock clock;
+    private RollingWindowAggregatorImpl aggregator;
+
+    @BeforeEach
+    void setUp() {
+        clock = new MutableClock(Instant.parse("2025-01-01T12:00:00Z"));
+        aggregator = new RollingWindowAggregatorImpl(new ApiConfig(), clock);
+    }
+
+    private LocalDateTime now() {
+        return LocalDateTime.now(clock);
+    }
+
+    @Test
+    void aggregate_lastMinute_countsRecordedProbes() {
+        clock.advance(Duration.ofMinutes(2));
+        aggregator.record(1L, true, 100_000, now());
+        aggregator.record(1L, false, 300_000, now());
+        clock.advance(Duration.ofSeconds(5));
+        aggregator.record(1L, true, 200_000, now());
+
+        MetricsAggregate aggregate = aggregator.aggregate(1L, now().minusMinutes(1), now()).orElseThrow();
+
+        assertEquals(3, aggregate.getCount());
+        assertEquals(1, aggregate.getErrorCount());
+        assertEquals(200.0, aggregate.avgMs());
+        assertEquals(100.0, aggregate.minMs());
+        assertEquals(300.0, aggregate.maxMs());
+        assertEquals(200.0, aggregate.percentileMs(50), 25.0);
+        assertEquals(300.0, aggregate.percentileMs(99), 37.5);
+    }
+
+    @Test
+    void aggregate_rangeBeforeStartup_isNotCovered() {
+        clock.advance(Duration.ofSeconds(10));
+
+        assertEquals(Optional.empty(), aggregator.aggregate(1L, now().minusMinutes(1), now()));
+    }
+
+    @Test
+    void aggregate_rangeOlderThanDayWindow_isNotCovered() {
+        clock.advance(Duration.ofDays(2));
+
+        assertEquals(Optional.empty(), aggregator.aggregate(null, now().minusDays(2), now()));
+        assertTrue(aggregator.aggregate(null, now().minusHours(24), now()).isPresent());
+    }
+
+    @Test
+    void aggregate_olderProbesLeaveShorterWindows() {
+        clock.advance(Duration.ofDays(1));
+        aggregator.record(1L, true, 100_000, now());
+        clock.advance(Duration.ofMinutes(2));
+        aggregator.record(1L, true, 100_000, now());
+
+        assertEquals(1, aggregator.aggregate(1L, now().minusMinutes(1), now()).orElseThrow().getCount());
+        assertEquals(2, aggregator.aggregate(1L, now().minusMinutes(5), now()).orElseThrow().getCount());
+
+        clock.advance(Duration.ofHours(3));
+        assertEquals(0, aggregator.aggregate(1L, now().minusHours(1), now()).orElseThrow().getCount());
+        assertEquals(2, aggregator.aggregate(1L, now().minusHours(24), now()).orElseThrow().getCount());
+    }
+
+    @Test
+    void aggregate_keepsEndpointsSeparateAndTotalsAll() {
+        clock.advance(Duration.ofMinutes(1));
+        aggregator.record(1L, true, 100_000, now());
+        aggregator.record(2L, false, 100_000, now());
+        aggregator.record(2L, true, 100_000, now());
+
+        assertEquals(1, aggregator.aggregate(1L, now().minusMinutes(1), now()).orElseThrow().getCount());
+        assertEquals(2, aggregator.aggregate(2L, now().minusMinutes(1), now()).orElseThrow().getCount());
+        assertEquals(3, aggregator.aggregate(null, now().minusMinutes(1), now()).orElseThrow().getCount());
+        assertEquals(0, aggregator.aggregate(3L, now().minusMinutes(1), now()).orElseThrow().getCount());
+    }
+
+    @Test
+    void aggregate_disabled_isNeverCovered() {
+        ApiConfig config = new ApiConfig();
+        config.getRollingWindow().setEnabled(false);
+        RollingWindowAggregatorImpl disabled = new RollingWindowAggregatorImpl(config, clock);
+        clock.advance(Duration.ofMinutes(1));
+        disabled.record(1L, true, 100_000, now());
+
+        assertEquals(Optional.empty(), disabled.aggregate(1L, now().minusSeconds(30), now()));
+    }
+
+    @Test
+    void record_concurrentProbes_areAllCounted() throws Exception {
+        clock.advance(Duration.ofMinutes(1));
+        LocalDateTime at = now();
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        IntStream.range(0, 8).forEach(t -> pool.submit(() -> {
+            for (int i = 0; i < 10_000; i++) {
+                aggregator.record((long) (i % 4), i % 10 != 0, 1_000, at);
+            }
+        }));
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+
+        MetricsAggregate aggregate = aggregator.aggregate(null, at.minusMinutes(1), now()).orElseThrow();
+        assertEquals(80_000, aggregate.getCount());
+        assertEquals(8_000, aggregate.getErrorCount());
+    }
+
+    private static final class MutableClock extends Clock {
+        private Instant instant;
+
+        private MutableClock(Instant instant) {
+            this.instant = instant;
+        }
+
+        private void advance(Duration duration) {
+            instant = instant.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    }
+}
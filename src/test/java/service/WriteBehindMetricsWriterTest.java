@@ -0,0 +1,287 @@
+package service;
+
+import com.apimonitor.config.ApiConfig;
+import com.apimonitor.model.impl.ApiEndpointImpl;
+import com.apimonitor.model.impl.ApiMetricsImpl;
+import com.apimonitor.model.impl.ApiResponseBodyImpl;
+import com.apimonitor.model.impl.ApiResponseImpl;
+import com.apimonitor.repository.MetricsBulkWriter;
+import com.apimonitor.service.RollingWindowAggregator;
+import com.apimonitor.service.impl.ReportCache;
+import com.apimonitor.service.impl.ResponseBodyStore;
+import com.apimonitor.service.impl.WriteBehindMetricsWriter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.TransientDataAccessResourceException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class WriteBehindMetricsWriterTest {
+
+    private MetricsBulkWriter bulkWriter;
+    private ResponseBodyStore bodyStore;
+    private ReportCache reportCache;
+    private RollingWindowAggregator rollingWindows;
+    private SimpleMeterRegistry meterRegistry;
+    private PlatformTransactionManager transactionManager;
+    private List<Integer> batchSizes;
+    private WriteBehindMetricsWriter writer;
+
+    @BeforeEach
+    void setUp() {
+        bulkWriter = mock(MetricsBulkWriter.class);
+        bodyStore = mock(ResponseBodyStore.class);
+        reportCache = mock(ReportCache.class);
+        rollingWindows = mock(RollingWindowAggregator.class);
+        transactionManager = mock(PlatformTransactionManager.class);
+        meterRegistry = new SimpleMeterRegistry();
+        batchSizes = new CopyOnWriteArrayList<>();
+        doAnswer(invocation -> {
+            List<ApiMetricsImpl> batch = invocation.getArgument(0);
+            batchSizes.add(batch.size());
+            return null;
+        }).when(bulkWriter).writeBatch(anyList());
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (writer != null) {
+            writer.stop();
+        }
+    }
+
+    private WriteBehindMetricsWriter newWriter(int capacity, int batchSize, long flushIntervalMs) {
+        ApiConfig config = new ApiConfig();
+        config.getIngest().setQueueCapacity(capacity);
+        config.getIngest().setBatchSize(batchSize);
+        config.getIngest().setFlushIntervalMs(flushIntervalMs);
+        config.getIngest().setMaxRetries(2);
+        config.getIngest().setRetryBackoffMs(1);
+        return new WriteBehindMetricsWriter(bulkWriter, bodyStore, reportCache, rollingWindows, transactionManager, config, meterRegistry);
+    }
+
+    private static ApiMetricsImpl metric(int i) {
+        return ApiMetricsImpl.builder().id((long) i).build();
+    }
+
+    @Test
+    void submit_writesMetricsInBatchesBySize() {
+        writer = newWriter(1000, 10, 100);
+        for (int i = 0; i < 30; i++) {
+            assertTrue(writer.submit(metric(i)));
+        }
+        writer.start();
+
+        waitUntil(() -> writer.getWrittenCount() == 30);
+        assertEquals(List.of(10, 10, 10), batchSizes);
+        verify(bodyStore, times(3)).deduplicate(anyList());
+        verify(transactionManager, times(3)).commit(any());
+        verify(reportCache, times(3)).invalidate(anyList());
+        waitUntil(() -> meterRegistry.get("metrics.ingest.flush").timer().count() == 3);
+        assertEquals(30.0, meterRegistry.get("metrics.ingest.batch.rows").summary().totalAmount());
+    }
+
+    @Test
+    void submit_flushesPartialBatchByTime() {
+        writer = newWriter(1000, 500, 100);
+        writer.start();
+
+        writer.submit(metric(1));
+        writer.submit(metric(2));
+
+        waitUntil(() -> writer.getWrittenCount() == 2);
+        assertEquals(List.of(2), batchSizes);
+    }
+
+    @Test
+    void submit_dropsMetricWhenQueueIsFull() {
+        writer = newWriter(2, 10, 100);
+
+        assertTrue(writer.submit(metric(1)));
+        assertTrue(writer.submit(metric(2)));
+        assertFalse(writer.submit(metric(3)));
+        assertEquals(1, writer.getDroppedCount());
+        assertEquals(1.0, meterRegistry.get("metrics.ingest.dropped").counter().count());
+        assertEquals(2.0, meterRegistry.get("metrics.ingest.queue.size").gauge().value());
+    }
+
+    @Test
+    void stop_drainsQueueBeforeStopping() {
+        writer = newWriter(1000, 10, 60_000);
+        writer.start();
+        for (int i = 0; i < 25; i++) {
+            writer.submit(metric(i));
+        }
+
+        writer.stop();
+
+        assertFalse(writer.isRunning());
+        assertEquals(25, writer.getWrittenCount());
+    }
+
+    @Test
+    void stop_wakesWriterWaitingForLongFlushInterval() {
+        writer = newWriter(1000, 10, 600_000);
+        writer.start();
+        writer.submit(metric(1));
+
+        long start = System.nanoTime();
+        writer.stop();
+
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5), "Остановка должна будить поток записи");
+        assertEquals(1, writer.getWrittenCount());
+        assertEquals(List.of(1), batchSizes);
+    }
+
+    @Test
+    void flush_countsFailedBatchAndKeepsWriting() {
+        doThrow(new IllegalStateException("db down"))
+                .doNothing()
+                .when(bulkWriter).writeBatch(anyList());
+        writer = newWriter(1000, 1, 100);
+        writer.submit(metric(1));
+        writer.submit(metric(2));
+        writer.start();
+
+        waitUntil(() -> writer.getFailedCount() == 1 && writer.getWrittenCount() == 1);
+        assertEquals(1.0, meterRegistry.get("metrics.ingest.failed").counter().count());
+        verify(bodyStore).evictAll();
+        // сбрасываются только интервалы записанного пакета
+        verify(reportCache, times(1)).invalidate(anyList());
+    }
+
+    @Test
+    void flush_retriesTransientFailures() {
+        doThrow(new TransientDataAccessResourceException("connection reset"))
+                .doNothing()
+                .when(bulkWriter).writeBatch(anyList());
+        writer = newWriter(1000, 10, 100);
+        for (int i = 0; i < 3; i++) {
+            writer.submit(metric(i));
+        }
+        writer.start();
+
+        waitUntil(() -> writer.getWrittenCount() == 3);
+        assertEquals(0, writer.getFailedCount());
+        verify(bulkWriter, times(2)).writeBatch(anyList());
+        verify(bodyStore, times(2)).deduplicate(anyList());
+    }
+
+    @Test
+    void flush_givesUpAfterRetriesAndCountsBatch() {
+        doThrow(new TransientDataAccessResourceException("db down")).when(bulkWriter).writeBatch(anyList());
+        writer = newWriter(1000, 10, 100);
+        for (int i = 0; i < 4; i++) {
+            writer.submit(metric(i));
+        }
+        writer.start();
+
+        waitUntil(() -> writer.getFailedCount() == 4);
+        // первая попытка и две повторные, без деления пакета
+        verify(bulkWriter, times(3)).writeBatch(anyList());
+        verify(reportCache, never()).invalidate(anyList());
+    }
+
+    @Test
+    void flush_splitsBatchOnDataErrorAndDropsOnlyBadRows() {
+        List<Integer> written = new CopyOnWriteArrayList<>();
+        doAnswer(invocation -> {
+            List<ApiMetricsImpl> batch = invocation.getArgument(0);
+            if (batch.stream().anyMatch(m -> m.getStatusCode() == 999)) {
+                throw new DataIntegrityViolationException("bad row");
+            }
+            batch.forEach(m -> written.add(m.getStatusCode()));
+            return null;
+        }).when(bulkWriter).writeBatch(anyList());
+        writer = newWriter(1000, 8, 100);
+        for (int i = 0; i < 8; i++) {
+            writer.submit(ApiMetricsImpl.builder().id((long) i).statusCode(i == 5 ? 999 : i).build());
+        }
+        writer.start();
+
+        waitUntil(() -> writer.getWrittenCount() == 7 && writer.getFailedCount() == 1);
+        assertEquals(List.of(0, 1, 2, 3, 4, 6, 7), written.stream().sorted().toList());
+        assertEquals(1.0, meterRegistry.get("metrics.ingest.failed").counter().count());
+    }
+
+    @Test
+    void flush_recordsOnlyCommittedMetricsInRollingWindows() {
+        ApiEndpointImpl endpoint = new ApiEndpointImpl();
+        endpoint.setId(5L);
+        LocalDateTime at = LocalDateTime.now();
+        doAnswer(invocation -> {
+            List<ApiMetricsImpl> batch = invocation.getArgument(0);
+            if (batch.stream().anyMatch(m -> m.getStatusCode() == 999)) {
+                throw new DataIntegrityViolationException("bad row");
+            }
+            return null;
+        }).when(bulkWriter).writeBatch(anyList());
+        writer = newWriter(1000, 2, 100);
+        writer.submit(ApiMetricsImpl.builder().endpoint(endpoint).statusCode(200).success(true)
+                .responseTimeMs(3).timestamp(at).build());
+        writer.submit(ApiMetricsImpl.builder().endpoint(endpoint).statusCode(999).timestamp(at).build());
+        writer.start();
+
+        waitUntil(() -> writer.getWrittenCount() == 1 && writer.getFailedCount() == 1);
+        // отвергнутая БД метрика в окна не попадает
+        verify(rollingWindows).record(5L, true, 3000, at);
+        verify(rollingWindows, never()).record(eq(5L), eq(false), anyLong(), any());
+    }
+
+    @Test
+    void flush_resetsIdsAndBodiesAfterRollback() {
+        ApiResponseBodyImpl original = ApiResponseBodyImpl.builder().body("body").build();
+        ApiMetricsImpl metrics = ApiMetricsImpl.builder()
+                .response(ApiResponseImpl.builder().content(original).build())
+                .build();
+        List<Long> idsSeen = new CopyOnWriteArrayList<>();
+        doAnswer(invocation -> {
+            List<ApiMetricsImpl> batch = invocation.getArgument(0);
+            batch.get(0).getResponse().setContent(ApiResponseBodyImpl.builder().id(42L).build());
+            return null;
+        }).when(bodyStore).deduplicate(anyList());
+        doAnswer(invocation -> {
+            List<ApiMetricsImpl> batch = invocation.getArgument(0);
+            ApiMetricsImpl m = batch.get(0);
+            idsSeen.add(m.getId());
+            m.setId(7L);
+            m.getResponse().setId(8L);
+            throw new DataIntegrityViolationException("bad row");
+        }).when(bulkWriter).writeBatch(anyList());
+        writer = newWriter(1000, 1, 100);
+        writer.submit(metrics);
+        writer.start();
+
+        waitUntil(() -> writer.getFailedCount() == 1);
+        assertNull(metrics.getId());
+        assertNull(metrics.getResponse().getId());
+        assertSame(original, metrics.getResponse().getContent());
+    }
+
+    private static void waitUntil(BooleanSupplier condition) {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "Условие не выполнено за 5 секунд");
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                fail(e);
+            }
+        }
+    }
+}